@@ -0,0 +1,393 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Annotation processor that generates a {@code CsvRowMapper} for each class annotated with
+ * {@code @CsvReport}.
+ *
+ * <p>The generated mapper is a plain Java class named {@code <ReportClass>CsvRowMapper}, in the
+ * same package as the report class. It maps each CSV column to a property index, and sets the
+ * values of a row by calling the typed setters of the report directly with the typed values of
+ * the {@code CsvRow}, so no reflection is needed at runtime.
+ *
+ * <p>The mappers follow the same rules as the reflective mapping in
+ * {@code ReportEntityMappingStrategy}. No mapper is generated for the file only reports (report
+ * type {@code UNKNOWN}), or for the classes with a property that the reflective mapping would not
+ * be able to bind; those reports keep using the reflective mapping.
+ *
+ * <p>The annotations are referred to by name, so this processor does not depend on the model.
+ */
+@SupportedAnnotationTypes(CsvRowMapperProcessor.CSV_REPORT)
+public class CsvRowMapperProcessor extends AbstractProcessor {
+  static final String CSV_REPORT =
+      "com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvReport";
+  static final String CSV_FIELD =
+      "com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField";
+  private static final String MONEY_FIELD =
+      "com.google.api.ads.adwords.awreporting.model.csv.annotation.MoneyField";
+
+  static final String CSV_PACKAGE = "com.google.api.ads.adwords.awreporting.model.csv";
+  private static final String MAPPER_SUFFIX = "CsvRowMapper";
+  static final String UNKNOWN_REPORT_TYPE = "UNKNOWN";
+
+  // The accessor method of CsvRow for each setter parameter type.
+  private static final Map<String, String> CONVERTERS = new LinkedHashMap<String, String>();
+
+  static {
+    CONVERTERS.put("java.lang.String", "getString");
+    CONVERTERS.put("java.lang.Long", "getLong");
+    CONVERTERS.put("java.lang.Integer", "getInteger");
+  }
+
+  private static final String MONEY_TYPE = "java.math.BigDecimal";
+  private static final String MONEY_CONVERTER = "getMoney";
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (TypeElement annotation : annotations) {
+      for (TypeElement reportClass :
+          ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+        if (isFileOnlyReport(reportClass)) {
+          continue;
+        }
+
+        List<Property> properties = findProperties(reportClass);
+        if (properties != null) {
+          writeMapper(reportClass, properties);
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks whether the report class is only available via CSV files (report type
+   * {@code UNKNOWN}).
+   */
+  private boolean isFileOnlyReport(TypeElement reportClass) {
+    AnnotationMirror csvReport = findAnnotation(reportClass, CSV_REPORT);
+    AnnotationValue reportType = getAnnotationValue(csvReport, "value");
+    return reportType != null
+        && UNKNOWN_REPORT_TYPE.equals(reportType.getValue().toString());
+  }
+
+  /**
+   * Finds the mapped properties of the report class and its super classes.
+   *
+   * @return the list of properties, or {@code null} if any property cannot be bound.
+   */
+  private List<Property> findProperties(TypeElement reportClass) {
+    // Same as the reflective mapping: the sub class is scanned first, and the mappings of the super
+    // classes override the previous ones for the same CSV column.
+    Map<String, String> nameMapping = new LinkedHashMap<String, String>();
+    Map<String, Boolean> moneyFields = new LinkedHashMap<String, Boolean>();
+    TypeElement currentClass = reportClass;
+    while (currentClass != null) {
+      for (VariableElement field : ElementFilter.fieldsIn(currentClass.getEnclosedElements())) {
+        String fieldName = field.getSimpleName().toString();
+        AnnotationMirror csvField = findAnnotation(field, CSV_FIELD);
+        if (csvField != null) {
+          nameMapping.put(
+              getAnnotationValue(csvField, "value").getValue().toString(), fieldName);
+        }
+        if (findAnnotation(field, MONEY_FIELD) != null) {
+          moneyFields.put(fieldName, Boolean.TRUE);
+        }
+      }
+      currentClass = getSuperclass(currentClass);
+    }
+
+    Map<String, Property> propertiesByName = new LinkedHashMap<String, Property>();
+    for (Map.Entry<String, String> entry : nameMapping.entrySet()) {
+      String propertyName = entry.getValue();
+      Property property = propertiesByName.get(propertyName);
+      if (property == null) {
+        property =
+            createProperty(
+                reportClass, propertyName, propertiesByName.size(),
+                moneyFields.containsKey(propertyName));
+        if (property == null) {
+          return null;
+        }
+        propertiesByName.put(propertyName, property);
+      }
+      property.csvColumns.add(entry.getKey());
+    }
+    return new ArrayList<Property>(propertiesByName.values());
+  }
+
+  /**
+   * Creates the property, resolving the setter the same way as {@code java.beans}.
+   *
+   * @return the property, or {@code null} if the property cannot be bound.
+   */
+  private Property createProperty(
+      TypeElement reportClass, String propertyName, int index, boolean isMoneyField) {
+    String capitalized =
+        Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+
+    ExecutableElement getter = findPublicMethod(reportClass, "get" + capitalized, null);
+    if (getter == null) {
+      getter = findPublicMethod(reportClass, "is" + capitalized, null);
+    }
+    if (getter == null) {
+      return skip(reportClass, "no public getter for property " + propertyName);
+    }
+
+    TypeMirror parameterType = getter.getReturnType();
+    ExecutableElement setter = findPublicMethod(reportClass, "set" + capitalized, parameterType);
+    if (setter == null) {
+      return skip(reportClass, "no public setter for property " + propertyName);
+    }
+
+    String typeName = parameterType.toString();
+    String converter = isMoneyField ? MONEY_CONVERTER : CONVERTERS.get(typeName);
+    if (converter == null || (isMoneyField && !MONEY_TYPE.equals(typeName))) {
+      return skip(reportClass, "unsupported type " + typeName + " for property " + propertyName);
+    }
+
+    return new Property(index, propertyName, setter.getSimpleName().toString(), converter);
+  }
+
+  private Property skip(TypeElement reportClass, String reason) {
+    processingEnv.getMessager().printMessage(
+        Diagnostic.Kind.NOTE,
+        "No CSV row mapper generated, the reflective mapping will be used: " + reason,
+        reportClass);
+    return null;
+  }
+
+  /**
+   * Finds the public method with the given name, in the class or any of its super classes.
+   *
+   * @param parameterType the type of the only parameter of the method, or {@code null} to find a
+   *     method without parameters.
+   */
+  private ExecutableElement findPublicMethod(
+      TypeElement type, String methodName, TypeMirror parameterType) {
+    TypeElement currentClass = type;
+    while (currentClass != null) {
+      for (ExecutableElement method :
+          ElementFilter.methodsIn(currentClass.getEnclosedElements())) {
+        if (method.getSimpleName().contentEquals(methodName)
+            && method.getModifiers().contains(Modifier.PUBLIC)
+            && !method.getModifiers().contains(Modifier.STATIC)
+            && hasParameter(method, parameterType)) {
+          return method;
+        }
+      }
+      currentClass = getSuperclass(currentClass);
+    }
+    return null;
+  }
+
+  private boolean hasParameter(ExecutableElement method, TypeMirror parameterType) {
+    if (parameterType == null) {
+      return method.getParameters().isEmpty();
+    }
+    return method.getParameters().size() == 1
+        && processingEnv.getTypeUtils()
+            .isSameType(method.getParameters().get(0).asType(), parameterType);
+  }
+
+  static TypeElement getSuperclass(TypeElement type) {
+    TypeMirror superclass = type.getSuperclass();
+    if (superclass.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    TypeElement superElement = (TypeElement) ((DeclaredType) superclass).asElement();
+    return superElement.getQualifiedName().contentEquals("java.lang.Object")
+        ? null
+        : superElement;
+  }
+
+  static AnnotationMirror findAnnotation(Element element, String annotationName) {
+    for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+      if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+
+  static AnnotationValue getAnnotationValue(AnnotationMirror annotation, String name) {
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+        annotation.getElementValues().entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals(name)) {
+        return entry.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Writes the source file of the mapper.
+   */
+  private void writeMapper(TypeElement reportClass, List<Property> properties) {
+    String packageName =
+        processingEnv.getElementUtils().getPackageOf(reportClass).getQualifiedName().toString();
+    String reportName = reportClass.getSimpleName().toString();
+    String mapperName = reportName + MAPPER_SUFFIX;
+
+    try {
+      Writer writer =
+          processingEnv.getFiler()
+              .createSourceFile(packageName + "." + mapperName, reportClass)
+              .openWriter();
+      try (PrintWriter out = new PrintWriter(writer)) {
+        writeMapper(out, packageName, reportName, mapperName, properties);
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(
+          Diagnostic.Kind.ERROR, "Failed to write " + mapperName + ": " + e, reportClass);
+    }
+  }
+
+  private static void writeMapper(PrintWriter out, String packageName, String reportName,
+      String mapperName, List<Property> properties) {
+    out.println("// Generated by " + CsvRowMapperProcessor.class.getName() + ". Do not edit.");
+    out.println();
+    out.println("package " + packageName + ";");
+    out.println();
+    out.println("import " + CSV_PACKAGE + ".CsvReportParsingException;");
+    out.println("import " + CSV_PACKAGE + ".CsvRow;");
+    out.println("import " + CSV_PACKAGE + ".CsvRowMapper;");
+    out.println("import " + CSV_PACKAGE + ".CsvRowMappers;");
+    out.println();
+    out.println("/**");
+    out.println(" * Maps the CSV rows of the {@link " + reportName + "} report.");
+    out.println(" */");
+    out.println("public final class " + mapperName);
+    out.println("    implements CsvRowMapper<" + reportName + "> {");
+    out.println();
+    out.println("  private static final String[] PROPERTY_NAMES = {");
+    for (Property property : properties) {
+      out.println("    \"" + property.name + "\",");
+    }
+    out.println("  };");
+    out.println();
+
+    out.println("  @Override");
+    out.println("  public " + reportName + " createBean() {");
+    out.println("    return new " + reportName + "();");
+    out.println("  }");
+    out.println();
+
+    out.println("  @Override");
+    out.println("  public int getPropertyIndex(String columnName) {");
+    out.println("    switch (columnName) {");
+    for (Property property : properties) {
+      for (String csvColumn : property.csvColumns) {
+        out.println("      case \"" + escape(csvColumn) + "\":");
+      }
+      out.println("        return " + property.index + ";");
+    }
+    out.println("      default:");
+    out.println("        return -1;");
+    out.println("    }");
+    out.println("  }");
+    out.println();
+
+    out.println("  @Override");
+    out.println("  public String getPropertyName(int propertyIndex) {");
+    out.println("    return PROPERTY_NAMES[propertyIndex];");
+    out.println("  }");
+    out.println();
+
+    out.println("  @Override");
+    out.println("  public void mapRow(" + reportName
+        + " bean, int[] propertyIndexes, CsvRow row)");
+    out.println("      throws CsvReportParsingException {");
+    out.println("    for (int col = 0; col < row.size(); col++) {");
+    out.println("      try {");
+    out.println("        setProperty(bean, propertyIndexes[col], row, col);");
+    out.println("      } catch (RuntimeException e) {");
+    out.println("        throw CsvRowMappers.newParsingException(");
+    out.println("            col, row.getRawValue(col), PROPERTY_NAMES[propertyIndexes[col]], e);");
+    out.println("      }");
+    out.println("    }");
+    out.println("  }");
+    out.println();
+
+    out.println("  private static void setProperty(" + reportName
+        + " bean, int propertyIndex, CsvRow row, int col) {");
+    out.println("    switch (propertyIndex) {");
+    for (Property property : properties) {
+      out.println("      case " + property.index + ":");
+      out.println("        bean." + property.setter + "(row." + property.converter + "(col));");
+      out.println("        return;");
+    }
+    out.println("      default:");
+    out.println("        throw new IllegalArgumentException(\"Invalid property index \""
+        + " + propertyIndex);");
+    out.println("    }");
+    out.println("  }");
+    out.println("}");
+  }
+
+  static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  /**
+   * A report property mapped to one or more CSV columns.
+   */
+  private static class Property {
+    final int index;
+    final String name;
+    final String setter;
+    final String converter;
+    final List<String> csvColumns = new ArrayList<String>();
+
+    Property(int index, String name, String setter, String converter) {
+      this.index = index;
+      this.name = name;
+      this.setter = setter;
+      this.converter = converter;
+    }
+  }
+}
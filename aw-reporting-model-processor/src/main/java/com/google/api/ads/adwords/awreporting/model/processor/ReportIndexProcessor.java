@@ -0,0 +1,221 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.processor;
+
+import static com.google.api.ads.adwords.awreporting.model.processor.CsvRowMapperProcessor.CSV_FIELD;
+import static com.google.api.ads.adwords.awreporting.model.processor.CsvRowMapperProcessor.CSV_PACKAGE;
+import static com.google.api.ads.adwords.awreporting.model.processor.CsvRowMapperProcessor.CSV_REPORT;
+import static com.google.api.ads.adwords.awreporting.model.processor.CsvRowMapperProcessor.UNKNOWN_REPORT_TYPE;
+import static com.google.api.ads.adwords.awreporting.model.processor.CsvRowMapperProcessor.escape;
+import static com.google.api.ads.adwords.awreporting.model.processor.CsvRowMapperProcessor.findAnnotation;
+import static com.google.api.ads.adwords.awreporting.model.processor.CsvRowMapperProcessor.getAnnotationValue;
+import static com.google.api.ads.adwords.awreporting.model.processor.CsvRowMapperProcessor.getSuperclass;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Annotation processor that generates a {@code ReportIndex} of the classes annotated with
+ * {@code @CsvReport}, for each package with such classes.
+ *
+ * <p>The generated index is a Java class named {@code GeneratedReportIndex} in the package of the
+ * report classes. It holds, for each report class, what {@code CsvReportEntitiesMapping} would
+ * find by scanning the classpath: the report type, the report fields to select and whether the
+ * report supports date ranges.
+ *
+ * <p>The index of a package is written in the first round with report classes of the package,
+ * so all the report classes of a package must be compiled together.
+ */
+@SupportedAnnotationTypes(CSV_REPORT)
+public class ReportIndexProcessor extends AbstractProcessor {
+  private static final String REPORT =
+      "com.google.api.ads.adwords.awreporting.model.entities.Report";
+  private static final String DATE_REPORT =
+      "com.google.api.ads.adwords.awreporting.model.entities.DateReport";
+  private static final String INDEX_CLASS_NAME = "GeneratedReportIndex";
+
+  // The packages whose index was already written.
+  private final Set<String> indexedPackages = new HashSet<String>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    Map<String, List<TypeElement>> reportClassesByPackage =
+        new LinkedHashMap<String, List<TypeElement>>();
+    for (TypeElement annotation : annotations) {
+      for (TypeElement reportClass :
+          ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+        if (reportClass.getModifiers().contains(Modifier.ABSTRACT)
+            || !isSubclass(reportClass, REPORT)) {
+          continue;
+        }
+        String packageName =
+            processingEnv.getElementUtils().getPackageOf(reportClass).getQualifiedName()
+                .toString();
+        List<TypeElement> reportClasses = reportClassesByPackage.get(packageName);
+        if (reportClasses == null) {
+          reportClasses = new ArrayList<TypeElement>();
+          reportClassesByPackage.put(packageName, reportClasses);
+        }
+        reportClasses.add(reportClass);
+      }
+    }
+
+    for (Map.Entry<String, List<TypeElement>> entry : reportClassesByPackage.entrySet()) {
+      if (indexedPackages.add(entry.getKey())) {
+        writeIndex(entry.getKey(), entry.getValue());
+      } else {
+        processingEnv.getMessager().printMessage(
+            Diagnostic.Kind.WARNING,
+            "Report class not added to the index of its package, which was already written",
+            entry.getValue().get(0));
+      }
+    }
+    return false;
+  }
+
+  private static boolean isSubclass(TypeElement type, String superclassName) {
+    for (TypeElement c = type; c != null; c = getSuperclass(c)) {
+      if (c.getQualifiedName().contentEquals(superclassName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Finds the report fields to select, the same way as {@code CsvReportEntitiesMapping}: the sub
+   * class is scanned first, and the excluded fields are skipped.
+   */
+  private static List<String> findPropertiesToSelect(TypeElement reportClass) {
+    Set<String> exclusions = new HashSet<String>();
+    AnnotationValue reportExclusions =
+        getAnnotationValue(findAnnotation(reportClass, CSV_REPORT), "reportExclusions");
+    if (reportExclusions != null) {
+      for (Object exclusion : (List<?>) reportExclusions.getValue()) {
+        exclusions.add(((AnnotationValue) exclusion).getValue().toString());
+      }
+    }
+
+    List<String> propertiesToSelect = new ArrayList<String>();
+    for (TypeElement c = reportClass; c != null; c = getSuperclass(c)) {
+      for (VariableElement field : ElementFilter.fieldsIn(c.getEnclosedElements())) {
+        AnnotationMirror csvField = findAnnotation(field, CSV_FIELD);
+        if (csvField != null) {
+          String reportField = getAnnotationValue(csvField, "reportField").getValue().toString();
+          if (!exclusions.contains(reportField)) {
+            propertiesToSelect.add(reportField);
+          }
+        }
+      }
+    }
+    return propertiesToSelect;
+  }
+
+  /**
+   * Writes the source file of the index of a package.
+   */
+  private void writeIndex(String packageName, List<TypeElement> reportClasses) {
+    try {
+      Writer writer =
+          processingEnv.getFiler()
+              .createSourceFile(
+                  packageName + "." + INDEX_CLASS_NAME,
+                  reportClasses.toArray(new Element[reportClasses.size()]))
+              .openWriter();
+      try (PrintWriter out = new PrintWriter(writer)) {
+        writeIndex(out, packageName, reportClasses);
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(
+          Diagnostic.Kind.ERROR, "Failed to write " + INDEX_CLASS_NAME + ": " + e);
+    }
+  }
+
+  private static void writeIndex(
+      PrintWriter out, String packageName, List<TypeElement> reportClasses) {
+    out.println("// Generated by " + ReportIndexProcessor.class.getName() + ". Do not edit.");
+    out.println();
+    out.println("package " + packageName + ";");
+    out.println();
+    out.println("import " + CSV_PACKAGE + ".ReportIndex;");
+    out.println();
+    out.println("/**");
+    out.println(" * The index of the report classes of the package.");
+    out.println(" */");
+    out.println("public final class " + INDEX_CLASS_NAME + " extends ReportIndex {");
+    out.println();
+    out.println("  public " + INDEX_CLASS_NAME + "() {");
+    for (TypeElement reportClass : reportClasses) {
+      AnnotationMirror csvReport = findAnnotation(reportClass, CSV_REPORT);
+      VariableElement reportType =
+          (VariableElement) getAnnotationValue(csvReport, "value").getValue();
+      String reportClassName = reportClass.getQualifiedName() + ".class";
+
+      if (reportType.getSimpleName().contentEquals(UNKNOWN_REPORT_TYPE)) {
+        AnnotationValue fileOnlyReportType = getAnnotationValue(csvReport, "fileOnlyReportType");
+        out.println("    addFileOnlyReport(");
+        out.println("        \""
+            + escape(fileOnlyReportType == null ? "" : fileOnlyReportType.getValue().toString())
+            + "\",");
+        out.println("        " + reportClassName + ");");
+      } else {
+        TypeElement reportTypeEnum = (TypeElement) reportType.getEnclosingElement();
+        out.println("    addReport(");
+        out.println("        " + reportTypeEnum.getQualifiedName() + "."
+            + reportType.getSimpleName() + ",");
+        out.println("        " + reportClassName + ",");
+        out.println("        " + isSubclass(reportClass, DATE_REPORT) + ",");
+        out.println("        \"" + escape(join(findPropertiesToSelect(reportClass))) + "\");");
+      }
+    }
+    out.println("  }");
+    out.println("}");
+  }
+
+  private static String join(List<String> values) {
+    StringBuilder joined = new StringBuilder();
+    for (String value : values) {
+      if (joined.length() > 0) {
+        joined.append(',');
+      }
+      joined.append(value);
+    }
+    return joined.toString();
+  }
+}
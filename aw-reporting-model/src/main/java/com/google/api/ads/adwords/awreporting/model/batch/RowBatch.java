@@ -0,0 +1,464 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.batch;
+
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A columnar batch of report rows, which holds the values of the parsed rows between the parsing
+ * and the persistence without keeping one bean per row.
+ *
+ * <p>Each field of the report class (see {@link RowBatchSchema}) is stored in a column vector:
+ * <ul>
+ * <li>the {@code Long}, {@code Integer} and {@code Date} values in a {@code long[]};
+ * <li>the {@code BigDecimal} values as an unscaled {@code long[]} and a {@code byte[]} of scales,
+ * so they are kept exactly (the few values that do not fit are kept as they are);
+ * <li>the {@code String} values as {@code int} codes of a per-batch dictionary, which only holds
+ * the distinct values of the column once.
+ * </ul>
+ * Each vector has a bitmap of the {@code null} values.
+ *
+ * <p>The batch is filled by copying the fields of a bean once it has been parsed and completed,
+ * so the parser can reuse a single bean for all the rows. A batch is not thread-safe, and is
+ * meant to be reused with {@link #clear()} once persisted.
+ *
+ * @param <T> the report class.
+ */
+public final class RowBatch<T extends Report> {
+  private final RowBatchSchema<T> schema;
+  private final int capacity;
+  private final ColumnVector[] vectors;
+  private int size;
+
+  /**
+   * @param schema the schema of the report class.
+   * @param capacity the maximum number of rows of the batch.
+   */
+  public RowBatch(RowBatchSchema<T> schema, int capacity) {
+    this.schema = Preconditions.checkNotNull(schema, "schema cannot be null");
+    Preconditions.checkArgument(capacity > 0, "capacity must be > 0");
+    this.capacity = capacity;
+
+    vectors = new ColumnVector[schema.getColumnCount()];
+    for (int i = 0; i < vectors.length; i++) {
+      switch (schema.getColumn(i).getType()) {
+        case STRING:
+          vectors[i] = new StringVector(capacity);
+          break;
+        case DECIMAL:
+          vectors[i] = new DecimalVector(capacity);
+          break;
+        case TIMESTAMP:
+          vectors[i] = new TimestampVector(capacity);
+          break;
+        case INTEGER:
+          vectors[i] = new IntegerVector(capacity);
+          break;
+        default:
+          vectors[i] = new LongVector(capacity);
+          break;
+      }
+    }
+  }
+
+  public RowBatchSchema<T> getSchema() {
+    return schema;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean isFull() {
+    return size == capacity;
+  }
+
+  /**
+   * Appends a row with the values of all the fields of the bean. The bean is not retained, so it
+   * can be reused for the next row.
+   *
+   * @throws IllegalStateException if the batch is full.
+   */
+  public void addRow(T bean) {
+    Preconditions.checkState(size < capacity, "The batch is full");
+    for (int i = 0; i < vectors.length; i++) {
+      Object value = schema.getValue(i, bean);
+      if (value == null) {
+        vectors[i].setNull(size);
+      } else {
+        vectors[i].set(size, value);
+      }
+    }
+    size++;
+  }
+
+  /**
+   * Returns a new batch with the rows of this one, and as many rows of capacity, so this one can be
+   * cleared and filled again while the copy is persisted.
+   */
+  public RowBatch<T> copy() {
+    RowBatch<T> copy = new RowBatch<T>(schema, Math.max(size, 1));
+    for (int i = 0; i < vectors.length; i++) {
+      vectors[i].copyTo(copy.vectors[i], size);
+    }
+    copy.size = size;
+    return copy;
+  }
+
+  /**
+   * Removes all the rows, so the batch can be filled again.
+   */
+  public void clear() {
+    for (ColumnVector vector : vectors) {
+      vector.clear(size);
+    }
+    size = 0;
+  }
+
+  public boolean isNull(int column, int row) {
+    checkRow(row);
+    return vectors[column].isNull(row);
+  }
+
+  /**
+   * Returns the value of a {@code LONG}, {@code INTEGER} or {@code TIMESTAMP} (in milliseconds)
+   * column, which is 0 for the {@code null} values.
+   */
+  public long getLong(int column, int row) {
+    checkRow(row);
+    ColumnVector vector = vectors[column];
+    Preconditions.checkArgument(vector instanceof LongVector, "Not a long column: %s", column);
+    return ((LongVector) vector).values[row];
+  }
+
+  /**
+   * Returns the value of a {@code DECIMAL} column, or {@code null}.
+   */
+  public BigDecimal getDecimal(int column, int row) {
+    checkRow(row);
+    ColumnVector vector = vectors[column];
+    Preconditions.checkArgument(
+        vector instanceof DecimalVector, "Not a decimal column: %s", column);
+    return (BigDecimal) vector.get(row);
+  }
+
+  /**
+   * Returns the value of a {@code STRING} column, or {@code null}.
+   */
+  public String getString(int column, int row) {
+    checkRow(row);
+    return (String) getStringVector(column).get(row);
+  }
+
+  /**
+   * Returns the dictionary code of the value of a {@code STRING} column, or -1 for {@code null}.
+   */
+  public int getStringCode(int column, int row) {
+    checkRow(row);
+    return getStringVector(column).codes[row];
+  }
+
+  /**
+   * Returns the dictionary of a {@code STRING} column: the distinct values of the column, indexed
+   * by their code.
+   */
+  public List<String> getStringDictionary(int column) {
+    return Collections.unmodifiableList(getStringVector(column).dictionary);
+  }
+
+  /**
+   * Returns the value of any column as the type of the report field, or {@code null}.
+   */
+  public Object getValue(int column, int row) {
+    checkRow(row);
+    return vectors[column].get(row);
+  }
+
+  /**
+   * Copies the values of a row into the fields of the bean.
+   */
+  public void copyRowTo(int row, T bean) {
+    checkRow(row);
+    for (int i = 0; i < vectors.length; i++) {
+      schema.setValue(i, bean, vectors[i].get(row));
+    }
+  }
+
+  /**
+   * Materializes the rows into new beans, for the consumers that need the report entities.
+   */
+  public List<T> toBeans() {
+    List<T> beans = Lists.newArrayListWithCapacity(size);
+    for (int row = 0; row < size; row++) {
+      T bean = schema.newBean();
+      copyRowTo(row, bean);
+      beans.add(bean);
+    }
+    return beans;
+  }
+
+  private void checkRow(int row) {
+    Preconditions.checkElementIndex(row, size, "row");
+  }
+
+  private StringVector getStringVector(int column) {
+    ColumnVector vector = vectors[column];
+    Preconditions.checkArgument(vector instanceof StringVector, "Not a string column: %s", column);
+    return (StringVector) vector;
+  }
+
+  /**
+   * The values of one column, with the bitmap of the {@code null} values.
+   */
+  private abstract static class ColumnVector {
+    private final long[] nulls;
+
+    ColumnVector(int capacity) {
+      nulls = new long[(capacity + 63) >>> 6];
+    }
+
+    final boolean isNull(int row) {
+      return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    void setNull(int row) {
+      nulls[row >>> 6] |= 1L << row;
+    }
+
+    /**
+     * Returns the value of the row, or {@code null}.
+     */
+    final Object get(int row) {
+      return isNull(row) ? null : getNonNull(row);
+    }
+
+    /**
+     * @param size the number of rows of the batch.
+     */
+    void clear(int size) {
+      Arrays.fill(nulls, 0, (size + 63) >>> 6, 0L);
+    }
+
+    /**
+     * Copies the first rows into an empty vector of the same type.
+     *
+     * @param size the number of rows to copy.
+     */
+    void copyTo(ColumnVector target, int size) {
+      System.arraycopy(nulls, 0, target.nulls, 0, (size + 63) >>> 6);
+    }
+
+    abstract void set(int row, Object value);
+
+    abstract Object getNonNull(int row);
+  }
+
+  private static class LongVector extends ColumnVector {
+    final long[] values;
+
+    LongVector(int capacity) {
+      super(capacity);
+      values = new long[capacity];
+    }
+
+    @Override
+    void setNull(int row) {
+      super.setNull(row);
+      values[row] = 0L;
+    }
+
+    @Override
+    void set(int row, Object value) {
+      values[row] = ((Long) value).longValue();
+    }
+
+    @Override
+    Object getNonNull(int row) {
+      return Long.valueOf(values[row]);
+    }
+
+    @Override
+    void copyTo(ColumnVector target, int size) {
+      super.copyTo(target, size);
+      System.arraycopy(values, 0, ((LongVector) target).values, 0, size);
+    }
+  }
+
+  private static final class IntegerVector extends LongVector {
+    IntegerVector(int capacity) {
+      super(capacity);
+    }
+
+    @Override
+    void set(int row, Object value) {
+      values[row] = ((Integer) value).intValue();
+    }
+
+    @Override
+    Object getNonNull(int row) {
+      return Integer.valueOf((int) values[row]);
+    }
+  }
+
+  private static final class TimestampVector extends LongVector {
+    TimestampVector(int capacity) {
+      super(capacity);
+    }
+
+    @Override
+    void set(int row, Object value) {
+      values[row] = ((Date) value).getTime();
+    }
+
+    @Override
+    Object getNonNull(int row) {
+      return new Date(values[row]);
+    }
+  }
+
+  private static final class DecimalVector extends ColumnVector {
+    private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private final long[] unscaledValues;
+    private final byte[] scales;
+    // The values whose unscaled value or scale does not fit, only allocated when needed.
+    private BigDecimal[] overflowValues;
+
+    DecimalVector(int capacity) {
+      super(capacity);
+      unscaledValues = new long[capacity];
+      scales = new byte[capacity];
+    }
+
+    @Override
+    void set(int row, Object value) {
+      BigDecimal decimal = (BigDecimal) value;
+      BigInteger unscaledValue = decimal.unscaledValue();
+      int scale = decimal.scale();
+      if (scale >= Byte.MIN_VALUE
+          && scale <= Byte.MAX_VALUE
+          && unscaledValue.compareTo(MIN_LONG) >= 0
+          && unscaledValue.compareTo(MAX_LONG) <= 0) {
+        unscaledValues[row] = unscaledValue.longValue();
+        scales[row] = (byte) scale;
+        if (overflowValues != null) {
+          overflowValues[row] = null;
+        }
+      } else {
+        if (overflowValues == null) {
+          overflowValues = new BigDecimal[unscaledValues.length];
+        }
+        overflowValues[row] = decimal;
+      }
+    }
+
+    @Override
+    Object getNonNull(int row) {
+      if (overflowValues != null && overflowValues[row] != null) {
+        return overflowValues[row];
+      }
+      return BigDecimal.valueOf(unscaledValues[row], scales[row]);
+    }
+
+    @Override
+    void copyTo(ColumnVector target, int size) {
+      super.copyTo(target, size);
+      DecimalVector decimalTarget = (DecimalVector) target;
+      System.arraycopy(unscaledValues, 0, decimalTarget.unscaledValues, 0, size);
+      System.arraycopy(scales, 0, decimalTarget.scales, 0, size);
+      if (overflowValues != null) {
+        decimalTarget.overflowValues = new BigDecimal[decimalTarget.unscaledValues.length];
+        System.arraycopy(overflowValues, 0, decimalTarget.overflowValues, 0, size);
+      }
+    }
+
+    @Override
+    void clear(int size) {
+      super.clear(size);
+      if (overflowValues != null) {
+        Arrays.fill(overflowValues, 0, size, null);
+      }
+    }
+  }
+
+  private static final class StringVector extends ColumnVector {
+    final int[] codes;
+    final List<String> dictionary = Lists.newArrayList();
+    private final Map<String, Integer> codesByValue = Maps.newHashMap();
+
+    StringVector(int capacity) {
+      super(capacity);
+      codes = new int[capacity];
+    }
+
+    @Override
+    void setNull(int row) {
+      super.setNull(row);
+      codes[row] = -1;
+    }
+
+    @Override
+    void set(int row, Object value) {
+      String string = (String) value;
+      Integer code = codesByValue.get(string);
+      if (code == null) {
+        code = dictionary.size();
+        dictionary.add(string);
+        codesByValue.put(string, code);
+      }
+      codes[row] = code.intValue();
+    }
+
+    @Override
+    Object getNonNull(int row) {
+      return dictionary.get(codes[row]);
+    }
+
+    @Override
+    void copyTo(ColumnVector target, int size) {
+      super.copyTo(target, size);
+      StringVector stringTarget = (StringVector) target;
+      System.arraycopy(codes, 0, stringTarget.codes, 0, size);
+      stringTarget.dictionary.addAll(dictionary);
+      stringTarget.codesByValue.putAll(codesByValue);
+    }
+
+    @Override
+    void clear(int size) {
+      super.clear(size);
+      dictionary.clear();
+      codesByValue.clear();
+    }
+  }
+}
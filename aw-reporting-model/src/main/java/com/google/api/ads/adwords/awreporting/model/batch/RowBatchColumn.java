@@ -0,0 +1,90 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.batch;
+
+import com.google.common.base.MoreObjects;
+import javax.annotation.Nullable;
+
+/**
+ * A column of a {@link RowBatch}, which holds the values of one field of the report class.
+ */
+public final class RowBatchColumn {
+
+  /**
+   * The types of the column vectors, one per type of the report fields.
+   */
+  public enum Type {
+    /** {@code String} values, stored as codes of a per-batch dictionary. */
+    STRING,
+    /** {@code Long} values, stored in a {@code long[]}. */
+    LONG,
+    /** {@code Integer} values, stored in a {@code long[]}. */
+    INTEGER,
+    /** {@code BigDecimal} values, stored as unscaled {@code long} values and scales. */
+    DECIMAL,
+    /** {@code Date} values, stored as milliseconds in a {@code long[]}. */
+    TIMESTAMP
+  }
+
+  private final String name;
+  private final String fieldName;
+  private final String csvName;
+  private final Type type;
+
+  RowBatchColumn(String name, String fieldName, @Nullable String csvName, Type type) {
+    this.name = name;
+    this.fieldName = fieldName;
+    this.csvName = csvName;
+    this.type = type;
+  }
+
+  /**
+   * Returns the name of the column: the report field on the API for the fields mapped to the CSV
+   * file, or else the name of the Java field.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the name of the Java field of the report class.
+   */
+  public String getFieldName() {
+    return fieldName;
+  }
+
+  /**
+   * Returns the name of the column in the CSV file, or {@code null} if the field is not mapped to
+   * the CSV file (such as the date range of the report).
+   */
+  @Nullable
+  public String getCsvName() {
+    return csvName;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("name", name)
+        .add("fieldName", fieldName)
+        .add("csvName", csvName)
+        .add("type", type)
+        .toString();
+  }
+}
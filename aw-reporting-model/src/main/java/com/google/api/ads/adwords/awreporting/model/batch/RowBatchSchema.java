@@ -0,0 +1,187 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.batch;
+
+import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The columns of the {@link RowBatch} of a report class: one column per instance field of the
+ * class and its superclasses, superclass fields first. The columns of the fields annotated with
+ * {@link CsvField} are named after their report field.
+ *
+ * <p>The schemas are created once per report class and shared by all the batches.
+ *
+ * @param <T> the report class.
+ */
+public final class RowBatchSchema<T extends Report> {
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+
+  private static final ConcurrentMap<Class<?>, RowBatchSchema<?>> schemasByClass =
+      new ConcurrentHashMap<Class<?>, RowBatchSchema<?>>();
+
+  private final Class<T> reportClass;
+  private final ImmutableList<RowBatchColumn> columns;
+  private final Map<String, Integer> columnIndexes;
+  private final MethodHandle[] getters;
+  private final MethodHandle[] setters;
+
+  private RowBatchSchema(Class<T> reportClass) {
+    this.reportClass = reportClass;
+
+    List<Class<?>> hierarchy = Lists.newArrayList();
+    for (Class<?> c = reportClass; c != Object.class; c = c.getSuperclass()) {
+      hierarchy.add(0, c);
+    }
+
+    ImmutableList.Builder<RowBatchColumn> columnsBuilder = ImmutableList.builder();
+    List<MethodHandle> getterList = Lists.newArrayList();
+    List<MethodHandle> setterList = Lists.newArrayList();
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    for (Class<?> c : hierarchy) {
+      for (Field field : c.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) {
+          continue;
+        }
+        CsvField csvField = field.getAnnotation(CsvField.class);
+        columnsBuilder.add(
+            new RowBatchColumn(
+                csvField != null ? csvField.reportField() : field.getName(),
+                field.getName(),
+                csvField != null ? csvField.value() : null,
+                getColumnType(field)));
+        field.setAccessible(true);
+        try {
+          getterList.add(lookup.unreflectGetter(field).asType(GETTER_TYPE));
+          setterList.add(lookup.unreflectSetter(field).asType(SETTER_TYPE));
+        } catch (IllegalAccessException e) {
+          throw new IllegalStateException("Cannot access the field " + field, e);
+        }
+      }
+    }
+    this.columns = columnsBuilder.build();
+    this.getters = getterList.toArray(new MethodHandle[getterList.size()]);
+    this.setters = setterList.toArray(new MethodHandle[setterList.size()]);
+
+    this.columnIndexes = Maps.newHashMapWithExpectedSize(columns.size());
+    for (int i = 0; i < columns.size(); i++) {
+      columnIndexes.put(columns.get(i).getName(), i);
+    }
+  }
+
+  /**
+   * Returns the schema of the report class.
+   *
+   * @throws IllegalArgumentException if a field of the class has a type without column vector.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Report> RowBatchSchema<T> forClass(Class<T> reportClass) {
+    RowBatchSchema<?> schema = schemasByClass.get(reportClass);
+    if (schema == null) {
+      schema = new RowBatchSchema<T>(reportClass);
+      schemasByClass.putIfAbsent(reportClass, schema);
+    }
+    return (RowBatchSchema<T>) schema;
+  }
+
+  private static RowBatchColumn.Type getColumnType(Field field) {
+    Class<?> fieldType = field.getType();
+    if (String.class.equals(fieldType)) {
+      return RowBatchColumn.Type.STRING;
+    }
+    if (Long.class.equals(fieldType)) {
+      return RowBatchColumn.Type.LONG;
+    }
+    if (Integer.class.equals(fieldType)) {
+      return RowBatchColumn.Type.INTEGER;
+    }
+    if (BigDecimal.class.equals(fieldType)) {
+      return RowBatchColumn.Type.DECIMAL;
+    }
+    if (Date.class.equals(fieldType)) {
+      return RowBatchColumn.Type.TIMESTAMP;
+    }
+    throw new IllegalArgumentException("No column type for the field " + field);
+  }
+
+  public Class<T> getReportClass() {
+    return reportClass;
+  }
+
+  public List<RowBatchColumn> getColumns() {
+    return columns;
+  }
+
+  public int getColumnCount() {
+    return columns.size();
+  }
+
+  public RowBatchColumn getColumn(int column) {
+    return columns.get(column);
+  }
+
+  /**
+   * Returns the index of the column with the given name, or -1 if there is no such column.
+   */
+  public int getColumnIndex(String name) {
+    Integer index = columnIndexes.get(Preconditions.checkNotNull(name, "name cannot be null"));
+    return index == null ? -1 : index.intValue();
+  }
+
+  /**
+   * Creates a new, empty bean of the report class.
+   */
+  T newBean() {
+    try {
+      return reportClass.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot instantiate " + reportClass, e);
+    }
+  }
+
+  Object getValue(int column, T bean) {
+    try {
+      return getters[column].invokeExact((Object) bean);
+    } catch (Throwable t) {
+      throw new IllegalStateException("Cannot read the field " + columns.get(column), t);
+    }
+  }
+
+  void setValue(int column, T bean, Object value) {
+    try {
+      setters[column].invokeExact((Object) bean, value);
+    } catch (Throwable t) {
+      throw new IllegalStateException("Cannot write the field " + columns.get(column), t);
+    }
+  }
+}
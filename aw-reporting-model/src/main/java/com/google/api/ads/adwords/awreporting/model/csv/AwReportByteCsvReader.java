@@ -0,0 +1,429 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Class for reading API downloaded AdWords reports (UTF-8 RFC4180 CSV, without report header or
+ * summary) directly from the bytes.
+ *
+ * <p>The records are tokenized in place in a reusable byte buffer, and the reader itself is the
+ * {@link CsvRow} of the current record: each column is a slice of the buffer. The values are only
+ * decoded into {@code String}s for the columns read with {@link #getString(int)}, and the numbers
+ * are parsed straight from the bytes. Unusual number formats fall back to the {@code String} based
+ * conversions of {@link ValueConverters}, so both readers produce the same values.
+ *
+ * <p>The current row is only valid until the next call to {@link #nextRow()}. This class is not
+ * thread-safe.
+ */
+public class AwReportByteCsvReader implements CsvRowReader, CsvRow {
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_LONG_DIGITS = 18;
+  private static final int MAX_INTEGER_DIGITS = 9;
+  // The first column of the summary line of the reports downloaded from the AdWords UI.
+  private static final byte[] SUMMARY_FIRST_COLUMN = {'t', 'o', 't', 'a', 'l'};
+
+  // The states of the scan for the end of a record, also used by CsvFileSplitter.
+  static final int FIELD_START = 0;
+  static final int UNQUOTED = 1;
+  static final int QUOTED = 2;
+  static final int QUOTE_IN_QUOTED = 3;
+
+  private final InputStream inputStream;
+  private final String[] columnNames;
+  private final boolean hasSummary;
+
+  private byte[] buffer;
+  // The valid bytes in the buffer are [position, limit).
+  private int position;
+  private int limit;
+  private boolean endOfStream;
+  private boolean endOfData;
+
+  // The fields of the current record are [fieldStarts[i], fieldEnds[i]) in the buffer.
+  private int[] fieldStarts = new int[64];
+  private int[] fieldEnds = new int[64];
+  private int fieldCount;
+
+  /**
+   * Constructs the reader, and reads the column names from the first line.
+   *
+   * @param inputStream the UTF-8 CSV source.
+   * @throws IOException if the header line cannot be read.
+   */
+  public AwReportByteCsvReader(InputStream inputStream) throws IOException {
+    this(inputStream, DEFAULT_BUFFER_SIZE);
+  }
+
+  AwReportByteCsvReader(InputStream inputStream, int initialBufferSize) throws IOException {
+    this.inputStream = Preconditions.checkNotNull(inputStream, "inputStream cannot be null.");
+    this.buffer = new byte[initialBufferSize];
+    this.hasSummary = false;
+
+    try {
+      if (!readRecord()) {
+        throw new IOException("The report has no header line.");
+      }
+    } catch (IOException | RuntimeException e) {
+      inputStream.close();
+      throw e;
+    }
+
+    columnNames = new String[fieldCount];
+    for (int i = 0; i < fieldCount; i++) {
+      columnNames[i] = getRawValue(i).trim();
+    }
+  }
+
+  /**
+   * Constructs the reader for a part of a CSV file without its header line, such as one of the
+   * parts of a file split by {@link CsvFileSplitter}.
+   *
+   * @param inputStream the UTF-8 CSV source, starting at the beginning of a record.
+   * @param columnNames the column names, read from the header line of the file.
+   * @param hasSummary whether the reading stops at the "Total" summary line.
+   */
+  AwReportByteCsvReader(InputStream inputStream, String[] columnNames, boolean hasSummary) {
+    this.inputStream = Preconditions.checkNotNull(inputStream, "inputStream cannot be null.");
+    this.columnNames = Preconditions.checkNotNull(columnNames, "columnNames cannot be null.");
+    this.hasSummary = hasSummary;
+    this.buffer = new byte[DEFAULT_BUFFER_SIZE];
+  }
+
+  @Override
+  public String[] getColumnNames() {
+    return columnNames;
+  }
+
+  @Override
+  public CsvRow nextRow() throws IOException {
+    if (endOfData || !readRecord() || (hasSummary && isSummaryRecord())) {
+      endOfData = true;
+      return null;
+    }
+    return this;
+  }
+
+  /**
+   * Returns whether the current record is the summary line, whose first column is "Total".
+   */
+  private boolean isSummaryRecord() {
+    int start = fieldStarts[0];
+    if (fieldEnds[0] - start != SUMMARY_FIRST_COLUMN.length) {
+      return false;
+    }
+    for (int i = 0; i < SUMMARY_FIRST_COLUMN.length; i++) {
+      if ((buffer[start + i] | 0x20) != SUMMARY_FIRST_COLUMN[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    inputStream.close();
+  }
+
+  /**
+   * Reads the next record into the buffer, and splits it into fields.
+   *
+   * @return whether a record was read.
+   */
+  private boolean readRecord() throws IOException {
+    int state = FIELD_START;
+    int offset = 0;
+    int recordLength;
+    int separatorLength;
+
+    // Find the end of the record, while filling the buffer as needed.
+    while (true) {
+      if (position + offset == limit) {
+        if (!fill()) {
+          if (offset == 0) {
+            return false;
+          }
+          if (state == QUOTED) {
+            throw new IOException("EOF reached before encapsulated token finished.");
+          }
+          recordLength = offset;
+          separatorLength = 0;
+          break;
+        }
+      }
+
+      byte b = buffer[position + offset];
+      if (state == QUOTED) {
+        if (b == '"') {
+          state = QUOTE_IN_QUOTED;
+        }
+      } else if (b == '\n' || b == '\r') {
+        recordLength = offset;
+        separatorLength = 1;
+        if (b == '\r') {
+          if (position + offset + 1 == limit) {
+            fill();
+          }
+          if (position + offset + 1 < limit && buffer[position + offset + 1] == '\n') {
+            separatorLength = 2;
+          }
+        }
+        break;
+      } else if (b == ',') {
+        state = FIELD_START;
+      } else if (b == '"') {
+        state = (state == FIELD_START || state == QUOTE_IN_QUOTED) ? QUOTED : UNQUOTED;
+      } else {
+        state = UNQUOTED;
+      }
+      offset++;
+    }
+
+    tokenize(position, position + recordLength);
+    position += recordLength + separatorLength;
+    return true;
+  }
+
+  /**
+   * Splits the record {@code [start, end)} into fields. The quoted fields are unescaped in place.
+   */
+  private void tokenize(int start, int end) throws IOException {
+    fieldCount = 0;
+    int p = start;
+    while (true) {
+      int fieldStart;
+      int fieldEnd;
+      if (p < end && buffer[p] == '"') {
+        int read = p + 1;
+        int write = read;
+        fieldStart = write;
+        while (true) {
+          byte b = buffer[read];
+          if (b == '"') {
+            if (read + 1 < end && buffer[read + 1] == '"') {
+              buffer[write++] = '"';
+              read += 2;
+            } else {
+              read++;
+              break;
+            }
+          } else {
+            buffer[write++] = b;
+            read++;
+          }
+        }
+        fieldEnd = write;
+        if (read < end && buffer[read] != ',') {
+          throw new IOException("Invalid char between encapsulated token and delimiter.");
+        }
+        p = read;
+      } else {
+        fieldStart = p;
+        while (p < end && buffer[p] != ',') {
+          p++;
+        }
+        fieldEnd = p;
+      }
+
+      addField(fieldStart, fieldEnd);
+      if (p >= end) {
+        return;
+      }
+      p++;
+    }
+  }
+
+  private void addField(int start, int end) {
+    if (fieldCount == fieldStarts.length) {
+      fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+      fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+    }
+    fieldStarts[fieldCount] = start;
+    fieldEnds[fieldCount] = end;
+    fieldCount++;
+  }
+
+  /**
+   * Reads more bytes into the buffer, moving the pending bytes to the beginning of the buffer, or
+   * growing the buffer if it is full.
+   *
+   * @return whether any bytes were read.
+   */
+  private boolean fill() throws IOException {
+    if (endOfStream) {
+      return false;
+    }
+
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      limit -= position;
+      position = 0;
+    }
+    if (limit == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+
+    int read;
+    do {
+      read = inputStream.read(buffer, limit, buffer.length - limit);
+    } while (read == 0);
+
+    if (read < 0) {
+      endOfStream = true;
+      return false;
+    }
+    limit += read;
+    return true;
+  }
+
+  @Override
+  public int size() {
+    return fieldCount;
+  }
+
+  @Override
+  public String getRawValue(int column) {
+    checkColumn(column);
+    int start = fieldStarts[column];
+    return new String(buffer, start, fieldEnds[column] - start, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public String getString(int column) {
+    checkColumn(column);
+    int start = fieldStarts[column];
+    int end = fieldEnds[column];
+    if (start == end) {
+      return null;
+    }
+
+    // Same as String.trim(): the whitespace chars are single bytes in UTF-8.
+    while (start < end && isWhitespace(buffer[start])) {
+      start++;
+    }
+    while (end > start && isWhitespace(buffer[end - 1])) {
+      end--;
+    }
+    if (isEmptyValue(start, end)) {
+      return null;
+    }
+    return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public Long getLong(int column) {
+    long value = parseDigits(column, MAX_LONG_DIGITS, false);
+    if (value >= 0) {
+      return Long.valueOf(value);
+    }
+    return isEmptyValue(column) ? null : ValueConverters.toLong(getRawValue(column));
+  }
+
+  @Override
+  public Integer getInteger(int column) {
+    long value = parseDigits(column, MAX_INTEGER_DIGITS, false);
+    if (value >= 0) {
+      return Integer.valueOf((int) value);
+    }
+    return isEmptyValue(column) ? null : ValueConverters.toInteger(getRawValue(column));
+  }
+
+  @Override
+  public BigDecimal getMoney(int column) {
+    long micros = parseDigits(column, MAX_LONG_DIGITS, true);
+    if (micros >= 0) {
+      return BigDecimalUtil.fromMicros(micros);
+    }
+    return isEmptyValue(column) ? null : ValueConverters.toMoney(getRawValue(column));
+  }
+
+  /**
+   * Parses the column as a number made only of digits, ignoring the dashes (such as for CID
+   * "xxx-xxx-xxxx").
+   *
+   * @param maxDigits the maximum number of digits to be parsed.
+   * @param allowLeadingZeros whether the number can start with '0', which {@code Long.decode}
+   *     would otherwise parse as an octal number.
+   * @return the parsed number, or {@code -1} if the column has to be parsed by the {@code String}
+   *     based conversion.
+   */
+  private long parseDigits(int column, int maxDigits, boolean allowLeadingZeros) {
+    checkColumn(column);
+    int end = fieldEnds[column];
+    long value = 0;
+    int digits = 0;
+    boolean leadingZero = false;
+    for (int i = fieldStarts[column]; i < end; i++) {
+      byte b = buffer[i];
+      if (b >= '0' && b <= '9') {
+        if (digits == 0) {
+          leadingZero = b == '0';
+        }
+        if (++digits > maxDigits) {
+          return -1;
+        }
+        value = value * 10 + (b - '0');
+      } else if (b != '-') {
+        return -1;
+      }
+    }
+    if (digits == 0 || (leadingZero && digits > 1 && !allowLeadingZeros)) {
+      return -1;
+    }
+    return value;
+  }
+
+  /**
+   * Same as {@code StringsUtil.isEmptyValue(getRawValue(column))}, without decoding the column.
+   */
+  private boolean isEmptyValue(int column) {
+    int start = fieldStarts[column];
+    int end = fieldEnds[column];
+    if (start == end) {
+      return true;
+    }
+    while (start < end && isWhitespace(buffer[start])) {
+      start++;
+    }
+    while (end > start && isWhitespace(buffer[end - 1])) {
+      end--;
+    }
+    return isEmptyValue(start, end);
+  }
+
+  private boolean isEmptyValue(int trimmedStart, int trimmedEnd) {
+    return trimmedEnd - trimmedStart == 2
+        && buffer[trimmedStart] == '-'
+        && buffer[trimmedStart + 1] == '-';
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b >= 0 && b <= ' ';
+  }
+
+  private void checkColumn(int column) {
+    if (column < 0 || column >= fieldCount) {
+      throw new IndexOutOfBoundsException(
+          "Column " + column + " out of range, the row has " + fieldCount + " columns.");
+    }
+  }
+}
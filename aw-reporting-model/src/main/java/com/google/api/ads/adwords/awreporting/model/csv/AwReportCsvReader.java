@@ -16,28 +16,35 @@ package com.google.api.ads.adwords.awreporting.model.csv;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.Iterator;
 import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 
 /**
  * Class for reading AdWords reports (CSV format).
  *
  * <p>It handles both API downloaded reports (without header or summary), and user downloaded
- * reports (with header and summary). In order to accomplish the latter behavior,
+ * reports (with header and summary). In order to accomplish the latter behavior, the report header
+ * line is skipped on construction, and the reading stops as soon as the "Total" summary line is
+ * reached.
+ *
+ * <p>The records are pulled one at a time from the underlying {@link Reader}, so the memory used
+ * by this reader does not depend on the size of the report. The reader is kept open until
+ * {@link #close()} is called.
  */
-public class AwReportCsvReader {
+public class AwReportCsvReader implements CsvRowReader {
   // The 'Total' {@code String} represents the last line of the AW Report CSV file.
   private static final String AW_REPORT_CSV_TOTAL = "total";
 
   private final boolean hasSummary;
   private final String[] columnNames;
-  private final ListIterator<CSVRecord> records;
+  private final CSVParser parser;
+  private final Iterator<CSVRecord> records;
+  private boolean endOfData;
 
   /**
    * Constructs AwReportCsvReader with params of whether header / summary lines exist.
@@ -48,16 +55,21 @@ public class AwReportCsvReader {
    */
   public AwReportCsvReader(Reader reader, boolean hasHeader, boolean hasSummary)
       throws IOException {
-    try (BufferedReader br = new BufferedReader(reader)) {
+    BufferedReader br = new BufferedReader(reader);
+    try {
       if (hasHeader) {
         br.readLine();
       }
 
       Splitter splitter = Splitter.on(',').trimResults();
       columnNames = Iterables.toArray(splitter.split(br.readLine()), String.class);
-      records = CSVFormat.RFC4180.withHeader(columnNames).parse(br).getRecords().listIterator();
+      parser = CSVFormat.RFC4180.parse(br);
+      records = parser.iterator();
+    } catch (IOException | RuntimeException e) {
+      br.close();
+      throw e;
     }
-    
+
     this.hasSummary = hasSummary;
   }
 
@@ -69,25 +81,44 @@ public class AwReportCsvReader {
    *     was reached
    */
   public String[] readNext() {
-    String[] next = null;
-    if (records.hasNext()) {
-      CSVRecord record = records.next();
-      List<String> values = Lists.newArrayListWithCapacity(record.size());
-      for (int i = 0; i < record.size(); i++) {
-        values.add(record.get(i));
-      }
+    if (endOfData || !records.hasNext()) {
+      endOfData = true;
+      return null;
+    }
 
-      if (!hasSummary || !AW_REPORT_CSV_TOTAL.equalsIgnoreCase(Iterables.getFirst(values, null))) {
-        next = values.toArray(new String[0]);
-      }
+    CSVRecord record = records.next();
+    int size = record.size();
+    if (hasSummary && size > 0 && AW_REPORT_CSV_TOTAL.equalsIgnoreCase(record.get(0))) {
+      endOfData = true;
+      return null;
+    }
+
+    String[] values = new String[size];
+    for (int i = 0; i < size; i++) {
+      values[i] = record.get(i);
     }
-    return next;
+    return values;
   }
   
+  @Override
+  public CsvRow nextRow() {
+    String[] values = readNext();
+    return values == null ? null : new StringArrayCsvRow(values);
+  }
+
   /**
    * Get the column names of the CSV file, in the original order.
    */
+  @Override
   public String[] getColumnNames() {
     return columnNames;
   }
+
+  /**
+   * Closes the underlying CSV source.
+   */
+  @Override
+  public void close() throws IOException {
+    parser.close();
+  }
 }
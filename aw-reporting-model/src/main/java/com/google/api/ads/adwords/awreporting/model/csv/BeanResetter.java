@@ -0,0 +1,105 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.common.collect.Lists;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resets the report beans that are reused for several rows to the state of a new bean, by copying
+ * all the instance fields from a template bean.
+ *
+ * <p>The setters cannot be used for that, as some of them ignore {@code null} values.
+ */
+final class BeanResetter {
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+
+  // The field accessors of each bean class, which are the same for all the reports of the class.
+  private static final ConcurrentMap<Class<?>, FieldAccessors> accessorsByClass =
+      new ConcurrentHashMap<Class<?>, FieldAccessors>();
+
+  private final Object template;
+  private final FieldAccessors accessors;
+
+  /**
+   * @param template a new bean, which must not be modified afterwards.
+   */
+  BeanResetter(Object template) {
+    this.template = template;
+    this.accessors = getAccessors(template.getClass());
+  }
+
+  /**
+   * Resets all the instance fields of the bean to the values of the template.
+   *
+   * @param bean a bean of the same class as the template.
+   */
+  void reset(Object bean) throws Throwable {
+    MethodHandle[] getters = accessors.getters;
+    MethodHandle[] setters = accessors.setters;
+    for (int i = 0; i < getters.length; i++) {
+      setters[i].invokeExact(bean, getters[i].invokeExact(template));
+    }
+  }
+
+  private static FieldAccessors getAccessors(Class<?> beanClass) {
+    FieldAccessors accessors = accessorsByClass.get(beanClass);
+    if (accessors == null) {
+      accessors = new FieldAccessors(beanClass);
+      accessorsByClass.putIfAbsent(beanClass, accessors);
+    }
+    return accessors;
+  }
+
+  /**
+   * The getters and setters of all the non-static fields of a class and its superclasses.
+   */
+  private static final class FieldAccessors {
+    private final MethodHandle[] getters;
+    private final MethodHandle[] setters;
+
+    FieldAccessors(Class<?> beanClass) {
+      List<MethodHandle> getterList = Lists.newArrayList();
+      List<MethodHandle> setterList = Lists.newArrayList();
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      for (Class<?> c = beanClass; c != Object.class; c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          int modifiers = field.getModifiers();
+          if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) {
+            continue;
+          }
+          field.setAccessible(true);
+          try {
+            getterList.add(lookup.unreflectGetter(field).asType(GETTER_TYPE));
+            setterList.add(lookup.unreflectSetter(field).asType(SETTER_TYPE));
+          } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access the field " + field, e);
+          }
+        }
+      }
+      getters = getterList.toArray(new MethodHandle[getterList.size()]);
+      setters = setterList.toArray(new MethodHandle[setterList.size()]);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.api.ads.adwords.awreporting.model.csv.ValueConverters.ValueConverter;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import javax.annotation.Nullable;
+
+/**
+ * The binding between one column of the CSV file and the bean property it is mapped to.
+ *
+ * <p>The bindings are compiled once per CSV header by {@link ReportEntityMappingStrategy}, so
+ * mapping a row does not need any introspection.
+ */
+final class ColumnBinding {
+  private final PropertyDescriptor descriptor;
+  private final ValueConverter converter;
+  private final MethodHandle setter;
+  private final StringDictionary.Column dictionary;
+
+  /**
+   * @param field the metadata of the mapped field, which must have an accessible setter.
+   * @param dictionary the dictionary of the column, or {@code null} if it is not encoded.
+   */
+  ColumnBinding(ReportFieldMetadata field, @Nullable StringDictionary.Column dictionary) {
+    this.descriptor = field.getDescriptor();
+    this.dictionary = dictionary;
+    this.converter =
+        ValueConverters.forProperty(descriptor.getPropertyType(), field.isMoneyField());
+    this.setter = field.getSetter();
+  }
+
+  /**
+   * Converts the CSV value and sets it on the bean.
+   *
+   * @param bean the bean to be filled.
+   * @param value the contents of the CSV cell.
+   */
+  void bind(Object bean, String value) throws Throwable {
+    Object convertedValue = converter.convert(value);
+    if (dictionary != null && convertedValue instanceof String) {
+      convertedValue = dictionary.intern((String) convertedValue);
+    }
+    setter.invokeExact(bean, convertedValue);
+  }
+
+  PropertyDescriptor getDescriptor() {
+    return descriptor;
+  }
+}
@@ -0,0 +1,287 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static com.google.api.ads.adwords.awreporting.model.csv.AwReportByteCsvReader.FIELD_START;
+import static com.google.api.ads.adwords.awreporting.model.csv.AwReportByteCsvReader.QUOTED;
+import static com.google.api.ads.adwords.awreporting.model.csv.AwReportByteCsvReader.QUOTE_IN_QUOTED;
+import static com.google.api.ads.adwords.awreporting.model.csv.AwReportByteCsvReader.UNQUOTED;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Splits a large CSV file into parts that can be parsed in parallel.
+ *
+ * <p>The file is memory mapped, and split at record boundaries: the new lines inside the quoted
+ * values are not boundaries. To find them without reading the whole file sequentially, the file is
+ * first cut into equal ranges which are scanned in parallel. The scan of a range computes the
+ * quoting state at its end for each possible state at its start, so the exact state at the start of
+ * each range is known once all the scans are done. Each part then starts after the first new line
+ * outside quotes from the start of its range.
+ *
+ * <p>The header line is read once, and the column names are shared by the readers of all the
+ * parts.
+ */
+public final class CsvFileSplitter {
+  // Each part is mapped on its own, so it must be well below the 2GB limit of a mapped buffer.
+  private static final long MAX_RANGE_SIZE = 256L * 1024 * 1024;
+
+  private static final int STATES = 4;
+  private static final byte[] TRANSITIONS = new byte[STATES * 256];
+
+  static {
+    for (int state = 0; state < STATES; state++) {
+      for (int b = 0; b < 256; b++) {
+        TRANSITIONS[(state << 8) | b] = (byte) nextState(state, b);
+      }
+    }
+  }
+
+  /**
+   * Private constructor to prevent instantiation of this utility class.
+   */
+  private CsvFileSplitter() {}
+
+  /**
+   * Splits the CSV file into parts starting at record boundaries.
+   *
+   * @param file the UTF-8 CSV file.
+   * @param hasHeader whether the file has a report header line before the column names.
+   * @param hasSummary whether the reading stops at the "Total" summary line.
+   * @param parts the wanted number of parts. There can be fewer parts if the records are very long,
+   *     and more parts for very large files.
+   * @param executor the executor that scans the file.
+   * @return the readers of the parts, in the order of the file.
+   * @throws IOException if the file cannot be read, or has no header line.
+   */
+  public static List<CsvRowReader> split(
+      File file, boolean hasHeader, boolean hasSummary, int parts, ExecutorService executor)
+      throws IOException {
+    Preconditions.checkArgument(parts > 0, "parts must be > 0");
+    Preconditions.checkNotNull(executor, "executor cannot be null.");
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      long headerStart = hasHeader ? findLineEnd(channel, 0, size) : 0;
+      long dataStart = findRecordEnd(channel, headerStart, size);
+      String[] columnNames;
+      try (AwReportByteCsvReader headerReader =
+          new AwReportByteCsvReader(
+              new ByteBufferInputStream(map(channel, headerStart, dataStart)))) {
+        columnNames = headerReader.getColumnNames();
+      }
+
+      List<Long> boundaries = findBoundaries(channel, dataStart, size, parts, executor);
+      List<CsvRowReader> readers = Lists.newArrayListWithCapacity(boundaries.size() - 1);
+      for (int i = 0; i < boundaries.size() - 1; i++) {
+        MappedByteBuffer part = map(channel, boundaries.get(i), boundaries.get(i + 1));
+        readers.add(
+            new AwReportByteCsvReader(new ByteBufferInputStream(part), columnNames, hasSummary));
+      }
+      return readers;
+    }
+  }
+
+  /**
+   * Finds the offsets where the parts start, followed by the size of the file.
+   */
+  private static List<Long> findBoundaries(
+      FileChannel channel, long dataStart, long size, int parts, ExecutorService executor)
+      throws IOException {
+    long dataSize = size - dataStart;
+    long rangeSize = Math.max(1, Math.min((dataSize + parts - 1) / parts, MAX_RANGE_SIZE));
+    final List<Long> rangeStarts = Lists.newArrayList();
+    for (long start = dataStart; start < size; start += rangeSize) {
+      rangeStarts.add(start);
+    }
+    rangeStarts.add(size);
+
+    final List<MappedByteBuffer> ranges = Lists.newArrayList();
+    for (int i = 0; i < rangeStarts.size() - 1; i++) {
+      ranges.add(map(channel, rangeStarts.get(i), rangeStarts.get(i + 1)));
+    }
+
+    // The state transitions of all the ranges but the last one, scanned in parallel.
+    List<Callable<byte[]>> scans = Lists.newArrayList();
+    for (int i = 0; i < ranges.size() - 1; i++) {
+      final int range = i;
+      scans.add(
+          new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+              return scanTransitions(ranges.get(range).duplicate());
+            }
+          });
+    }
+    List<byte[]> transitions = invokeAll(executor, scans);
+
+    List<Long> boundaries = Lists.newArrayList(dataStart);
+    int state = FIELD_START;
+    for (int i = 1; i < ranges.size(); i++) {
+      state = transitions.get(i - 1)[state];
+      long boundary = findRecordStart(ranges.get(i).duplicate(), rangeStarts.get(i), state);
+      if (boundary > boundaries.get(boundaries.size() - 1) && boundary < size) {
+        boundaries.add(boundary);
+      }
+    }
+    boundaries.add(size);
+    return boundaries;
+  }
+
+  /**
+   * Scans the bytes for every possible state at their start.
+   *
+   * @return the state at the end of the bytes, indexed by the state at their start.
+   */
+  private static byte[] scanTransitions(ByteBuffer bytes) {
+    int fieldStart = FIELD_START;
+    int unquoted = UNQUOTED;
+    int quoted = QUOTED;
+    int quoteInQuoted = QUOTE_IN_QUOTED;
+    while (bytes.hasRemaining()) {
+      int b = bytes.get() & 0xff;
+      fieldStart = TRANSITIONS[(fieldStart << 8) | b];
+      unquoted = TRANSITIONS[(unquoted << 8) | b];
+      quoted = TRANSITIONS[(quoted << 8) | b];
+      quoteInQuoted = TRANSITIONS[(quoteInQuoted << 8) | b];
+    }
+
+    byte[] endStates = new byte[STATES];
+    endStates[FIELD_START] = (byte) fieldStart;
+    endStates[UNQUOTED] = (byte) unquoted;
+    endStates[QUOTED] = (byte) quoted;
+    endStates[QUOTE_IN_QUOTED] = (byte) quoteInQuoted;
+    return endStates;
+  }
+
+  /**
+   * Finds the start of the first record in the bytes, which start at the offset {@code start} of
+   * the file in the given state.
+   *
+   * @return the offset after the first '\n' outside quotes, or {@code -1} if there is none.
+   */
+  private static long findRecordStart(ByteBuffer bytes, long start, int state) {
+    while (bytes.hasRemaining()) {
+      int b = bytes.get() & 0xff;
+      if (b == '\n' && state != QUOTED) {
+        return start + bytes.position();
+      }
+      state = TRANSITIONS[(state << 8) | b];
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the end of the record at {@code start}, like {@link AwReportByteCsvReader}.
+   *
+   * @return the offset after the record separator.
+   */
+  private static long findRecordEnd(FileChannel channel, long start, long size)
+      throws IOException {
+    MappedByteBuffer bytes = map(channel, start, Math.min(size, start + MAX_RANGE_SIZE));
+    int state = FIELD_START;
+    while (bytes.hasRemaining()) {
+      int b = bytes.get() & 0xff;
+      if ((b == '\n' || b == '\r') && state != QUOTED) {
+        return skipNewLine(bytes, b, start);
+      }
+      state = TRANSITIONS[(state << 8) | b];
+    }
+    return start + bytes.position();
+  }
+
+  /**
+   * Finds the end of the line at {@code start}, like {@code BufferedReader.readLine()}.
+   *
+   * @return the offset after the line terminator.
+   */
+  private static long findLineEnd(FileChannel channel, long start, long size) throws IOException {
+    MappedByteBuffer bytes = map(channel, start, Math.min(size, start + MAX_RANGE_SIZE));
+    while (bytes.hasRemaining()) {
+      int b = bytes.get();
+      if (b == '\n' || b == '\r') {
+        return skipNewLine(bytes, b, start);
+      }
+    }
+    return start + bytes.position();
+  }
+
+  /**
+   * Skips the '\n' following a '\r' that was just read.
+   *
+   * @return the offset after the line terminator.
+   */
+  private static long skipNewLine(MappedByteBuffer bytes, int terminator, long start) {
+    if (terminator == '\r' && bytes.hasRemaining() && bytes.get(bytes.position()) == '\n') {
+      bytes.get();
+    }
+    return start + bytes.position();
+  }
+
+  /**
+   * Runs the scans, and waits for their results.
+   */
+  private static List<byte[]> invokeAll(ExecutorService executor, List<Callable<byte[]>> scans)
+      throws IOException {
+    List<byte[]> results = Lists.newArrayListWithCapacity(scans.size());
+    try {
+      for (Future<byte[]> future : executor.invokeAll(scans)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while splitting the file.");
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to scan the file.", e.getCause());
+    }
+    return results;
+  }
+
+  private static MappedByteBuffer map(FileChannel channel, long start, long end)
+      throws IOException {
+    return channel.map(MapMode.READ_ONLY, start, end - start);
+  }
+
+  /**
+   * The transition of the scan for the end of a record, the same as in
+   * {@link AwReportByteCsvReader}. A new line outside quotes starts a new record.
+   */
+  private static int nextState(int state, int b) {
+    if (state == QUOTED) {
+      return b == '"' ? QUOTE_IN_QUOTED : QUOTED;
+    }
+    if (b == '\n' || b == '\r' || b == ',') {
+      return FIELD_START;
+    }
+    if (b == '"') {
+      return (state == FIELD_START || state == QUOTE_IN_QUOTED) ? QUOTED : UNQUOTED;
+    }
+    return UNQUOTED;
+  }
+}
@@ -16,6 +16,7 @@ package com.google.api.ads.adwords.awreporting.model.csv;
 
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
 import com.google.common.collect.AbstractIterator;
+import java.io.IOException;
 
 /**
  * Iterator to read one line at a time from the CSV file.
@@ -24,7 +25,7 @@ import com.google.common.collect.AbstractIterator;
  */
 public class CsvParserIterator<T extends Report> extends AbstractIterator<T> {
   private final ReportEntityMappingStrategy<T> mapper;
-  private final AwReportCsvReader csvReader;
+  private final CsvRowReader csvReader;
   private final ModifiedCsvToBean<T> csvToBean;
 
   /**
@@ -35,7 +36,7 @@ public class CsvParserIterator<T extends Report> extends AbstractIterator<T> {
    */
   public CsvParserIterator(
       ReportEntityMappingStrategy<T> mapper,
-      AwReportCsvReader csvReader,
+      CsvRowReader csvReader,
       ModifiedCsvToBean<T> csvToBean) {
     this.mapper = mapper;
     this.csvReader = csvReader;
@@ -47,11 +48,10 @@ public class CsvParserIterator<T extends Report> extends AbstractIterator<T> {
    */
   @Override
   protected T computeNext() {
-    String[] line = csvReader.readNext();
-    
     try {
-      return (line == null) ? endOfData() : csvToBean.processLine(mapper, line);
-    } catch (CsvReportParsingException e) {
+      CsvRow row = csvReader.nextRow();
+      return (row == null) ? endOfData() : csvToBean.processRow(mapper, row);
+    } catch (CsvReportParsingException | IOException e) {
       // AbstractIterator.computNext() requires to throw RuntimeException when any unrecoverable
       // error happens. As this is the only place for using an unchecked exception, we don't bother
       // defining a specific class for it.
@@ -75,12 +75,38 @@ public class CsvReportEntitiesMapping {
   /**
    * Initializes the report type definition map.
    *
-   * The base package is scanned in order to find the candidates to report beans, and the map of
-   * {@code ReportDefinitionReportType} to the report bean class is created, based on the annotated
-   * classes.
+   * The map of {@code ReportDefinitionReportType} to the report bean class is loaded from the
+   * {@link ReportIndex} generated at build time for the base package. If there is no such index,
+   * the base package is scanned in order to find the candidates to report beans, and the map is
+   * created based on the annotated classes.
    *
    */
   public void initializeReportMap() {
+    initializeReportMap(true);
+  }
+
+  /**
+   * @param useIndex whether to load the generated index, if any, instead of scanning the package.
+   */
+  void initializeReportMap(boolean useIndex) {
+    ReportIndex reportIndex =
+        useIndex ? ReportIndex.load(SystemPropertyUtils.resolvePlaceholders(packageToScan)) : null;
+    if (reportIndex != null) {
+      for (ReportIndex.Entry entry : reportIndex.getEntries()) {
+        if (entry.getReportType() == null) {
+          experimentalReportsDefinitionMap.put(
+              entry.getFileOnlyReportType(), entry.getReportBeanClass());
+        } else {
+          addReport(
+              entry.getReportType(),
+              entry.getReportBeanClass(),
+              entry.getPropertiesToSelect(),
+              entry.supportsDateRange());
+        }
+      }
+      return;
+    }
+
     List<Class<? extends Report>> reportBeans;
     try {
       reportBeans = findReportBeans(packageToScan);
@@ -98,23 +124,32 @@ public class CsvReportEntitiesMapping {
       if (csvReport.value().equals(ReportDefinitionReportType.UNKNOWN)) {
         experimentalReportsDefinitionMap.put(csvReport.fileOnlyReportType(), reportBeanClass);
       } else {
-        ReportDefinitionReportType reportType = csvReport.value();
-        reportDefinitionMap.put(reportType, reportBeanClass);
-
         Set<String> propertyExclusions = Sets.newHashSet();
         String[] reportExclusionsArray = csvReport.reportExclusions();
         propertyExclusions.addAll(Arrays.asList(reportExclusionsArray));
         List<String> propertiesToSelect =
             findReportPropertiesToSelect(reportBeanClass, propertyExclusions);
-        reportProperties.put(csvReport.value(), propertiesToSelect);
-
-        if (!isSubclass(reportBeanClass, DateReport.class)) {
-          nonDateRangeReports.add(reportType);
-        }
+        addReport(
+            csvReport.value(),
+            reportBeanClass,
+            propertiesToSelect,
+            isSubclass(reportBeanClass, DateReport.class));
       }
     }
   }
 
+  private void addReport(
+      ReportDefinitionReportType reportType,
+      Class<? extends Report> reportBeanClass,
+      List<String> propertiesToSelect,
+      boolean supportsDateRange) {
+    reportDefinitionMap.put(reportType, reportBeanClass);
+    reportProperties.put(reportType, propertiesToSelect);
+    if (!supportsDateRange) {
+      nonDateRangeReports.add(reportType);
+    }
+  }
+
   /**
    * Retrieves the report definitions defined by the report bean classes.
    *
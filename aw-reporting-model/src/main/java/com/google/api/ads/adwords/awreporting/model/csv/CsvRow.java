@@ -0,0 +1,70 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import java.math.BigDecimal;
+import javax.annotation.Nullable;
+
+/**
+ * A row of a CSV report, with typed access to the values of its columns.
+ *
+ * <p>The typed accessors follow the same conversion rules as {@link ValueConverters}, so the
+ * implementations can parse the values from their own representation, without creating the
+ * intermediate {@code String}s.
+ */
+public interface CsvRow {
+
+  /**
+   * Returns the number of columns of the row.
+   */
+  int size();
+
+  /**
+   * Returns the original contents of the column.
+   */
+  String getRawValue(int column);
+
+  /**
+   * Returns the value of the column for a {@code String} property.
+   *
+   * @see ValueConverters#toStringValue(String)
+   */
+  @Nullable
+  String getString(int column);
+
+  /**
+   * Returns the value of the column for a {@code Long} property.
+   *
+   * @see ValueConverters#toLong(String)
+   */
+  @Nullable
+  Long getLong(int column);
+
+  /**
+   * Returns the value of the column for an {@code Integer} property.
+   *
+   * @see ValueConverters#toInteger(String)
+   */
+  @Nullable
+  Integer getInteger(int column);
+
+  /**
+   * Returns the value of the column for a {@code MoneyField} property.
+   *
+   * @see ValueConverters#toMoney(String)
+   */
+  @Nullable
+  BigDecimal getMoney(int column);
+}
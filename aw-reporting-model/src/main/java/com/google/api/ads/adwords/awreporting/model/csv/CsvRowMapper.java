@@ -0,0 +1,56 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+
+/**
+ * Maps the CSV rows of a report to the report bean, without reflection.
+ *
+ * <p>The implementations are generated at build time for each class annotated with
+ * {@code CsvReport}, and are named {@code <ReportClass>CsvRowMapper}. They are stateless and
+ * thread-safe.
+ *
+ * @param <T> type of sub Report.
+ */
+public interface CsvRowMapper<T extends Report> {
+
+  /**
+   * Creates a new instance of the report bean.
+   */
+  T createBean();
+
+  /**
+   * Returns the index of the property mapped to the given CSV column, or {@code -1} if the column
+   * is not mapped.
+   */
+  int getPropertyIndex(String columnName);
+
+  /**
+   * Returns the name of the property with the given index.
+   */
+  String getPropertyName(int propertyIndex);
+
+  /**
+   * Sets the values of a CSV row on the bean.
+   *
+   * @param bean the bean to be filled.
+   * @param propertyIndexes the index of the property mapped to each column, as returned by
+   *     {@link #getPropertyIndex(String)}.
+   * @param row the row from the CSV file.
+   * @throws CsvReportParsingException if any value cannot be converted.
+   */
+  void mapRow(T bean, int[] propertyIndexes, CsvRow row) throws CsvReportParsingException;
+}
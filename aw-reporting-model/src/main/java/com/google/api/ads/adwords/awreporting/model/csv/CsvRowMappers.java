@@ -0,0 +1,90 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.common.base.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * Utility class to find the {@link CsvRowMapper} generated for the report classes.
+ */
+public final class CsvRowMappers {
+  private static final Logger logger = Logger.getLogger(CsvRowMappers.class.getCanonicalName());
+
+  private static final String MAPPER_SUFFIX = "CsvRowMapper";
+
+  private static final ConcurrentMap<Class<?>, Optional<CsvRowMapper<?>>> mappers =
+      new ConcurrentHashMap<Class<?>, Optional<CsvRowMapper<?>>>();
+
+  /**
+   * Private constructor to prevent instantiation of this utility class.
+   */
+  private CsvRowMappers() {}
+
+  /**
+   * Returns the generated mapper of the report class, or {@code null} if no mapper was generated
+   * for it (such as for the file only reports).
+   */
+  @SuppressWarnings("unchecked")
+  @Nullable
+  public static <T extends Report> CsvRowMapper<T> forClass(Class<T> reportClass) {
+    Optional<CsvRowMapper<?>> mapper = mappers.get(reportClass);
+    if (mapper == null) {
+      mapper = Optional.<CsvRowMapper<?>>fromNullable(loadMapper(reportClass));
+      mappers.putIfAbsent(reportClass, mapper);
+    }
+    return (CsvRowMapper<T>) mapper.orNull();
+  }
+
+  private static CsvRowMapper<?> loadMapper(Class<?> reportClass) {
+    String mapperClassName = reportClass.getName() + MAPPER_SUFFIX;
+    try {
+      Class<?> mapperClass =
+          Class.forName(mapperClassName, true, reportClass.getClassLoader());
+      if (!CsvRowMapper.class.isAssignableFrom(mapperClass)) {
+        return null;
+      }
+      return (CsvRowMapper<?>) mapperClass.getConstructor().newInstance();
+    } catch (ClassNotFoundException e) {
+      logger.fine("No generated CSV row mapper for " + reportClass.getName());
+      return null;
+    } catch (ReflectiveOperationException e) {
+      logger.warning("Failed to instantiate " + mapperClassName + ": " + e);
+      return null;
+    }
+  }
+
+  /**
+   * Creates the exception for a value that cannot be converted.
+   *
+   * @param columnNumber the index of the column.
+   * @param value the contents of the column.
+   * @param propertyName the name of the property mapped to the column.
+   * @param cause the conversion error.
+   */
+  public static CsvReportParsingException newParsingException(
+      int columnNumber, String value, String propertyName, Throwable cause) {
+    String errorMsg =
+        String.format(
+            "Error parsing column #%d with contents: %s, and property: %s.",
+            columnNumber, value, propertyName);
+    logger.severe(errorMsg);
+    return new CsvReportParsingException(errorMsg, cause);
+  }
+}
@@ -0,0 +1,41 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * Reader of the rows of a CSV report.
+ */
+public interface CsvRowReader extends Closeable {
+
+  /**
+   * Get the column names of the CSV file, in the original order.
+   */
+  String[] getColumnNames();
+
+  /**
+   * Returns the next row of the report.
+   *
+   * <p>The returned row may be reused by the reader, so it is only valid until the next call.
+   *
+   * @return the next row, or {@code null} if there are no more rows.
+   * @throws IOException if the report cannot be read or is not valid CSV.
+   */
+  @Nullable
+  CsvRow nextRow() throws IOException;
+}
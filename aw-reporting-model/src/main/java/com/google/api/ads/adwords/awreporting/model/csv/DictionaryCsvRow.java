@@ -0,0 +1,75 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import java.math.BigDecimal;
+
+/**
+ * {@link CsvRow} that shares the {@code String} values of the dictionary-encoded columns through
+ * their {@link StringDictionary}.
+ *
+ * <p>A single instance is reused for all the rows of a report, see {@link #wrap(CsvRow)}.
+ */
+final class DictionaryCsvRow implements CsvRow {
+  private final StringDictionary.Column[] columns;
+  private CsvRow row;
+
+  /**
+   * @param columns the dictionary of each column, or {@code null} for the columns not encoded.
+   */
+  DictionaryCsvRow(StringDictionary.Column[] columns) {
+    this.columns = columns;
+  }
+
+  /**
+   * Sets the row to be read through this instance.
+   */
+  DictionaryCsvRow wrap(CsvRow row) {
+    this.row = row;
+    return this;
+  }
+
+  @Override
+  public int size() {
+    return row.size();
+  }
+
+  @Override
+  public String getRawValue(int column) {
+    return row.getRawValue(column);
+  }
+
+  @Override
+  public String getString(int column) {
+    String value = row.getString(column);
+    StringDictionary.Column dictionary = column < columns.length ? columns[column] : null;
+    return dictionary == null ? value : dictionary.intern(value);
+  }
+
+  @Override
+  public Long getLong(int column) {
+    return row.getLong(column);
+  }
+
+  @Override
+  public Integer getInteger(int column) {
+    return row.getInteger(column);
+  }
+
+  @Override
+  public BigDecimal getMoney(int column) {
+    return row.getMoney(column);
+  }
+}
@@ -16,12 +16,8 @@ package com.google.api.ads.adwords.awreporting.model.csv;
 
 import com.opencsv.bean.CsvToBean;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
-import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
-import com.google.api.ads.adwords.awreporting.model.util.StringsUtil;
-import java.beans.PropertyDescriptor;
+import com.google.common.base.Throwables;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.util.logging.Logger;
 
 /**
  * Modified CSV to Bean converter to handle the different number formats from the reports.
@@ -29,9 +25,6 @@ import java.util.logging.Logger;
  * @param <T> type of sub Report.
  */
 public class ModifiedCsvToBean<T extends Report> extends CsvToBean<T> {
-  private static final Logger logger =
-      Logger.getLogger(ModifiedCsvToBean.class.getCanonicalName());
-
   /**
    * Parses the CSV lazily, letting the client class decide when getting new elements.
    *
@@ -41,7 +34,7 @@ public class ModifiedCsvToBean<T extends Report> extends CsvToBean<T> {
    * @throws CsvReportParsingException error on parsing from the csvReader
    */
   public CsvParserIterator<T> lazyParse(
-      ReportEntityMappingStrategy<T> mapper, AwReportCsvReader csvReader)
+      ReportEntityMappingStrategy<T> mapper, CsvRowReader csvReader)
       throws CsvReportParsingException {
     try {
       mapper.processHeader(csvReader.getColumnNames());
@@ -61,65 +54,43 @@ public class ModifiedCsvToBean<T extends Report> extends CsvToBean<T> {
    */
   protected T processLine(ReportEntityMappingStrategy<T> mapper, String[] line)
       throws CsvReportParsingException {
-    T bean = mapper.createBean();
+    return processRow(mapper, new StringArrayCsvRow(line));
+  }
 
-    for (int col = 0; col < line.length; col++) {
-      PropertyDescriptor prop = mapper.findDescriptor(col); // Return value is not null.
-      String value = line[col];
+  /**
+   * Creates a single object from a row from the CSV file.
+   *
+   * @param mapper the mapping strategy for the bean
+   * @param row the row from the CSV file
+   * @return Object containing the values
+   * @throws CsvReportParsingException error on parsing the row
+   */
+  protected T processRow(ReportEntityMappingStrategy<T> mapper, CsvRow row)
+      throws CsvReportParsingException {
+    CsvRowMapper<T> rowMapper = mapper.getRowMapper();
+    int[] propertyIndexes = mapper.getPropertyIndexes();
+    if (rowMapper != null && row.size() <= propertyIndexes.length) {
+      T bean = mapper.nextBean();
+      rowMapper.mapRow(bean, propertyIndexes, mapper.encodeStrings(row));
+      return bean;
+    }
 
-      if (StringsUtil.isEmptyValue(value)) {
-        value = null;
-      } else {
-        value = trimIfPossible(value, prop);
+    // No generated mapper for the report (such as for the file only reports).
+    T bean = mapper.nextBean();
 
-        // Remove dashes inside a number format (such as for CID "xxx-xxx-xxxx").
-        if (isNumberTypeProperty(prop)) {
-          value = StringsUtil.removeDashes(value);
-        }
-      }
+    for (int col = 0; col < row.size(); col++) {
+      ColumnBinding binding = mapper.getColumnBinding(col); // Return value is not null.
+      String value = row.getRawValue(col);
 
       try {
-        Object obj = convertValue(value, prop);
-
-        // Convert Money values to regular Decimals by dividing by a Million
-        if (mapper.isMoneyField(prop.getName())) {
-          obj = BigDecimalUtil.parseFromMoneyString((String) obj);
-        }
-
-        prop.getWriteMethod().invoke(bean, obj);
-      } catch (InstantiationException
-          | IllegalAccessException
-          | IllegalArgumentException
-          | InvocationTargetException e) {
-        String errorMsg =
-            String.format(
-                "Error parsing column #%d with contents: %s, and property descriptor: %s.",
-                col, value, prop.toString());
-        logger.severe(errorMsg);
-        throw new CsvReportParsingException(errorMsg, e);
+        binding.bind(bean, value);
+      } catch (Throwable t) {
+        Throwables.throwIfInstanceOf(t, Error.class);
+        throw CsvRowMappers.newParsingException(
+            col, value, binding.getDescriptor().getName(), t);
       }
     }
 
     return bean;
   }
-
-  /**
-   * Trims the property if it is of type String.
-   *
-   * @param stringValue the string value of the property.
-   * @param propertyDescriptor the property descriptor.
-   * @return the property value trimmed.
-   */
-  private static String trimIfPossible(
-      String stringValue, PropertyDescriptor propertyDescriptor) {
-    return isStringTypeProperty(propertyDescriptor) ? stringValue.trim() : stringValue;
-  }
-
-  private static boolean isStringTypeProperty(PropertyDescriptor propertyDescriptor) {
-    return String.class.isAssignableFrom(propertyDescriptor.getPropertyType());
-  }
-
-  private static boolean isNumberTypeProperty(PropertyDescriptor propertyDescriptor) {
-    return Number.class.isAssignableFrom(propertyDescriptor.getPropertyType());
-  }
 }
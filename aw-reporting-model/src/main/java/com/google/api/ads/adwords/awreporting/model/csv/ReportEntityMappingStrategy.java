@@ -14,19 +14,17 @@
 
 package com.google.api.ads.adwords.awreporting.model.csv;
 
-import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField;
-import com.google.api.ads.adwords.awreporting.model.csv.annotation.MoneyField;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * This class describes the mapping strategy to convert CSV files into corresponding report entity
@@ -54,94 +52,133 @@ import java.util.Set;
 public class ReportEntityMappingStrategy<T extends Report> {
   private Class<T> reportEntityClass;
   private final Map<Integer, String> csvIndexToReportNames = new HashMap<Integer, String>();
-  private final Set<String> fieldsWithMoneyValues = new HashSet<String>();
+  private final ReportMetadata<T> metadata;
+  private final CsvRowMapper<T> rowMapper;
+  private final StringDictionary stringDictionary;
+  private ColumnBinding[] columnBindings = new ColumnBinding[0];
+  private int[] propertyIndexes;
+  private DictionaryCsvRow dictionaryRow;
+  private Constructor<T> constructor;
+  private Object[] beanRing;
+  private int beanRingIndex;
+  private BeanResetter beanResetter;
 
   /**
    * @param reportEntityClass the {@code class} of the report entity POJO. This parameter is
    *        obligatory.
    */
   public ReportEntityMappingStrategy(Class<T> reportEntityClass) {
+    this(reportEntityClass, null);
+  }
+
+  /**
+   * @param reportEntityClass the {@code class} of the report entity POJO. This parameter is
+   *        obligatory.
+   * @param stringDictionary the dictionary shared by the {@code String} values of its columns, or
+   *        {@code null} to not encode any column. It must not be shared with other reports.
+   */
+  public ReportEntityMappingStrategy(
+      Class<T> reportEntityClass, @Nullable StringDictionary stringDictionary) {
     this.reportEntityClass =
         Preconditions.checkNotNull(reportEntityClass, "The report entity class must be specified.");
-    this.reportEntityClass = reportEntityClass;
+    this.metadata = ReportMetadata.forClass(reportEntityClass);
+    this.rowMapper = CsvRowMappers.forClass(reportEntityClass);
+    this.stringDictionary = stringDictionary;
   }
 
   /**
-   * Process the header of the CSV file.
-   *
-   * This method scans the class of the bean for the proper annotations, and associates the correct
-   * column index to the correct field.
-   *
-   * @param header the list of column names
+   * Creates a mapping strategy for another part of the same report, such as a part of a file split
+   * by {@link CsvFileSplitter}, to be used by another thread. The new strategy has its own split
+   * of the string dictionary.
    */
-  public void processHeader(String[] header) throws IOException {
-    Map<String, String> nameMapping = createNameMapping();
-    for (int i = 0; i < header.length; i++) {
-      csvIndexToReportNames.put(i, nameMapping.get(header[i]));
+  public ReportEntityMappingStrategy<T> newPartStrategy() {
+    ReportEntityMappingStrategy<T> partStrategy =
+        new ReportEntityMappingStrategy<T>(
+            reportEntityClass, stringDictionary == null ? null : stringDictionary.split());
+    if (beanRing != null) {
+      partStrategy.setBeanReuse(beanRing.length);
     }
+    return partStrategy;
   }
 
   /**
-   * Creates the {@code Map} where the key is the name of the property in the CSV file, and the
-   * value is the name of the field in the Java bean.
+   * Makes the rows be mapped to a ring of reused beans, instead of a new bean for every row. Each
+   * bean is reset to the state of a new bean before being filled again.
+   *
+   * <p>This is only safe if the beans are no longer referenced after {@code ringSize} more rows are
+   * mapped, for instance if they are persisted in sets of at most {@code ringSize} beans by a
+   * {@code NonRetainingEntityPersister}.
    *
-   * @return the {@code Map} of the properties for the bean class.
+   * @param ringSize the number of beans reused in turn.
    */
-  private Map<String, String> createNameMapping() {
-    Map<String, String> nameMapping = new HashMap<String, String>();
-    Class<?> currentClass = reportEntityClass;
-
-    while (currentClass != Object.class) {
-      addNameMappingForDeclaredFields(nameMapping, currentClass);
-      currentClass = currentClass.getSuperclass();
-    }
-
-    return nameMapping;
+  public void setBeanReuse(int ringSize) {
+    Preconditions.checkArgument(ringSize > 0, "ringSize must be > 0");
+    beanRing = new Object[ringSize];
+    beanRingIndex = 0;
   }
 
   /**
-   * Scans the current class' fields for the mapped properties, and associate then to the CSV file
-   * columns.
+   * Process the header of the CSV file.
+   *
+   * This method looks up the shared {@link ReportMetadata} of the bean class, and associates the
+   * correct column index to the correct field. If a {@link CsvRowMapper} was generated for the
+   * bean class and all the columns are mapped, the rows will be mapped by the generated code. The
+   * binding of each column (converter and setter) is also compiled here once, so the rows can be
+   * mapped without any introspection when there is no generated mapper.
    *
-   * @param nameMapping the map to be filled.
-   * @param currentClass the class to be scanned.
+   * @param header the list of column names
    */
-  private void addNameMappingForDeclaredFields(Map<String, String> nameMapping,
-      Class<?> currentClass) {
-    Field[] declaredFields = currentClass.getDeclaredFields();
-
-    for (Field field : declaredFields) {
-      addNameMappingIfAnnotationPresent(nameMapping, field);
-      addMoneyMappingIfAnnotationPresent(field);
+  public void processHeader(String[] header) throws IOException {
+    columnBindings = new ColumnBinding[header.length];
+    StringDictionary.Column[] dictionaryColumns = new StringDictionary.Column[header.length];
+    boolean hasDictionaryColumns = false;
+    for (int i = 0; i < header.length; i++) {
+      ReportFieldMetadata field = metadata.getFieldByCsvName(header[i]);
+      csvIndexToReportNames.put(i, field == null ? null : field.getPropertyName());
+      if (stringDictionary != null && field != null) {
+        dictionaryColumns[i] = stringDictionary.getColumn(field.getReportField());
+        hasDictionaryColumns |= dictionaryColumns[i] != null;
+      }
+      columnBindings[i] = createColumnBinding(field, dictionaryColumns[i]);
     }
+    propertyIndexes = createPropertyIndexes(header);
+    dictionaryRow = hasDictionaryColumns ? new DictionaryCsvRow(dictionaryColumns) : null;
   }
 
   /**
-   * Checks for the annotation, and if the annotation is present, creates the association between
-   * the CSV property and the field.
+   * Maps the columns to the property indexes of the generated row mapper.
    *
-   * @param nameMapping the map that is being filled.
-   * @param field the current field.
+   * @return the property index of each column, or {@code null} if there is no generated mapper or
+   *     any column is not mapped by it.
    */
-  private void addNameMappingIfAnnotationPresent(Map<String, String> nameMapping, Field field) {
-    if (field.isAnnotationPresent(CsvField.class)) {
-      CsvField reportFieldAnnotation = field.getAnnotation(CsvField.class);
-      String csvFieldName = reportFieldAnnotation.value();
-      nameMapping.put(csvFieldName, field.getName());
+  private int[] createPropertyIndexes(String[] header) {
+    if (rowMapper == null) {
+      return null;
+    }
+
+    int[] indexes = new int[header.length];
+    for (int i = 0; i < header.length; i++) {
+      indexes[i] = rowMapper.getPropertyIndex(header[i]);
+      if (indexes[i] < 0) {
+        return null;
+      }
     }
+    return indexes;
   }
 
   /**
-   * Checks for the @MoneyField annotation, and if the annotation is present, puts a true value at
-   * fieldsWithMoneyValues, this value will be used when parsing CSV to use BigDecimal and divide
-   * by 1M.
+   * Creates the binding for the given field, or {@code null} if the field cannot be bound. In the
+   * latter case the error is reported by {@link #findDescriptor(int)} when the column is mapped.
    *
-   * @param field the current field.
+   * @param field the mapped field, or {@code null} if the column is not mapped.
+   * @param dictionary the dictionary of the column, or {@code null} if it is not encoded.
    */
-  private void addMoneyMappingIfAnnotationPresent(Field field) {
-    if (field.isAnnotationPresent(MoneyField.class)) {
-      fieldsWithMoneyValues.add(field.getName());
+  private static ColumnBinding createColumnBinding(
+      @Nullable ReportFieldMetadata field, @Nullable StringDictionary.Column dictionary) {
+    if (field == null || field.getSetter() == null) {
+      return null;
     }
+    return new ColumnBinding(field, dictionary);
   }
 
   /**
@@ -152,7 +189,10 @@ public class ReportEntityMappingStrategy<T extends Report> {
    */
   public T createBean() throws CsvReportParsingException {
     try {
-      return reportEntityClass.getConstructor().newInstance();
+      if (constructor == null) {
+        constructor = reportEntityClass.getConstructor();
+      }
+      return constructor.newInstance();
     } catch (NoSuchMethodException
         | SecurityException
         | InstantiationException
@@ -164,12 +204,89 @@ public class ReportEntityMappingStrategy<T extends Report> {
     }
   }
 
+  /**
+   * Returns the bean to be filled with the next row: a new bean, or the next bean of the ring once
+   * reset if the beans are reused.
+   */
+  T nextBean() throws CsvReportParsingException {
+    if (beanRing == null) {
+      return newBean();
+    }
+
+    @SuppressWarnings("unchecked")
+    T bean = (T) beanRing[beanRingIndex];
+    if (bean == null) {
+      bean = newBean();
+      beanRing[beanRingIndex] = bean;
+    } else {
+      if (beanResetter == null) {
+        beanResetter = new BeanResetter(newBean());
+      }
+      try {
+        beanResetter.reset(bean);
+      } catch (Throwable t) {
+        Throwables.throwIfInstanceOf(t, Error.class);
+        throw new CsvReportParsingException(
+            "Failed to reset " + reportEntityClass.getCanonicalName(), t);
+      }
+    }
+    beanRingIndex = (beanRingIndex + 1) % beanRing.length;
+    return bean;
+  }
+
+  private T newBean() throws CsvReportParsingException {
+    return rowMapper != null ? rowMapper.createBean() : createBean();
+  }
+
+  /**
+   * Returns the generated mapper to be used for the rows, or {@code null} if the rows have to be
+   * mapped with the column bindings.
+   */
+  CsvRowMapper<T> getRowMapper() {
+    return propertyIndexes == null ? null : rowMapper;
+  }
+
+  /**
+   * Returns the property index of each column for the generated mapper.
+   */
+  int[] getPropertyIndexes() {
+    return propertyIndexes;
+  }
+
+  /**
+   * Returns the row to be read by the generated mapper, which shares the values of the
+   * dictionary-encoded columns. The returned row is only valid until the next call.
+   */
+  CsvRow encodeStrings(CsvRow row) {
+    return dictionaryRow == null ? row : dictionaryRow.wrap(row);
+  }
+
+  /**
+   * Returns the binding of the given column, which was compiled when the CSV header was captured.
+   *
+   * @throws CsvReportParsingException if the column cannot be mapped to any property.
+   */
+  ColumnBinding getColumnBinding(int columnNumber) throws CsvReportParsingException {
+    ColumnBinding binding =
+        columnNumber < columnBindings.length ? columnBindings[columnNumber] : null;
+    if (binding == null) {
+      // Report the same error as when looking up the descriptor.
+      findDescriptor(columnNumber);
+      throw new CsvReportParsingException("Failed to bind column number " + columnNumber);
+    }
+    return binding;
+  }
+
   /**
    * Find the property descriptor that is referenced by the given column index.
    *
    * <p>The mapping between the indexes and the field were created when the CSV header was captured.
    */
   public PropertyDescriptor findDescriptor(int columnNumber) throws CsvReportParsingException {
+    if (columnNumber < columnBindings.length && columnBindings[columnNumber] != null) {
+      return columnBindings[columnNumber].getDescriptor();
+    }
+
     String propertyName = csvIndexToReportNames.get(columnNumber);
     if (propertyName == null) {
       throw new CsvReportParsingException(
@@ -189,6 +306,7 @@ public class ReportEntityMappingStrategy<T extends Report> {
    * this value will be used when parsing CSV to use BigDecimal and divide by 1M.
    */
   public boolean isMoneyField(String field) {
-    return fieldsWithMoneyValues.contains(field);
+    ReportFieldMetadata fieldMetadata = metadata.getFieldByPropertyName(field);
+    return fieldMetadata != null && fieldMetadata.isMoneyField();
   }
 }
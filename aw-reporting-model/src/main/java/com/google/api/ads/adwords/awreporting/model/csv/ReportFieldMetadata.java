@@ -0,0 +1,144 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField;
+import com.google.api.ads.adwords.awreporting.model.csv.annotation.MoneyField;
+import com.google.common.base.MoreObjects;
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import javax.annotation.Nullable;
+import javax.persistence.Column;
+
+/**
+ * The metadata of a report field annotated with {@link CsvField}, computed once per report class
+ * by {@link ReportMetadata}.
+ */
+public final class ReportFieldMetadata {
+  private static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final String propertyName;
+  private final String csvName;
+  private final String reportField;
+  private final String columnName;
+  private final boolean moneyField;
+  private final Class<?> fieldType;
+  private final PropertyDescriptor descriptor;
+  private final MethodHandle setter;
+
+  ReportFieldMetadata(Field field, Class<?> reportClass) {
+    CsvField csvField = field.getAnnotation(CsvField.class);
+    Column column = field.getAnnotation(Column.class);
+    this.propertyName = field.getName();
+    this.csvName = csvField.value();
+    this.reportField = csvField.reportField();
+    this.columnName = column != null ? column.name() : null;
+    this.moneyField = field.isAnnotationPresent(MoneyField.class);
+    this.fieldType = field.getType();
+
+    // The properties without a (public) setter cannot be mapped, which is only reported when a
+    // column is actually mapped to them.
+    PropertyDescriptor propertyDescriptor;
+    MethodHandle propertySetter;
+    try {
+      propertyDescriptor = new PropertyDescriptor(propertyName, reportClass);
+      propertySetter =
+          MethodHandles.publicLookup()
+              .unreflect(propertyDescriptor.getWriteMethod())
+              .asType(SETTER_TYPE);
+    } catch (IntrospectionException | IllegalAccessException e) {
+      propertyDescriptor = null;
+      propertySetter = null;
+    }
+    this.descriptor = propertyDescriptor;
+    this.setter = propertySetter;
+  }
+
+  /**
+   * Returns the name of the bean property, which is the name of the Java field.
+   */
+  public String getPropertyName() {
+    return propertyName;
+  }
+
+  /**
+   * Returns the name of the column in the CSV file.
+   */
+  public String getCsvName() {
+    return csvName;
+  }
+
+  /**
+   * Returns the report field on the API.
+   */
+  public String getReportField() {
+    return reportField;
+  }
+
+  /**
+   * Returns the name of the database column, or {@code null} if the field is not annotated with
+   * {@code Column}.
+   */
+  @Nullable
+  public String getColumnName() {
+    return columnName;
+  }
+
+  /**
+   * Returns whether the field is annotated with {@link MoneyField}.
+   */
+  public boolean isMoneyField() {
+    return moneyField;
+  }
+
+  /**
+   * Returns the type of the Java field, which may differ from the type of the property setter.
+   */
+  public Class<?> getFieldType() {
+    return fieldType;
+  }
+
+  /**
+   * Returns the descriptor of the bean property, or {@code null} if it has no accessible setter.
+   */
+  @Nullable
+  PropertyDescriptor getDescriptor() {
+    return descriptor;
+  }
+
+  /**
+   * Returns the setter of the bean property, or {@code null} if it has no accessible setter.
+   */
+  @Nullable
+  MethodHandle getSetter() {
+    return setter;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("propertyName", propertyName)
+        .add("csvName", csvName)
+        .add("reportField", reportField)
+        .add("columnName", columnName)
+        .add("moneyField", moneyField)
+        .toString();
+  }
+}
@@ -0,0 +1,162 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionReportType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * The index of the report classes of a package, generated at build time by the
+ * {@code ReportIndexProcessor} annotation processor as a subclass named
+ * {@value #INDEX_CLASS_NAME} in the package of the report classes.
+ *
+ * <p>The index holds the same information as the scan of the classes annotated with
+ * {@code CsvReport} by {@link CsvReportEntitiesMapping}, so the reports can be mapped at startup
+ * without scanning the classpath and reflecting on every field.
+ */
+public abstract class ReportIndex {
+  private static final Logger logger = Logger.getLogger(ReportIndex.class.getCanonicalName());
+
+  /**
+   * The simple name of the generated index class of each package.
+   */
+  public static final String INDEX_CLASS_NAME = "GeneratedReportIndex";
+
+  /**
+   * An indexed report class.
+   */
+  public static final class Entry {
+    private final ReportDefinitionReportType reportType;
+    private final String fileOnlyReportType;
+    private final Class<? extends Report> reportBeanClass;
+    private final boolean supportsDateRange;
+    private final List<String> propertiesToSelect;
+
+    private Entry(
+        @Nullable ReportDefinitionReportType reportType,
+        @Nullable String fileOnlyReportType,
+        Class<? extends Report> reportBeanClass,
+        boolean supportsDateRange,
+        List<String> propertiesToSelect) {
+      this.reportType = reportType;
+      this.fileOnlyReportType = fileOnlyReportType;
+      this.reportBeanClass = reportBeanClass;
+      this.supportsDateRange = supportsDateRange;
+      this.propertiesToSelect = propertiesToSelect;
+    }
+
+    /**
+     * Returns the report type, or {@code null} for a report only available via CSV files.
+     */
+    @Nullable
+    public ReportDefinitionReportType getReportType() {
+      return reportType;
+    }
+
+    /**
+     * Returns the name of the report only available via CSV files, or {@code null} for the
+     * reports of the API.
+     */
+    @Nullable
+    public String getFileOnlyReportType() {
+      return fileOnlyReportType;
+    }
+
+    public Class<? extends Report> getReportBeanClass() {
+      return reportBeanClass;
+    }
+
+    public boolean supportsDateRange() {
+      return supportsDateRange;
+    }
+
+    /**
+     * Returns the report fields to select, without the excluded ones.
+     */
+    public List<String> getPropertiesToSelect() {
+      return propertiesToSelect;
+    }
+  }
+
+  private final List<Entry> entries = Lists.newArrayList();
+
+  /**
+   * Adds a report of the API.
+   *
+   * @param reportType the report type.
+   * @param reportBeanClass the class of the report.
+   * @param supportsDateRange whether the report class is a {@code DateReport}.
+   * @param propertiesToSelect the comma separated report fields to select.
+   */
+  protected final void addReport(
+      ReportDefinitionReportType reportType,
+      Class<? extends Report> reportBeanClass,
+      boolean supportsDateRange,
+      String propertiesToSelect) {
+    List<String> properties =
+        propertiesToSelect.isEmpty()
+            ? Collections.<String>emptyList()
+            : ImmutableList.copyOf(propertiesToSelect.split(","));
+    entries.add(new Entry(reportType, null, reportBeanClass, supportsDateRange, properties));
+  }
+
+  /**
+   * Adds a report only available via CSV files.
+   *
+   * @param fileOnlyReportType the name of the report.
+   * @param reportBeanClass the class of the report.
+   */
+  protected final void addFileOnlyReport(
+      String fileOnlyReportType, Class<? extends Report> reportBeanClass) {
+    entries.add(
+        new Entry(
+            null, fileOnlyReportType, reportBeanClass, false, Collections.<String>emptyList()));
+  }
+
+  /**
+   * Returns the indexed reports, in the order of the compilation.
+   */
+  public List<Entry> getEntries() {
+    return Collections.unmodifiableList(entries);
+  }
+
+  /**
+   * Loads the generated index of the package.
+   *
+   * @param packageName the package of the report classes.
+   * @return the index, or {@code null} if no index was generated for the package.
+   */
+  @Nullable
+  public static ReportIndex load(String packageName) {
+    String indexClassName = packageName + "." + INDEX_CLASS_NAME;
+    try {
+      Class<?> indexClass =
+          Class.forName(indexClassName, true, ReportIndex.class.getClassLoader());
+      return indexClass.asSubclass(ReportIndex.class).getDeclaredConstructor().newInstance();
+    } catch (ClassNotFoundException e) {
+      logger.fine("No generated report index for " + packageName);
+      return null;
+    } catch (ReflectiveOperationException | ClassCastException e) {
+      logger.warning("Failed to instantiate " + indexClassName + ": " + e);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.lang.reflect.Field;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * The immutable metadata of the fields of a report class annotated with {@link CsvField}.
+ *
+ * <p>The metadata is computed once per report class and shared by all the threads, so mapping a
+ * new report file does not need to scan the class hierarchy again.
+ *
+ * @param <T> the report class.
+ */
+public final class ReportMetadata<T extends Report> {
+
+  // The registry of the metadata of each report class.
+  private static final ConcurrentMap<Class<?>, ReportMetadata<?>> metadataByClass =
+      new ConcurrentHashMap<Class<?>, ReportMetadata<?>>();
+
+  private final Class<T> reportClass;
+  private final ImmutableList<ReportFieldMetadata> fields;
+  private final ImmutableMap<String, ReportFieldMetadata> fieldsByCsvName;
+  private final ImmutableMap<String, ReportFieldMetadata> fieldsByPropertyName;
+
+  private ReportMetadata(Class<T> reportClass) {
+    this.reportClass = reportClass;
+
+    // The fields of the subclasses come first. If several fields map the same CSV name, the last
+    // one scanned (of the superclass) is used.
+    ImmutableList.Builder<ReportFieldMetadata> fieldsBuilder = ImmutableList.builder();
+    Map<String, ReportFieldMetadata> byCsvName = new LinkedHashMap<String, ReportFieldMetadata>();
+    Map<String, ReportFieldMetadata> byPropertyName =
+        new LinkedHashMap<String, ReportFieldMetadata>();
+    for (Class<?> c = reportClass; c != Object.class; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if (field.isAnnotationPresent(CsvField.class)) {
+          ReportFieldMetadata fieldMetadata = new ReportFieldMetadata(field, reportClass);
+          fieldsBuilder.add(fieldMetadata);
+          byCsvName.put(fieldMetadata.getCsvName(), fieldMetadata);
+          byPropertyName.put(fieldMetadata.getPropertyName(), fieldMetadata);
+        }
+      }
+    }
+    this.fields = fieldsBuilder.build();
+    this.fieldsByCsvName = ImmutableMap.copyOf(byCsvName);
+    this.fieldsByPropertyName = ImmutableMap.copyOf(byPropertyName);
+  }
+
+  /**
+   * Returns the metadata of the report class, computing it on first use.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Report> ReportMetadata<T> forClass(Class<T> reportClass) {
+    Preconditions.checkNotNull(reportClass, "reportClass cannot be null");
+    ReportMetadata<?> metadata = metadataByClass.get(reportClass);
+    if (metadata == null) {
+      metadata = new ReportMetadata<T>(reportClass);
+      ReportMetadata<?> existing = metadataByClass.putIfAbsent(reportClass, metadata);
+      if (existing != null) {
+        metadata = existing;
+      }
+    }
+    return (ReportMetadata<T>) metadata;
+  }
+
+  public Class<T> getReportClass() {
+    return reportClass;
+  }
+
+  /**
+   * Returns the metadata of all the mapped fields, the fields of the subclasses first.
+   */
+  public List<ReportFieldMetadata> getFields() {
+    return fields;
+  }
+
+  /**
+   * Returns the field mapped to the CSV column name, or {@code null} if none.
+   */
+  @Nullable
+  public ReportFieldMetadata getFieldByCsvName(String csvName) {
+    return fieldsByCsvName.get(csvName);
+  }
+
+  /**
+   * Returns the mapped field of the property, or {@code null} if none.
+   */
+  @Nullable
+  public ReportFieldMetadata getFieldByPropertyName(String propertyName) {
+    return fieldsByPropertyName.get(propertyName);
+  }
+}
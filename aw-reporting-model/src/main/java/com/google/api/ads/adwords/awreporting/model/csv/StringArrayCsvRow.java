@@ -0,0 +1,58 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import java.math.BigDecimal;
+
+/**
+ * {@link CsvRow} over the values of a row already split into {@code String}s.
+ */
+final class StringArrayCsvRow implements CsvRow {
+  private final String[] values;
+
+  StringArrayCsvRow(String[] values) {
+    this.values = values;
+  }
+
+  @Override
+  public int size() {
+    return values.length;
+  }
+
+  @Override
+  public String getRawValue(int column) {
+    return values[column];
+  }
+
+  @Override
+  public String getString(int column) {
+    return ValueConverters.toStringValue(values[column]);
+  }
+
+  @Override
+  public Long getLong(int column) {
+    return ValueConverters.toLong(values[column]);
+  }
+
+  @Override
+  public Integer getInteger(int column) {
+    return ValueConverters.toInteger(values[column]);
+  }
+
+  @Override
+  public BigDecimal getMoney(int column) {
+    return ValueConverters.toMoney(values[column]);
+  }
+}
@@ -0,0 +1,196 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Dictionary of the {@code String} values of the low-cardinality columns of a report (such as
+ * {@code AdNetworkType1}, {@code Device} or {@code AccountCurrencyCode}), so that the beans of a
+ * report share one instance of each repeated value.
+ *
+ * <p>A dictionary is meant to be scoped to a single report download: it is not thread-safe, and
+ * each column keeps at most {@code maxSizePerColumn} distinct values (the values seen after that
+ * are not shared).
+ *
+ * <p>The hit rate of each column is tracked, to help choosing which columns to encode.
+ */
+public class StringDictionary {
+  public static final int DEFAULT_MAX_SIZE_PER_COLUMN = 1024;
+
+  private final Map<String, Column> columns = new LinkedHashMap<String, Column>();
+  private final int maxSizePerColumn;
+  private final List<StringDictionary> splits =
+      Collections.synchronizedList(new ArrayList<StringDictionary>());
+
+  /**
+   * @param columnNames the report fields (such as {@code Device}) to be dictionary-encoded.
+   * @param maxSizePerColumn the maximum number of distinct values kept for each column.
+   */
+  public StringDictionary(Set<String> columnNames, int maxSizePerColumn) {
+    Preconditions.checkNotNull(columnNames, "columnNames cannot be null.");
+    Preconditions.checkArgument(maxSizePerColumn > 0, "maxSizePerColumn must be > 0");
+    this.maxSizePerColumn = maxSizePerColumn;
+    for (String columnName : columnNames) {
+      columns.put(columnName, new Column(columnName, maxSizePerColumn));
+    }
+  }
+
+  /**
+   * Returns the dictionary of the given report field, or {@code null} if it is not encoded.
+   */
+  @Nullable
+  Column getColumn(@Nullable String columnName) {
+    return columns.get(columnName);
+  }
+
+  /**
+   * Creates an empty dictionary for the same columns, for a part of the same report that is mapped
+   * by another thread. Its statistics are included in the statistics of this dictionary.
+   */
+  public StringDictionary split() {
+    StringDictionary split = new StringDictionary(columns.keySet(), maxSizePerColumn);
+    splits.add(split);
+    return split;
+  }
+
+  /**
+   * Returns the statistics of the columns that were looked up, by report field.
+   */
+  public Map<String, ColumnStatistics> getStatistics() {
+    Map<String, ColumnStatistics> statistics = new LinkedHashMap<String, ColumnStatistics>();
+    for (Column column : columns.values()) {
+      if (column.hits + column.misses > 0) {
+        statistics.put(
+            column.name, new ColumnStatistics(column.hits, column.misses, column.values.size()));
+      }
+    }
+
+    synchronized (splits) {
+      for (StringDictionary split : splits) {
+        for (Map.Entry<String, ColumnStatistics> entry : split.getStatistics().entrySet()) {
+          ColumnStatistics total = statistics.get(entry.getKey());
+          statistics.put(
+              entry.getKey(), total == null ? entry.getValue() : total.plus(entry.getValue()));
+        }
+      }
+    }
+    return statistics;
+  }
+
+  /**
+   * The dictionary of a single column.
+   */
+  static final class Column {
+    private final String name;
+    private final int maxSize;
+    private final Map<String, String> values = new HashMap<String, String>();
+    private long hits;
+    private long misses;
+
+    private Column(String name, int maxSize) {
+      this.name = name;
+      this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the shared instance of the given value, adding it to the dictionary if there is room.
+     */
+    @Nullable
+    String intern(@Nullable String value) {
+      if (value == null) {
+        return null;
+      }
+
+      String shared = values.get(value);
+      if (shared != null) {
+        hits++;
+        return shared;
+      }
+
+      misses++;
+      if (values.size() < maxSize) {
+        values.put(value, value);
+      }
+      return value;
+    }
+  }
+
+  /**
+   * The lookup statistics of a column.
+   */
+  public static final class ColumnStatistics {
+    private final long hits;
+    private final long misses;
+    private final int size;
+
+    public ColumnStatistics(long hits, long misses, int size) {
+      this.hits = hits;
+      this.misses = misses;
+      this.size = size;
+    }
+
+    /**
+     * Returns the number of values that were already in the dictionary.
+     */
+    public long getHits() {
+      return hits;
+    }
+
+    /**
+     * Returns the number of values that were not in the dictionary.
+     */
+    public long getMisses() {
+      return misses;
+    }
+
+    /**
+     * Returns the number of distinct values kept in the dictionary.
+     */
+    public int getSize() {
+      return size;
+    }
+
+    /**
+     * Returns the ratio of the lookups that found the value in the dictionary.
+     */
+    public double getHitRate() {
+      long lookups = hits + misses;
+      return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Adds up the statistics of the same column from two dictionaries (such as for the downloads
+     * of different accounts).
+     */
+    public ColumnStatistics plus(ColumnStatistics other) {
+      return new ColumnStatistics(hits + other.hits, misses + other.misses, size + other.size);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "hits=%d, misses=%d, size=%d, hitRate=%.3f", hits, misses, size, getHitRate());
+    }
+  }
+}
@@ -0,0 +1,166 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
+import com.google.api.ads.adwords.awreporting.model.util.StringsUtil;
+import java.beans.PropertyEditor;
+import java.beans.PropertyEditorManager;
+import java.math.BigDecimal;
+import javax.annotation.Nullable;
+
+/**
+ * Converters from the CSV cell contents to the values of the report bean properties.
+ *
+ * <p>All the conversions follow the same rules: empty values (such as {@code "--"}) are converted
+ * to {@code null}, {@code String} values are trimmed, and dashes are removed from the numbers
+ * (such as for CID "xxx-xxx-xxxx").
+ */
+public final class ValueConverters {
+
+  /**
+   * Converts a single CSV cell into the value passed to the bean setter.
+   */
+  interface ValueConverter {
+    Object convert(@Nullable String value);
+  }
+
+  private static final ValueConverter STRING_CONVERTER =
+      new ValueConverter() {
+        @Override
+        public Object convert(String value) {
+          return toStringValue(value);
+        }
+      };
+
+  private static final ValueConverter LONG_CONVERTER =
+      new ValueConverter() {
+        @Override
+        public Object convert(String value) {
+          return toLong(value);
+        }
+      };
+
+  private static final ValueConverter INTEGER_CONVERTER =
+      new ValueConverter() {
+        @Override
+        public Object convert(String value) {
+          return toInteger(value);
+        }
+      };
+
+  private static final ValueConverter MONEY_CONVERTER =
+      new ValueConverter() {
+        @Override
+        public Object convert(String value) {
+          return toMoney(value);
+        }
+      };
+
+  /**
+   * Private constructor to prevent instantiation of this utility class.
+   */
+  private ValueConverters() {}
+
+  /**
+   * Returns the converter for a bean property of the given type.
+   *
+   * @param propertyType the type of the bean property.
+   * @param isMoneyField whether the property is annotated with {@code MoneyField}.
+   */
+  static ValueConverter forProperty(Class<?> propertyType, boolean isMoneyField) {
+    if (isMoneyField) {
+      return MONEY_CONVERTER;
+    }
+    if (String.class.equals(propertyType)) {
+      return STRING_CONVERTER;
+    }
+    if (Long.class.equals(propertyType)) {
+      return LONG_CONVERTER;
+    }
+    if (Integer.class.equals(propertyType)) {
+      return INTEGER_CONVERTER;
+    }
+    return new PropertyEditorConverter(propertyType);
+  }
+
+  /**
+   * Converts the CSV value for a {@code String} property.
+   */
+  public static String toStringValue(@Nullable String value) {
+    return StringsUtil.trimToNullIfEmptyValue(value);
+  }
+
+  /**
+   * Converts the CSV value for a {@code Long} property.
+   */
+  public static Long toLong(@Nullable String value) {
+    return StringsUtil.isEmptyValue(value) ? null : Long.decode(StringsUtil.removeDashes(value));
+  }
+
+  /**
+   * Converts the CSV value for an {@code Integer} property.
+   */
+  public static Integer toInteger(@Nullable String value) {
+    return StringsUtil.isEmptyValue(value)
+        ? null
+        : Integer.decode(StringsUtil.removeDashes(value));
+  }
+
+  /**
+   * Converts the CSV value (in micros) for a {@code MoneyField} property.
+   */
+  public static BigDecimal toMoney(@Nullable String value) {
+    return StringsUtil.isEmptyValue(value)
+        ? null
+        : BigDecimalUtil.parseFromMoneyString(StringsUtil.removeDashes(value));
+  }
+
+  /**
+   * Fallback converter for the property types without a dedicated converter, which relies on the
+   * JavaBeans {@link PropertyEditor} of the type.
+   *
+   * <p>Property editors are stateful, so instances of this converter must not be shared between
+   * threads.
+   */
+  private static class PropertyEditorConverter implements ValueConverter {
+    private final boolean isString;
+    private final boolean isNumber;
+    private final PropertyEditor editor;
+
+    PropertyEditorConverter(Class<?> propertyType) {
+      this.isString = String.class.isAssignableFrom(propertyType);
+      this.isNumber = Number.class.isAssignableFrom(propertyType);
+      this.editor = PropertyEditorManager.findEditor(propertyType);
+    }
+
+    @Override
+    public Object convert(String value) {
+      if (isString) {
+        value = StringsUtil.trimToNullIfEmptyValue(value);
+      } else if (StringsUtil.isEmptyValue(value)) {
+        value = null;
+      } else if (isNumber) {
+        value = StringsUtil.removeDashes(value);
+      }
+
+      if (editor == null) {
+        return value;
+      }
+      editor.setAsText(value);
+      return editor.getValue();
+    }
+  }
+}
@@ -18,6 +18,7 @@ import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvReport;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.MoneyField;
 import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
+import com.google.api.ads.adwords.awreporting.model.util.RowKeys;
 import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionReportType;
 
 import java.math.BigDecimal;
@@ -813,7 +814,7 @@ public class AdCustomizersFeedItemReport extends DateReport {
     if (!StringUtils.isEmpty(slot)) {
       idBuilder.append("-").append(slot);
     }
-    this.rowId = idBuilder.toString();
+    this.rowId = RowKeys.toRowId(idBuilder);
   }
 
   @Override
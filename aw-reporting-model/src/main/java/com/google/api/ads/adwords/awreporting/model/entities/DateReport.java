@@ -24,7 +24,6 @@ import javax.persistence.Column;
 import javax.persistence.MappedSuperclass;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
-import org.joda.time.LocalDate;
 
 /**
  * The base abstract class for all Reports segmented by date. For a full list of reports
@@ -130,9 +129,9 @@ public abstract class DateReport extends Report {
   }
 
   public void setDate(String date) {
-    LocalDate parsedLocalDate = DateUtil.parseLocalDate(date);
-    if (parsedLocalDate != null) {
-      this.date = DateUtil.formatYearMonthDay(parsedLocalDate);
+    String yearMonthDay = DateUtil.parseToYearMonthDay(date);
+    if (yearMonthDay != null) {
+      this.date = yearMonthDay;
     }
   }
 
@@ -165,9 +164,9 @@ public abstract class DateReport extends Report {
   }
 
   public void setMonth(String month) {
-    LocalDate parseDateTime = DateUtil.parseLocalDate(month);
-    if (parseDateTime != null) {
-      this.month = DateUtil.formatYearMonthDay(parseDateTime);
+    String yearMonthDay = DateUtil.parseToYearMonthDay(month);
+    if (yearMonthDay != null) {
+      this.month = yearMonthDay;
     }
   }
 
@@ -22,7 +22,6 @@ import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
-import org.joda.time.DateTime;
 
 /**
  * The base abstract class for all Reports. For a full list of reports and their fields see
@@ -57,7 +56,7 @@ public abstract class Report implements MongoEntity {
    * Constructor to satisfy Hibernate.
    */
   public Report() {
-    timestamp = new DateTime().toDate();
+    timestamp = new Date();
   }
 
   /**
@@ -69,7 +68,7 @@ public abstract class Report implements MongoEntity {
   public Report(Long topCustomerId, Long customerId) {
     this.topCustomerId = topCustomerId;
     this.customerId = customerId;
-    timestamp = new DateTime().toDate();
+    timestamp = new Date();
   }
 
   /**
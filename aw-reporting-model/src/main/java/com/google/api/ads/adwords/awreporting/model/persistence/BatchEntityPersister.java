@@ -0,0 +1,37 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence;
+
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatch;
+
+/**
+ * An {@link EntityPersister} that persists the parsed rows straight from their columnar
+ * {@link RowBatch}, without a bean per row.
+ *
+ * <p>The report processors fill the batches instead of the lists of report entities for the
+ * persisters implementing this interface.
+ */
+public interface BatchEntityPersister extends EntityPersister {
+
+  /**
+   * Persists all the rows of the batch.
+   *
+   * <p>The batch is cleared and filled again once this method returns, so it must not be
+   * retained.
+   *
+   * @param rowBatch the rows to persist.
+   */
+  void persistRowBatch(RowBatch<?> rowBatch);
+}
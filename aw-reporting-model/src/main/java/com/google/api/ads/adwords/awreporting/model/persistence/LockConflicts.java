@@ -0,0 +1,100 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence;
+
+import com.google.common.base.Throwables;
+import com.google.common.primitives.Ints;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+/**
+ * {@code LockConflicts} is a utility class to retry the writes failing on a lock conflict with a
+ * concurrent transaction: a deadlock, which the database resolves by rolling back one of the
+ * transactions, or a lock wait timeout.
+ *
+ * <p>Each write must be a whole transaction, so it can be retried from the start once rolled back.
+ */
+public final class LockConflicts {
+
+  /**
+   * The maximum number of attempts of a write.
+   */
+  public static final int MAX_ATTEMPTS = 4;
+
+  private static final long BACKOFF_MILLIS = 100;
+
+  // The SQLState of the deadlocks in MySQL and SQL Server (and of the serialization failures).
+  private static final String DEADLOCK_SQL_STATE = "40001";
+
+  // MySQL: 1205 lock wait timeout, 1213 deadlock. SQL Server: 1205 deadlock, 1222 lock timeout.
+  private static final int[] LOCK_CONFLICT_ERROR_CODES = {1205, 1213, 1222};
+
+  /**
+   * Private constructor to prevent instantiation of this utility class.
+   */
+  private LockConflicts() {}
+
+  /**
+   * Runs the write, and runs it again after a random backoff if it failed on a lock conflict, up
+   * to {@link #MAX_ATTEMPTS} times.
+   *
+   * @param write the write, run in its own transaction.
+   * @throws RuntimeException the failure of the write, or of its last attempt.
+   */
+  public static void retry(Runnable write) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        write.run();
+        return;
+      } catch (RuntimeException e) {
+        if (attempt >= MAX_ATTEMPTS || !isLockConflict(e)) {
+          throw e;
+        }
+        try {
+          // The conflicting transactions back off for different times, so they do not collide
+          // again.
+          long jitter = ThreadLocalRandom.current().nextLong(BACKOFF_MILLIS);
+          Thread.sleep(BACKOFF_MILLIS * attempt + jitter);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns whether the failure, or any of its causes, is a lock conflict.
+   */
+  public static boolean isLockConflict(Throwable failure) {
+    for (Throwable cause : Throwables.getCausalChain(failure)) {
+      if (cause instanceof PessimisticLockingFailureException) {
+        return true;
+      }
+      if (cause instanceof SQLException) {
+        for (SQLException e = (SQLException) cause; e != null; e = e.getNextException()) {
+          if (e instanceof SQLTransactionRollbackException
+              || DEADLOCK_SQL_STATE.equals(e.getSQLState())
+              || Ints.contains(LOCK_CONFLICT_ERROR_CODES, e.getErrorCode())) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,25 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence;
+
+/**
+ * An {@link EntityPersister} that does not keep any reference to the report entities once
+ * {@link #persistReportEntities(java.util.List)} returns, for instance because it serializes them
+ * right away.
+ *
+ * <p>The report processors reuse the beans of the report entities for the persisters implementing
+ * this interface, instead of creating a new bean for every row.
+ */
+public interface NonRetainingEntityPersister extends EntityPersister {}
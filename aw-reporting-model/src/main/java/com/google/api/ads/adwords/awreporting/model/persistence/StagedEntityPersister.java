@@ -0,0 +1,68 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence;
+
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+
+/**
+ * An {@link EntityPersister} that loads all the rows of a report type as a whole: the rows
+ * persisted between {@link #beginLoad} and {@link #finishLoad} are only published in the report
+ * table by {@link #finishLoad}, for instance from a staging table.
+ *
+ * <p>The report processors begin a load before downloading a report type for all the accounts,
+ * and finish it once all the accounts are processed. A single load of a report class can be in
+ * progress at a time, but its rows can be persisted by several threads. The processors also record
+ * the date range of each account whose report was processed entirely (see
+ * {@link #recordLoadedRange}).
+ */
+public interface StagedEntityPersister extends EntityPersister {
+
+  /**
+   * Begins the load of a report type.
+   *
+   * @param reportClass the report class.
+   * @param fullSnapshot whether the report is a snapshot of all the rows of the report type
+   *     (without date range), so the loaded rows may replace all the rows of the report table.
+   */
+  void beginLoad(Class<? extends Report> reportClass, boolean fullSnapshot);
+
+  /**
+   * Records that the report of an account was processed entirely: the rows of the account loaded
+   * since {@link #beginLoad} are all its rows within the date range, even if there are none.
+   *
+   * @param reportClass the report class.
+   * @param accountId the ID of the account.
+   * @param dateRangeAndType the date range of the report.
+   */
+  void recordLoadedRange(
+      Class<? extends Report> reportClass, long accountId, DateRangeAndType dateRangeAndType);
+
+  /**
+   * Publishes the rows loaded since {@link #beginLoad} in the report table.
+   *
+   * @param reportClass the report class.
+   * @param complete whether the rows of all the accounts were loaded. The rows of an incomplete
+   *     load are still published, but never replace the whole report table.
+   */
+  void finishLoad(Class<? extends Report> reportClass, boolean complete);
+
+  /**
+   * Discards the rows loaded since {@link #beginLoad}.
+   *
+   * @param reportClass the report class.
+   */
+  void abortLoad(Class<? extends Report> reportClass);
+}
@@ -0,0 +1,319 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence;
+
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatch;
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link EntityPersister} decorator which persists the report entities in the background: the
+ * sets of entities are queued, and written by a fixed number of writer threads, so the parsing
+ * threads do not wait for the database.
+ *
+ * <p>The queue is bounded: once it is full, the parsing threads wait for a set to be written
+ * before queueing theirs. The failures of the sets are collected by report class, and thrown when
+ * the load of the report class is finished (see {@link #finishLoad}), once all its sets are
+ * written. The loads are forwarded to the delegate if it is a {@link StagedEntityPersister}. A
+ * set failing on a lock conflict is written again (see {@link LockConflicts}).
+ *
+ * <p>The parsed rows are queued as a copy of their {@link RowBatch} (see
+ * {@link BatchEntityPersister}), so the parsing threads keep reusing a single bean and a single
+ * batch. The copies are persisted as they are by a {@link BatchEntityPersister} delegate, and
+ * materialized into report entities by the writer threads for any other delegate.
+ *
+ * <p>Each writer thread persists its sets independently, so the delegate must be thread-safe, as
+ * for the parsing threads. The non-report entities are saved and retrieved synchronously.
+ */
+public class WriteBehindEntityPersister
+    implements BatchEntityPersister, StagedEntityPersister, Closeable {
+  private final EntityPersister delegate;
+  private final ThreadPoolExecutor executor;
+  private final ConcurrentMap<Class<?>, Queue<Future<?>>> pendingWrites =
+      new ConcurrentHashMap<Class<?>, Queue<Future<?>>>();
+
+  /**
+   * @param delegate the persister writing the entities.
+   * @param writerThreads the number of writer threads.
+   * @param queueSize the maximum number of sets of entities waiting for a writer thread.
+   */
+  public WriteBehindEntityPersister(EntityPersister delegate, int writerThreads, int queueSize) {
+    this.delegate = Preconditions.checkNotNull(delegate, "delegate cannot be null");
+    Preconditions.checkArgument(writerThreads > 0, "writerThreads must be > 0");
+    Preconditions.checkArgument(queueSize > 0, "queueSize must be > 0");
+    this.executor =
+        new ThreadPoolExecutor(
+            writerThreads,
+            writerThreads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(queueSize),
+            new ThreadFactoryBuilder().setNameFormat("report-writer-%d").setDaemon(true).build(),
+            new BlockingSubmissionHandler());
+  }
+
+  /**
+   * Queues the report entities to be persisted by a writer thread, waiting for room in the queue
+   * if it is full. The list is copied, so the caller can reuse it right away, but the entities
+   * must not be modified afterwards.
+   */
+  @Override
+  public void persistReportEntities(List<? extends Report> reportEntities) {
+    if (reportEntities.isEmpty()) {
+      return;
+    }
+    final List<? extends Report> entities = ImmutableList.copyOf(reportEntities);
+    queueWrite(
+        entities.get(0).getClass(),
+        new Runnable() {
+          @Override
+          public void run() {
+            delegate.persistReportEntities(entities);
+          }
+        });
+  }
+
+  /**
+   * Queues a copy of the rows to be persisted by a writer thread, waiting for room in the queue if
+   * it is full. The batch can be cleared and filled again right away.
+   */
+  @Override
+  public void persistRowBatch(RowBatch<?> rowBatch) {
+    if (rowBatch.isEmpty()) {
+      return;
+    }
+    final RowBatch<?> rows = rowBatch.copy();
+    queueWrite(
+        rows.getSchema().getReportClass(),
+        new Runnable() {
+          @Override
+          public void run() {
+            if (delegate instanceof BatchEntityPersister) {
+              ((BatchEntityPersister) delegate).persistRowBatch(rows);
+            } else {
+              delegate.persistReportEntities(rows.toBeans());
+            }
+          }
+        });
+  }
+
+  @Override
+  public <T> T save(T entity) {
+    return delegate.save(entity);
+  }
+
+  @Override
+  public <T, V> List<T> get(Class<T> classT, String key, V value) {
+    return delegate.get(classT, key, value);
+  }
+
+  @Override
+  public void beginLoad(Class<? extends Report> reportClass, boolean fullSnapshot) {
+    if (delegate instanceof StagedEntityPersister) {
+      ((StagedEntityPersister) delegate).beginLoad(reportClass, fullSnapshot);
+    }
+  }
+
+  @Override
+  public void recordLoadedRange(
+      Class<? extends Report> reportClass, long accountId, DateRangeAndType dateRangeAndType) {
+    if (delegate instanceof StagedEntityPersister) {
+      ((StagedEntityPersister) delegate)
+          .recordLoadedRange(reportClass, accountId, dateRangeAndType);
+    }
+  }
+
+  /**
+   * Waits for all the queued entities of the report class to be written, then finishes the load
+   * of the delegate. The load is incomplete if any set failed to be written.
+   *
+   * @throws IllegalStateException if any set of entities failed to be written, with the failure
+   *     of the first one as cause and the others as suppressed exceptions.
+   */
+  @Override
+  public void finishLoad(Class<? extends Report> reportClass, boolean complete) {
+    IllegalStateException failure = awaitPendingWrites(reportClass);
+    if (delegate instanceof StagedEntityPersister) {
+      ((StagedEntityPersister) delegate).finishLoad(reportClass, complete && failure == null);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Discards the queued entities of the report class which are not written yet, waits for the
+   * others, then aborts the load of the delegate.
+   */
+  @Override
+  public void abortLoad(Class<? extends Report> reportClass) {
+    Queue<Future<?>> writes = pendingWrites.get(reportClass);
+    if (writes != null) {
+      for (Future<?> write : writes) {
+        write.cancel(false);
+      }
+    }
+    awaitPendingWrites(reportClass);
+    if (delegate instanceof StagedEntityPersister) {
+      ((StagedEntityPersister) delegate).abortLoad(reportClass);
+    }
+  }
+
+  /**
+   * Waits for all the queued entities to be written, and stops the writer threads.
+   *
+   * @throws IllegalStateException if any set of entities failed to be written since the last
+   *     {@link #finishLoad} of its report class.
+   */
+  @Override
+  public void close() {
+    IllegalStateException failure = null;
+    for (Class<?> reportClass : pendingWrites.keySet()) {
+      IllegalStateException reportFailure = awaitPendingWrites(reportClass);
+      if (failure == null) {
+        failure = reportFailure;
+      } else if (reportFailure != null) {
+        failure.addSuppressed(reportFailure);
+      }
+    }
+    executor.shutdown();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  @VisibleForTesting
+  int getQueuedWrites() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * Submits a write to the writer threads, retried on lock conflicts.
+   */
+  private void queueWrite(Class<?> reportClass, final Runnable write) {
+    Future<?> future =
+        executor.submit(
+            new Runnable() {
+              @Override
+              public void run() {
+                LockConflicts.retry(write);
+              }
+            });
+    getPendingWrites(reportClass).add(future);
+  }
+
+  private Queue<Future<?>> getPendingWrites(Class<?> reportClass) {
+    Queue<Future<?>> writes = pendingWrites.get(reportClass);
+    if (writes == null) {
+      Queue<Future<?>> newWrites = new ConcurrentLinkedQueue<Future<?>>();
+      writes = pendingWrites.putIfAbsent(reportClass, newWrites);
+      if (writes == null) {
+        writes = newWrites;
+      }
+    }
+    return writes;
+  }
+
+  /**
+   * Waits for the queued entities of the report class to be written.
+   *
+   * @return the failure of the sets which failed to be written, or {@code null} if none.
+   */
+  private IllegalStateException awaitPendingWrites(Class<?> reportClass) {
+    Queue<Future<?>> writes = pendingWrites.get(reportClass);
+    if (writes == null) {
+      return null;
+    }
+
+    int writeCount = 0;
+    List<Throwable> failures = Lists.newArrayList();
+    boolean interrupted = false;
+    Future<?> write;
+    while ((write = writes.poll()) != null) {
+      writeCount++;
+      while (true) {
+        try {
+          write.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          failures.add(e.getCause());
+          break;
+        } catch (CancellationException e) {
+          // Discarded by abortLoad.
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (failures.isEmpty()) {
+      return null;
+    }
+    IllegalStateException failure =
+        new IllegalStateException(
+            failures.size()
+                + " of "
+                + writeCount
+                + " sets of "
+                + reportClass.getSimpleName()
+                + " could not be persisted",
+            failures.get(0));
+    for (Throwable otherFailure : failures.subList(1, failures.size())) {
+      failure.addSuppressed(otherFailure);
+    }
+    return failure;
+  }
+
+  /**
+   * Makes the submitting thread wait for room in the queue, instead of rejecting the task.
+   */
+  private static class BlockingSubmissionHandler implements RejectedExecutionHandler {
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+        throw new RejectedExecutionException("The persister is closed");
+      }
+      try {
+        executor.getQueue().put(task);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RejectedExecutionException("Interrupted while waiting for a writer thread", e);
+      }
+    }
+  }
+}
@@ -15,7 +15,7 @@
 package com.google.api.ads.adwords.awreporting.model.persistence.mongodb;
 
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
-import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.api.ads.adwords.awreporting.model.persistence.NonRetainingEntityPersister;
 import com.google.api.ads.adwords.awreporting.model.util.GsonUtil;
 import com.google.gson.Gson;
 import com.mongodb.BasicDBObject;
@@ -34,7 +34,7 @@ import java.util.List;
 /**
  * MongoDB implementation of NoSqlStorage.
  */
-public class MongoEntityPersister implements EntityPersister {
+public class MongoEntityPersister implements NonRetainingEntityPersister {
 
   private MongoClient mongoClient;
   private DB db;
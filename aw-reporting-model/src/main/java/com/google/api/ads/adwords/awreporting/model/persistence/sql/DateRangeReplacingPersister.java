@@ -0,0 +1,371 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatch;
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.entities.DateReport;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.api.ads.adwords.awreporting.model.persistence.StagedEntityPersister;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import javax.sql.DataSource;
+import org.joda.time.LocalDate;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A persistence layer reloading the date segmented reports by date range: the rows of an account
+ * and date range (a slice) loaded together replace all the rows of the account within the date
+ * range, so the rows which are no longer reported are removed.
+ *
+ * <p>This applies to the rows of the {@link DateReport} classes with a {@code Date}, for which the
+ * rows of a date range are all the rows whose date is within the range. During a load, these rows
+ * are only inserted into a staging table, as {@link StagingTablePersister} does, and the
+ * processors record the slice of each account whose report was processed entirely, even if it has
+ * no rows (see {@link #recordLoadedRange}). {@link #finishLoad} then deletes the rows of the
+ * recorded slices and inserts the staged rows into the report table in a single transaction, so a
+ * slice is never partially replaced. If the load is incomplete, the slices of the failed downloads
+ * may be partially staged, so no rows are deleted and the staged rows are only merged.
+ *
+ * <p>The other rows, and the rows of the report classes without a load in progress, are written
+ * with upserts, as {@link JdbcReportEntitiesPersister} does.
+ *
+ * <p>{@link #beginLoad} creates an index on the account and date of the report table, if missing,
+ * so the deletions only scan the replaced rows. If a retention is set, {@link #finishLoad} also
+ * deletes the rows older than the retention.
+ */
+public class DateRangeReplacingPersister extends JdbcReportEntitiesPersister
+    implements StagedEntityPersister {
+
+  private static final String CUSTOMER_ID_COLUMN = "ExternalCustomerId";
+  private static final String DATE_COLUMN = "Date";
+  private static final String DATE_INDEX_SUFFIX = "_DATE_IDX";
+
+  private final int retentionDays;
+  private final TransactionTemplate transactionTemplate;
+  private final ConcurrentMap<Class<?>, Load> loads = new ConcurrentHashMap<Class<?>, Load>();
+
+  /**
+   * Constructor.
+   *
+   * @param dataSource the data source of the report tables.
+   * @param dialect the SQL dialect of the database.
+   * @param entityPersister the persister of the non-report entities.
+   * @param retentionDays the number of days of rows kept in the date segmented report tables, or 0
+   *     to keep all of them.
+   */
+  public DateRangeReplacingPersister(
+      DataSource dataSource,
+      SqlDialect dialect,
+      EntityPersister entityPersister,
+      int retentionDays) {
+    super(dataSource, dialect, entityPersister);
+    Preconditions.checkArgument(retentionDays >= 0, "retentionDays must be >= 0");
+    this.retentionDays = retentionDays;
+    this.transactionTemplate =
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+  }
+
+  /**
+   * Begins the load of a date segmented report class. The other report classes are upserted.
+   */
+  @Override
+  public void beginLoad(Class<? extends Report> reportClass, boolean fullSnapshot) {
+    if (!DateReport.class.isAssignableFrom(reportClass)) {
+      return;
+    }
+    ReportTable<?> table = ReportTable.forClass(reportClass);
+    Load load = new Load(table);
+    Preconditions.checkState(
+        loads.putIfAbsent(reportClass, load) == null,
+        "A load of %s is already in progress",
+        reportClass.getSimpleName());
+    try {
+      createDateIndexIfMissing(table);
+      getJdbcTemplate().execute(
+          getDialect().createCopyTableSql(table.getTableName(), load.stagingTableName));
+    } catch (RuntimeException e) {
+      loads.remove(reportClass);
+      throw e;
+    }
+  }
+
+  /**
+   * Records the slice of the account and date range, if a load of the report class is in progress.
+   */
+  @Override
+  public void recordLoadedRange(
+      Class<? extends Report> reportClass, long accountId, DateRangeAndType dateRangeAndType) {
+    Load load = loads.get(reportClass);
+    if (load != null) {
+      load.slices.add(
+          new Slice(accountId, dateRangeAndType.getStartDate(), dateRangeAndType.getEndDate()));
+    }
+  }
+
+  /**
+   * Inserts the rows into the staging table if a load of the report class is in progress, and the
+   * rows all have an account and a date.
+   */
+  @Override
+  @Transactional
+  public void persistRowBatch(RowBatch<?> rowBatch) {
+    Load load = loads.get(rowBatch.getSchema().getReportClass());
+    if (load == null || rowBatch.isEmpty() || !load.hasDates(rowBatch)) {
+      super.persistRowBatch(rowBatch);
+      return;
+    }
+    writeRows(rowBatch, load.table, load.stagingTableName, false);
+  }
+
+  /**
+   * Publishes the staged rows in a single transaction. If the load is complete, the staged rows
+   * are all in the recorded slices: the rows of the slices are deleted, and the staged rows are
+   * inserted without looking up the existing rows. Otherwise the staged rows are only merged. Then
+   * deletes the rows older than the retention, if any, and drops the staging table.
+   */
+  @Override
+  public void finishLoad(Class<? extends Report> reportClass, final boolean complete) {
+    final Load load = loads.remove(reportClass);
+    if (load == null) {
+      return;
+    }
+    try {
+      transactionTemplate.execute(
+          new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+              if (complete) {
+                deleteSlices(load);
+                getJdbcTemplate().execute(
+                    getDialect().createInsertFromSql(load.table, load.stagingTableName));
+              } else {
+                getJdbcTemplate().execute(
+                    getDialect().createMergeSql(load.table, load.stagingTableName));
+              }
+              if (retentionDays > 0) {
+                purgeBefore(load.table, LocalDate.now().minusDays(retentionDays));
+              }
+            }
+          });
+    } catch (RuntimeException e) {
+      try {
+        dropStagingTable(load);
+      } catch (RuntimeException dropException) {
+        e.addSuppressed(dropException);
+      }
+      throw e;
+    }
+    // Out of the transaction, as a DDL statement commits it on some databases.
+    dropStagingTable(load);
+  }
+
+  @Override
+  public void abortLoad(Class<? extends Report> reportClass) {
+    Load load = loads.remove(reportClass);
+    if (load != null) {
+      dropStagingTable(load);
+    }
+  }
+
+  /**
+   * Deletes the rows of the date segmented report table whose date is before the given one.
+   *
+   * @return the number of deleted rows.
+   */
+  @VisibleForTesting
+  int purgeBefore(ReportTable<?> table, LocalDate date) {
+    SqlDialect dialect = getDialect();
+    return getJdbcTemplate().update(
+        "DELETE FROM " + dialect.quote(table.getTableName())
+            + " WHERE " + dialect.quote(DATE_COLUMN) + " < ?",
+        toTimestamp(date));
+  }
+
+  /**
+   * Deletes the rows of the loaded slices, in the order of the slices, so the concurrent loads of
+   * the table lock the rows in the same order.
+   */
+  private void deleteSlices(Load load) {
+    if (load.slices.isEmpty()) {
+      return;
+    }
+    List<Object[]> parameters = Lists.newArrayListWithCapacity(load.slices.size());
+    for (Slice slice : load.slices) {
+      parameters.add(
+          new Object[] {
+            slice.customerId, toTimestamp(slice.startDate), toTimestamp(slice.endDate.plusDays(1))
+          });
+    }
+    getJdbcTemplate().batchUpdate(createDeleteSliceSql(load.table), parameters);
+  }
+
+  private void dropStagingTable(Load load) {
+    getJdbcTemplate().execute(getDialect().createDropTableSql(load.stagingTableName));
+  }
+
+  private String createDeleteSliceSql(ReportTable<?> table) {
+    SqlDialect dialect = getDialect();
+    return "DELETE FROM " + dialect.quote(table.getTableName())
+        + " WHERE " + dialect.quote(CUSTOMER_ID_COLUMN) + " = ?"
+        + " AND " + dialect.quote(DATE_COLUMN) + " >= ?"
+        + " AND " + dialect.quote(DATE_COLUMN) + " < ?";
+  }
+
+  private void createDateIndexIfMissing(final ReportTable<?> table) {
+    final String indexName = table.getTableName() + DATE_INDEX_SUFFIX;
+    boolean exists = getJdbcTemplate().execute(
+        new ConnectionCallback<Boolean>() {
+          @Override
+          public Boolean doInConnection(Connection connection)
+              throws SQLException, DataAccessException {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String tableName = metaData.storesUpperCaseIdentifiers()
+                ? table.getTableName().toUpperCase()
+                : table.getTableName();
+            try (ResultSet indexes = metaData.getIndexInfo(null, null, tableName, false, true)) {
+              while (indexes.next()) {
+                if (indexName.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                  return true;
+                }
+              }
+            }
+            return false;
+          }
+        });
+    if (!exists) {
+      getJdbcTemplate().execute(
+          getDialect().createIndexSql(
+              table.getTableName(),
+              indexName,
+              false,
+              ImmutableList.of(CUSTOMER_ID_COLUMN, DATE_COLUMN)));
+    }
+  }
+
+  private static Timestamp toTimestamp(LocalDate date) {
+    return new Timestamp(date.toDate().getTime());
+  }
+
+  /**
+   * A load in progress, with its recorded slices.
+   */
+  private static class Load {
+    private final ReportTable<?> table;
+    private final String stagingTableName;
+    private final int[] sliceColumns;
+    private final Set<Slice> slices = new ConcurrentSkipListSet<Slice>();
+
+    Load(ReportTable<?> table) {
+      this.table = table;
+      this.stagingTableName =
+          table.getTableName()
+              + StagingTablePersister.STAGING_TABLE_SUFFIX
+              + StagingTablePersister.nextLoadSuffix();
+      List<String> columnNames = table.getColumnNames();
+      this.sliceColumns =
+          new int[] {
+            getColumn(columnNames, CUSTOMER_ID_COLUMN), getColumn(columnNames, DATE_COLUMN)
+          };
+    }
+
+    private static int getColumn(List<String> columnNames, String columnName) {
+      int column = columnNames.indexOf(columnName);
+      Preconditions.checkArgument(column >= 0, "No column %s", columnName);
+      return column;
+    }
+
+    /**
+     * Returns whether all the rows have an account and a date, which are then the rows of the
+     * slices.
+     */
+    boolean hasDates(RowBatch<?> rowBatch) {
+      for (int row = 0; row < rowBatch.size(); row++) {
+        for (int column : sliceColumns) {
+          if (rowBatch.isNull(column, row)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * The rows of an account within a date range.
+   */
+  private static final class Slice implements Comparable<Slice> {
+    private final long customerId;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+
+    Slice(long customerId, LocalDate startDate, LocalDate endDate) {
+      this.customerId = customerId;
+      this.startDate = Preconditions.checkNotNull(startDate, "startDate cannot be null");
+      this.endDate = Preconditions.checkNotNull(endDate, "endDate cannot be null");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Slice)) {
+        return false;
+      }
+      Slice other = (Slice) obj;
+      return customerId == other.customerId
+          && startDate.equals(other.startDate)
+          && endDate.equals(other.endDate);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(customerId, startDate, endDate);
+    }
+
+    @Override
+    public int compareTo(Slice other) {
+      return ComparisonChain.start()
+          .compare(customerId, other.customerId)
+          .compare(startDate, other.startDate)
+          .compare(endDate, other.endDate)
+          .result();
+    }
+
+    @Override
+    public String toString() {
+      return "account " + customerId + " from " + startDate + " to " + endDate;
+    }
+  }
+}
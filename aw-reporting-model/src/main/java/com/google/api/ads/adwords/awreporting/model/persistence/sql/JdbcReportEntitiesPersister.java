@@ -0,0 +1,289 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatch;
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatchSchema;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.BatchEntityPersister;
+import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.api.ads.adwords.awreporting.model.util.RowKeys;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * A persistence layer writing the report rows with plain JDBC, without the Hibernate session.
+ *
+ * <p>The rows are written with multi-row "upsert" statements of the {@link SqlDialect}, generated
+ * from the JPA annotations of the report classes (see {@link ReportTable}), and executed in JDBC
+ * batches. Unlike {@link SqlReportEntitiesPersister}, there is no query per row to find out
+ * whether it already exists, and no persistence context to flush.
+ *
+ * <p>The rows are written in the order of their keys, so the concurrent transactions lock the rows
+ * of a table in the same order instead of deadlocking each other, and the inserts fill the index
+ * pages in order. As the keys start with the account ID (unless they are hashed), the threads
+ * persisting different accounts also write disjoint key ranges.
+ *
+ * <p>The non-report entities are still persisted by the given {@link EntityPersister}, and the
+ * tables must have been created by Hibernate beforehand.
+ */
+public class JdbcReportEntitiesPersister implements BatchEntityPersister {
+
+  private static final int ROWS_PER_STATEMENT = 100;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final SqlDialect dialect;
+  private final EntityPersister entityPersister;
+  private int rowsPerStatement = ROWS_PER_STATEMENT;
+
+  /**
+   * Constructor.
+   *
+   * @param dataSource the data source of the report tables.
+   * @param dialect the SQL dialect of the database.
+   * @param entityPersister the persister of the non-report entities.
+   */
+  public JdbcReportEntitiesPersister(
+      DataSource dataSource, SqlDialect dialect, EntityPersister entityPersister) {
+    Preconditions.checkNotNull(dataSource, "DataSource can not be null");
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+    this.dialect = Preconditions.checkNotNull(dialect, "SqlDialect can not be null");
+    this.entityPersister =
+        Preconditions.checkNotNull(entityPersister, "EntityPersister can not be null");
+  }
+
+  /**
+   * Persists the report entities, copying the consecutive entities of the same class into a
+   * {@link RowBatch}.
+   */
+  @Override
+  @Transactional
+  public void persistReportEntities(List<? extends Report> reportEntities) {
+    int start = 0;
+    while (start < reportEntities.size()) {
+      Class<? extends Report> reportClass = reportEntities.get(start).getClass();
+      int end = start + 1;
+      while (end < reportEntities.size() && reportEntities.get(end).getClass() == reportClass) {
+        end++;
+      }
+      persistRowBatch(toRowBatch(reportClass, reportEntities.subList(start, end)));
+      start = end;
+    }
+  }
+
+  private static <R extends Report> RowBatch<R> toRowBatch(
+      Class<R> reportClass, List<? extends Report> reports) {
+    RowBatch<R> rowBatch = new RowBatch<R>(RowBatchSchema.forClass(reportClass), reports.size());
+    for (Report report : reports) {
+      // The processors already set the row keys of the parsed reports.
+      if (report.getRowId() == null) {
+        report.setRowId();
+      }
+      rowBatch.addRow(reportClass.cast(report));
+    }
+    return rowBatch;
+  }
+
+  /**
+   * Persists the rows with upsert statements into the table of the report class.
+   */
+  @Override
+  @Transactional
+  public void persistRowBatch(RowBatch<?> rowBatch) {
+    if (!rowBatch.isEmpty()) {
+      ReportTable<?> table = ReportTable.forClass(rowBatch.getSchema().getReportClass());
+      writeRows(rowBatch, table, table.getTableName(), true);
+    }
+  }
+
+  /**
+   * Writes the rows in the order of their keys with statements of up to {@code rowsPerStatement}
+   * rows, executed in a single JDBC batch, and a last statement for the remaining rows.
+   *
+   * @param rowBatch the rows to write.
+   * @param table the table of the report class.
+   * @param tableName the name of the table written, which has the columns of {@code table}.
+   * @param upsert whether the rows replace the rows with the same primary key, or are only
+   *     inserted (for a table without primary key).
+   */
+  protected void writeRows(
+      final RowBatch<?> rowBatch, ReportTable<?> table, String tableName, boolean upsert) {
+    final int statementRows =
+        Math.min(rowsPerStatement, dialect.getMaxRowsPerStatement(table.getColumnNames().size()));
+    final int statements = rowBatch.size() / statementRows;
+    final int remainingRows = rowBatch.size() % statementRows;
+    final int[] rows = sortByRowId(rowBatch, table.getIdColumn());
+
+    if (statements > 0) {
+      jdbcTemplate.batchUpdate(
+          createWriteSql(table, tableName, upsert, statementRows),
+          new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int statement) throws SQLException {
+              bindRows(ps, rowBatch, rows, statement * statementRows, statementRows);
+            }
+
+            @Override
+            public int getBatchSize() {
+              return statements;
+            }
+          });
+    }
+    if (remainingRows > 0) {
+      jdbcTemplate.update(
+          createWriteSql(table, tableName, upsert, remainingRows),
+          new PreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps) throws SQLException {
+              bindRows(ps, rowBatch, rows, statements * statementRows, remainingRows);
+            }
+          });
+    }
+  }
+
+  private String createWriteSql(ReportTable<?> table, String tableName, boolean upsert, int rows) {
+    if (upsert) {
+      Preconditions.checkArgument(
+          tableName.equals(table.getTableName()), "Upserts only apply to the report table");
+      return dialect.createUpsertSql(table, rows);
+    }
+    return dialect.createInsertSql(table, tableName, rows);
+  }
+
+  /**
+   * Returns the indexes of the rows of the batch, sorted by their key.
+   */
+  @VisibleForTesting
+  static int[] sortByRowId(final RowBatch<?> rowBatch, final int idColumn) {
+    Integer[] sortedRows = new Integer[rowBatch.size()];
+    for (int row = 0; row < sortedRows.length; row++) {
+      sortedRows[row] = row;
+    }
+    Arrays.sort(
+        sortedRows,
+        new Comparator<Integer>() {
+          @Override
+          public int compare(Integer row, Integer otherRow) {
+            return RowKeys.ORDER.compare(
+                rowBatch.getString(idColumn, row), rowBatch.getString(idColumn, otherRow));
+          }
+        });
+
+    int[] rows = new int[sortedRows.length];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = sortedRows[i];
+    }
+    return rows;
+  }
+
+  /**
+   * Binds the values of the rows to the parameters of an upsert statement.
+   *
+   * @param rows the indexes of the rows of the batch, in the order they are written.
+   * @param first the position in {@code rows} of the first row of the statement.
+   * @param count the number of rows of the statement.
+   */
+  private static void bindRows(
+      PreparedStatement ps, RowBatch<?> rowBatch, int[] rows, int first, int count)
+      throws SQLException {
+    RowBatchSchema<?> schema = rowBatch.getSchema();
+    int parameter = 1;
+    for (int i = first; i < first + count; i++) {
+      for (int column = 0; column < schema.getColumnCount(); column++) {
+        bindValue(ps, parameter++, rowBatch, column, rows[i]);
+      }
+    }
+  }
+
+  private static void bindValue(
+      PreparedStatement ps, int parameter, RowBatch<?> rowBatch, int column, int row)
+      throws SQLException {
+    switch (rowBatch.getSchema().getColumn(column).getType()) {
+      case STRING:
+        if (rowBatch.isNull(column, row)) {
+          ps.setNull(parameter, Types.VARCHAR);
+        } else {
+          ps.setString(parameter, rowBatch.getString(column, row));
+        }
+        break;
+      case LONG:
+        if (rowBatch.isNull(column, row)) {
+          ps.setNull(parameter, Types.BIGINT);
+        } else {
+          ps.setLong(parameter, rowBatch.getLong(column, row));
+        }
+        break;
+      case INTEGER:
+        if (rowBatch.isNull(column, row)) {
+          ps.setNull(parameter, Types.INTEGER);
+        } else {
+          ps.setInt(parameter, (int) rowBatch.getLong(column, row));
+        }
+        break;
+      case DECIMAL:
+        if (rowBatch.isNull(column, row)) {
+          ps.setNull(parameter, Types.DECIMAL);
+        } else {
+          ps.setBigDecimal(parameter, rowBatch.getDecimal(column, row));
+        }
+        break;
+      case TIMESTAMP:
+        if (rowBatch.isNull(column, row)) {
+          ps.setNull(parameter, Types.TIMESTAMP);
+        } else {
+          ps.setTimestamp(parameter, new Timestamp(rowBatch.getLong(column, row)));
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unknown column type of " + column);
+    }
+  }
+
+  protected JdbcTemplate getJdbcTemplate() {
+    return jdbcTemplate;
+  }
+
+  protected SqlDialect getDialect() {
+    return dialect;
+  }
+
+  @Override
+  public <T> T save(T t) {
+    return entityPersister.save(t);
+  }
+
+  @Override
+  public <T, V> List<T> get(Class<T> classT, String key, V value) {
+    return entityPersister.get(classT, key, value);
+  }
+
+  @VisibleForTesting
+  void setRowsPerStatement(int rowsPerStatement) {
+    Preconditions.checkArgument(rowsPerStatement > 0, "rowsPerStatement <= 0");
+    this.rowsPerStatement = rowsPerStatement;
+  }
+}
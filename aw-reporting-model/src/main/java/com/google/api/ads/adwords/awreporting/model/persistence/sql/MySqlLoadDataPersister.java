@@ -0,0 +1,101 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatch;
+import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.common.annotations.VisibleForTesting;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * A persistence layer for MySQL loading the report rows with {@code LOAD DATA LOCAL INFILE},
+ * the bulk loader of MySQL, which is much faster than inserting the rows for the large reports.
+ *
+ * <p>Each batch of rows is streamed as tab-separated values straight from the {@link RowBatch}
+ * through the local input stream of the MySQL Connector/J statement, without temporary files.
+ * The rows replace the existing rows with the same {@code ROW_ID}, so reloading a report is
+ * idempotent. The columns are in the order of the {@link ReportTable} of the report class.
+ *
+ * <p>The server must allow {@code LOCAL} loading ({@code local_infile}).
+ */
+public class MySqlLoadDataPersister extends JdbcReportEntitiesPersister {
+
+  /**
+   * Constructor.
+   *
+   * @param dataSource the data source of the report tables, using the MySQL Connector/J driver.
+   * @param entityPersister the persister of the non-report entities.
+   */
+  public MySqlLoadDataPersister(DataSource dataSource, EntityPersister entityPersister) {
+    super(dataSource, SqlDialect.MYSQL, entityPersister);
+  }
+
+  /**
+   * Loads all the rows of the batch with a single {@code LOAD DATA} statement.
+   */
+  @Override
+  @Transactional
+  public void persistRowBatch(final RowBatch<?> rowBatch) {
+    if (rowBatch.isEmpty()) {
+      return;
+    }
+    final String sql =
+        createLoadDataSql(ReportTable.forClass(rowBatch.getSchema().getReportClass()));
+    getJdbcTemplate().execute(
+        new StatementCallback<Void>() {
+          @Override
+          public Void doInStatement(Statement statement) throws SQLException {
+            com.mysql.jdbc.Statement mysqlStatement = toMySqlStatement(statement);
+            mysqlStatement.setLocalInfileInputStream(new RowBatchTsvInputStream(rowBatch));
+            try {
+              statement.execute(sql);
+            } finally {
+              mysqlStatement.setLocalInfileInputStream(null);
+            }
+            return null;
+          }
+        });
+  }
+
+  private static com.mysql.jdbc.Statement toMySqlStatement(Statement statement)
+      throws SQLException {
+    if (statement instanceof com.mysql.jdbc.Statement) {
+      return (com.mysql.jdbc.Statement) statement;
+    }
+    if (statement.isWrapperFor(com.mysql.jdbc.Statement.class)) {
+      return statement.unwrap(com.mysql.jdbc.Statement.class);
+    }
+    throw new IllegalStateException(
+        "LOAD DATA LOCAL INFILE requires the MySQL Connector/J driver, not " + statement);
+  }
+
+  /**
+   * Returns the {@code LOAD DATA} statement of the table, with the default field and line
+   * terminators (tab and new line) and escape char (backslash).
+   */
+  @VisibleForTesting
+  static String createLoadDataSql(ReportTable<?> table) {
+    // The file name is ignored, the contents are read from the local input stream.
+    StringBuilder sql = new StringBuilder("LOAD DATA LOCAL INFILE 'rows.tsv' REPLACE INTO TABLE ");
+    // The utf8 of MySQL only has the characters of up to 3 bytes, not the supplementary ones.
+    sql.append(SqlDialect.MYSQL.quote(table.getTableName())).append(" CHARACTER SET utf8mb4");
+    SqlDialect.MYSQL.appendColumnList(sql, table.getColumnNames(), "");
+    return sql.toString();
+  }
+}
@@ -0,0 +1,430 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.common.base.Preconditions;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+/**
+ * A {@link DataSource} keeping a bounded pool of the connections of a target data source, such as
+ * a {@code DriverManagerDataSource}, so the transactions do not open a new physical connection.
+ *
+ * <p>Each thread gets the connection it used last if it is idle, so the threads persisting the
+ * reports keep reusing the same connection. The callers wait up to {@code maxWaitMillis} for a
+ * connection when all of them are in use; the waits are recorded in the {@link Statistics}.
+ *
+ * <p>The connections idle for more than {@code validationIntervalMillis} are validated with
+ * {@code SELECT 1} before being handed out again. The connections returned to the pool are rolled
+ * back if they are not in auto-commit mode.
+ */
+public class PooledDataSource extends AbstractDataSource implements DisposableBean {
+
+  private static final long DEFAULT_MAX_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  private static final long DEFAULT_VALIDATION_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final String VALIDATION_QUERY = "SELECT 1";
+
+  private final DataSource targetDataSource;
+  private final int maxSize;
+  private final Semaphore permits;
+  private final ConcurrentLinkedDeque<PooledConnection> idleConnections =
+      new ConcurrentLinkedDeque<PooledConnection>();
+  private final ThreadLocal<PooledConnection> lastConnection = new ThreadLocal<PooledConnection>();
+  private long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+  private long validationIntervalMillis = DEFAULT_VALIDATION_INTERVAL_MILLIS;
+  private volatile boolean closed;
+
+  private final AtomicLong borrowCount = new AtomicLong();
+  private final AtomicLong reuseCount = new AtomicLong();
+  private final AtomicLong createdCount = new AtomicLong();
+  private final AtomicLong waitCount = new AtomicLong();
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+  private final AtomicLong timeoutCount = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param targetDataSource the data source opening the physical connections.
+   * @param maxSize the maximum number of connections, in use or idle.
+   */
+  public PooledDataSource(DataSource targetDataSource, int maxSize) {
+    this.targetDataSource =
+        Preconditions.checkNotNull(targetDataSource, "TargetDataSource can not be null");
+    Preconditions.checkArgument(maxSize > 0, "maxSize must be > 0");
+    this.maxSize = maxSize;
+    this.permits = new Semaphore(maxSize, true);
+  }
+
+  /**
+   * Sets the maximum time to wait for a connection when all of them are in use.
+   */
+  public void setMaxWaitMillis(long maxWaitMillis) {
+    Preconditions.checkArgument(maxWaitMillis >= 0, "maxWaitMillis must be >= 0");
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  /**
+   * Sets the idle time after which a connection is validated before being handed out again.
+   */
+  public void setValidationIntervalMillis(long validationIntervalMillis) {
+    Preconditions.checkArgument(
+        validationIntervalMillis >= 0, "validationIntervalMillis must be >= 0");
+    this.validationIntervalMillis = validationIntervalMillis;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    if (closed) {
+      throw new SQLException("The data source is closed");
+    }
+    acquirePermit();
+    try {
+      PooledConnection connection = takeIdleConnection();
+      if (connection == null) {
+        connection = new PooledConnection(targetDataSource.getConnection());
+        createdCount.incrementAndGet();
+      } else {
+        reuseCount.incrementAndGet();
+      }
+      lastConnection.set(connection);
+      return connection.open();
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens a connection of the target data source with other credentials, which is not pooled.
+   */
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return targetDataSource.getConnection(username, password);
+  }
+
+  private void acquirePermit() throws SQLException {
+    borrowCount.incrementAndGet();
+    if (permits.tryAcquire()) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    boolean acquired;
+    try {
+      acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for a connection", e);
+    }
+    long waitNanos = System.nanoTime() - start;
+    waitCount.incrementAndGet();
+    totalWaitNanos.addAndGet(waitNanos);
+    long max = maxWaitNanos.get();
+    while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+      max = maxWaitNanos.get();
+    }
+    if (!acquired) {
+      timeoutCount.incrementAndGet();
+      throw new SQLException(
+          "Timed out after " + maxWaitMillis + " ms waiting for one of the " + maxSize
+              + " connections");
+    }
+  }
+
+  /**
+   * Takes the last connection of the thread if it is idle, or else the most recently used idle
+   * connection. The invalid connections are closed.
+   *
+   * @return the connection, or {@code null} if none is idle.
+   */
+  private PooledConnection takeIdleConnection() {
+    PooledConnection connection = lastConnection.get();
+    if (connection == null || !connection.take()) {
+      connection = pollIdleConnection();
+    }
+    while (connection != null && !connection.isValid(validationIntervalMillis)) {
+      connection.closePhysical();
+      connection = pollIdleConnection();
+    }
+    return connection;
+  }
+
+  private PooledConnection pollIdleConnection() {
+    PooledConnection connection;
+    while ((connection = idleConnections.pollFirst()) != null) {
+      // The connection may have been taken by its last thread meanwhile.
+      connection.queued.set(false);
+      if (connection.take()) {
+        return connection;
+      }
+    }
+    return null;
+  }
+
+  private void release(PooledConnection connection) {
+    try {
+      if (connection.reset() && !closed) {
+        connection.inUse.set(false);
+        if (connection.queued.compareAndSet(false, true)) {
+          idleConnections.offerFirst(connection);
+        }
+      } else {
+        connection.closePhysical();
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * Closes the idle connections. The connections in use are closed when they are returned.
+   */
+  @Override
+  public void destroy() {
+    closed = true;
+    PooledConnection connection;
+    while ((connection = pollIdleConnection()) != null) {
+      connection.closePhysical();
+    }
+  }
+
+  /**
+   * Returns the statistics of the pool since it was created.
+   */
+  public Statistics getStatistics() {
+    return new Statistics(
+        maxSize,
+        maxSize - permits.availablePermits(),
+        borrowCount.get(),
+        reuseCount.get(),
+        createdCount.get(),
+        waitCount.get(),
+        TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()),
+        TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+        timeoutCount.get());
+  }
+
+  /**
+   * A physical connection of the pool, handed out as a proxy which returns it to the pool when
+   * closed.
+   */
+  private final class PooledConnection {
+    private final Connection physicalConnection;
+    // Whether the connection is handed out.
+    private final AtomicBoolean inUse = new AtomicBoolean(true);
+    // Whether the connection is in the idle connections (it may also be taken meanwhile).
+    private final AtomicBoolean queued = new AtomicBoolean(false);
+    private volatile long lastUsedMillis = System.currentTimeMillis();
+
+    PooledConnection(Connection physicalConnection) {
+      this.physicalConnection = physicalConnection;
+    }
+
+    boolean take() {
+      return inUse.compareAndSet(false, true);
+    }
+
+    Connection open() {
+      return (Connection)
+          Proxy.newProxyInstance(
+              Connection.class.getClassLoader(),
+              new Class<?>[] {Connection.class},
+              new ConnectionHandler(this));
+    }
+
+    boolean isValid(long validationIntervalMillis) {
+      if (System.currentTimeMillis() - lastUsedMillis <= validationIntervalMillis) {
+        return true;
+      }
+      try (Statement statement = physicalConnection.createStatement()) {
+        statement.execute(VALIDATION_QUERY);
+        return true;
+      } catch (SQLException e) {
+        return false;
+      }
+    }
+
+    /**
+     * Resets the connection to be handed out again.
+     *
+     * @return whether the connection can be reused.
+     */
+    boolean reset() {
+      lastUsedMillis = System.currentTimeMillis();
+      try {
+        if (physicalConnection.isClosed()) {
+          return false;
+        }
+        if (!physicalConnection.getAutoCommit()) {
+          physicalConnection.rollback();
+          physicalConnection.setAutoCommit(true);
+        }
+        return true;
+      } catch (SQLException e) {
+        return false;
+      }
+    }
+
+    void closePhysical() {
+      try {
+        physicalConnection.close();
+      } catch (SQLException e) {
+        // The connection is discarded anyway.
+      }
+    }
+  }
+
+  /**
+   * The handler of a connection proxy, valid until it is closed.
+   */
+  private final class ConnectionHandler implements InvocationHandler {
+    private final PooledConnection connection;
+    private boolean closed;
+
+    ConnectionHandler(PooledConnection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+          if (!closed) {
+            closed = true;
+            release(connection);
+          }
+          return null;
+        case "isClosed":
+          return closed;
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "Pooled connection of " + connection.physicalConnection;
+        default:
+          if (closed) {
+            throw new SQLException("The connection is closed");
+          }
+          try {
+            return method.invoke(connection.physicalConnection, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+      }
+    }
+  }
+
+  /**
+   * The statistics of the pool, to see whether the threads wait for the database.
+   */
+  public static final class Statistics {
+    private final int maxSize;
+    private final int activeConnections;
+    private final long borrowCount;
+    private final long reuseCount;
+    private final long createdCount;
+    private final long waitCount;
+    private final long totalWaitMillis;
+    private final long maxWaitMillis;
+    private final long timeoutCount;
+
+    Statistics(
+        int maxSize,
+        int activeConnections,
+        long borrowCount,
+        long reuseCount,
+        long createdCount,
+        long waitCount,
+        long totalWaitMillis,
+        long maxWaitMillis,
+        long timeoutCount) {
+      this.maxSize = maxSize;
+      this.activeConnections = activeConnections;
+      this.borrowCount = borrowCount;
+      this.reuseCount = reuseCount;
+      this.createdCount = createdCount;
+      this.waitCount = waitCount;
+      this.totalWaitMillis = totalWaitMillis;
+      this.maxWaitMillis = maxWaitMillis;
+      this.timeoutCount = timeoutCount;
+    }
+
+    public int getActiveConnections() {
+      return activeConnections;
+    }
+
+    public long getBorrowCount() {
+      return borrowCount;
+    }
+
+    public long getReuseCount() {
+      return reuseCount;
+    }
+
+    public long getCreatedCount() {
+      return createdCount;
+    }
+
+    /**
+     * Returns the number of times a thread waited for a connection because all were in use.
+     */
+    public long getWaitCount() {
+      return waitCount;
+    }
+
+    public long getTotalWaitMillis() {
+      return totalWaitMillis;
+    }
+
+    public long getMaxWaitMillis() {
+      return maxWaitMillis;
+    }
+
+    public long getTimeoutCount() {
+      return timeoutCount;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d of %d connections in use, %d borrowed (%d reused, %d created), %d waits "
+              + "(%d ms in total, %d ms at most), %d timeouts",
+          activeConnections,
+          maxSize,
+          borrowCount,
+          reuseCount,
+          createdCount,
+          waitCount,
+          totalWaitMillis,
+          maxWaitMillis,
+          timeoutCount);
+    }
+  }
+}
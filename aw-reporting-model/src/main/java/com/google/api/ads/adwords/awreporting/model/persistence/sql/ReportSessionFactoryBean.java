@@ -0,0 +1,128 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.csv.CsvReportEntitiesMapping;
+import com.google.api.ads.adwords.awreporting.model.entities.AuthToken;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionReportType;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import javax.sql.DataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Environment;
+import org.hibernate.mapping.PersistentClass;
+import org.springframework.orm.hibernate4.LocalSessionFactoryBean;
+import org.springframework.orm.hibernate4.LocalSessionFactoryBuilder;
+
+/**
+ * The Hibernate session factory of the report tables, which only maps the entities of the
+ * configured report types, and updates their tables with a {@link SchemaMigrator} instead of
+ * {@code hibernate.hbm2ddl.auto}.
+ *
+ * <p>If no report type is configured, all the entities of the entities package are mapped.
+ */
+public class ReportSessionFactoryBean extends LocalSessionFactoryBean {
+
+  private static final int DEFAULT_SCHEMA_THREADS = 4;
+
+  private DataSource dataSource;
+  private CsvReportEntitiesMapping csvReportEntitiesMapping;
+  private Set<String> reportTypes = ImmutableSet.of();
+  private int schemaThreads = DEFAULT_SCHEMA_THREADS;
+
+  @Override
+  public void setDataSource(DataSource dataSource) {
+    super.setDataSource(dataSource);
+    this.dataSource = dataSource;
+  }
+
+  public void setCsvReportEntitiesMapping(CsvReportEntitiesMapping csvReportEntitiesMapping) {
+    this.csvReportEntitiesMapping = csvReportEntitiesMapping;
+  }
+
+  /**
+   * Sets the names of the report types whose entities are mapped, separated by ','.
+   */
+  public void setReportTypes(String reportTypes) {
+    this.reportTypes =
+        ImmutableSet.copyOf(Splitter.on(',').omitEmptyStrings().trimResults().split(reportTypes));
+  }
+
+  /**
+   * Sets the maximum number of tables created or updated at the same time.
+   */
+  public void setSchemaThreads(int schemaThreads) {
+    Preconditions.checkArgument(schemaThreads > 0, "SchemaThreads must be > 0");
+    this.schemaThreads = schemaThreads;
+  }
+
+  @Override
+  public void afterPropertiesSet() throws IOException {
+    Preconditions.checkNotNull(dataSource, "DataSource can not be null");
+    if (reportTypes.isEmpty()) {
+      setPackagesToScan(AuthToken.class.getPackage().getName());
+    } else {
+      setAnnotatedClasses(getEntityClasses());
+    }
+    super.afterPropertiesSet();
+  }
+
+  /**
+   * Returns the entity classes of the report types, and the non-report entities.
+   */
+  private Class<?>[] getEntityClasses() {
+    Preconditions.checkNotNull(
+        csvReportEntitiesMapping, "CsvReportEntitiesMapping can not be null");
+    Set<Class<?>> entityClasses = Sets.newLinkedHashSet();
+    entityClasses.add(AuthToken.class);
+    for (String reportType : reportTypes) {
+      Class<? extends Report> reportClass;
+      try {
+        reportClass =
+            csvReportEntitiesMapping.getReportBeanClass(
+                ReportDefinitionReportType.valueOf(reportType));
+      } catch (IllegalArgumentException e) {
+        reportClass = csvReportEntitiesMapping.getExperimentalReportBeanClass(reportType);
+      }
+      // The unknown report types are not processed either.
+      if (reportClass != null) {
+        entityClasses.add(reportClass);
+      }
+    }
+    return entityClasses.toArray(new Class<?>[entityClasses.size()]);
+  }
+
+  @Override
+  protected SessionFactory buildSessionFactory(LocalSessionFactoryBuilder sfb) {
+    sfb.buildMappings();
+    List<Class<?>> entityClasses = Lists.newArrayList();
+    Iterator<PersistentClass> classMappings = sfb.getClassMappings();
+    while (classMappings.hasNext()) {
+      entityClasses.add(classMappings.next().getMappedClass());
+    }
+
+    new SchemaMigrator(dataSource, sfb.getProperties(), schemaThreads).migrate(entityClasses);
+    sfb.getProperties().remove(Environment.HBM2DDL_AUTO);
+    return super.buildSessionFactory(sfb);
+  }
+}
@@ -0,0 +1,125 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatchColumn;
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatchSchema;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * The SQL table of a report class, as mapped by its JPA annotations: the table name comes from
+ * {@link Table} and the column names from {@link Column} (or the field name without it).
+ *
+ * <p>The columns are in the same order as the columns of the {@link RowBatchSchema} of the class,
+ * so the values of a {@code RowBatch} can be bound without any lookup. The tables are created once
+ * per report class and shared by all the threads.
+ *
+ * @param <T> the report class.
+ */
+public final class ReportTable<T extends Report> {
+
+  private static final ConcurrentMap<Class<?>, ReportTable<?>> tablesByClass =
+      new ConcurrentHashMap<Class<?>, ReportTable<?>>();
+
+  private final RowBatchSchema<T> schema;
+  private final String tableName;
+  private final ImmutableList<String> columnNames;
+  private final int idColumn;
+
+  private ReportTable(Class<T> reportClass) {
+    Table table = reportClass.getAnnotation(Table.class);
+    Preconditions.checkArgument(
+        table != null && !table.name().isEmpty(), "No @Table name for %s", reportClass);
+    this.tableName = table.name();
+    this.schema = RowBatchSchema.forClass(reportClass);
+
+    ImmutableList.Builder<String> columnNamesBuilder = ImmutableList.builder();
+    int idColumnIndex = -1;
+    for (int i = 0; i < schema.getColumnCount(); i++) {
+      Field field = getField(reportClass, schema.getColumn(i));
+      Column column = field.getAnnotation(Column.class);
+      columnNamesBuilder.add(
+          column != null && !column.name().isEmpty() ? column.name() : field.getName());
+      if (field.isAnnotationPresent(Id.class)) {
+        idColumnIndex = i;
+      }
+    }
+    Preconditions.checkArgument(idColumnIndex >= 0, "No @Id field for %s", reportClass);
+    this.columnNames = columnNamesBuilder.build();
+    this.idColumn = idColumnIndex;
+  }
+
+  /**
+   * Returns the table of the report class, creating it on first use.
+   *
+   * @throws IllegalArgumentException if the class is not mapped to a table with an ID.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Report> ReportTable<T> forClass(Class<T> reportClass) {
+    Preconditions.checkNotNull(reportClass, "reportClass cannot be null");
+    ReportTable<?> table = tablesByClass.get(reportClass);
+    if (table == null) {
+      table = new ReportTable<T>(reportClass);
+      tablesByClass.putIfAbsent(reportClass, table);
+    }
+    return (ReportTable<T>) table;
+  }
+
+  private static Field getField(Class<?> reportClass, RowBatchColumn column) {
+    for (Class<?> c = reportClass; c != Object.class; c = c.getSuperclass()) {
+      try {
+        return c.getDeclaredField(column.getFieldName());
+      } catch (NoSuchFieldException e) {
+        // Declared by a superclass.
+      }
+    }
+    throw new IllegalStateException("No field for the column " + column);
+  }
+
+  public RowBatchSchema<T> getSchema() {
+    return schema;
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  /**
+   * Returns the names of the SQL columns, in the order of the columns of the schema.
+   */
+  public List<String> getColumnNames() {
+    return columnNames;
+  }
+
+  public String getColumnName(int column) {
+    return columnNames.get(column);
+  }
+
+  /**
+   * Returns the index of the primary key column ({@code ROW_ID}).
+   */
+  public int getIdColumn() {
+    return idColumn;
+  }
+}
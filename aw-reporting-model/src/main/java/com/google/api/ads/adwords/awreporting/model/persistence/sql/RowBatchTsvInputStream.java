@@ -0,0 +1,135 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatch;
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatchSchema;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * Streams the rows of a {@link RowBatch} as tab-separated values in UTF-8, in the format of the
+ * MySQL {@code LOAD DATA} defaults: {@code \N} for {@code null}, and the tabs, new lines and
+ * backslashes escaped with a backslash.
+ *
+ * <p>The rows are encoded one at a time as they are read, so the whole batch is never copied.
+ */
+final class RowBatchTsvInputStream extends InputStream {
+  private static final byte[] EMPTY = new byte[0];
+
+  private final RowBatch<?> rowBatch;
+  private final StringBuilder line = new StringBuilder();
+  private int nextRow;
+  private byte[] buffer = EMPTY;
+  private int position;
+
+  RowBatchTsvInputStream(RowBatch<?> rowBatch) {
+    this.rowBatch = rowBatch;
+  }
+
+  @Override
+  public int read() {
+    if (!fillBuffer()) {
+      return -1;
+    }
+    return buffer[position++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if (len == 0) {
+      return 0;
+    }
+    if (!fillBuffer()) {
+      return -1;
+    }
+    int count = Math.min(len, buffer.length - position);
+    System.arraycopy(buffer, position, b, off, count);
+    position += count;
+    return count;
+  }
+
+  /**
+   * Encodes the next row if the current one has been read, and returns false at the end.
+   */
+  private boolean fillBuffer() {
+    while (position == buffer.length) {
+      if (nextRow == rowBatch.size()) {
+        return false;
+      }
+      line.setLength(0);
+      appendRow(nextRow++);
+      buffer = line.toString().getBytes(StandardCharsets.UTF_8);
+      position = 0;
+    }
+    return true;
+  }
+
+  private void appendRow(int row) {
+    RowBatchSchema<?> schema = rowBatch.getSchema();
+    for (int column = 0; column < schema.getColumnCount(); column++) {
+      if (column > 0) {
+        line.append('\t');
+      }
+      if (rowBatch.isNull(column, row)) {
+        line.append("\\N");
+        continue;
+      }
+      switch (schema.getColumn(column).getType()) {
+        case STRING:
+          appendEscaped(rowBatch.getString(column, row));
+          break;
+        case DECIMAL:
+          line.append(rowBatch.getDecimal(column, row).toPlainString());
+          break;
+        case TIMESTAMP:
+          // Same as the JDBC driver, which sends the timestamps in the time zone of the JVM.
+          line.append(new Timestamp(rowBatch.getLong(column, row)).toString());
+          break;
+        default:
+          line.append(rowBatch.getLong(column, row));
+          break;
+      }
+    }
+    line.append('\n');
+  }
+
+  private void appendEscaped(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '\\':
+          line.append("\\\\");
+          break;
+        case '\t':
+          line.append("\\t");
+          break;
+        case '\n':
+          line.append("\\n");
+          break;
+        case '\r':
+          line.append("\\r");
+          break;
+        case '\0':
+          line.append("\\0");
+          break;
+        default:
+          line.append(c);
+          break;
+      }
+    }
+  }
+}
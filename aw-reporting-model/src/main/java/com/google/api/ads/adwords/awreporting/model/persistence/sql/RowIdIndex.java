@@ -0,0 +1,120 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+/**
+ * An in-memory index of the row keys of a report table, which tells the rows that are certainly
+ * not in the table from the rows that may be, so the new rows can be inserted without looking them
+ * up first.
+ *
+ * <p>The keys in the table are loaded once into a Bloom filter, which takes about 10 bits per row
+ * for 1% of false positives. The keys written afterwards are added to a set of their 64-bit hashes.
+ * The keys are compared as in the case-insensitive collations of the {@code ROW_ID} columns.
+ *
+ * <p>The index only knows about the rows written through it: a row written by another process
+ * since the index was loaded may be taken as new. The index is thread-safe.
+ */
+public final class RowIdIndex {
+
+  private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+  private static final int LOAD_FETCH_SIZE = 10000;
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+  private static final CharMatcher PADDING = CharMatcher.is(' ');
+
+  private final BloomFilter<Long> loadedKeys;
+  private final LongHashSet addedKeys = new LongHashSet();
+
+  /**
+   * @param expectedKeys the number of keys to be loaded.
+   */
+  @VisibleForTesting
+  RowIdIndex(long expectedKeys) {
+    loadedKeys =
+        BloomFilter.create(
+            Funnels.longFunnel(), Math.max(expectedKeys, 1), FALSE_POSITIVE_PROBABILITY);
+  }
+
+  /**
+   * Loads the keys of the rows of the table.
+   *
+   * @param connection the connection to the database of the table.
+   * @param table the report table.
+   */
+  public static RowIdIndex load(Connection connection, ReportTable<?> table) throws SQLException {
+    String tableName = table.getTableName();
+    long rows;
+    try (Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + tableName)) {
+      resultSet.next();
+      rows = resultSet.getLong(1);
+    }
+
+    RowIdIndex index = new RowIdIndex(rows);
+    try (Statement statement = connection.createStatement()) {
+      // MySQL only streams the rows with this fetch size, instead of reading them all at once.
+      boolean mysql = "MySQL".equals(connection.getMetaData().getDatabaseProductName());
+      statement.setFetchSize(mysql ? Integer.MIN_VALUE : LOAD_FETCH_SIZE);
+      try (ResultSet resultSet =
+          statement.executeQuery(
+              "SELECT " + table.getColumnName(table.getIdColumn()) + " FROM " + tableName)) {
+        while (resultSet.next()) {
+          index.addLoadedKey(resultSet.getString(1));
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Adds a key of the table while the index is loaded, before it is shared.
+   */
+  @VisibleForTesting
+  void addLoadedKey(String rowId) {
+    loadedKeys.put(hash(rowId));
+  }
+
+  /**
+   * Returns whether a row with the key may be in the table, or else is certainly not.
+   */
+  public boolean mightContain(String rowId) {
+    long hash = hash(rowId);
+    return loadedKeys.mightContain(hash) || addedKeys.contains(hash);
+  }
+
+  /**
+   * Records the key of a row written to the table.
+   */
+  public void add(String rowId) {
+    addedKeys.add(hash(rowId));
+  }
+
+  private static long hash(String rowId) {
+    String key = PADDING.trimTrailingFrom(rowId).toLowerCase(Locale.ROOT);
+    return HASH_FUNCTION.hashString(key, StandardCharsets.UTF_8).asLong();
+  }
+}
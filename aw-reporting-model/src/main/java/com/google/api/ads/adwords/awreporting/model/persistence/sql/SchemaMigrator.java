@@ -0,0 +1,255 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.sql.DataSource;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+/**
+ * Creates and updates the tables of the entities, like {@code hibernate.hbm2ddl.auto=update}, but
+ * only when their mapping changed since the last run.
+ *
+ * <p>The fingerprint of the schema of each entity (the hash of the DDL Hibernate generates for it)
+ * is stored in the {@value #SCHEMA_VERSION_TABLE} table. The entities whose fingerprint is
+ * unchanged are skipped without reading the metadata of the database, and the others are updated
+ * in parallel, each one by Hibernate's {@link SchemaUpdate}.
+ *
+ * <p>The stored fingerprints are not checked against the actual tables: a table dropped or altered
+ * by hand is only updated again once its row is deleted from the {@value #SCHEMA_VERSION_TABLE}
+ * table.
+ */
+public class SchemaMigrator {
+
+  static final String SCHEMA_VERSION_TABLE = "AW_SchemaVersion";
+
+  private final DataSource dataSource;
+  private final Properties hibernateProperties;
+  private final Dialect dialect;
+  private final int threads;
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Constructor.
+   *
+   * @param dataSource the data source of the tables.
+   * @param hibernateProperties the Hibernate properties, which must define the dialect.
+   * @param threads the maximum number of tables updated at the same time.
+   */
+  public SchemaMigrator(DataSource dataSource, Properties hibernateProperties, int threads) {
+    this.dataSource = Preconditions.checkNotNull(dataSource, "DataSource can not be null");
+    this.hibernateProperties = new Properties();
+    this.hibernateProperties.putAll(hibernateProperties);
+    this.hibernateProperties.remove(Environment.HBM2DDL_AUTO);
+    this.dialect = Dialect.getDialect(this.hibernateProperties);
+    Preconditions.checkArgument(threads > 0, "threads must be > 0");
+    this.threads = threads;
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+  }
+
+  /**
+   * Creates or updates the tables of the entities whose schema changed.
+   *
+   * @param entityClasses the annotated entity classes.
+   * @return the number of entities whose tables were updated.
+   * @throws IllegalStateException if the tables of any entity could not be updated, in which case
+   *     its fingerprint is not stored.
+   */
+  public int migrate(Collection<Class<?>> entityClasses) {
+    createSchemaVersionTableIfMissing();
+    Map<String, String> storedFingerprints = readFingerprints();
+
+    final Map<Class<?>, String> changedEntities = Maps.newLinkedHashMap();
+    for (Class<?> entityClass : entityClasses) {
+      String fingerprint = getFingerprint(entityClass);
+      if (!fingerprint.equals(storedFingerprints.get(entityClass.getName()))) {
+        changedEntities.put(entityClass, fingerprint);
+      }
+    }
+    if (changedEntities.isEmpty()) {
+      return 0;
+    }
+
+    ExecutorService executorService =
+        Executors.newFixedThreadPool(
+            Math.min(threads, changedEntities.size()),
+            new ThreadFactoryBuilder().setNameFormat("schema-migrator-%d").setDaemon(true).build());
+    try {
+      List<Future<?>> updates = Lists.newArrayList();
+      for (final Map.Entry<Class<?>, String> entity : changedEntities.entrySet()) {
+        updates.add(
+            executorService.submit(
+                new Callable<Void>() {
+                  @Override
+                  public Void call() {
+                    updateSchema(entity.getKey());
+                    storeFingerprint(entity.getKey().getName(), entity.getValue());
+                    return null;
+                  }
+                }));
+      }
+      awaitUpdates(updates);
+    } finally {
+      executorService.shutdown();
+    }
+    return changedEntities.size();
+  }
+
+  private static void awaitUpdates(List<Future<?>> updates) {
+    IllegalStateException failure = null;
+    for (Future<?> update : updates) {
+      try {
+        update.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while updating the schema", e);
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = new IllegalStateException("Unable to update the schema", e.getCause());
+        } else {
+          failure.addSuppressed(e.getCause());
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void updateSchema(Class<?> entityClass) {
+    Configuration configuration = createConfiguration(entityClass);
+    Properties connectionProperties = new Properties();
+    connectionProperties.putAll(configuration.getProperties());
+    connectionProperties.put(Environment.DATASOURCE, dataSource);
+    SchemaUpdate schemaUpdate = new SchemaUpdate(configuration, connectionProperties);
+    schemaUpdate.execute(false, true);
+    if (!schemaUpdate.getExceptions().isEmpty()) {
+      throw new IllegalStateException(
+          "Unable to update the table of " + entityClass.getSimpleName(),
+          (Throwable) schemaUpdate.getExceptions().get(0));
+    }
+  }
+
+  /**
+   * Returns the fingerprint of the schema of the entity: the hash of its creation DDL.
+   */
+  String getFingerprint(Class<?> entityClass) {
+    String[] creationScript =
+        createConfiguration(entityClass).generateSchemaCreationScript(dialect);
+    return Hashing.sha256()
+        .hashString(Joiner.on(";\n").join(creationScript), StandardCharsets.UTF_8)
+        .toString();
+  }
+
+  private Configuration createConfiguration(Class<?> entityClass) {
+    Configuration configuration = new Configuration();
+    // The configurations of the entities are used by several threads.
+    Properties properties = new Properties();
+    properties.putAll(hibernateProperties);
+    configuration.setProperties(properties);
+    configuration.addAnnotatedClass(entityClass);
+    configuration.buildMappings();
+    return configuration;
+  }
+
+  private void createSchemaVersionTableIfMissing() {
+    boolean exists = jdbcTemplate.execute(
+        new ConnectionCallback<Boolean>() {
+          @Override
+          public Boolean doInConnection(Connection connection)
+              throws SQLException, DataAccessException {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String tableName = metaData.storesUpperCaseIdentifiers()
+                ? SCHEMA_VERSION_TABLE.toUpperCase()
+                : SCHEMA_VERSION_TABLE;
+            try (ResultSet tables = metaData.getTables(null, null, tableName, null)) {
+              return tables.next();
+            }
+          }
+        });
+    if (!exists) {
+      jdbcTemplate.execute(
+          "CREATE TABLE " + SCHEMA_VERSION_TABLE + " ("
+              + "ENTITY_NAME VARCHAR(255) NOT NULL PRIMARY KEY, "
+              + "FINGERPRINT VARCHAR(64) NOT NULL)");
+    }
+  }
+
+  private Map<String, String> readFingerprints() {
+    final Map<String, String> fingerprints = Maps.newHashMap();
+    jdbcTemplate.query(
+        "SELECT ENTITY_NAME, FINGERPRINT FROM " + SCHEMA_VERSION_TABLE,
+        new RowCallbackHandler() {
+          @Override
+          public void processRow(ResultSet rs) throws SQLException {
+            fingerprints.put(rs.getString(1), rs.getString(2));
+          }
+        });
+    return fingerprints;
+  }
+
+  /**
+   * Updates the fingerprint of the entity, or inserts it if missing. Another run storing the same
+   * fingerprint at the same time may insert it first, in which case it is updated.
+   */
+  @VisibleForTesting
+  void storeFingerprint(String entityName, String fingerprint) {
+    if (updateFingerprint(entityName, fingerprint) == 0) {
+      try {
+        jdbcTemplate.update(
+            "INSERT INTO " + SCHEMA_VERSION_TABLE + " (ENTITY_NAME, FINGERPRINT) VALUES (?, ?)",
+            entityName,
+            fingerprint);
+      } catch (DuplicateKeyException e) {
+        updateFingerprint(entityName, fingerprint);
+      }
+    }
+  }
+
+  private int updateFingerprint(String entityName, String fingerprint) {
+    return jdbcTemplate.update(
+        "UPDATE " + SCHEMA_VERSION_TABLE + " SET FINGERPRINT = ? WHERE ENTITY_NAME = ?",
+        fingerprint,
+        entityName);
+  }
+}
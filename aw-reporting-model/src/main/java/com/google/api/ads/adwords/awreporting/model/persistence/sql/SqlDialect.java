@@ -0,0 +1,368 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.util.List;
+
+/**
+ * The SQL databases supported by the JDBC persisters, with their syntax to insert or update
+ * several rows in a single statement, and to load a table through a staging table.
+ */
+public enum SqlDialect {
+  /**
+   * MySQL: {@code INSERT ... ON DUPLICATE KEY UPDATE}.
+   */
+  MYSQL(65535, Integer.MAX_VALUE) {
+    @Override
+    public String quote(String identifier) {
+      return '`' + identifier + '`';
+    }
+
+    @Override
+    String createUpsert(ReportTable<?> table, String tableName, int rows) {
+      StringBuilder sql = new StringBuilder("INSERT INTO ").append(quote(tableName));
+      appendColumnList(sql, table.getColumnNames(), "");
+      sql.append(" VALUES ");
+      appendValueRows(sql, table.getColumnNames().size(), rows);
+      return appendUpdateClause(sql, table).toString();
+    }
+
+    @Override
+    public String createMergeSql(ReportTable<?> table, String stagingTableName) {
+      StringBuilder sql = new StringBuilder("INSERT INTO ").append(quote(table.getTableName()));
+      appendColumnList(sql, table.getColumnNames(), "");
+      sql.append(" SELECT ");
+      appendColumns(sql, table.getColumnNames(), "");
+      sql.append(" FROM ").append(quote(stagingTableName));
+      return appendUpdateClause(sql, table).toString();
+    }
+
+    @Override
+    public List<String> createSwapSql(
+        ReportTable<?> table,
+        String stagingTableName,
+        String oldTableName,
+        List<TableIndex> indexes) {
+      // A single RENAME TABLE is atomic.
+      return ImmutableList.<String>builder()
+          .add(createAddPrimaryKeySql(table, stagingTableName))
+          .addAll(createIndexesSql(stagingTableName, indexes))
+          .add(
+              "RENAME TABLE " + quote(table.getTableName()) + " TO " + quote(oldTableName) + ", "
+                  + quote(stagingTableName) + " TO " + quote(table.getTableName()))
+          .add(createDropTableSql(oldTableName))
+          .build();
+    }
+
+    private StringBuilder appendUpdateClause(StringBuilder sql, ReportTable<?> table) {
+      sql.append(" ON DUPLICATE KEY UPDATE ");
+      String separator = "";
+      for (int i = 0; i < table.getColumnNames().size(); i++) {
+        if (i != table.getIdColumn()) {
+          String column = quote(table.getColumnName(i));
+          sql.append(separator).append(column).append("=VALUES(").append(column).append(')');
+          separator = ",";
+        }
+      }
+      return sql;
+    }
+  },
+
+  /**
+   * Microsoft SQL Server: {@code MERGE} from a table value constructor, which is limited to 2100
+   * parameters and 1000 rows.
+   */
+  MSSQL(2100, 1000) {
+    @Override
+    public String quote(String identifier) {
+      return '[' + identifier + ']';
+    }
+
+    @Override
+    String createUpsert(ReportTable<?> table, String tableName, int rows) {
+      StringBuilder source = new StringBuilder("(VALUES ");
+      appendValueRows(source, table.getColumnNames().size(), rows);
+      source.append(") AS source");
+      appendColumnList(source, table.getColumnNames(), "");
+      return createMerge(table, tableName, source);
+    }
+
+    @Override
+    public String createCopyTableSql(String tableName, String newTableName) {
+      return "SELECT * INTO " + quote(newTableName) + " FROM " + quote(tableName) + " WHERE 1=0";
+    }
+
+    @Override
+    public String createMergeSql(ReportTable<?> table, String stagingTableName) {
+      return createMerge(
+          table, table.getTableName(), new StringBuilder(quote(stagingTableName) + " AS source"));
+    }
+
+    @Override
+    public List<String> createSwapSql(
+        ReportTable<?> table,
+        String stagingTableName,
+        String oldTableName,
+        List<TableIndex> indexes) {
+      // The renames are atomic in the transaction of the statements.
+      return ImmutableList.<String>builder()
+          .add(createAddPrimaryKeySql(table, stagingTableName))
+          .addAll(createIndexesSql(stagingTableName, indexes))
+          .add("EXEC sp_rename '" + table.getTableName() + "', '" + oldTableName + "'")
+          .add("EXEC sp_rename '" + stagingTableName + "', '" + table.getTableName() + "'")
+          .add(createDropTableSql(oldTableName))
+          .build();
+    }
+
+    private String createMerge(ReportTable<?> table, String tableName, CharSequence source) {
+      List<String> columns = table.getColumnNames();
+      String id = quote(table.getColumnName(table.getIdColumn()));
+      StringBuilder sql = new StringBuilder("MERGE INTO ").append(quote(tableName));
+      sql.append(" AS target USING ").append(source);
+      sql.append(" ON target.").append(id).append("=source.").append(id);
+      sql.append(" WHEN MATCHED THEN UPDATE SET ");
+      String separator = "";
+      for (int i = 0; i < columns.size(); i++) {
+        if (i != table.getIdColumn()) {
+          String column = quote(columns.get(i));
+          sql.append(separator).append(column).append("=source.").append(column);
+          separator = ",";
+        }
+      }
+      sql.append(" WHEN NOT MATCHED THEN INSERT");
+      appendColumnList(sql, columns, "");
+      sql.append(" VALUES");
+      appendColumnList(sql, columns, "source.");
+      return sql.append(';').toString();
+    }
+  },
+
+  /**
+   * H2, used by the tests: {@code MERGE ... KEY}. The identifiers are not quoted, as the tables
+   * created by Hibernate are not.
+   */
+  H2(Integer.MAX_VALUE, Integer.MAX_VALUE) {
+    @Override
+    public String quote(String identifier) {
+      return identifier;
+    }
+
+    @Override
+    String createUpsert(ReportTable<?> table, String tableName, int rows) {
+      StringBuilder sql = new StringBuilder("MERGE INTO ").append(quote(tableName));
+      appendColumnList(sql, table.getColumnNames(), "");
+      sql.append(" KEY (").append(quote(table.getColumnName(table.getIdColumn()))).append(')');
+      sql.append(" VALUES ");
+      appendValueRows(sql, table.getColumnNames().size(), rows);
+      return sql.toString();
+    }
+
+    @Override
+    public String createMergeSql(ReportTable<?> table, String stagingTableName) {
+      StringBuilder sql = new StringBuilder("MERGE INTO ").append(quote(table.getTableName()));
+      appendColumnList(sql, table.getColumnNames(), "");
+      sql.append(" KEY (").append(quote(table.getColumnName(table.getIdColumn()))).append(')');
+      sql.append(" SELECT ");
+      appendColumns(sql, table.getColumnNames(), "");
+      return sql.append(" FROM ").append(quote(stagingTableName)).toString();
+    }
+
+    @Override
+    public List<String> createSwapSql(
+        ReportTable<?> table,
+        String stagingTableName,
+        String oldTableName,
+        List<TableIndex> indexes) {
+      // The copied columns are all nullable. The index names are unique in the whole schema, so
+      // the indexes are only created once the old table and its indexes are dropped.
+      return ImmutableList.<String>builder()
+          .add(
+              "ALTER TABLE " + quote(stagingTableName) + " ALTER COLUMN "
+                  + quote(table.getColumnName(table.getIdColumn())) + " SET NOT NULL")
+          .add(createAddPrimaryKeySql(table, stagingTableName))
+          .add("ALTER TABLE " + quote(table.getTableName()) + " RENAME TO " + quote(oldTableName))
+          .add(
+              "ALTER TABLE " + quote(stagingTableName) + " RENAME TO "
+                  + quote(table.getTableName()))
+          .add(createDropTableSql(oldTableName))
+          .addAll(createIndexesSql(table.getTableName(), indexes))
+          .build();
+    }
+  };
+
+  private final int maxParameters;
+  private final int maxRows;
+
+  private SqlDialect(int maxParameters, int maxRows) {
+    this.maxParameters = maxParameters;
+    this.maxRows = maxRows;
+  }
+
+  /**
+   * Quotes a table or column name.
+   */
+  public abstract String quote(String identifier);
+
+  abstract String createUpsert(ReportTable<?> table, String tableName, int rows);
+
+  /**
+   * Returns the statement merging all the rows of the staging table into the report table: the
+   * rows replace the rows with the same primary key, and the other rows are inserted.
+   */
+  public abstract String createMergeSql(ReportTable<?> table, String stagingTableName);
+
+  /**
+   * Returns the statements replacing the report table by the staging table: the staging table
+   * gets the primary key, the given secondary indexes of the report table and the name of the
+   * report table, and the old table is dropped.
+   */
+  public abstract List<String> createSwapSql(
+      ReportTable<?> table,
+      String stagingTableName,
+      String oldTableName,
+      List<TableIndex> indexes);
+
+  /**
+   * Returns the statement inserting the given number of rows in the table, or updating the
+   * existing rows with the same primary key. The parameters are the values of the columns of each
+   * row, in the order of {@link ReportTable#getColumnNames()}.
+   *
+   * @throws IllegalArgumentException if the rows do not fit in a single statement.
+   */
+  public String createUpsertSql(ReportTable<?> table, int rows) {
+    checkRows(table, rows);
+    return createUpsert(table, table.getTableName(), rows);
+  }
+
+  /**
+   * Returns the statement inserting the given number of rows in a table with the columns of the
+   * report table, such as its staging table. The parameters are the same as for
+   * {@link #createUpsertSql(ReportTable, int)}.
+   *
+   * @throws IllegalArgumentException if the rows do not fit in a single statement.
+   */
+  public String createInsertSql(ReportTable<?> table, String tableName, int rows) {
+    checkRows(table, rows);
+    StringBuilder sql = new StringBuilder("INSERT INTO ").append(quote(tableName));
+    appendColumnList(sql, table.getColumnNames(), "");
+    sql.append(" VALUES ");
+    appendValueRows(sql, table.getColumnNames().size(), rows);
+    return sql.toString();
+  }
+
+  /**
+   * Returns the statement inserting all the rows of the staging table into the report table, which
+   * must not have rows with the same primary keys.
+   */
+  public String createInsertFromSql(ReportTable<?> table, String stagingTableName) {
+    StringBuilder sql = new StringBuilder("INSERT INTO ").append(quote(table.getTableName()));
+    appendColumnList(sql, table.getColumnNames(), "");
+    sql.append(" SELECT ");
+    appendColumns(sql, table.getColumnNames(), "");
+    return sql.append(" FROM ").append(quote(stagingTableName)).toString();
+  }
+
+  /**
+   * Returns the statement creating an empty table with the columns of the given table, but
+   * without its primary key and indexes.
+   */
+  public String createCopyTableSql(String tableName, String newTableName) {
+    return "CREATE TABLE " + quote(newTableName) + " AS SELECT * FROM " + quote(tableName)
+        + " WHERE 1=0";
+  }
+
+  public String createAddPrimaryKeySql(ReportTable<?> table, String tableName) {
+    return "ALTER TABLE " + quote(tableName) + " ADD PRIMARY KEY ("
+        + quote(table.getColumnName(table.getIdColumn())) + ")";
+  }
+
+  /**
+   * Returns the statement creating the index on the given columns of the table.
+   */
+  public String createIndexSql(
+      String tableName, String indexName, boolean unique, List<String> columnNames) {
+    StringBuilder sql = new StringBuilder(unique ? "CREATE UNIQUE INDEX " : "CREATE INDEX ");
+    sql.append(quote(indexName)).append(" ON ").append(quote(tableName));
+    appendColumnList(sql, columnNames, "");
+    return sql.toString();
+  }
+
+  /**
+   * Returns the statements creating the indexes on the table.
+   */
+  List<String> createIndexesSql(String tableName, List<TableIndex> indexes) {
+    List<String> statements = Lists.newArrayList();
+    for (TableIndex index : indexes) {
+      statements.add(
+          createIndexSql(tableName, index.getName(), index.isUnique(), index.getColumnNames()));
+    }
+    return statements;
+  }
+
+  public String createDropTableSql(String tableName) {
+    return "DROP TABLE " + quote(tableName);
+  }
+
+  /**
+   * Returns the maximum number of rows of a single statement, for the given number of columns.
+   */
+  public int getMaxRowsPerStatement(int columns) {
+    return Math.max(1, Math.min(maxRows, maxParameters / columns));
+  }
+
+  private void checkRows(ReportTable<?> table, int rows) {
+    Preconditions.checkArgument(
+        rows > 0 && rows <= getMaxRowsPerStatement(table.getColumnNames().size()),
+        "Invalid number of rows per statement: %s",
+        rows);
+  }
+
+  /**
+   * Appends the quoted column names between parentheses, each one after the given prefix.
+   */
+  void appendColumnList(StringBuilder sql, List<String> columns, String prefix) {
+    sql.append(" (");
+    appendColumns(sql, columns, prefix);
+    sql.append(')');
+  }
+
+  /**
+   * Appends the quoted column names separated by commas, each one after the given prefix.
+   */
+  void appendColumns(StringBuilder sql, List<String> columns, String prefix) {
+    for (int i = 0; i < columns.size(); i++) {
+      if (i > 0) {
+        sql.append(',');
+      }
+      sql.append(prefix).append(quote(columns.get(i)));
+    }
+  }
+
+  /**
+   * Appends the parameters of the rows, between parentheses for each row.
+   */
+  static void appendValueRows(StringBuilder sql, int columns, int rows) {
+    for (int row = 0; row < rows; row++) {
+      sql.append(row > 0 ? ",(" : "(");
+      for (int i = 0; i < columns; i++) {
+        sql.append(i > 0 ? ",?" : "?");
+      }
+      sql.append(')');
+    }
+  }
+}
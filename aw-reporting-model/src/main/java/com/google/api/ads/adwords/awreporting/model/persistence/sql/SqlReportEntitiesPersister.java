@@ -16,13 +16,31 @@ package com.google.api.ads.adwords.awreporting.model.persistence.sql;
 
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
 import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.api.ads.adwords.awreporting.model.util.RowKeys;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import org.hibernate.Criteria;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jdbc.ReturningWork;
+import org.hibernate.jdbc.Work;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
@@ -38,8 +56,19 @@ public class SqlReportEntitiesPersister implements EntityPersister {
 
   private static final int BATCH_SIZE = 50;
 
+  private static final Comparator<Report> ROW_ID_ORDER =
+      new Comparator<Report>() {
+        @Override
+        public int compare(Report report, Report otherReport) {
+          return RowKeys.ORDER.compare(report.getRowId(), otherReport.getRowId());
+        }
+      };
+
   private int batchSize = BATCH_SIZE;
   private SessionFactory sessionFactory;
+  private boolean existenceIndex;
+  private final ConcurrentMap<Class<?>, FutureTask<RowIdIndex>> indexes =
+      new ConcurrentHashMap<Class<?>, FutureTask<RowIdIndex>>();
 
   /**
    * Constructor.
@@ -54,31 +83,161 @@ public class SqlReportEntitiesPersister implements EntityPersister {
 
   /**
    * Persists all the given entities into the DB configured in the {@code SessionFactory}.
+   *
+   * <p>The entities are written in the order of their keys, so the concurrent transactions lock
+   * the rows of a table in the same order instead of deadlocking each other.
    */
   @Override
   @Transactional
   public void persistReportEntities(List<? extends Report> reportEntities) {
-    int batchFlush = 0;
-    Session session = sessionFactory.getCurrentSession();
-
-    for (Report report : reportEntities) {
-      report.setRowId();
-      session.saveOrUpdate(report);
-      batchFlush++;
+    List<Report> sortedEntities = Lists.newArrayList(reportEntities);
+    for (Report report : sortedEntities) {
+      // The processors already set the row keys of the parsed reports.
+      if (report.getRowId() == null) {
+        report.setRowId();
+      }
+    }
+    Collections.sort(sortedEntities, ROW_ID_ORDER);
 
-      if (batchFlush == batchSize) {
+    Session session = sessionFactory.getCurrentSession();
+    for (List<Report> reports : Lists.partition(sortedEntities, batchSize)) {
+      if (existenceIndex) {
+        persistNewReports(session, reports);
+      } else {
+        for (Report report : reports) {
+          session.saveOrUpdate(report);
+        }
         session.flush();
         session.clear();
-        batchFlush = 0;
       }
     }
+  }
 
-    if (batchFlush > 0) {
+  /**
+   * Saves the reports which are certainly not in the table yet according to the existence index
+   * without looking them up, and the others with {@code saveOrUpdate}.
+   *
+   * <p>If a report taken as new is already in the table, because it was written by another
+   * process since the index was loaded, the writes are rolled back to a savepoint and the reports
+   * are all saved again with {@code saveOrUpdate}. Each attempt is made in its own session on the
+   * connection of the transaction, as a session cannot be used anymore once its flush failed.
+   */
+  private void persistNewReports(Session session, List<Report> reports) {
+    Set<Report> newReports = Sets.newIdentityHashSet();
+    for (Report report : reports) {
+      if (!getIndex(session, report.getClass()).mightContain(report.getRowId())) {
+        newReports.add(report);
+      }
+    }
+
+    Connection connection = getConnection(session);
+    if (newReports.isEmpty()) {
+      saveReports(connection, reports, newReports);
+    } else {
+      Savepoint savepoint = setSavepoint(session);
+      try {
+        saveReports(connection, reports, newReports);
+      } catch (ConstraintViolationException e) {
+        rollbackToSavepoint(session, savepoint);
+        saveReports(connection, reports, Collections.<Report>emptySet());
+      }
+    }
+
+    for (Report report : newReports) {
+      getIndex(session, report.getClass()).add(report.getRowId());
+    }
+  }
+
+  /**
+   * Saves the reports in a new session on the connection, inserting the new ones.
+   */
+  private void saveReports(Connection connection, List<Report> reports, Set<Report> newReports) {
+    Session session = sessionFactory.withOptions().connection(connection).openSession();
+    try {
+      for (Report report : reports) {
+        if (newReports.contains(report)) {
+          session.save(report);
+        } else {
+          session.saveOrUpdate(report);
+        }
+      }
       session.flush();
-      session.clear();
+    } finally {
+      session.close();
+    }
+  }
+
+  /**
+   * Returns the existence index of the table of the report class, loading it on first use. The
+   * other threads writing the same table wait for it to be loaded.
+   */
+  private RowIdIndex getIndex(final Session session, final Class<? extends Report> reportClass) {
+    FutureTask<RowIdIndex> index = indexes.get(reportClass);
+    if (index == null) {
+      FutureTask<RowIdIndex> newIndex =
+          new FutureTask<RowIdIndex>(
+              new Callable<RowIdIndex>() {
+                @Override
+                public RowIdIndex call() {
+                  return session.doReturningWork(
+                      new ReturningWork<RowIdIndex>() {
+                        @Override
+                        public RowIdIndex execute(Connection connection) throws SQLException {
+                          return RowIdIndex.load(connection, ReportTable.forClass(reportClass));
+                        }
+                      });
+                }
+              });
+      index = indexes.putIfAbsent(reportClass, newIndex);
+      if (index == null) {
+        index = newIndex;
+        index.run();
+      }
+    }
+
+    try {
+      return index.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while loading the index of " + reportClass, e);
+    } catch (ExecutionException e) {
+      // The next set of rows loads it again.
+      indexes.remove(reportClass, index);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException("Cannot load the index of " + reportClass, e.getCause());
     }
   }
 
+  private static Connection getConnection(Session session) {
+    return session.doReturningWork(
+        new ReturningWork<Connection>() {
+          @Override
+          public Connection execute(Connection connection) {
+            return connection;
+          }
+        });
+  }
+
+  private static Savepoint setSavepoint(Session session) {
+    return session.doReturningWork(
+        new ReturningWork<Savepoint>() {
+          @Override
+          public Savepoint execute(Connection connection) throws SQLException {
+            return connection.setSavepoint();
+          }
+        });
+  }
+
+  private static void rollbackToSavepoint(Session session, final Savepoint savepoint) {
+    session.doWork(
+        new Work() {
+          @Override
+          public void execute(Connection connection) throws SQLException {
+            connection.rollback(savepoint);
+          }
+        });
+  }
+
   @Override
   @Transactional
   public <T> T save(T t) {
@@ -108,6 +267,15 @@ public class SqlReportEntitiesPersister implements EntityPersister {
     return criteria.list();
   }
 
+  /**
+   * Sets whether the rows are looked up in an in-memory index of the keys of each report table
+   * (see {@link RowIdIndex}), loaded when the table is first written. The new rows are then saved
+   * without looking them up in the database, which is most of the rows of a first load.
+   */
+  public void setExistenceIndex(boolean existenceIndex) {
+    this.existenceIndex = existenceIndex;
+  }
+
   @VisibleForTesting
   protected void setBatchSize(int batchSize) {
     Preconditions.checkArgument(batchSize > 0, "batchSize <= 0");
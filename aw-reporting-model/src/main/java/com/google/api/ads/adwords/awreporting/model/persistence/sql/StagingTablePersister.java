@@ -0,0 +1,198 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatch;
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.api.ads.adwords.awreporting.model.persistence.StagedEntityPersister;
+import com.google.common.base.Preconditions;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * A persistence layer loading each report type through a staging table, so the report tables
+ * are written by a few large statements instead of many small transactions.
+ *
+ * <p>{@link #beginLoad} creates a staging table with the columns of the report table, but without
+ * primary key nor indexes, and the rows are only inserted into it. {@link #finishLoad} then merges
+ * all the staged rows into the report table with a single set-based statement, and drops the
+ * staging table.
+ *
+ * <p>If enabled, the report tables of the full snapshot reports are instead replaced by their
+ * staging table, which is then given the primary key and the other indexes of the report table,
+ * with an atomic rename. This also removes the rows which are no longer reported, but also the
+ * rows of the accounts that were not loaded, so it must only be enabled when all the accounts of
+ * the database are loaded together.
+ *
+ * <p>The rows of the report classes without a load in progress are written with upserts, as
+ * {@link JdbcReportEntitiesPersister} does.
+ */
+public class StagingTablePersister extends JdbcReportEntitiesPersister
+    implements StagedEntityPersister {
+
+  static final String STAGING_TABLE_SUFFIX = "_STG_";
+  private static final String OLD_TABLE_SUFFIX = "_OLD_";
+
+  // Makes the table names unique between the loads of this persister and of other processes.
+  private static final AtomicLong loadSequence = new AtomicLong(System.currentTimeMillis());
+
+  private final boolean swapSnapshots;
+  private final ConcurrentMap<Class<?>, Load> loads = new ConcurrentHashMap<Class<?>, Load>();
+
+  /**
+   * Constructor.
+   *
+   * @param dataSource the data source of the report tables.
+   * @param dialect the SQL dialect of the database.
+   * @param entityPersister the persister of the non-report entities.
+   * @param swapSnapshots whether the complete loads of full snapshot reports replace the report
+   *     table, instead of being merged into it.
+   */
+  public StagingTablePersister(
+      DataSource dataSource,
+      SqlDialect dialect,
+      EntityPersister entityPersister,
+      boolean swapSnapshots) {
+    super(dataSource, dialect, entityPersister);
+    this.swapSnapshots = swapSnapshots;
+  }
+
+  @Override
+  public void beginLoad(Class<? extends Report> reportClass, boolean fullSnapshot) {
+    ReportTable<?> table = ReportTable.forClass(reportClass);
+    Load load = new Load(table, swapSnapshots && fullSnapshot);
+    Preconditions.checkState(
+        loads.putIfAbsent(reportClass, load) == null,
+        "A load of %s is already in progress",
+        reportClass.getSimpleName());
+    try {
+      getJdbcTemplate().execute(
+          getDialect().createCopyTableSql(table.getTableName(), load.stagingTableName));
+    } catch (RuntimeException e) {
+      loads.remove(reportClass);
+      throw e;
+    }
+  }
+
+  /**
+   * Does nothing: a load only replaces the whole report table, once the reports of all the
+   * accounts were processed.
+   */
+  @Override
+  public void recordLoadedRange(
+      Class<? extends Report> reportClass, long accountId, DateRangeAndType dateRangeAndType) {}
+
+  /**
+   * Inserts the rows into the staging table if a load of the report class is in progress.
+   */
+  @Override
+  @Transactional
+  public void persistRowBatch(RowBatch<?> rowBatch) {
+    Load load = loads.get(rowBatch.getSchema().getReportClass());
+    if (load == null) {
+      super.persistRowBatch(rowBatch);
+    } else if (!rowBatch.isEmpty()) {
+      writeRows(rowBatch, load.table, load.stagingTableName, false);
+    }
+  }
+
+  @Override
+  @Transactional
+  public void finishLoad(Class<? extends Report> reportClass, boolean complete) {
+    Load load = loads.remove(reportClass);
+    Preconditions.checkState(
+        load != null, "No load of %s is in progress", reportClass.getSimpleName());
+    try {
+      if (load.swap && complete) {
+        // The old table is dropped with its indexes, so they are created on the staging table.
+        List<TableIndex> indexes = readSecondaryIndexes(load.table);
+        for (String sql :
+            getDialect()
+                .createSwapSql(load.table, load.stagingTableName, load.oldTableName, indexes)) {
+          getJdbcTemplate().execute(sql);
+        }
+      } else {
+        getJdbcTemplate().execute(getDialect().createMergeSql(load.table, load.stagingTableName));
+        dropStagingTable(load);
+      }
+    } catch (RuntimeException e) {
+      try {
+        dropStagingTable(load);
+      } catch (RuntimeException dropException) {
+        e.addSuppressed(dropException);
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public void abortLoad(Class<? extends Report> reportClass) {
+    Load load = loads.remove(reportClass);
+    if (load != null) {
+      dropStagingTable(load);
+    }
+  }
+
+  /**
+   * Returns a suffix making the names of the tables of a load unique between the loads of the
+   * persisters of this process and of other processes.
+   */
+  static String nextLoadSuffix() {
+    return Long.toString(loadSequence.incrementAndGet(), Character.MAX_RADIX);
+  }
+
+  private List<TableIndex> readSecondaryIndexes(final ReportTable<?> table) {
+    return getJdbcTemplate().execute(
+        new ConnectionCallback<List<TableIndex>>() {
+          @Override
+          public List<TableIndex> doInConnection(Connection connection)
+              throws SQLException, DataAccessException {
+            return TableIndex.readSecondaryIndexes(connection, table);
+          }
+        });
+  }
+
+  private void dropStagingTable(Load load) {
+    getJdbcTemplate().execute(getDialect().createDropTableSql(load.stagingTableName));
+  }
+
+  /**
+   * A load in progress.
+   */
+  private static class Load {
+    private final ReportTable<?> table;
+    private final boolean swap;
+    private final String stagingTableName;
+    private final String oldTableName;
+
+    Load(ReportTable<?> table, boolean swap) {
+      this.table = table;
+      this.swap = swap;
+      String suffix = nextLoadSuffix();
+      this.stagingTableName = table.getTableName() + STAGING_TABLE_SUFFIX + suffix;
+      this.oldTableName = table.getTableName() + OLD_TABLE_SUFFIX + suffix;
+    }
+  }
+}
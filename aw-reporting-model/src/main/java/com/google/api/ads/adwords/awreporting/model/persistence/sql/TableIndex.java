@@ -0,0 +1,99 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * A secondary index of a report table, read from the metadata of the database so it can be
+ * created again on another table, such as a staging table replacing the report table.
+ */
+final class TableIndex {
+
+  private final String name;
+  private final boolean unique;
+  private final ImmutableList<String> columnNames;
+
+  TableIndex(String name, boolean unique, List<String> columnNames) {
+    this.name = name;
+    this.unique = unique;
+    this.columnNames = ImmutableList.copyOf(columnNames);
+  }
+
+  /**
+   * Reads the indexes of the report table, except the index of its primary key.
+   *
+   * @param connection the connection to the database of the table.
+   * @param table the report table.
+   */
+  static List<TableIndex> readSecondaryIndexes(Connection connection, ReportTable<?> table)
+      throws SQLException {
+    DatabaseMetaData metaData = connection.getMetaData();
+    String tableName = metaData.storesUpperCaseIdentifiers()
+        ? table.getTableName().toUpperCase()
+        : table.getTableName();
+    Map<String, Boolean> uniqueIndexes = Maps.newLinkedHashMap();
+    Map<String, SortedMap<Short, String>> indexColumns = Maps.newLinkedHashMap();
+    try (ResultSet indexes = metaData.getIndexInfo(null, null, tableName, false, false)) {
+      while (indexes.next()) {
+        String indexName = indexes.getString("INDEX_NAME");
+        if (indexName == null || indexes.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+          continue;
+        }
+        if (!indexColumns.containsKey(indexName)) {
+          uniqueIndexes.put(indexName, !indexes.getBoolean("NON_UNIQUE"));
+          indexColumns.put(indexName, Maps.<Short, String>newTreeMap());
+        }
+        indexColumns
+            .get(indexName)
+            .put(indexes.getShort("ORDINAL_POSITION"), indexes.getString("COLUMN_NAME"));
+      }
+    }
+
+    String idColumn = table.getColumnName(table.getIdColumn());
+    List<TableIndex> secondaryIndexes = Lists.newArrayList();
+    for (Map.Entry<String, SortedMap<Short, String>> index : indexColumns.entrySet()) {
+      List<String> columnNames = Lists.newArrayList(index.getValue().values());
+      boolean unique = uniqueIndexes.get(index.getKey());
+      boolean primaryKey =
+          unique && columnNames.size() == 1 && columnNames.get(0).equalsIgnoreCase(idColumn);
+      if (!primaryKey) {
+        secondaryIndexes.add(new TableIndex(index.getKey(), unique, columnNames));
+      }
+    }
+    return secondaryIndexes;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  boolean isUnique() {
+    return unique;
+  }
+
+  List<String> getColumnNames() {
+    return columnNames;
+  }
+}
@@ -30,6 +30,17 @@ import javax.annotation.Nullable;
  */
 public class BigDecimalUtil {
   private static final BigDecimal MICRO = new BigDecimal(1000000);
+  private static final int MICROS_SCALE = 6;
+
+  // The numbers with up to 18 digits always fit in a long.
+  private static final int MAX_LONG_DIGITS = 18;
+  private static final char NO_SEPARATOR = '\0';
+
+  // The chars removed from the numbers by parseFromNumberString.
+  private static final String NUMBER_STRING_IGNORED_CHARS = " \t\n\u000B\f\r%";
+
+  // The chars removed from the numbers by parseFromNumberStringPercentage.
+  private static final String PERCENTAGE_IGNORED_CHARS = " \t\n\u000B\f\r%<>";
 
   private static final ThreadLocal<DecimalFormat> humanReadableFormat =
       new ThreadLocal<DecimalFormat>() {
@@ -56,34 +67,58 @@ public class BigDecimalUtil {
    *         {@code null} or empty, then {@code null} is returned.
    */
   public static BigDecimal parseFromNumberString(@Nullable String numberString) {
+    if (numberString == null) {
+      return null;
+    }
+
+    // Same as the first comma and dot of the number without the white spaces.
+    int indexOfComma = numberString.indexOf(',');
+    int indexOfDot = numberString.indexOf('.');
+    char decimalSeparator = indexOfComma < indexOfDot ? '.' : ',';
+    char groupingSeparator = indexOfComma < indexOfDot ? ',' : '.';
+
+    NumberScanner scanner = new NumberScanner(numberString);
+    scanner.skip(NUMBER_STRING_IGNORED_CHARS);
+    if (scanner.atEnd()) {
+      return null;
+    }
+    if (scanner.scanSign("-")
+        && scanner.scan(decimalSeparator, groupingSeparator, NUMBER_STRING_IGNORED_CHARS)) {
+      return scanner.toBigDecimal();
+    }
+    return parseFromNumberStringWithFormat(numberString);
+  }
+
+  /**
+   * Parses the number with a {@code DecimalFormat}, for the formats not handled by
+   * {@link NumberScanner}.
+   */
+  private static BigDecimal parseFromNumberStringWithFormat(String numberString) {
     BigDecimal result = null;
+    String nonSpacedString = StringsUtil.removeChars(numberString, NUMBER_STRING_IGNORED_CHARS);
 
-    if (numberString != null) {
-      String nonSpacedString = numberString.replaceAll("[ \\t\\n\\x0B\\f\\r%]", "");
+    if (!Strings.isNullOrEmpty(nonSpacedString)) {
+      int indexOfComma = nonSpacedString.indexOf(',');
+      int indexOfDot = nonSpacedString.indexOf('.');
 
-      if (!Strings.isNullOrEmpty(nonSpacedString)){
-        int indexOfComma = nonSpacedString.indexOf(',');
-        int indexOfDot = nonSpacedString.indexOf('.');
-  
-        DecimalFormat decimalFormat = (DecimalFormat) NumberFormat.getInstance();
-        DecimalFormatSymbols otherSymbols = new DecimalFormatSymbols();
-  
-        if (indexOfComma < indexOfDot) {
-          otherSymbols.setDecimalSeparator('.');
-          otherSymbols.setGroupingSeparator(',');
-        } else {
-          otherSymbols.setDecimalSeparator(',');
-          otherSymbols.setGroupingSeparator('.');
-        }
-  
-        decimalFormat.setParseBigDecimal(true);
-        decimalFormat.setDecimalFormatSymbols(otherSymbols);
-  
-        try {
-          result = (BigDecimal) decimalFormat.parse(nonSpacedString);
-        } catch (ParseException e) {
-          throw new RuntimeException("Error parsing '" + nonSpacedString + "' as BigDecimal", e);
-        }
+      DecimalFormat decimalFormat = (DecimalFormat) NumberFormat.getInstance();
+      DecimalFormatSymbols otherSymbols = new DecimalFormatSymbols();
+
+      if (indexOfComma < indexOfDot) {
+        otherSymbols.setDecimalSeparator('.');
+        otherSymbols.setGroupingSeparator(',');
+      } else {
+        otherSymbols.setDecimalSeparator(',');
+        otherSymbols.setGroupingSeparator('.');
+      }
+
+      decimalFormat.setParseBigDecimal(true);
+      decimalFormat.setDecimalFormatSymbols(otherSymbols);
+
+      try {
+        result = (BigDecimal) decimalFormat.parse(nonSpacedString);
+      } catch (ParseException e) {
+        throw new RuntimeException("Error parsing '" + nonSpacedString + "' as BigDecimal", e);
       }
     }
     return result;
@@ -99,8 +134,16 @@ public class BigDecimalUtil {
    *         {@code null} or empty, then {@code null} is returned.
    */
   public static BigDecimal parseFromNumberStringPercentage(@Nullable String numberString) {
-    return StringsUtil.isEmptyValue(numberString) ? null
-        : new BigDecimal(numberString.replaceAll("\\s|%|>|<", ""));
+    if (StringsUtil.isEmptyValue(numberString)) {
+      return null;
+    }
+
+    NumberScanner scanner = new NumberScanner(numberString);
+    scanner.skip(PERCENTAGE_IGNORED_CHARS);
+    if (scanner.scanSign("-+") && scanner.scan('.', NO_SEPARATOR, PERCENTAGE_IGNORED_CHARS)) {
+      return scanner.toBigDecimal();
+    }
+    return new BigDecimal(StringsUtil.removeChars(numberString, PERCENTAGE_IGNORED_CHARS));
   }
 
   /**
@@ -122,7 +165,159 @@ public class BigDecimalUtil {
    *         micros. If the numberString is {@code null} or empty, then {@code null} is returned.
    */
   public static BigDecimal parseFromMoneyString(@Nullable String numberString){
-    return StringsUtil.isEmptyValue(numberString) ? null
-        : (new BigDecimal(numberString.replaceAll("[^\\d.]", ""))).divide(MICRO);
+    if (StringsUtil.isEmptyValue(numberString)) {
+      return null;
+    }
+
+    // All the chars other than digits and dots are ignored.
+    long micros = 0;
+    int digits = 0;
+    for (int i = 0; i < numberString.length(); i++) {
+      char c = numberString.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (++digits > MAX_LONG_DIGITS) {
+          return parseFromMoneyStringWithDivide(numberString);
+        }
+        micros = micros * 10 + (c - '0');
+      } else if (c == '.') {
+        return parseFromMoneyStringWithDivide(numberString);
+      }
+    }
+    return digits == 0 ? parseFromMoneyStringWithDivide(numberString) : fromMicros(micros);
+  }
+
+  private static BigDecimal parseFromMoneyStringWithDivide(String numberString) {
+    return (new BigDecimal(retainDigitsAndDots(numberString))).divide(MICRO);
+  }
+
+  /**
+   * Returns the number without the chars other than digits and dots, or the same instance if it
+   * has no such chars.
+   */
+  private static String retainDigitsAndDots(String numberString) {
+    StringBuilder result = null;
+    for (int i = 0; i < numberString.length(); i++) {
+      char c = numberString.charAt(i);
+      boolean retained = (c >= '0' && c <= '9') || c == '.';
+      if (result == null && !retained) {
+        result = new StringBuilder(numberString.length() - 1);
+        result.append(numberString, 0, i);
+      } else if (result != null && retained) {
+        result.append(c);
+      }
+    }
+    return result == null ? numberString : result.toString();
+  }
+
+  /**
+   * Converts a money amount in micros, with the same value and scale as dividing it by one million
+   * (the smallest non-negative scale that represents the amount exactly).
+   *
+   * @param micros the money amount in micros.
+   * @return the money amount.
+   */
+  public static BigDecimal fromMicros(long micros) {
+    long unscaled = micros;
+    int scale = MICROS_SCALE;
+    while (scale > 0 && unscaled % 10 == 0) {
+      unscaled /= 10;
+      scale--;
+    }
+    return BigDecimal.valueOf(unscaled, scale);
+  }
+
+  /**
+   * Scanner of the plain decimal numbers: an optional sign, digits with optional grouping
+   * separators, and an optional decimal separator followed by digits. The digits are accumulated
+   * into a {@code long}, so the numbers with more than {@link #MAX_LONG_DIGITS} digits are not
+   * handled.
+   *
+   * <p>The numbers are parsed with the same value and scale as {@code DecimalFormat} (with
+   * {@code parseBigDecimal}) and {@code new BigDecimal(String)}: the scale is the number of
+   * fraction digits as written.
+   */
+  private static final class NumberScanner {
+    private final String value;
+    private int position;
+    private boolean negative;
+    private long unscaled;
+    private int scale;
+
+    NumberScanner(String value) {
+      this.value = value;
+    }
+
+    boolean atEnd() {
+      return position == value.length();
+    }
+
+    /**
+     * Skips the ignored chars at the current position.
+     */
+    void skip(String ignoredChars) {
+      while (position < value.length() && ignoredChars.indexOf(value.charAt(position)) >= 0) {
+        position++;
+      }
+    }
+
+    /**
+     * Scans an optional sign.
+     *
+     * @param signs the allowed signs.
+     * @return always {@code true}, for chaining with {@link #scan(char, char, String)}.
+     */
+    boolean scanSign(String signs) {
+      if (position < value.length() && signs.indexOf(value.charAt(position)) >= 0) {
+        negative = value.charAt(position) == '-';
+        position++;
+      }
+      return true;
+    }
+
+    /**
+     * Scans the rest of the value as a number.
+     *
+     * @param decimalSeparator the decimal separator.
+     * @param groupingSeparator the grouping separator, only allowed between digits of the integer
+     *     part, or {@link #NO_SEPARATOR}.
+     * @param ignoredChars the chars that are ignored anywhere in the number.
+     * @return whether the value is a plain number, otherwise it has to be parsed by the general
+     *     parsing method.
+     */
+    boolean scan(char decimalSeparator, char groupingSeparator, String ignoredChars) {
+      int digits = 0;
+      boolean fraction = false;
+      boolean afterDigit = false;
+      for (; position < value.length(); position++) {
+        char c = value.charAt(position);
+        if (c >= '0' && c <= '9') {
+          if (++digits > MAX_LONG_DIGITS) {
+            return false;
+          }
+          unscaled = unscaled * 10 + (c - '0');
+          if (fraction) {
+            scale++;
+          }
+          afterDigit = true;
+        } else if (c == decimalSeparator && !fraction) {
+          fraction = true;
+        } else if (c == groupingSeparator && groupingSeparator != NO_SEPARATOR
+            && !fraction && afterDigit
+            && position + 1 < value.length() && isDigit(value.charAt(position + 1))) {
+          afterDigit = false;
+        } else if (ignoredChars.indexOf(c) < 0) {
+          return false;
+        }
+      }
+      return digits > 0;
+    }
+
+    BigDecimal toBigDecimal() {
+      return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    private static boolean isDigit(char c) {
+      return c >= '0' && c <= '9';
+    }
   }
 }
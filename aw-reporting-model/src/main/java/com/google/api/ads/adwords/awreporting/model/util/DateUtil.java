@@ -14,9 +14,12 @@
 
 package com.google.api.ads.adwords.awreporting.model.util;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.joda.time.LocalDate;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -52,6 +55,13 @@ public final class DateUtil {
     formatters.add(DATE_FORMATTER_YEAR_MONTH_NO_DASH);
   }
 
+  private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+  // A report only holds a handful of distinct dates, so a small cache is enough.
+  private static final int YEAR_MONTH_DAY_CACHE_SIZE = 1024;
+  private static final Cache<String, String> yearMonthDayCache =
+      CacheBuilder.newBuilder().maximumSize(YEAR_MONTH_DAY_CACHE_SIZE).build();
+
   /**
    * Private constructor.
    */
@@ -149,6 +159,11 @@ public final class DateUtil {
    */
   public static LocalDate parseLocalDate(String timestamp) {
     if (timestamp != null) {
+      LocalDate localDate = parseKnownShape(timestamp);
+      if (localDate != null) {
+        return localDate;
+      }
+
       for (DateTimeFormatter formatter : DateUtil.formatters) {
         try {
           return formatter.parseLocalDate(timestamp);
@@ -160,6 +175,101 @@ public final class DateUtil {
     return null;
   }
 
+  /**
+   * Parses the given {@code String} like {@link #parseLocalDate(String)}, and formats it to the
+   * ISO format without the time zone information: yyyy-MM-dd
+   *
+   * <p>The results are cached, as the same few dates are parsed for every row of a report.
+   *
+   * @param timestamp the time stamp in {@code String} format.
+   * @return the date formatted, or {@code null} in case that the format is unknown.
+   */
+  public static String parseToYearMonthDay(@Nullable String timestamp) {
+    if (timestamp == null) {
+      return null;
+    }
+
+    String yearMonthDay = yearMonthDayCache.getIfPresent(timestamp);
+    if (yearMonthDay == null) {
+      LocalDate localDate = parseLocalDate(timestamp);
+      if (localDate == null) {
+        return null;
+      }
+      yearMonthDay = formatYearMonthDay(localDate);
+      yearMonthDayCache.put(timestamp, yearMonthDay);
+    }
+    return yearMonthDay;
+  }
+
+  /**
+   * Parses the dates in the exact shapes of the known formats (yyyy-MM-dd, yyyy-MM, yyyyMMdd and
+   * yyyyMM) by looking at the length and the dash positions, without throwing any exception.
+   *
+   * @return the parsed {@code LocalDate}, or {@code null} if the {@code String} does not have one
+   *     of the exact shapes or is not a valid date, so the formatters decide.
+   */
+  private static LocalDate parseKnownShape(String timestamp) {
+    int monthStart;
+    int dayStart;
+    switch (timestamp.length()) {
+      case 10:
+        if (timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-') {
+          return null;
+        }
+        monthStart = 5;
+        dayStart = 8;
+        break;
+      case 7:
+        if (timestamp.charAt(4) != '-') {
+          return null;
+        }
+        monthStart = 5;
+        dayStart = -1;
+        break;
+      case 8:
+        monthStart = 4;
+        dayStart = 6;
+        break;
+      case 6:
+        monthStart = 4;
+        dayStart = -1;
+        break;
+      default:
+        return null;
+    }
+
+    int year = parseDigits(timestamp, 0, 4);
+    int month = parseDigits(timestamp, monthStart, 2);
+    int day = dayStart < 0 ? 1 : parseDigits(timestamp, dayStart, 2);
+    if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+      return null;
+    }
+    return new LocalDate(year, month, day);
+  }
+
+  /**
+   * @return the number made of the {@code length} digits at {@code start}, or {@code -1} if any of
+   *     the chars is not a digit.
+   */
+  private static int parseDigits(String s, int start, int length) {
+    int value = 0;
+    for (int i = start; i < start + length; i++) {
+      char c = s.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private static int daysInMonth(int year, int month) {
+    if (month == 2 && year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) {
+      return 29;
+    }
+    return DAYS_IN_MONTH[month - 1];
+  }
+
   /**
    * Create a {@code LocalDate} that represents the last month, and formats it to the yyyy-MM 
    * format.
@@ -0,0 +1,151 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@code RowKeys} is a utility class for the primary keys ({@code rowId}) of the report rows.
+ *
+ * <p>The entities build their row key by concatenating the report fields that identify a row. In
+ * the default {@link Mode#STRING} mode that concatenation is the row key. In the
+ * {@link Mode#HASH} mode the row key is the 128-bit hash of the concatenation, which makes the
+ * primary key indexes much smaller for the reports with many segmentation fields.
+ *
+ * <p>The hashed keys are encoded as 26 characters of the Base32 "hex" alphabet, so they fit the
+ * existing {@code ROW_ID} columns and sort and compare the same way in case-insensitive
+ * collations. The persisters that store the keys as {@code BINARY(16)}, or as a pair of longs, can
+ * decode them with {@link #toBytes(String)} and {@link #getHigh(String)}/{@link #getLow(String)}.
+ */
+public final class RowKeys {
+
+  /**
+   * The modes of the row keys.
+   */
+  public enum Mode {
+    /** The concatenation of the report fields. */
+    STRING,
+    /** The 128-bit hash of the concatenation of the report fields. */
+    HASH
+  }
+
+  /**
+   * The length of the hashed row keys.
+   */
+  public static final int HASH_KEY_LENGTH = 26;
+
+  /**
+   * The order of the row keys in the {@code ROW_ID} columns, whose default collations are
+   * case-insensitive in MySQL and SQL Server.
+   */
+  public static final Comparator<String> ORDER = String.CASE_INSENSITIVE_ORDER;
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+  private static final BaseEncoding ENCODING = BaseEncoding.base32Hex().omitPadding();
+
+  // The mode is a setting of the whole process, as the keys of a table must all use the same mode,
+  // so it can only be set once. It is STRING until then.
+  private static final AtomicReference<Mode> configuredMode = new AtomicReference<Mode>();
+
+  /**
+   * Private constructor to prevent instantiation of this utility class.
+   */
+  private RowKeys() {}
+
+  public static Mode getMode() {
+    Mode mode = configuredMode.get();
+    return mode == null ? Mode.STRING : mode;
+  }
+
+  /**
+   * Sets the mode of the row keys of the process. Setting the same mode again has no effect.
+   *
+   * @throws IllegalStateException if another mode was already set.
+   */
+  public static void setMode(Mode mode) {
+    Preconditions.checkNotNull(mode, "mode cannot be null");
+    if (!configuredMode.compareAndSet(null, mode)) {
+      Preconditions.checkState(
+          configuredMode.get() == mode,
+          "The row key mode is already %s, it cannot be changed to %s",
+          configuredMode.get(),
+          mode);
+    }
+  }
+
+  /**
+   * Clears the mode set, so the tests can set another one.
+   */
+  @VisibleForTesting
+  static void resetMode() {
+    configuredMode.set(null);
+  }
+
+  /**
+   * Returns the row key for the concatenation of the report fields, in the mode of the process.
+   */
+  public static String toRowId(CharSequence components) {
+    return getMode() == Mode.HASH ? hash(components) : components.toString();
+  }
+
+  /**
+   * Returns the hashed row key for the concatenation of the report fields.
+   */
+  public static String hash(CharSequence components) {
+    return ENCODING.encode(HASH_FUNCTION.hashString(components, StandardCharsets.UTF_8).asBytes());
+  }
+
+  /**
+   * Returns the 16 bytes of a hashed row key, in any case.
+   *
+   * @throws IllegalArgumentException if the row key is not a hashed key.
+   */
+  public static byte[] toBytes(String rowId) {
+    Preconditions.checkArgument(
+        rowId.length() == HASH_KEY_LENGTH, "Not a hashed row key: %s", rowId);
+    return ENCODING.decode(Ascii.toUpperCase(rowId));
+  }
+
+  /**
+   * Returns the high 64 bits of a hashed row key.
+   */
+  public static long getHigh(String rowId) {
+    return ByteBuffer.wrap(toBytes(rowId)).getLong(0);
+  }
+
+  /**
+   * Returns the low 64 bits of a hashed row key.
+   */
+  public static long getLow(String rowId) {
+    return ByteBuffer.wrap(toBytes(rowId)).getLong(8);
+  }
+
+  /**
+   * Returns the hashed row key of the 16 bytes, the reverse of {@link #toBytes(String)}.
+   */
+  public static String fromBytes(byte[] bytes) {
+    Preconditions.checkArgument(bytes.length == 16, "A hashed row key has 16 bytes");
+    return ENCODING.encode(bytes);
+  }
+}
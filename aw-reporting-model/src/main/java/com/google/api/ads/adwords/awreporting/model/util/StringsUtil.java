@@ -25,25 +25,114 @@ import org.apache.commons.codec.digest.DigestUtils;
 public class StringsUtil {
 
   private static final String EMPTY_VALUE = "--";
-  
+
   /**
    * Returns true if String is null, empty, or equal to two dashes (--).
+   *
+   * <p>The leading and trailing whitespace (as defined by {@link String#trim()}) around the dashes
+   * is ignored, without allocating the trimmed String.
    */
   public static boolean isEmptyValue(@Nullable String value) {
-    return Strings.isNullOrEmpty(value) || value.trim().equals(StringsUtil.EMPTY_VALUE);
+    if (Strings.isNullOrEmpty(value)) {
+      return true;
+    }
+    int start = trimmedStart(value);
+    int end = trimmedEnd(value, start);
+    return end - start == EMPTY_VALUE.length() && value.startsWith(EMPTY_VALUE, start);
+  }
+
+  /**
+   * Returns {@code null} if the String is an empty value (see {@link #isEmptyValue(String)}),
+   * otherwise the String without its leading and trailing whitespace.
+   *
+   * <p>The same instance is returned if it has no whitespace to remove.
+   */
+  @Nullable
+  public static String trimToNullIfEmptyValue(@Nullable String value) {
+    if (Strings.isNullOrEmpty(value)) {
+      return null;
+    }
+    int start = trimmedStart(value);
+    int end = trimmedEnd(value, start);
+    if (end - start == EMPTY_VALUE.length() && value.startsWith(EMPTY_VALUE, start)) {
+      return null;
+    }
+    return start == 0 && end == value.length() ? value : value.substring(start, end);
   }
 
   /**
-   * Returns String with dashes removed or empty String. 
+   * Returns String with dashes removed or empty String.
+   *
+   * <p>The same instance is returned if it has no dashes.
    */
-  public static String removeDashes(@Nullable String value){
-    if (Strings.isNullOrEmpty(value)){
+  public static String removeDashes(@Nullable String value) {
+    if (Strings.isNullOrEmpty(value)) {
       return "";
-    } else {
-      return value.replaceAll("-", "");
     }
+    int index = value.indexOf('-');
+    if (index < 0) {
+      return value;
+    }
+    StringBuilder result = new StringBuilder(value.length() - 1);
+    result.append(value, 0, index);
+    for (int i = index + 1; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c != '-') {
+        result.append(c);
+      }
+    }
+    return result.toString();
   }
-  
+
+  /**
+   * Returns the String without any of the given chars.
+   *
+   * <p>The same instance is returned if it has none of the chars.
+   *
+   * @param value the String to be cleaned.
+   * @param chars the chars to be removed.
+   */
+  public static String removeChars(String value, String chars) {
+    int index = 0;
+    while (index < value.length() && chars.indexOf(value.charAt(index)) < 0) {
+      index++;
+    }
+    if (index == value.length()) {
+      return value;
+    }
+    StringBuilder result = new StringBuilder(value.length() - 1);
+    result.append(value, 0, index);
+    for (int i = index + 1; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (chars.indexOf(c) < 0) {
+        result.append(c);
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * Returns the index of the first char that is not whitespace, as {@link String#trim()}.
+   */
+  private static int trimmedStart(String value) {
+    int start = 0;
+    while (start < value.length() && value.charAt(start) <= ' ') {
+      start++;
+    }
+    return start;
+  }
+
+  /**
+   * Returns the index after the last char that is not whitespace, as {@link String#trim()}.
+   */
+  private static int trimmedEnd(String value, int trimmedStart) {
+    int end = value.length();
+    while (end > trimmedStart && value.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return end;
+  }
+
   /**
    * Returns customer id as long with dashes removed or empty String. 
    */
@@ -0,0 +1,199 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.awreporting.model.csv.AwReportCsvReader;
+import com.google.api.ads.adwords.awreporting.model.csv.CsvParserIterator;
+import com.google.api.ads.adwords.awreporting.model.csv.CsvReportParsingException;
+import com.google.api.ads.adwords.awreporting.model.csv.ModifiedCsvToBean;
+import com.google.api.ads.adwords.awreporting.model.csv.ReportEntityMappingStrategy;
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.AdPerformanceReport;
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link RowBatch} class.
+ */
+@RunWith(JUnit4.class)
+public class RowBatchTest {
+
+  private static final String CSV =
+      "Customer ID,Day,Device,Account,Clicks,Cost,Active View viewable CTR\n"
+          + "123-456-7890,2017-01-01,Desktop,My account,10,1230000,12.5%\n"
+          + "123-456-7890,2017-01-02,Desktop,--,--,--,--\n"
+          + "123-456-7890,2017-01-03,Tablet,Other account,0,0,0.00%\n";
+
+  /**
+   * Tests the schema derived from the fields of the report class.
+   */
+  @Test
+  public void testSchema() {
+    RowBatchSchema<AccountPerformanceReport> schema =
+        RowBatchSchema.forClass(AccountPerformanceReport.class);
+
+    RowBatchColumn rowId = schema.getColumn(0);
+    assertEquals("rowId", rowId.getName());
+    assertNull(rowId.getCsvName());
+    assertEquals(RowBatchColumn.Type.STRING, rowId.getType());
+
+    RowBatchColumn clicks = schema.getColumn(schema.getColumnIndex("Clicks"));
+    assertEquals("clicks", clicks.getFieldName());
+    assertEquals("Clicks", clicks.getCsvName());
+    assertEquals(RowBatchColumn.Type.LONG, clicks.getType());
+
+    assertEquals(
+        RowBatchColumn.Type.DECIMAL,
+        schema.getColumn(schema.getColumnIndex("ActiveViewCtr")).getType());
+    assertEquals(
+        RowBatchColumn.Type.TIMESTAMP,
+        schema.getColumn(schema.getColumnIndex("timestamp")).getType());
+    assertEquals(-1, schema.getColumnIndex("Unknown"));
+  }
+
+  /**
+   * Tests that the beans materialized from the batch are equal to the parsed beans, while the
+   * parser reuses a single bean.
+   */
+  @Test
+  public void testRoundTrip() throws IOException, CsvReportParsingException {
+    List<AccountPerformanceReport> expected = parse(null);
+
+    RowBatch<AccountPerformanceReport> batch =
+        new RowBatch<AccountPerformanceReport>(
+            RowBatchSchema.forClass(AccountPerformanceReport.class), 3);
+    assertTrue(parse(batch).isEmpty());
+    assertTrue(batch.isFull());
+    assertEquals(expected, batch.toBeans());
+
+    int device = batch.getSchema().getColumnIndex("Device");
+    assertEquals(Lists.newArrayList("Desktop", "Tablet"), batch.getStringDictionary(device));
+    assertEquals(0, batch.getStringCode(device, 1));
+    assertEquals("Tablet", batch.getString(device, 2));
+
+    int clicks = batch.getSchema().getColumnIndex("Clicks");
+    assertEquals(10L, batch.getLong(clicks, 0));
+    assertTrue(batch.isNull(clicks, 1));
+    assertFalse(batch.isNull(clicks, 2));
+
+    int cost = batch.getSchema().getColumnIndex("Cost");
+    assertEquals(new BigDecimal("1.23"), batch.getDecimal(cost, 0));
+    assertNull(batch.getDecimal(cost, 1));
+
+    batch.clear();
+    assertTrue(batch.isEmpty());
+    assertTrue(batch.getStringDictionary(device).isEmpty());
+  }
+
+  /**
+   * Tests that the copy of a batch keeps its rows once the batch is cleared and filled again.
+   */
+  @Test
+  public void testCopy() throws IOException, CsvReportParsingException {
+    RowBatch<AccountPerformanceReport> batch =
+        new RowBatch<AccountPerformanceReport>(
+            RowBatchSchema.forClass(AccountPerformanceReport.class), 3);
+    parse(batch);
+    List<AccountPerformanceReport> expected = batch.toBeans();
+
+    RowBatch<AccountPerformanceReport> copy = batch.copy();
+    batch.clear();
+    AccountPerformanceReport report = new AccountPerformanceReport();
+    report.setDevice("Mobile");
+    batch.addRow(report);
+
+    assertEquals(3, copy.size());
+    assertTrue(copy.isFull());
+    assertEquals(expected, copy.toBeans());
+    int device = copy.getSchema().getColumnIndex("Device");
+    assertEquals(Lists.newArrayList("Desktop", "Tablet"), copy.getStringDictionary(device));
+  }
+
+  /**
+   * Tests the values that need a wider representation than their vector.
+   */
+  @Test
+  public void testIntegerAndLargeValues() {
+    AdPerformanceReport report = new AdPerformanceReport();
+    report.setImageCreativeImageHeight(Integer.MIN_VALUE);
+    report.setCost(new BigDecimal("123456789012345678901234567890.12"));
+    report.setAverageCpc(new BigDecimal("1E-200"));
+    report.setTimestamp(new Date(1234567890123L));
+
+    RowBatch<AdPerformanceReport> batch =
+        new RowBatch<AdPerformanceReport>(RowBatchSchema.forClass(AdPerformanceReport.class), 100);
+    for (int i = 0; i < 100; i++) {
+      batch.addRow(report);
+    }
+    assertEquals(Lists.newArrayList(report), batch.toBeans().subList(99, 100));
+    assertEquals(
+        Long.valueOf(Integer.MIN_VALUE),
+        Long.valueOf(
+            batch.getLong(batch.getSchema().getColumnIndex("ImageCreativeImageHeight"), 99)));
+
+    try {
+      batch.addRow(report);
+      fail("Adding a row to a full batch should fail");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Parses the CSV rows, either as new beans or into the batch.
+   */
+  private static List<AccountPerformanceReport> parse(RowBatch<AccountPerformanceReport> batch)
+      throws IOException, CsvReportParsingException {
+    ReportEntityMappingStrategy<AccountPerformanceReport> mappingStrategy =
+        new ReportEntityMappingStrategy<AccountPerformanceReport>(AccountPerformanceReport.class);
+    if (batch != null) {
+      mappingStrategy.setBeanReuse(1);
+    }
+
+    List<AccountPerformanceReport> reports = Lists.newArrayList();
+    try (AwReportCsvReader reader = new AwReportCsvReader(new StringReader(CSV), false, false)) {
+      CsvParserIterator<AccountPerformanceReport> iterator =
+          new ModifiedCsvToBean<AccountPerformanceReport>().lazyParse(mappingStrategy, reader);
+      while (iterator.hasNext()) {
+        AccountPerformanceReport report = iterator.next();
+        report.setTopCustomerId(1234567890L);
+        report.setDateRangeType("CUSTOM_DATE");
+        report.setStartDate("20170101");
+        report.setEndDate("20170103");
+        report.setTimestamp(new Date(0));
+        report.setRowId();
+        if (batch == null) {
+          reports.add(report);
+        } else {
+          batch.addRow(report);
+        }
+      }
+    }
+    return reports;
+  }
+}
@@ -0,0 +1,170 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link AwReportByteCsvReader} class.
+ */
+@RunWith(JUnit4.class)
+public class AwReportByteCsvReaderTest {
+
+  private static final String CSV = "Customer ID, Account ,Clicks,Cost\n"
+      + "123-456-7890,Plain account,10,1230000\n"
+      + "123-456-7890,\"Account, with comma\",20,--\n"
+      + "123-456-7890,\"Account \"\"quoted\"\"\",30, --\r\n"
+      + "123-456-7890,\"Account\nwith new line\",,0\r"
+      + "123-456-7890,Accoünt ñ 日本,007,- 1\n"
+      + "\n"
+      + "123-456-7890,trailing comma,\n"
+      + "123-456-7890,no new line at the end,99999999999,1";
+
+  /**
+   * Tests that the rows are split the same as by {@link AwReportCsvReader}, for several buffer
+   * sizes to exercise the refills in the middle of the records and of the UTF-8 chars.
+   */
+  @Test
+  public void testSameRowsAsAwReportCsvReader() throws IOException {
+    for (int bufferSize : new int[] {1, 2, 3, 7, 64, 64 * 1024}) {
+      try (AwReportCsvReader expected =
+              new AwReportCsvReader(new StringReader(CSV), false, false);
+          AwReportByteCsvReader actual = createReader(CSV, bufferSize)) {
+        assertArrayEquals(expected.getColumnNames(), actual.getColumnNames());
+
+        String[] expectedLine;
+        while ((expectedLine = expected.readNext()) != null) {
+          CsvRow row = actual.nextRow();
+          String[] actualLine = new String[row.size()];
+          for (int i = 0; i < row.size(); i++) {
+            actualLine[i] = row.getRawValue(i);
+          }
+          assertArrayEquals("Buffer size " + bufferSize, expectedLine, actualLine);
+        }
+        assertNull(actual.nextRow());
+      }
+    }
+  }
+
+  /**
+   * Tests that the typed values parsed from the bytes are the same as the ones converted from the
+   * {@code String}s.
+   */
+  @Test
+  public void testSameValuesAsValueConverters() throws IOException {
+    String[] values = {
+      "", " ", "--", " -- ", "-", "0", "00", "010", "12", " 12", "-12", "123-456-7890", "+12",
+      "0x1F", "#1F", "1.5", "12%", "2147483647", "2147483648", "999999999999999999",
+      "9223372036854775807", "9223372036854775808", "1230000", "0001230000", "abc", "ñ"
+    };
+
+    StringBuilder csv = new StringBuilder("Value\n");
+    for (String value : values) {
+      csv.append('"').append(value).append("\"\n");
+    }
+
+    try (AwReportByteCsvReader reader = createReader(csv.toString(), 16)) {
+      for (String value : values) {
+        CsvRow row = reader.nextRow();
+        assertEquals(value, row.getRawValue(0));
+        assertEquals(value, ValueConverters.toStringValue(value), row.getString(0));
+        assertEquals(value, toLong(value), toLong(row, 0));
+        assertEquals(value, toInteger(value), toInteger(row, 0));
+        assertEquals(value, toMoney(value), toMoney(row, 0));
+      }
+      assertNull(reader.nextRow());
+    }
+  }
+
+  /**
+   * Tests that an unterminated quoted field is reported.
+   */
+  @Test
+  public void testUnterminatedQuotedField() throws IOException {
+    try (AwReportByteCsvReader reader = createReader("Account\n\"Unterminated\n", 64)) {
+      reader.nextRow();
+      fail("An unterminated quoted field should fail");
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  private static AwReportByteCsvReader createReader(String csv, int bufferSize)
+      throws IOException {
+    return new AwReportByteCsvReader(
+        new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), bufferSize);
+  }
+
+  // The conversions below return the class of the exception instead of throwing it.
+
+  private static Object toLong(String value) {
+    try {
+      return ValueConverters.toLong(value);
+    } catch (RuntimeException e) {
+      return e.getClass();
+    }
+  }
+
+  private static Object toLong(CsvRow row, int column) {
+    try {
+      return row.getLong(column);
+    } catch (RuntimeException e) {
+      return e.getClass();
+    }
+  }
+
+  private static Object toInteger(String value) {
+    try {
+      return ValueConverters.toInteger(value);
+    } catch (RuntimeException e) {
+      return e.getClass();
+    }
+  }
+
+  private static Object toInteger(CsvRow row, int column) {
+    try {
+      return row.getInteger(column);
+    } catch (RuntimeException e) {
+      return e.getClass();
+    }
+  }
+
+  private static Object toMoney(String value) {
+    try {
+      return ValueConverters.toMoney(value);
+    } catch (RuntimeException e) {
+      return e.getClass();
+    }
+  }
+
+  private static Object toMoney(CsvRow row, int column) {
+    try {
+      return row.getMoney(column);
+    } catch (RuntimeException e) {
+      return e.getClass();
+    }
+  }
+}
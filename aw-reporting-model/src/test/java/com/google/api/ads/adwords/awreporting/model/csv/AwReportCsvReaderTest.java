@@ -0,0 +1,164 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link AwReportCsvReader} class.
+ */
+@RunWith(JUnit4.class)
+public class AwReportCsvReaderTest {
+
+  private static final int SYNTHETIC_REPORT_ROWS = 10000000;
+
+  /**
+   * Tests reading a user downloaded report, with report header and summary lines.
+   */
+  @Test
+  public void testReportWithHeaderAndSummary() throws IOException {
+    String csv = "\"ACCOUNT_PERFORMANCE_REPORT (Jun 1, 2017-Jun 30, 2017)\"\n"
+        + "Customer ID, Account, Clicks\n"
+        + "123-456-7890,\"Account, with comma\",10\n"
+        + "123-456-7890,\"Account\nwith new line\",20\n"
+        + "Total,--,30\n";
+
+    try (AwReportCsvReader reader = new AwReportCsvReader(new StringReader(csv), true, true)) {
+      assertArrayEquals(
+          new String[] {"Customer ID", "Account", "Clicks"}, reader.getColumnNames());
+      assertArrayEquals(
+          new String[] {"123-456-7890", "Account, with comma", "10"}, reader.readNext());
+      assertArrayEquals(
+          new String[] {"123-456-7890", "Account\nwith new line", "20"}, reader.readNext());
+      assertNull("The summary line should not be returned", reader.readNext());
+      assertNull("No more lines after the summary line", reader.readNext());
+    }
+  }
+
+  /**
+   * Tests reading an API downloaded report, where a "Total" value is regular data.
+   */
+  @Test
+  public void testReportWithoutHeaderAndSummary() throws IOException {
+    String csv = "Account,Clicks\n" + "Total,1\n";
+
+    try (AwReportCsvReader reader = new AwReportCsvReader(new StringReader(csv), false, false)) {
+      assertArrayEquals(new String[] {"Account", "Clicks"}, reader.getColumnNames());
+      assertArrayEquals(new String[] {"Total", "1"}, reader.readNext());
+      assertNull(reader.readNext());
+    }
+  }
+
+  /**
+   * Tests that a very large report is read incrementally, so the memory held by the reader stays
+   * constant regardless of the report size.
+   */
+  @Test
+  public void testLargeReportIsStreamed() throws IOException {
+    SyntheticReportReader source = new SyntheticReportReader(SYNTHETIC_REPORT_ROWS);
+
+    long rows = 0;
+    long clicks = 0;
+    long charsUpToRow = SyntheticReportReader.HEADER.length();
+    try (AwReportCsvReader reader = new AwReportCsvReader(source, false, true)) {
+      String[] line;
+      while ((line = reader.readNext()) != null) {
+        charsUpToRow += SyntheticReportReader.rowLength(rows);
+        rows++;
+        clicks += Long.parseLong(line[2]);
+
+        if (rows % 1000000 == 0) {
+          long lookAhead = source.getCharsRead() - charsUpToRow;
+          assertTrue("Reader is buffering too much data: " + lookAhead, lookAhead < 1024 * 1024);
+        }
+      }
+    }
+
+    assertEquals(SYNTHETIC_REPORT_ROWS, rows);
+    assertEquals(SYNTHETIC_REPORT_ROWS, clicks);
+  }
+
+  /**
+   * Generates the rows of a report on the fly, keeping track of the number of chars consumed.
+   */
+  private static class SyntheticReportReader extends Reader {
+    private static final String HEADER = "Customer ID,Campaign,Clicks\n";
+
+    private final long numberOfRows;
+    private final StringBuilder pending = new StringBuilder(HEADER);
+    private int pendingOffset;
+    private long nextRow;
+    private long charsRead;
+
+    SyntheticReportReader(long numberOfRows) {
+      this.numberOfRows = numberOfRows;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+      if (pendingOffset == pending.length()) {
+        if (!generateNext()) {
+          return -1;
+        }
+      }
+
+      int count = Math.min(len, pending.length() - pendingOffset);
+      pending.getChars(pendingOffset, pendingOffset + count, cbuf, off);
+      pendingOffset += count;
+      charsRead += count;
+      return count;
+    }
+
+    private boolean generateNext() {
+      pending.setLength(0);
+      pendingOffset = 0;
+      if (nextRow < numberOfRows) {
+        pending.append("123-456-7890,\"Campaign #").append(nextRow).append("\",1\n");
+      } else if (nextRow == numberOfRows) {
+        pending.append("Total,--,").append(numberOfRows).append('\n');
+      } else {
+        return false;
+      }
+      nextRow++;
+      return true;
+    }
+
+    long getCharsRead() {
+      return charsRead;
+    }
+
+    /**
+     * Returns the number of chars of the given generated row.
+     */
+    static long rowLength(long row) {
+      return "123-456-7890,\"Campaign #".length()
+          + String.valueOf(row).length()
+          + "\",1\n".length();
+    }
+
+    @Override
+    public void close() {}
+  }
+}
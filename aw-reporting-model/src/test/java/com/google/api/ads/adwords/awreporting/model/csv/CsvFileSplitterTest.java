@@ -0,0 +1,165 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.AfterClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link CsvFileSplitter} class.
+ */
+@RunWith(JUnit4.class)
+public class CsvFileSplitterTest {
+
+  private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @AfterClass
+  public static void shutdownPool() {
+    pool.shutdown();
+  }
+
+  /**
+   * Tests that the parts have the same rows as the whole file, for any number of parts, with the
+   * quoted new lines and quotes making the split points ambiguous.
+   */
+  @Test
+  public void testSameRowsAsWholeFile() throws IOException {
+    StringBuilder csv = new StringBuilder("Customer ID, Account ,Clicks\n");
+    for (int i = 0; i < 200; i++) {
+      switch (i % 5) {
+        case 0:
+          csv.append(i).append(",Plain account,").append(i).append('\n');
+          break;
+        case 1:
+          csv.append(i).append(",\"Account\n\"\"with\"\"\nnew lines\",1\r\n");
+          break;
+        case 2:
+          csv.append(i).append(",\"\"\"\n,\"\"\",\"\n\"\n");
+          break;
+        case 3:
+          csv.append(i).append(",Accoünt 日本,3\r");
+          break;
+        default:
+          csv.append(i).append(",\"\",\"\"\"\"\n");
+      }
+    }
+    csv.append("last,no new line at the end,1");
+    byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+    File file = write(bytes);
+
+    List<String[]> expected;
+    try (AwReportByteCsvReader reader =
+        new AwReportByteCsvReader(new ByteArrayInputStream(bytes))) {
+      expected = readAll(Arrays.<CsvRowReader>asList(reader));
+    }
+    for (int parts = 1; parts <= 64; parts++) {
+      List<CsvRowReader> readers = CsvFileSplitter.split(file, false, false, parts, pool);
+      assertTrue(readers.size() <= parts);
+      assertTrue(parts == 1 || readers.size() > 1);
+      assertSame(readers.get(0).getColumnNames(), readers.get(readers.size() - 1).getColumnNames());
+      assertArrayEquals(
+          new String[] {"Customer ID", "Account", "Clicks"}, readers.get(0).getColumnNames());
+
+      List<String[]> actual = readAll(readers);
+      assertEquals("Parts " + parts, expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertArrayEquals("Parts " + parts + ", row " + i, expected.get(i), actual.get(i));
+      }
+    }
+  }
+
+  /**
+   * Tests the files downloaded from the AdWords UI, with a report header line and a summary line.
+   */
+  @Test
+  public void testReportHeaderAndSummary() throws IOException {
+    String csv = "\"REPORT (Jan 1, 2017-Jan 31, 2017)\"\r\n"
+        + "Customer ID,Clicks\r\n"
+        + "123-456-7890,1\r\n"
+        + "123-456-7890,2\r\n"
+        + "123-456-7890,3\r\n"
+        + "Total,6\r\n";
+    File file = write(csv.getBytes(StandardCharsets.UTF_8));
+
+    for (int parts = 1; parts <= 5; parts++) {
+      List<CsvRowReader> readers = CsvFileSplitter.split(file, true, true, parts, pool);
+      assertArrayEquals(new String[] {"Customer ID", "Clicks"}, readers.get(0).getColumnNames());
+
+      List<String[]> rows = readAll(readers);
+      assertEquals(3, rows.size());
+      for (int i = 0; i < rows.size(); i++) {
+        assertArrayEquals(new String[] {"123-456-7890", String.valueOf(i + 1)}, rows.get(i));
+      }
+    }
+  }
+
+  /**
+   * Tests a file with only the header line.
+   */
+  @Test
+  public void testNoRows() throws IOException {
+    File file = write("Customer ID,Clicks".getBytes(StandardCharsets.UTF_8));
+    List<CsvRowReader> readers = CsvFileSplitter.split(file, false, false, 4, pool);
+    assertArrayEquals(new String[] {"Customer ID", "Clicks"}, readers.get(0).getColumnNames());
+    assertTrue(readAll(readers).isEmpty());
+  }
+
+  private File write(byte[] bytes) throws IOException {
+    File file = folder.newFile();
+    try (OutputStream output = new FileOutputStream(file)) {
+      output.write(bytes);
+    }
+    return file;
+  }
+
+  private static List<String[]> readAll(List<CsvRowReader> readers) throws IOException {
+    List<String[]> rows = Lists.newArrayList();
+    for (CsvRowReader reader : readers) {
+      try (CsvRowReader partReader = reader) {
+        CsvRow row;
+        while ((row = partReader.nextRow()) != null) {
+          String[] values = new String[row.size()];
+          for (int i = 0; i < row.size(); i++) {
+            values[i] = row.getRawValue(i);
+          }
+          rows.add(values);
+        }
+      }
+    }
+    return rows;
+  }
+}
@@ -0,0 +1,80 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionReportType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link CsvReportEntitiesMapping} class, and the generated {@link ReportIndex}.
+ */
+@RunWith(JUnit4.class)
+public class CsvReportEntitiesMappingTest {
+
+  private static final String ENTITIES_PACKAGE =
+      "com.google.api.ads.adwords.awreporting.model.entities";
+
+  /**
+   * Tests that the generated index gives the same mapping as the scan of the classpath.
+   */
+  @Test
+  public void testIndexMatchesClasspathScan() {
+    assertNotNull("No generated report index", ReportIndex.load(ENTITIES_PACKAGE));
+
+    CsvReportEntitiesMapping indexed = new CsvReportEntitiesMapping(ENTITIES_PACKAGE);
+    indexed.initializeReportMap(true);
+    CsvReportEntitiesMapping scanned = new CsvReportEntitiesMapping(ENTITIES_PACKAGE);
+    scanned.initializeReportMap(false);
+
+    assertFalse(scanned.getDefinedReports().isEmpty());
+    assertEquals(scanned.getDefinedReports(), indexed.getDefinedReports());
+    for (ReportDefinitionReportType reportType : ReportDefinitionReportType.values()) {
+      assertEquals(
+          reportType.name(),
+          scanned.getReportBeanClass(reportType),
+          indexed.getReportBeanClass(reportType));
+      assertEquals(
+          reportType.name(),
+          scanned.retrievePropertiesToSelect(reportType),
+          indexed.retrievePropertiesToSelect(reportType));
+      assertEquals(
+          reportType.name(),
+          scanned.supportsDateRange(reportType),
+          indexed.supportsDateRange(reportType));
+    }
+  }
+
+  /**
+   * Tests the mapping of a report loaded from the index.
+   */
+  @Test
+  public void testInitializeReportMap() {
+    CsvReportEntitiesMapping mapping = new CsvReportEntitiesMapping(ENTITIES_PACKAGE);
+    mapping.initializeReportMap();
+
+    ReportDefinitionReportType reportType = ReportDefinitionReportType.ACCOUNT_PERFORMANCE_REPORT;
+    assertEquals(AccountPerformanceReport.class, mapping.getReportBeanClass(reportType));
+    assertTrue(mapping.retrievePropertiesToSelect(reportType).contains("ExternalCustomerId"));
+    assertTrue(mapping.supportsDateRange(reportType));
+  }
+}
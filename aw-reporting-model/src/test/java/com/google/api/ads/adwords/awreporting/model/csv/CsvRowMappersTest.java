@@ -0,0 +1,117 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionReportType;
+import com.google.common.collect.ImmutableSet;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link CsvRowMappers} class, and the generated {@link CsvRowMapper}s.
+ */
+@RunWith(JUnit4.class)
+public class CsvRowMappersTest {
+
+  // The fields set by the constructor of the reports.
+  private static final Set<String> IGNORED_FIELDS = ImmutableSet.of("timestamp");
+
+  private static final String[] VALUES = {
+    "--", " 12 ", "1230000", "-1", "123-456-7890", "12.5%", "1,234.5", "2017-06-01", "abc", ""
+  };
+
+  /**
+   * Tests that the generated mappers set the same values as the reflective mapping, for all the
+   * columns of all the reports.
+   */
+  @Test
+  public void testGeneratedMappersMatchReflectiveMapping() throws Exception {
+    CsvReportEntitiesMapping mapping =
+        new CsvReportEntitiesMapping("com.google.api.ads.adwords.awreporting.model.entities");
+    mapping.initializeReportMap();
+
+    for (ReportDefinitionReportType reportType : mapping.getDefinedReports()) {
+      Class<? extends Report> reportClass = mapping.getReportBeanClass(reportType);
+      assertNotNull("No generated mapper for " + reportClass, CsvRowMappers.forClass(reportClass));
+
+      for (String column : findCsvColumns(reportClass)) {
+        for (String value : VALUES) {
+          assertSameMapping(reportClass, column, value);
+        }
+      }
+    }
+  }
+
+  private static <T extends Report> void assertSameMapping(
+      Class<T> reportClass, String column, String value) throws Exception {
+    ReportEntityMappingStrategy<T> mapper = new ReportEntityMappingStrategy<T>(reportClass);
+    mapper.processHeader(new String[] {column});
+    String message = reportClass.getSimpleName() + ", column " + column + ", value " + value;
+
+    T generated = mapper.getRowMapper().createBean();
+    String generatedError = null;
+    try {
+      mapper.getRowMapper().mapRow(
+          generated, mapper.getPropertyIndexes(), new StringArrayCsvRow(new String[] {value}));
+    } catch (CsvReportParsingException e) {
+      generatedError = e.getCause().getClass().getName();
+    }
+
+    T reflective = mapper.createBean();
+    String reflectiveError = null;
+    try {
+      mapper.getColumnBinding(0).bind(reflective, value);
+    } catch (RuntimeException e) {
+      reflectiveError = e.getClass().getName();
+    } catch (Throwable t) {
+      throw new AssertionError(t);
+    }
+
+    assertEquals(message, reflectiveError, generatedError);
+    for (Class<?> c = reportClass; c != Object.class; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if (IGNORED_FIELDS.contains(field.getName())) {
+          continue;
+        }
+        field.setAccessible(true);
+        assertEquals(
+            message + ", field " + field.getName(), field.get(reflective), field.get(generated));
+      }
+    }
+  }
+
+  private static List<String> findCsvColumns(Class<?> reportClass) {
+    List<String> columns = new ArrayList<String>();
+    for (Class<?> c = reportClass; c != Object.class; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        CsvField csvField = field.getAnnotation(CsvField.class);
+        if (csvField != null) {
+          columns.add(csvField.value());
+        }
+      }
+    }
+    return columns;
+  }
+}
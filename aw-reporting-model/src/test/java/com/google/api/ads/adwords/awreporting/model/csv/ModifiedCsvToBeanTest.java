@@ -0,0 +1,179 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link ModifiedCsvToBean} class.
+ */
+@RunWith(JUnit4.class)
+public class ModifiedCsvToBeanTest {
+
+  private static final String HEADER =
+      "Customer ID,Account,Active View viewable impressions,Active View avg. CPM,"
+          + "Active View viewable CTR\n";
+
+  /**
+   * Tests the conversion of each kind of property: String, Long, money and numeric String.
+   */
+  @Test
+  public void testParse() throws IOException, CsvReportParsingException {
+    String csv = HEADER
+        + "123-456-7890, My account ,1234,1230000,12.5%\n"
+        + "1234567890,--,--, --,--\n";
+
+    try (AwReportCsvReader reader = new AwReportCsvReader(new StringReader(csv), false, false)) {
+      CsvParserIterator<AccountPerformanceReport> iterator = createIterator(reader);
+
+      AccountPerformanceReport report = iterator.next();
+      assertEquals(Long.valueOf(1234567890L), report.getCustomerId());
+      assertEquals("My account", report.getAccountDescriptiveName());
+      assertEquals(Long.valueOf(1234L), report.getActiveViewImpressions());
+      assertEquals(new BigDecimal("1.23"), report.getActiveViewCpm());
+      assertEquals(new BigDecimal("12.5"), report.getActiveViewCtrBigDecimal());
+
+      report = iterator.next();
+      assertEquals(Long.valueOf(1234567890L), report.getCustomerId());
+      assertNull(report.getAccountDescriptiveName());
+      assertNull(report.getActiveViewImpressions());
+      assertNull(report.getActiveViewCpm());
+      assertNull(report.getActiveViewCtrBigDecimal());
+
+      assertFalse(iterator.hasNext());
+    }
+  }
+
+  /**
+   * Tests that an invalid number is reported with the column and the contents.
+   */
+  @Test
+  public void testParseInvalidNumber() throws IOException, CsvReportParsingException {
+    String csv = HEADER + "123-456-7890,My account,abc,1230000,12.5%\n";
+
+    try (AwReportCsvReader reader = new AwReportCsvReader(new StringReader(csv), false, false)) {
+      CsvParserIterator<AccountPerformanceReport> iterator = createIterator(reader);
+      iterator.next();
+      fail("Parsing an invalid number should fail");
+    } catch (RuntimeException e) {
+      CsvReportParsingException cause = (CsvReportParsingException) e.getCause();
+      assertTrue(
+          cause.getMessage(),
+          cause.getMessage().startsWith("Error parsing column #2 with contents: abc,"));
+    }
+  }
+
+  /**
+   * Tests that a column not mapped to any property is reported when the row is mapped.
+   */
+  @Test
+  public void testParseUnknownColumn() throws IOException, CsvReportParsingException {
+    String csv = "Customer ID,Unknown column\n" + "123-456-7890,foo\n";
+
+    try (AwReportCsvReader reader = new AwReportCsvReader(new StringReader(csv), false, false)) {
+      CsvParserIterator<AccountPerformanceReport> iterator = createIterator(reader);
+      iterator.next();
+      fail("Parsing an unknown column should fail");
+    } catch (RuntimeException e) {
+      CsvReportParsingException cause = (CsvReportParsingException) e.getCause();
+      assertTrue(cause.getMessage(), cause.getMessage().startsWith("Invalid column number 1"));
+    }
+  }
+
+  /**
+   * Tests that the values of the dictionary-encoded columns are shared by the beans.
+   */
+  @Test
+  public void testParseWithDictionary() throws IOException, CsvReportParsingException {
+    String csv = "Customer ID,Account,Device\n"
+        + "123-456-7890,My account,Desktop\n"
+        + "123-456-7890,My account,Desktop\n";
+    StringDictionary dictionary = new StringDictionary(ImmutableSet.of("Device"), 10);
+
+    try (AwReportCsvReader reader = new AwReportCsvReader(new StringReader(csv), false, false)) {
+      CsvParserIterator<AccountPerformanceReport> iterator =
+          new ModifiedCsvToBean<AccountPerformanceReport>()
+              .lazyParse(
+                  new ReportEntityMappingStrategy<AccountPerformanceReport>(
+                      AccountPerformanceReport.class, dictionary),
+                  reader);
+
+      AccountPerformanceReport first = iterator.next();
+      AccountPerformanceReport second = iterator.next();
+      assertEquals("Desktop", second.getDevice());
+      assertSame(first.getDevice(), second.getDevice());
+      assertNotSame(first.getAccountDescriptiveName(), second.getAccountDescriptiveName());
+    }
+    assertEquals(1, dictionary.getStatistics().get("Device").getHits());
+  }
+
+  /**
+   * Tests that the reused beans are reset before being filled again, including the properties
+   * whose setters ignore the invalid values.
+   */
+  @Test
+  public void testParseWithBeanReuse() throws IOException, CsvReportParsingException {
+    String csv = "Customer ID,Day,Clicks\n"
+        + "123-456-7890,2017-01-01,1\n"
+        + "123-456-7890,2017-01-02,2\n"
+        + "123-456-7890,--,3\n";
+    ReportEntityMappingStrategy<AccountPerformanceReport> mappingStrategy =
+        new ReportEntityMappingStrategy<AccountPerformanceReport>(AccountPerformanceReport.class);
+    mappingStrategy.setBeanReuse(2);
+
+    try (AwReportCsvReader reader = new AwReportCsvReader(new StringReader(csv), false, false)) {
+      CsvParserIterator<AccountPerformanceReport> iterator =
+          new ModifiedCsvToBean<AccountPerformanceReport>().lazyParse(mappingStrategy, reader);
+
+      AccountPerformanceReport first = iterator.next();
+      assertEquals("2017-01-01", first.getDate());
+      first.setRowId();
+      AccountPerformanceReport second = iterator.next();
+      assertNotSame(first, second);
+      assertEquals("2017-01-02", second.getDate());
+
+      AccountPerformanceReport third = iterator.next();
+      assertSame(first, third);
+      assertNull(third.getDate());
+      assertNull(third.getRowId());
+      assertEquals(Long.valueOf(3), third.getClicks());
+      assertFalse(iterator.hasNext());
+    }
+  }
+
+  private static CsvParserIterator<AccountPerformanceReport> createIterator(
+      AwReportCsvReader reader) throws CsvReportParsingException {
+    return new ModifiedCsvToBean<AccountPerformanceReport>()
+        .lazyParse(
+            new ReportEntityMappingStrategy<AccountPerformanceReport>(
+                AccountPerformanceReport.class),
+            reader);
+  }
+}
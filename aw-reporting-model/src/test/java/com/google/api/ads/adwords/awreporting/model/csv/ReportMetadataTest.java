@@ -0,0 +1,74 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import java.math.BigDecimal;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link ReportMetadata} class.
+ */
+@RunWith(JUnit4.class)
+public class ReportMetadataTest {
+
+  /**
+   * Tests that the metadata is computed once per report class.
+   */
+  @Test
+  public void testForClass() {
+    assertSame(
+        ReportMetadata.forClass(AccountPerformanceReport.class),
+        ReportMetadata.forClass(AccountPerformanceReport.class));
+  }
+
+  /**
+   * Tests the metadata of the fields, including the fields of the superclasses.
+   */
+  @Test
+  public void testFields() {
+    ReportMetadata<AccountPerformanceReport> metadata =
+        ReportMetadata.forClass(AccountPerformanceReport.class);
+
+    ReportFieldMetadata cost = metadata.getFieldByCsvName("Cost");
+    assertEquals("cost", cost.getPropertyName());
+    assertEquals("Cost", cost.getReportField());
+    assertEquals("Cost", cost.getColumnName());
+    assertEquals(BigDecimal.class, cost.getFieldType());
+    assertTrue(cost.isMoneyField());
+    assertSame(cost, metadata.getFieldByPropertyName("cost"));
+
+    ReportFieldMetadata ctr = metadata.getFieldByPropertyName("activeViewCtr");
+    assertFalse(ctr.isMoneyField());
+    // The setter takes the String contents, while the field is a BigDecimal.
+    assertEquals(String.class, ctr.getDescriptor().getPropertyType());
+
+    ReportFieldMetadata customerId = metadata.getFieldByCsvName("Customer ID");
+    assertEquals("ExternalCustomerId", customerId.getReportField());
+    assertEquals(Long.class, customerId.getFieldType());
+
+    assertEquals("date", metadata.getFieldByCsvName("Day").getPropertyName());
+    assertNull(metadata.getFieldByCsvName("Unknown"));
+    assertTrue(metadata.getFields().contains(customerId));
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.api.ads.adwords.awreporting.model.csv.StringDictionary.ColumnStatistics;
+import com.google.common.collect.ImmutableSet;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link StringDictionary} class.
+ */
+@RunWith(JUnit4.class)
+public class StringDictionaryTest {
+
+  /**
+   * Tests that the repeated values are shared, up to the maximum size of the column.
+   */
+  @Test
+  public void testIntern() {
+    StringDictionary dictionary = new StringDictionary(ImmutableSet.of("Device"), 2);
+    StringDictionary.Column column = dictionary.getColumn("Device");
+    assertNull(dictionary.getColumn("Date"));
+
+    String desktop = column.intern(new String("Desktop"));
+    assertSame(desktop, column.intern(new String("Desktop")));
+    String tablet = column.intern(new String("Tablet"));
+    assertSame(tablet, column.intern(new String("Tablet")));
+    assertNull(column.intern(null));
+
+    // The dictionary is full.
+    String mobile = column.intern(new String("Mobile"));
+    assertNotSame(mobile, column.intern(new String("Mobile")));
+    assertSame(desktop, column.intern(new String("Desktop")));
+
+    ColumnStatistics statistics = dictionary.getStatistics().get("Device");
+    assertEquals(3, statistics.getHits());
+    assertEquals(4, statistics.getMisses());
+    assertEquals(2, statistics.getSize());
+    assertEquals(3.0 / 7, statistics.getHitRate(), 0);
+  }
+
+  /**
+   * Tests that only the columns that were looked up have statistics, and that they can be added up.
+   */
+  @Test
+  public void testStatistics() {
+    StringDictionary dictionary =
+        new StringDictionary(ImmutableSet.of("Device", "ClickType"), 10);
+    dictionary.getColumn("Device").intern("Desktop");
+    dictionary.getColumn("Device").intern("Desktop");
+
+    Map<String, ColumnStatistics> statistics = dictionary.getStatistics();
+    assertEquals(ImmutableSet.of("Device"), statistics.keySet());
+
+    ColumnStatistics total = statistics.get("Device").plus(new ColumnStatistics(1, 3, 2));
+    assertEquals(2, total.getHits());
+    assertEquals(4, total.getMisses());
+    assertEquals(3, total.getSize());
+    assertEquals(0, new ColumnStatistics(0, 0, 0).getHitRate(), 0);
+  }
+}
@@ -0,0 +1,117 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.UncategorizedSQLException;
+
+/**
+ * Test case for the {@link LockConflicts} class.
+ */
+@RunWith(JUnit4.class)
+public class LockConflictsTest {
+
+  /**
+   * Tests that a write is run again until it does not fail on a lock conflict.
+   */
+  @Test
+  public void testRetry() {
+    final AtomicInteger attempts = new AtomicInteger();
+    LockConflicts.retry(
+        new Runnable() {
+          @Override
+          public void run() {
+            if (attempts.incrementAndGet() < 3) {
+              throw new CannotAcquireLockException("Lock wait timeout exceeded");
+            }
+          }
+        });
+    assertEquals(3, attempts.get());
+  }
+
+  /**
+   * Tests that the other failures, and the lock conflicts of the last attempt, are thrown.
+   */
+  @Test
+  public void testFailure() {
+    final AtomicInteger attempts = new AtomicInteger();
+    final RuntimeException failure = new DataIntegrityViolationException("Duplicate entry");
+    try {
+      LockConflicts.retry(
+          new Runnable() {
+            @Override
+            public void run() {
+              attempts.incrementAndGet();
+              throw failure;
+            }
+          });
+      fail("The failure should be thrown");
+    } catch (RuntimeException e) {
+      assertSame(failure, e);
+    }
+    assertEquals(1, attempts.get());
+
+    attempts.set(0);
+    try {
+      LockConflicts.retry(
+          new Runnable() {
+            @Override
+            public void run() {
+              attempts.incrementAndGet();
+              throw new CannotAcquireLockException("Deadlock found");
+            }
+          });
+      fail("The last lock conflict should be thrown");
+    } catch (CannotAcquireLockException e) {
+      assertEquals(LockConflicts.MAX_ATTEMPTS, attempts.get());
+    }
+  }
+
+  /**
+   * Tests the detection of the deadlocks and lock timeouts of MySQL and SQL Server.
+   */
+  @Test
+  public void testIsLockConflict() {
+    BatchUpdateException batchFailure = new BatchUpdateException();
+    batchFailure.setNextException(new SQLException("Deadlock found", "40001", 1213));
+    assertTrue(LockConflicts.isLockConflict(translate(batchFailure)));
+    assertTrue(
+        LockConflicts.isLockConflict(
+            translate(new SQLException("Lock wait timeout exceeded", "HY000", 1205))));
+    assertTrue(
+        LockConflicts.isLockConflict(
+            translate(new SQLException("Lock request time out period exceeded", "S0001", 1222))));
+    assertFalse(
+        LockConflicts.isLockConflict(
+            translate(new SQLException("Duplicate entry", "23000", 1062))));
+  }
+
+  private static RuntimeException translate(SQLException e) {
+    return new UncategorizedSQLException("persist", "INSERT", e);
+  }
+}
@@ -0,0 +1,236 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatch;
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatchSchema;
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link WriteBehindEntityPersister} class.
+ */
+@RunWith(JUnit4.class)
+public class WriteBehindEntityPersisterTest {
+
+  /**
+   * Tests that the entities are written by the writer threads, and the load is forwarded once they
+   * are all written.
+   */
+  @Test
+  public void testPersistInBackground() {
+    RecordingPersister delegate = new RecordingPersister();
+    WriteBehindEntityPersister persister = new WriteBehindEntityPersister(delegate, 2, 4);
+
+    persister.beginLoad(AccountPerformanceReport.class, false);
+    List<AccountPerformanceReport> reports = createReports(3);
+    persister.persistReportEntities(reports);
+    reports.clear();
+    persister.persistReportEntities(createReports(2));
+    persister.finishLoad(AccountPerformanceReport.class, true);
+
+    assertEquals(5, delegate.persistedCount);
+    assertFalse(delegate.writerThreads.contains(Thread.currentThread().getName()));
+    assertEquals(Boolean.TRUE, delegate.completeLoad);
+    persister.close();
+  }
+
+  /**
+   * Tests that the rows are queued as a copy of the batch, which is persisted as it is by a batch
+   * persister, and as report entities by any other persister.
+   */
+  @Test
+  public void testPersistRowBatch() {
+    RowBatch<AccountPerformanceReport> rowBatch =
+        new RowBatch<AccountPerformanceReport>(
+            RowBatchSchema.forClass(AccountPerformanceReport.class), 3);
+    RecordingBatchPersister batchDelegate = new RecordingBatchPersister();
+    RecordingPersister delegate = new RecordingPersister();
+    WriteBehindEntityPersister batchPersister =
+        new WriteBehindEntityPersister(batchDelegate, 2, 4);
+    WriteBehindEntityPersister persister = new WriteBehindEntityPersister(delegate, 2, 4);
+
+    for (AccountPerformanceReport report : createReports(3)) {
+      rowBatch.addRow(report);
+    }
+    batchPersister.persistRowBatch(rowBatch);
+    persister.persistRowBatch(rowBatch);
+    rowBatch.clear();
+    rowBatch.addRow(createReports(1).get(0));
+    batchPersister.persistRowBatch(rowBatch);
+    persister.persistRowBatch(rowBatch);
+    rowBatch.clear();
+    batchPersister.close();
+    persister.close();
+
+    assertEquals(4, batchDelegate.customerIds.size());
+    assertEquals(ImmutableSet.of(0L, 1L, 2L), ImmutableSet.copyOf(batchDelegate.customerIds));
+    assertEquals(4, delegate.persistedCount);
+  }
+
+  /**
+   * Tests that the failed sets are reported when the load is finished, and the load of the
+   * delegate is incomplete.
+   */
+  @Test
+  public void testFailure() {
+    RecordingPersister delegate = new RecordingPersister();
+    delegate.failure = new IllegalArgumentException("Duplicate key");
+    WriteBehindEntityPersister persister = new WriteBehindEntityPersister(delegate, 1, 4);
+
+    persister.beginLoad(AccountPerformanceReport.class, false);
+    persister.persistReportEntities(createReports(1));
+    persister.persistReportEntities(createReports(1));
+    try {
+      persister.finishLoad(AccountPerformanceReport.class, true);
+      fail("The failed sets should be reported");
+    } catch (IllegalStateException e) {
+      assertEquals(
+          "2 of 2 sets of AccountPerformanceReport could not be persisted", e.getMessage());
+      assertEquals(delegate.failure, e.getCause());
+      assertEquals(1, e.getSuppressed().length);
+    }
+    assertEquals(Boolean.FALSE, delegate.completeLoad);
+
+    // The failures are only reported once.
+    persister.close();
+  }
+
+  /**
+   * Tests that the parsing threads wait for the writer threads once the queue is full.
+   */
+  @Test
+  public void testBackpressure() throws InterruptedException {
+    final RecordingPersister delegate = new RecordingPersister();
+    delegate.writeLatch = new CountDownLatch(1);
+    final WriteBehindEntityPersister persister = new WriteBehindEntityPersister(delegate, 1, 1);
+
+    // The first set is being written, and the second one is queued.
+    persister.persistReportEntities(createReports(1));
+    persister.persistReportEntities(createReports(1));
+    final CountDownLatch submitted = new CountDownLatch(1);
+    Thread parser =
+        new Thread(
+            new Runnable() {
+              @Override
+              public void run() {
+                persister.persistReportEntities(createReports(1));
+                submitted.countDown();
+              }
+            });
+    parser.start();
+
+    assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+    delegate.writeLatch.countDown();
+    assertTrue(submitted.await(10, TimeUnit.SECONDS));
+    persister.close();
+    assertEquals(3, delegate.persistedCount);
+    assertEquals(0, persister.getQueuedWrites());
+  }
+
+  private static List<AccountPerformanceReport> createReports(int count) {
+    List<AccountPerformanceReport> reports = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      AccountPerformanceReport report = new AccountPerformanceReport();
+      report.setCustomerId(Long.valueOf(i));
+      reports.add(report);
+    }
+    return reports;
+  }
+
+  /**
+   * A batch persister recording the customer IDs of the persisted rows.
+   */
+  private static class RecordingBatchPersister extends RecordingPersister
+      implements BatchEntityPersister {
+    private final List<Long> customerIds = Collections.synchronizedList(Lists.<Long>newArrayList());
+
+    @Override
+    public void persistRowBatch(RowBatch<?> rowBatch) {
+      int customerId = rowBatch.getSchema().getColumnIndex("ExternalCustomerId");
+      for (int row = 0; row < rowBatch.size(); row++) {
+        customerIds.add(rowBatch.getLong(customerId, row));
+      }
+    }
+  }
+
+  /**
+   * A persister recording the persisted entities and the loads.
+   */
+  private static class RecordingPersister implements StagedEntityPersister {
+    private final List<String> writerThreads =
+        Collections.synchronizedList(Lists.<String>newArrayList());
+    private volatile int persistedCount;
+    private volatile RuntimeException failure;
+    private volatile CountDownLatch writeLatch;
+    private volatile Boolean completeLoad;
+
+    @Override
+    public synchronized void persistReportEntities(List<? extends Report> reportEntities) {
+      writerThreads.add(Thread.currentThread().getName());
+      if (writeLatch != null) {
+        try {
+          writeLatch.await();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      persistedCount += reportEntities.size();
+    }
+
+    @Override
+    public <T> T save(T entity) {
+      return entity;
+    }
+
+    @Override
+    public <T, V> List<T> get(Class<T> classT, String key, V value) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public void beginLoad(Class<? extends Report> reportClass, boolean fullSnapshot) {}
+
+    @Override
+    public void recordLoadedRange(
+        Class<? extends Report> reportClass, long accountId, DateRangeAndType dateRangeAndType) {}
+
+    @Override
+    public void finishLoad(Class<? extends Report> reportClass, boolean complete) {
+      completeLoad = complete;
+    }
+
+    @Override
+    public void abortLoad(Class<? extends Report> reportClass) {}
+  }
+}
@@ -0,0 +1,194 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static com.google.api.ads.adwords.awreporting.model.persistence.sql.ReportTestDatabase.createReport;
+import static org.junit.Assert.assertEquals;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionDateRangeType;
+import com.google.common.collect.Lists;
+import org.joda.time.LocalDate;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link DateRangeReplacingPersister} class, against the H2 database of the
+ * tests whose tables are created by Hibernate.
+ */
+@RunWith(JUnit4.class)
+public class DateRangeReplacingPersisterTest {
+
+  private static final Class<AccountPerformanceReport> REPORT_CLASS =
+      AccountPerformanceReport.class;
+  private static final DateRangeAndType DATE_RANGE =
+      DateRangeAndType.fromValues(
+          new LocalDate(2017, 6, 1),
+          new LocalDate(2017, 6, 2),
+          ReportDefinitionDateRangeType.CUSTOM_DATE);
+
+  @Rule
+  public ReportTestDatabase database = new ReportTestDatabase();
+
+  /**
+   * Tests that the rows of the account within the reloaded date range are replaced, and the other
+   * rows are kept.
+   */
+  @Test
+  public void testReplaceRange() {
+    DateRangeReplacingPersister persister = createPersister(0);
+    persister.persistReportEntities(
+        Lists.newArrayList(
+            createReport(456L, "2017-06-01", 1, "20170601", "20170602"),
+            createReport(456L, "2017-06-02", 2, "20170601", "20170602"),
+            createReport(456L, "2017-06-03", 3, "20170603", "20170603"),
+            createReport(789L, "2017-06-02", 4, "20170601", "20170602")));
+
+    persister.beginLoad(REPORT_CLASS, false);
+    // Both rows of the range are replaced, by separate sets of rows.
+    persister.persistReportEntities(
+        Lists.newArrayList(createReport(456L, "2017-06-02", 20, "20170601", "20170602")));
+    persister.persistReportEntities(
+        Lists.newArrayList(createReport(456L, "2017-06-01", 21, "20170601", "20170602")));
+    persister.recordLoadedRange(REPORT_CLASS, 456L, DATE_RANGE);
+    // The rows are only replaced once the load is finished.
+    assertEquals(1L, database.getClicks(456L, "2017-06-01"));
+    persister.finishLoad(REPORT_CLASS, true);
+
+    assertEquals(4, database.countRows());
+    assertEquals(0, database.countTables("%_STG_%"));
+    assertEquals(21L, database.getClicks(456L, "2017-06-01"));
+    assertEquals(20L, database.getClicks(456L, "2017-06-02"));
+    assertEquals(3L, database.getClicks(456L, "2017-06-03"));
+    assertEquals(4L, database.getClicks(789L, "2017-06-02"));
+    assertEquals(
+        1,
+        database.getJdbcTemplate().queryForObject(
+            "SELECT COUNT(DISTINCT INDEX_NAME) FROM INFORMATION_SCHEMA.INDEXES"
+                + " WHERE INDEX_NAME = 'AW_ACCOUNTPERFORMANCEREPORT_DATE_IDX'",
+            Integer.class).intValue());
+  }
+
+  /**
+   * Tests that the rows of a recorded account and date range are deleted even if the account has
+   * no rows anymore, while the rows of the accounts not recorded are kept.
+   */
+  @Test
+  public void testReplaceRangeWithoutRows() {
+    DateRangeReplacingPersister persister = createPersister(0);
+    persister.persistReportEntities(
+        Lists.newArrayList(
+            createReport(456L, "2017-06-01", 1, "20170601", "20170602"),
+            createReport(789L, "2017-06-01", 2, "20170601", "20170602"),
+            createReport(789L, "2017-06-02", 3, "20170601", "20170602")));
+
+    persister.beginLoad(REPORT_CLASS, false);
+    persister.recordLoadedRange(REPORT_CLASS, 789L, DATE_RANGE);
+    persister.finishLoad(REPORT_CLASS, true);
+
+    assertEquals(1, database.countRows());
+    assertEquals(1L, database.getClicks(456L, "2017-06-01"));
+  }
+
+  /**
+   * Tests that no rows are deleted when the load is incomplete, as the rows of a failed download
+   * may be missing: the loaded rows are only merged.
+   */
+  @Test
+  public void testIncompleteLoad() {
+    DateRangeReplacingPersister persister = createPersister(0);
+    persister.persistReportEntities(
+        Lists.newArrayList(
+            createReport(456L, "2017-06-01", 1, "20170601", "20170602"),
+            createReport(456L, "2017-06-02", 2, "20170601", "20170602")));
+
+    persister.beginLoad(REPORT_CLASS, false);
+    persister.persistReportEntities(
+        Lists.newArrayList(createReport(456L, "2017-06-01", 21, "20170601", "20170602")));
+    persister.recordLoadedRange(REPORT_CLASS, 456L, DATE_RANGE);
+    persister.finishLoad(REPORT_CLASS, false);
+
+    assertEquals(2, database.countRows());
+    assertEquals(21L, database.getClicks(456L, "2017-06-01"));
+    assertEquals(2L, database.getClicks(456L, "2017-06-02"));
+  }
+
+  /**
+   * Tests that an aborted load neither deletes nor writes any rows.
+   */
+  @Test
+  public void testAbortLoad() {
+    DateRangeReplacingPersister persister = createPersister(0);
+    persister.persistReportEntities(
+        Lists.newArrayList(createReport(456L, "2017-06-01", 1, "20170601", "20170602")));
+
+    persister.beginLoad(REPORT_CLASS, false);
+    persister.persistReportEntities(
+        Lists.newArrayList(createReport(456L, "2017-06-02", 2, "20170601", "20170602")));
+    persister.abortLoad(REPORT_CLASS);
+
+    assertEquals(1, database.countRows());
+    assertEquals(0, database.countTables("%_STG_%"));
+    assertEquals(1L, database.getClicks(456L, "2017-06-01"));
+
+    // The next load can begin.
+    persister.beginLoad(REPORT_CLASS, false);
+    persister.finishLoad(REPORT_CLASS, true);
+  }
+
+  /**
+   * Tests that the rows without date are upserted.
+   */
+  @Test
+  public void testRowsWithoutDate() {
+    DateRangeReplacingPersister persister = createPersister(0);
+    persister.beginLoad(REPORT_CLASS, false);
+    persister.persistReportEntities(
+        Lists.newArrayList(createReport(456L, null, 1, "20170601", "20170602")));
+    persister.persistReportEntities(
+        Lists.newArrayList(createReport(456L, null, 2, "20170601", "20170602")));
+    persister.finishLoad(REPORT_CLASS, true);
+
+    assertEquals(1, database.countRows());
+  }
+
+  /**
+   * Tests that the rows older than the retention are deleted when the load finishes.
+   */
+  @Test
+  public void testRetention() {
+    DateRangeReplacingPersister persister = createPersister(30);
+    LocalDate today = LocalDate.now();
+    persister.persistReportEntities(
+        Lists.newArrayList(
+            createReport(456L, today.minusDays(31).toString(), 1, "20170601", "20170602"),
+            createReport(456L, today.minusDays(1).toString(), 1, "20170601", "20170602")));
+
+    persister.beginLoad(REPORT_CLASS, false);
+    persister.finishLoad(REPORT_CLASS, true);
+    assertEquals(1, database.countRows());
+  }
+
+  private DateRangeReplacingPersister createPersister(int retentionDays) {
+    return new DateRangeReplacingPersister(
+        database.getDataSource(),
+        SqlDialect.H2,
+        new SqlReportEntitiesPersister(database.getSessionFactory()),
+        retentionDays);
+  }
+}
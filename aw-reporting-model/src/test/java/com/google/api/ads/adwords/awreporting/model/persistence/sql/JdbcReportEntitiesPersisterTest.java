@@ -0,0 +1,130 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static com.google.api.ads.adwords.awreporting.model.persistence.sql.ReportTestDatabase.createReport;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatch;
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatchSchema;
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.common.collect.Lists;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link JdbcReportEntitiesPersister} class, against the H2 database of the
+ * tests whose tables are created by Hibernate.
+ */
+@RunWith(JUnit4.class)
+public class JdbcReportEntitiesPersisterTest {
+
+  @Rule
+  public ReportTestDatabase database = new ReportTestDatabase();
+
+  private JdbcReportEntitiesPersister persister;
+
+  @Before
+  public void setUp() {
+    persister =
+        new JdbcReportEntitiesPersister(
+            database.getDataSource(),
+            SqlDialect.H2,
+            new SqlReportEntitiesPersister(database.getSessionFactory()));
+  }
+
+  /**
+   * Tests that the rows are inserted, then updated when persisted again with the same key.
+   */
+  @Test
+  public void testPersistence() {
+    persister.setRowsPerStatement(2);
+    List<AccountPerformanceReport> reports = Lists.newArrayList();
+    for (int i = 0; i < 5; i++) {
+      reports.add(createReport("2017-06-0" + (i + 1), i));
+    }
+    persister.persistReportEntities(reports);
+
+    assertEquals(5, database.countRows());
+    Map<String, Object> row =
+        database.getJdbcTemplate().queryForMap(
+            "SELECT * FROM AW_AccountPerformanceReport WHERE ROW_ID = ?",
+            reports.get(3).getRowId());
+    assertEquals(123L, ((Number) row.get("TOP_CUSTOMER_ID")).longValue());
+    assertEquals(456L, ((Number) row.get("ExternalCustomerId")).longValue());
+    assertEquals(java.sql.Timestamp.valueOf("2017-06-04 00:00:00"), row.get("Date"));
+    assertEquals(3L, ((Number) row.get("Clicks")).longValue());
+    assertEquals(0, new BigDecimal("1.5").compareTo((BigDecimal) row.get("Cost")));
+    assertTrue(row.get("TIMESTAMP") instanceof java.util.Date);
+
+    AccountPerformanceReport updated = createReport("2017-06-04", 42);
+    persister.persistReportEntities(Lists.newArrayList(updated));
+
+    assertEquals(5, database.countRows());
+    assertEquals(
+        42L,
+        database.getJdbcTemplate().queryForObject(
+            "SELECT Clicks FROM AW_AccountPerformanceReport WHERE ROW_ID = ?",
+            Long.class,
+            updated.getRowId()).longValue());
+  }
+
+  /**
+   * Tests the statements of the MySQL and SQL Server dialects.
+   */
+  @Test
+  public void testUpsertSql() {
+    ReportTable<AccountPerformanceReport> table =
+        ReportTable.forClass(AccountPerformanceReport.class);
+    String mysql = SqlDialect.MYSQL.createUpsertSql(table, 2);
+    assertTrue(mysql, mysql.startsWith("INSERT INTO `AW_AccountPerformanceReport` (`ROW_ID`,"));
+    assertTrue(mysql, mysql.contains(" ON DUPLICATE KEY UPDATE `TOP_CUSTOMER_ID`="));
+    assertTrue(mysql, mysql.contains("`Clicks`=VALUES(`Clicks`)"));
+
+    String mssql = SqlDialect.MSSQL.createUpsertSql(table, 2);
+    assertTrue(mssql, mssql.startsWith("MERGE INTO [AW_AccountPerformanceReport] AS target"));
+    assertTrue(mssql, mssql.contains(" ON target.[ROW_ID]=source.[ROW_ID] WHEN MATCHED"));
+    assertTrue(mssql, mssql.endsWith(";"));
+
+    int columns = table.getColumnNames().size();
+    assertEquals(2100 / columns, SqlDialect.MSSQL.getMaxRowsPerStatement(columns));
+  }
+
+  /**
+   * Tests that the rows are written in the order of their keys.
+   */
+  @Test
+  public void testSortByRowId() {
+    RowBatch<AccountPerformanceReport> rowBatch =
+        new RowBatch<AccountPerformanceReport>(
+            RowBatchSchema.forClass(AccountPerformanceReport.class), 3);
+    rowBatch.addRow(createReport("2017-06-03", 1));
+    rowBatch.addRow(createReport("2017-06-01", 2));
+    rowBatch.addRow(createReport("2017-06-02", 3));
+
+    int[] rows =
+        JdbcReportEntitiesPersister.sortByRowId(
+            rowBatch, ReportTable.forClass(AccountPerformanceReport.class).getIdColumn());
+    assertArrayEquals(new int[] {1, 2, 0}, rows);
+  }
+}
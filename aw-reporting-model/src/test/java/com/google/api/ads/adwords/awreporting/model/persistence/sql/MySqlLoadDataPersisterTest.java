@@ -0,0 +1,208 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link MySqlLoadDataPersister} class, against a stand-in of a MySQL server
+ * which applies the {@code LOAD DATA ... REPLACE} statements to an in-memory table.
+ */
+@RunWith(JUnit4.class)
+public class MySqlLoadDataPersisterTest {
+
+  private static final ReportTable<AccountPerformanceReport> TABLE =
+      ReportTable.forClass(AccountPerformanceReport.class);
+
+  private MySqlStandIn mysql;
+  private MySqlLoadDataPersister persister;
+
+  @Before
+  public void setUp() {
+    mysql = new MySqlStandIn();
+    persister = new MySqlLoadDataPersister(mysql.getDataSource(), new NoEntityPersister());
+  }
+
+  /**
+   * Tests the statement loading the rows of a table.
+   */
+  @Test
+  public void testCreateLoadDataSql() {
+    String sql = MySqlLoadDataPersister.createLoadDataSql(TABLE);
+    assertTrue(
+        sql,
+        sql.startsWith(
+            "LOAD DATA LOCAL INFILE 'rows.tsv' REPLACE INTO TABLE `AW_AccountPerformanceReport` "
+                + "CHARACTER SET utf8mb4 (`ROW_ID`,`TOP_CUSTOMER_ID`,"));
+    assertTrue(sql, sql.endsWith("`)"));
+  }
+
+  /**
+   * Tests that the rows are loaded with their values escaped, and replaced when loaded again.
+   */
+  @Test
+  public void testPersistence() {
+    List<AccountPerformanceReport> reports = Lists.newArrayList();
+    reports.add(createReport("2017-06-01", "My\taccount\\with\nspecial chars", 1));
+    reports.add(createReport("2017-06-02", null, 2));
+    // A supplementary character, taking 4 bytes in UTF-8.
+    reports.add(createReport("2017-06-03", "Shoes \uD83D\uDC5F", 3));
+    persister.persistReportEntities(reports);
+
+    assertEquals(1, mysql.statements.size());
+    assertEquals(3, mysql.rows.size());
+    String[] row = mysql.rows.get(reports.get(0).getRowId());
+    assertEquals("My\taccount\\with\nspecial chars", getValue(row, "AccountDescriptiveName"));
+    assertEquals("1", getValue(row, "Clicks"));
+    assertEquals(0, new BigDecimal("1.5").compareTo(new BigDecimal(getValue(row, "Cost"))));
+    assertEquals("123", getValue(row, "TOP_CUSTOMER_ID"));
+    assertNull(getValue(mysql.rows.get(reports.get(1).getRowId()), "AccountDescriptiveName"));
+    assertEquals(
+        "Shoes \uD83D\uDC5F",
+        getValue(mysql.rows.get(reports.get(2).getRowId()), "AccountDescriptiveName"));
+
+    persister.persistReportEntities(Lists.newArrayList(createReport("2017-06-02", "Other", 42)));
+    assertEquals(3, mysql.rows.size());
+    row = mysql.rows.get(reports.get(1).getRowId());
+    assertEquals("Other", getValue(row, "AccountDescriptiveName"));
+    assertEquals("42", getValue(row, "Clicks"));
+  }
+
+  private static String getValue(String[] row, String columnName) {
+    int column = TABLE.getColumnNames().indexOf(columnName);
+    assertTrue(columnName, column >= 0);
+    return row[column];
+  }
+
+  private static AccountPerformanceReport createReport(
+      String date, String accountDescriptiveName, int clicks) {
+    AccountPerformanceReport report = ReportTestDatabase.createReport(date, clicks);
+    report.setAccountDescriptiveName(accountDescriptiveName);
+    return report;
+  }
+
+  /**
+   * A stand-in of a MySQL server, made of proxies of the JDBC interfaces. The statements read the
+   * local input stream as MySQL does, and replace the rows of a single table keyed by their
+   * first column.
+   */
+  private static class MySqlStandIn implements InvocationHandler {
+    private final List<String> statements = Lists.newArrayList();
+    private final Map<String, String[]> rows = Maps.newLinkedHashMap();
+    private InputStream localInfileInputStream;
+
+    DataSource getDataSource() {
+      return (DataSource)
+          Proxy.newProxyInstance(
+              getClass().getClassLoader(),
+              new Class<?>[] {DataSource.class, Connection.class, com.mysql.jdbc.Statement.class},
+              this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if (name.equals("getConnection") || name.equals("createStatement")) {
+        return proxy;
+      } else if (name.equals("setLocalInfileInputStream")) {
+        localInfileInputStream = (InputStream) args[0];
+      } else if (name.equals("execute")) {
+        statements.add((String) args[0]);
+        load();
+        return false;
+      } else if (name.equals("isWrapperFor") || name.equals("getAutoCommit")) {
+        return false;
+      } else if (method.getReturnType() == int.class) {
+        return 0;
+      }
+      return null;
+    }
+
+    private void load() throws IOException {
+      BufferedReader reader =
+          new BufferedReader(new InputStreamReader(localInfileInputStream, StandardCharsets.UTF_8));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] values = line.split("\t", -1);
+        for (int i = 0; i < values.length; i++) {
+          values[i] = unescape(values[i]);
+        }
+        rows.put(values[0], values);
+      }
+    }
+
+    private static String unescape(String value) {
+      if (value.equals("\\N")) {
+        return null;
+      }
+      StringBuilder result = new StringBuilder();
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '\\') {
+          c = value.charAt(++i);
+          c = c == 't' ? '\t' : c == 'n' ? '\n' : c == 'r' ? '\r' : c == '0' ? '\0' : c;
+        }
+        result.append(c);
+      }
+      return result.toString();
+    }
+  }
+
+  /**
+   * The tests only persist reports.
+   */
+  private static class NoEntityPersister implements EntityPersister {
+    @Override
+    public void persistReportEntities(List<? extends Report> reportEntities) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> T save(T entity) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T, V> List<T> get(Class<T> classT, String key, V value) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,156 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Test case for the {@link PooledDataSource} class, against an H2 database.
+ */
+@RunWith(JUnit4.class)
+public class PooledDataSourceTest {
+
+  private EmbeddedDatabase targetDataSource;
+  private PooledDataSource dataSource;
+
+  @Before
+  public void setUp() {
+    targetDataSource =
+        new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .setName("PooledDataSourceTest")
+            .build();
+    dataSource = new PooledDataSource(targetDataSource, 2);
+  }
+
+  @After
+  public void tearDown() {
+    dataSource.destroy();
+    targetDataSource.shutdown();
+  }
+
+  /**
+   * Tests that each thread gets the connection it used last.
+   */
+  @Test
+  public void testReuse() throws Exception {
+    String first = getPhysicalConnection();
+    assertEquals(first, getPhysicalConnection());
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // The other thread opens its own connection while this thread holds the first one.
+      Connection connection = dataSource.getConnection();
+      assertEquals(first, String.valueOf(connection));
+      String second = executor.submit(new GetPhysicalConnection()).get();
+      assertNotEquals(first, second);
+      connection.close();
+
+      // Both connections are idle, and the first one was returned last.
+      assertEquals(second, executor.submit(new GetPhysicalConnection()).get());
+      assertEquals(first, getPhysicalConnection());
+    } finally {
+      executor.shutdown();
+    }
+
+    PooledDataSource.Statistics statistics = dataSource.getStatistics();
+    assertEquals(6, statistics.getBorrowCount());
+    assertEquals(2, statistics.getCreatedCount());
+    assertEquals(4, statistics.getReuseCount());
+    assertEquals(0, statistics.getActiveConnections());
+  }
+
+  /**
+   * Tests that the connections are rolled back when returned, and can not be used anymore.
+   */
+  @Test
+  public void testRollbackOnClose() throws SQLException {
+    new JdbcTemplate(dataSource).execute("CREATE TABLE T (ID INT)");
+    Connection connection = dataSource.getConnection();
+    connection.setAutoCommit(false);
+    connection.createStatement().executeUpdate("INSERT INTO T VALUES (1)");
+    connection.close();
+    assertTrue(connection.isClosed());
+    try {
+      connection.createStatement();
+      fail("A closed connection should not be usable");
+    } catch (SQLException e) {
+      assertEquals("The connection is closed", e.getMessage());
+    }
+
+    connection = dataSource.getConnection();
+    assertTrue(connection.getAutoCommit());
+    connection.close();
+    assertEquals(
+        Integer.valueOf(0),
+        new JdbcTemplate(dataSource).queryForObject("SELECT COUNT(*) FROM T", Integer.class));
+  }
+
+  /**
+   * Tests that the threads wait for a connection when all of them are in use.
+   */
+  @Test
+  public void testMaxSize() throws SQLException {
+    dataSource.setMaxWaitMillis(50);
+    Connection first = dataSource.getConnection();
+    Connection second = dataSource.getConnection();
+    try {
+      dataSource.getConnection();
+      fail("The pool should not open more than 2 connections");
+    } catch (SQLException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("Timed out after 50 ms"));
+    }
+    first.close();
+    dataSource.getConnection().close();
+    second.close();
+
+    PooledDataSource.Statistics statistics = dataSource.getStatistics();
+    assertEquals(1, statistics.getWaitCount());
+    assertEquals(1, statistics.getTimeoutCount());
+    assertTrue(statistics.getMaxWaitMillis() >= 50);
+    assertEquals(2, statistics.getCreatedCount());
+  }
+
+  private String getPhysicalConnection() throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      return String.valueOf(connection);
+    }
+  }
+
+  private class GetPhysicalConnection implements Callable<String> {
+    @Override
+    public String call() throws SQLException {
+      return getPhysicalConnection();
+    }
+  }
+}
@@ -0,0 +1,126 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import java.math.BigDecimal;
+import javax.sql.DataSource;
+import org.hibernate.SessionFactory;
+import org.junit.rules.ExternalResource;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * The H2 database of the persistence tests, whose tables are created by Hibernate, as a rule
+ * opening it before each test and closing it after. The tests write the rows of
+ * {@link AccountPerformanceReport}, created by {@link #createReport}.
+ */
+public class ReportTestDatabase extends ExternalResource {
+
+  private ClassPathXmlApplicationContext appCtx;
+  private JdbcTemplate jdbcTemplate;
+
+  @Override
+  protected void before() {
+    appCtx = new ClassPathXmlApplicationContext("classpath:data-source-test.xml");
+    jdbcTemplate = new JdbcTemplate(getDataSource());
+  }
+
+  @Override
+  protected void after() {
+    appCtx.close();
+  }
+
+  public DataSource getDataSource() {
+    return appCtx.getBean(DataSource.class);
+  }
+
+  public SessionFactory getSessionFactory() {
+    return appCtx.getBean(SessionFactory.class);
+  }
+
+  public PlatformTransactionManager getTransactionManager() {
+    return appCtx.getBean(PlatformTransactionManager.class);
+  }
+
+  public JdbcTemplate getJdbcTemplate() {
+    return jdbcTemplate;
+  }
+
+  /**
+   * Returns the number of rows of the report table.
+   */
+  public int countRows() {
+    return jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM AW_AccountPerformanceReport", Integer.class);
+  }
+
+  /**
+   * Returns the clicks of the row of the report created by {@link #createReport} for the date.
+   */
+  public long getClicks(String date) {
+    return jdbcTemplate.queryForObject(
+        "SELECT Clicks FROM AW_AccountPerformanceReport WHERE ROW_ID = ?",
+        Long.class,
+        createReport(date, 0).getRowId());
+  }
+
+  /**
+   * Returns the clicks of the row of the account for the date.
+   */
+  public long getClicks(long customerId, String date) {
+    return jdbcTemplate.queryForObject(
+        "SELECT Clicks FROM AW_AccountPerformanceReport"
+            + " WHERE ExternalCustomerId = ? AND Date = ?",
+        Long.class,
+        customerId,
+        date);
+  }
+
+  /**
+   * Returns the number of tables of the report, such as its staging tables, whose name matches
+   * the pattern after the name of the report table.
+   */
+  public int countTables(String namePattern) {
+    return jdbcTemplate.queryForObject(
+        "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME LIKE ?",
+        Integer.class,
+        "AW_ACCOUNTPERFORMANCEREPORT" + namePattern);
+  }
+
+  /**
+   * Creates a report of the account 456 for the given date, within the date range of June 2017.
+   */
+  public static AccountPerformanceReport createReport(String date, int clicks) {
+    return createReport(456L, date, clicks, "20170601", "20170630");
+  }
+
+  /**
+   * Creates a report of the account for the given date, within the given date range.
+   */
+  public static AccountPerformanceReport createReport(
+      long customerId, String date, int clicks, String startDate, String endDate) {
+    AccountPerformanceReport report = new AccountPerformanceReport(123L, customerId);
+    report.setDate(date);
+    report.setClicks(Long.valueOf(clicks));
+    report.setCost(new BigDecimal("1.5"));
+    report.setDateRangeType("CUSTOM_DATE");
+    report.setStartDate(startDate);
+    report.setEndDate(endDate);
+    report.setRowId();
+    return report;
+  }
+}
@@ -0,0 +1,121 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static com.google.api.ads.adwords.awreporting.model.persistence.sql.ReportTestDatabase.createReport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.common.collect.Lists;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Test case for the {@link RowIdIndex} class, and its use by {@link SqlReportEntitiesPersister},
+ * against the H2 database of the tests whose tables are created by Hibernate.
+ */
+@RunWith(JUnit4.class)
+public class RowIdIndexTest {
+
+  @Rule
+  public ReportTestDatabase database = new ReportTestDatabase();
+
+  private TransactionTemplate transactionTemplate;
+
+  @Before
+  public void setUp() {
+    transactionTemplate = new TransactionTemplate(database.getTransactionManager());
+  }
+
+  /**
+   * Tests that the loaded and added keys are found, whatever their case, and the others are not.
+   */
+  @Test
+  public void testMightContain() {
+    RowIdIndex index = new RowIdIndex(1);
+    index.addLoadedKey("123-2017-06-01-Desktop");
+    assertTrue(index.mightContain("123-2017-06-01-Desktop"));
+    assertTrue(index.mightContain("123-2017-06-01-DESKTOP "));
+    assertFalse(index.mightContain("123-2017-06-01-Mobile"));
+
+    for (int i = 0; i < 5000; i++) {
+      index.add("456-" + i);
+    }
+    for (int i = 0; i < 5000; i++) {
+      assertTrue(index.mightContain("456-" + i));
+    }
+    assertFalse(index.mightContain("456-5000"));
+  }
+
+  /**
+   * Tests that the keys of the table are loaded, and that the new rows are inserted while the
+   * others are updated, including a row written since the index was loaded.
+   */
+  @Test
+  public void testPersistWithIndex() throws SQLException {
+    persist(false, createReport("2017-06-01", 1), createReport("2017-06-02", 2));
+    try (Connection connection = database.getDataSource().getConnection()) {
+      RowIdIndex index =
+          RowIdIndex.load(connection, ReportTable.forClass(AccountPerformanceReport.class));
+      assertTrue(index.mightContain(createReport("2017-06-01", 0).getRowId()));
+      assertFalse(index.mightContain(createReport("2017-06-03", 0).getRowId()));
+    }
+
+    SqlReportEntitiesPersister persister = persist(
+        true, createReport("2017-06-01", 10), createReport("2017-06-03", 30));
+    assertEquals(3, database.countRows());
+    assertEquals(10L, database.getClicks("2017-06-01"));
+    assertEquals(30L, database.getClicks("2017-06-03"));
+
+    // Written by another persister, so the index takes it as a new row.
+    persist(false, createReport("2017-06-04", 4));
+    persist(persister, createReport("2017-06-04", 40), createReport("2017-06-05", 50));
+    assertEquals(5, database.countRows());
+    assertEquals(40L, database.getClicks("2017-06-04"));
+    assertEquals(50L, database.getClicks("2017-06-05"));
+  }
+
+  private SqlReportEntitiesPersister persist(
+      boolean existenceIndex, AccountPerformanceReport... reports) {
+    SqlReportEntitiesPersister persister =
+        new SqlReportEntitiesPersister(database.getSessionFactory());
+    persister.setExistenceIndex(existenceIndex);
+    persist(persister, reports);
+    return persister;
+  }
+
+  private void persist(
+      final SqlReportEntitiesPersister persister, AccountPerformanceReport... reports) {
+    final List<AccountPerformanceReport> reportList = Lists.newArrayList(reports);
+    transactionTemplate.execute(
+        new TransactionCallbackWithoutResult() {
+          @Override
+          protected void doInTransactionWithoutResult(TransactionStatus status) {
+            persister.persistReportEntities(reportList);
+          }
+        });
+  }
+}
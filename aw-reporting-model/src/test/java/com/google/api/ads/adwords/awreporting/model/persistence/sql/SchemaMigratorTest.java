@@ -0,0 +1,125 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.AuthToken;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Test case for the {@link SchemaMigrator} class, against an empty H2 database.
+ */
+@RunWith(JUnit4.class)
+public class SchemaMigratorTest {
+
+  private static final List<Class<?>> ENTITY_CLASSES =
+      ImmutableList.<Class<?>>of(AccountPerformanceReport.class, AuthToken.class);
+
+  private EmbeddedDatabase dataSource;
+  private JdbcTemplate jdbcTemplate;
+
+  @Before
+  public void setUp() {
+    dataSource =
+        new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .setName("SchemaMigratorTest")
+            .build();
+    jdbcTemplate = new JdbcTemplate(dataSource);
+  }
+
+  @After
+  public void tearDown() {
+    dataSource.shutdown();
+  }
+
+  /**
+   * Tests that the tables are created, and not checked again while their mapping is unchanged.
+   */
+  @Test
+  public void testMigrate() {
+    assertEquals(2, createMigrator().migrate(ENTITY_CLASSES));
+    assertEquals(0, countRows("AW_AccountPerformanceReport"));
+    assertEquals(0, countRows("AW_AuthToken"));
+    assertEquals(2, countRows(SchemaMigrator.SCHEMA_VERSION_TABLE));
+
+    assertEquals(0, createMigrator().migrate(ENTITY_CLASSES));
+  }
+
+  /**
+   * Tests that only the tables whose mapping changed are updated.
+   */
+  @Test
+  public void testMigrateChanged() {
+    SchemaMigrator migrator = createMigrator();
+    migrator.migrate(ENTITY_CLASSES);
+    jdbcTemplate.update(
+        "UPDATE " + SchemaMigrator.SCHEMA_VERSION_TABLE + " SET FINGERPRINT = 'old'"
+            + " WHERE ENTITY_NAME = ?",
+        AccountPerformanceReport.class.getName());
+
+    assertEquals(1, migrator.migrate(ENTITY_CLASSES));
+    assertEquals(
+        migrator.getFingerprint(AccountPerformanceReport.class),
+        jdbcTemplate.queryForObject(
+            "SELECT FINGERPRINT FROM " + SchemaMigrator.SCHEMA_VERSION_TABLE
+                + " WHERE ENTITY_NAME = ?",
+            String.class,
+            AccountPerformanceReport.class.getName()));
+  }
+
+  /**
+   * Tests that a fingerprint is inserted, then updated in place.
+   */
+  @Test
+  public void testStoreFingerprint() {
+    SchemaMigrator migrator = createMigrator();
+    migrator.migrate(ImmutableList.<Class<?>>of());
+    migrator.storeFingerprint("Entity", "first");
+    migrator.storeFingerprint("Entity", "second");
+    assertEquals(1, countRows(SchemaMigrator.SCHEMA_VERSION_TABLE));
+    assertEquals("second", getFingerprint("Entity"));
+  }
+
+  private String getFingerprint(String entityName) {
+    return jdbcTemplate.queryForObject(
+        "SELECT FINGERPRINT FROM " + SchemaMigrator.SCHEMA_VERSION_TABLE + " WHERE ENTITY_NAME = ?",
+        String.class,
+        entityName);
+  }
+
+  private SchemaMigrator createMigrator() {
+    Properties hibernateProperties = new Properties();
+    hibernateProperties.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+    return new SchemaMigrator(dataSource, hibernateProperties, 2);
+  }
+
+  private int countRows(String tableName) {
+    return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + tableName, Integer.class);
+  }
+}
@@ -0,0 +1,136 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static com.google.api.ads.adwords.awreporting.model.persistence.sql.ReportTestDatabase.createReport;
+import static org.junit.Assert.assertEquals;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link StagingTablePersister} class, against the H2 database of the tests
+ * whose tables are created by Hibernate.
+ */
+@RunWith(JUnit4.class)
+public class StagingTablePersisterTest {
+
+  private static final Class<AccountPerformanceReport> REPORT_CLASS =
+      AccountPerformanceReport.class;
+
+  @Rule
+  public ReportTestDatabase database = new ReportTestDatabase();
+
+  /**
+   * Tests that the staged rows are only merged into the report table when the load finishes.
+   */
+  @Test
+  public void testMerge() {
+    StagingTablePersister persister = createPersister(false);
+    persister.persistReportEntities(
+        Lists.newArrayList(createReport("2017-06-01", 1), createReport("2017-06-02", 2)));
+
+    persister.beginLoad(REPORT_CLASS, false);
+    persister.persistReportEntities(
+        Lists.newArrayList(createReport("2017-06-02", 20), createReport("2017-06-03", 3)));
+    assertEquals(2, database.countRows());
+    assertEquals(1, database.countTables("%_STG_%"));
+
+    persister.finishLoad(REPORT_CLASS, true);
+    assertEquals(3, database.countRows());
+    assertEquals(20L, database.getClicks("2017-06-02"));
+    assertEquals(0, database.countTables("%_STG_%"));
+  }
+
+  /**
+   * Tests that a complete load of a snapshot replaces the report table, if enabled, with the same
+   * indexes.
+   */
+  @Test
+  public void testSwap() {
+    database.getJdbcTemplate().execute(
+        "CREATE INDEX AW_ACCOUNTPERFORMANCEREPORT_TEST_IDX"
+            + " ON AW_ACCOUNTPERFORMANCEREPORT (ExternalCustomerId, Date)");
+    StagingTablePersister persister = createPersister(true);
+    persister.persistReportEntities(
+        Lists.newArrayList(createReport("2017-06-01", 1), createReport("2017-06-02", 2)));
+
+    persister.beginLoad(REPORT_CLASS, true);
+    persister.persistReportEntities(Lists.newArrayList(createReport("2017-06-02", 20)));
+    persister.finishLoad(REPORT_CLASS, true);
+    assertEquals(1, database.countRows());
+    assertEquals(20L, database.getClicks("2017-06-02"));
+    assertEquals(0, database.countTables("%_STG_%"));
+    assertEquals(0, database.countTables("%_OLD_%"));
+
+    // The new table has the primary key.
+    persister.persistReportEntities(Lists.newArrayList(createReport("2017-06-02", 21)));
+    assertEquals(1, database.countRows());
+    assertEquals(
+        1,
+        database.getJdbcTemplate().queryForObject(
+            "SELECT COUNT(*) FROM INFORMATION_SCHEMA.CONSTRAINTS"
+                + " WHERE TABLE_NAME = 'AW_ACCOUNTPERFORMANCEREPORT'"
+                + " AND CONSTRAINT_TYPE = 'PRIMARY KEY'",
+            Integer.class).intValue());
+    assertEquals(
+        2,
+        database.getJdbcTemplate().queryForObject(
+            "SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES"
+                + " WHERE TABLE_NAME = 'AW_ACCOUNTPERFORMANCEREPORT'"
+                + " AND INDEX_NAME = 'AW_ACCOUNTPERFORMANCEREPORT_TEST_IDX'",
+            Integer.class).intValue());
+  }
+
+  /**
+   * Tests that an incomplete load of a snapshot is merged, so the rows of the failed accounts are
+   * kept.
+   */
+  @Test
+  public void testIncompleteSnapshot() {
+    StagingTablePersister persister = createPersister(true);
+    persister.persistReportEntities(Lists.newArrayList(createReport("2017-06-01", 1)));
+
+    persister.beginLoad(REPORT_CLASS, true);
+    persister.persistReportEntities(Lists.newArrayList(createReport("2017-06-02", 2)));
+    persister.finishLoad(REPORT_CLASS, false);
+    assertEquals(2, database.countRows());
+  }
+
+  /**
+   * Tests that the rows of an aborted load are discarded.
+   */
+  @Test
+  public void testAbort() {
+    StagingTablePersister persister = createPersister(false);
+    persister.beginLoad(REPORT_CLASS, false);
+    persister.persistReportEntities(Lists.newArrayList(createReport("2017-06-01", 1)));
+    persister.abortLoad(REPORT_CLASS);
+    assertEquals(0, database.countRows());
+    assertEquals(0, database.countTables("%_STG_%"));
+  }
+
+  private StagingTablePersister createPersister(boolean swapSnapshots) {
+    return new StagingTablePersister(
+        database.getDataSource(),
+        SqlDialect.H2,
+        new SqlReportEntitiesPersister(database.getSessionFactory()),
+        swapSnapshots);
+  }
+}
@@ -22,6 +22,11 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.Random;
 
 /**
  * Test for the {@link BigDecimalUtil} class.
@@ -170,4 +175,146 @@ public class BigDecimalUtilTest {
     BigDecimal parsed = BigDecimalUtil.parseFromNumberStringPercentage(numString);
     assertNull("The parsed value is not null.", parsed);
   }
+
+  /**
+   * Tests the money parsing, including the scale of the result.
+   */
+  @Test
+  public void testMoney() {
+    assertEquals(new BigDecimal("1.23"), BigDecimalUtil.parseFromMoneyString("1230000"));
+    assertEquals(new BigDecimal("10"), BigDecimalUtil.parseFromMoneyString("10000000"));
+    assertEquals(new BigDecimal("0.000001"), BigDecimalUtil.parseFromMoneyString("1"));
+    assertEquals(new BigDecimal("0"), BigDecimalUtil.parseFromMoneyString("0"));
+    assertEquals(new BigDecimal("1.5"), BigDecimalUtil.parseFromMoneyString("1,500,000"));
+    assertEquals(new BigDecimal("0.0000015"), BigDecimalUtil.parseFromMoneyString("1.5"));
+    assertNull(BigDecimalUtil.parseFromMoneyString("--"));
+    assertNull(BigDecimalUtil.parseFromMoneyString(""));
+  }
+
+  /**
+   * Tests that the number parsing keeps the scale of the number as written.
+   */
+  @Test
+  public void testScale() {
+    assertEquals(
+        new BigDecimal("1200300.10"), BigDecimalUtil.parseFromNumberString("1,200,300.10"));
+    assertEquals(new BigDecimal("0.0"), BigDecimalUtil.parseFromNumberString("-0.0"));
+    assertEquals(new BigDecimal("12"), BigDecimalUtil.parseFromNumberString("12."));
+    assertEquals(new BigDecimal("-12.50"), BigDecimalUtil.parseFromNumberString("- 12,50 %"));
+    assertEquals(new BigDecimal("10.0"), BigDecimalUtil.parseFromNumberStringPercentage("< 10.0%"));
+    assertEquals(new BigDecimal("90"), BigDecimalUtil.parseFromNumberStringPercentage("> 90%"));
+  }
+
+  /**
+   * Tests that the parsing produces exactly the same values (including the scale) and errors as
+   * the {@code DecimalFormat}, regular expression and {@code divide} based parsing, for random
+   * strings made of the chars found in the reports.
+   */
+  @Test
+  public void testSameAsGeneralParsing() {
+    String[] tokens = {
+      "0", "1", "5", "9", "00", "12", "999", ",", ".", "-", "+", " ", "%", "<", ">", "--", "E",
+      "x", "12345678901234567", "1,234", "1.234", "\t"
+    };
+    Random random = new Random(42);
+    for (int i = 0; i < 200000; i++) {
+      StringBuilder value = new StringBuilder();
+      int length = random.nextInt(6);
+      for (int j = 0; j < length; j++) {
+        value.append(tokens[random.nextInt(tokens.length)]);
+      }
+      String numberString = value.toString();
+
+      assertEquals(
+          numberString,
+          expectedNumberString(numberString),
+          parse(numberString, ParseMethod.NUMBER));
+      assertEquals(
+          numberString,
+          expectedPercentage(numberString),
+          parse(numberString, ParseMethod.PERCENTAGE));
+      assertEquals(
+          numberString, expectedMoney(numberString), parse(numberString, ParseMethod.MONEY));
+    }
+
+    for (long micros = 0; micros < 1000000000L; micros = micros * 3 + 1) {
+      assertEquals(
+          String.valueOf(micros),
+          new BigDecimal(micros).divide(new BigDecimal(1000000)),
+          BigDecimalUtil.fromMicros(micros));
+    }
+  }
+
+  private enum ParseMethod { NUMBER, PERCENTAGE, MONEY }
+
+  /**
+   * Returns the result of parsing, as "unscaled value/scale" or the class of the exception.
+   */
+  private static Object parse(String numberString, ParseMethod method) {
+    try {
+      switch (method) {
+        case NUMBER:
+          return describe(BigDecimalUtil.parseFromNumberString(numberString));
+        case PERCENTAGE:
+          return describe(BigDecimalUtil.parseFromNumberStringPercentage(numberString));
+        default:
+          return describe(BigDecimalUtil.parseFromMoneyString(numberString));
+      }
+    } catch (RuntimeException e) {
+      return e.getClass();
+    }
+  }
+
+  private static Object describe(BigDecimal value) {
+    return value == null ? null : value.unscaledValue() + "/" + value.scale();
+  }
+
+  // The reference implementations below are the general parsing methods.
+
+  private static Object expectedNumberString(String numberString) {
+    String nonSpacedString = numberString.replaceAll("[ \\t\\n\\x0B\\f\\r%]", "");
+    if (nonSpacedString.isEmpty()) {
+      return null;
+    }
+
+    DecimalFormat decimalFormat = (DecimalFormat) NumberFormat.getInstance();
+    DecimalFormatSymbols otherSymbols = new DecimalFormatSymbols();
+    if (nonSpacedString.indexOf(',') < nonSpacedString.indexOf('.')) {
+      otherSymbols.setDecimalSeparator('.');
+      otherSymbols.setGroupingSeparator(',');
+    } else {
+      otherSymbols.setDecimalSeparator(',');
+      otherSymbols.setGroupingSeparator('.');
+    }
+    decimalFormat.setParseBigDecimal(true);
+    decimalFormat.setDecimalFormatSymbols(otherSymbols);
+    try {
+      return describe((BigDecimal) decimalFormat.parse(nonSpacedString));
+    } catch (ParseException e) {
+      return RuntimeException.class;
+    }
+  }
+
+  private static Object expectedPercentage(String numberString) {
+    if (StringsUtil.isEmptyValue(numberString)) {
+      return null;
+    }
+    try {
+      return describe(new BigDecimal(numberString.replaceAll("\\s|%|>|<", "")));
+    } catch (RuntimeException e) {
+      return e.getClass();
+    }
+  }
+
+  private static Object expectedMoney(String numberString) {
+    if (StringsUtil.isEmptyValue(numberString)) {
+      return null;
+    }
+    try {
+      return describe(
+          new BigDecimal(numberString.replaceAll("[^\\d.]", "")).divide(new BigDecimal(1000000)));
+    } catch (RuntimeException e) {
+      return e.getClass();
+    }
+  }
 }
@@ -19,6 +19,8 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 import org.joda.time.LocalDate;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -27,6 +29,7 @@ import org.junit.runners.Parameterized.Parameters;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Random;
 import java.util.TimeZone;
 
 /**
@@ -220,4 +223,64 @@ public class DateUtilTest {
     toParse = "20001032";
     assertNull("Error parsing yyyyMMdd", DateUtil.parseLocalDate(toParse));
   }
+
+  /**
+   * Tests that the dates in the known shapes are parsed the same as with the formatters, including
+   * the invalid dates and the other chars.
+   */
+  @Test
+  public void testParseSameAsFormatters() {
+    String[] candidates = {
+        "2000-02-29", "1900-02-29", "2001-02-29", "2016-04-31", "2016-00-01", "2016-12-00",
+        "0000-01-01", "2016/01/01", "2016-1-01", "2016-01-1", "2016-1-1", "2016-01-01 ", " 2016-01",
+        "+2016-01", "201-01-01", "20160001", "20161301", "201613", "201600", "2016-0a", "2016010a",
+        "99991231", "000101", "", "-", "--", "2016"};
+    for (String candidate : candidates) {
+      assertEquals(candidate, parseWithFormatters(candidate), DateUtil.parseLocalDate(candidate));
+    }
+
+    Random random = new Random(calendar.getTimeZone().getID().hashCode());
+    String[] shapes = {"dddd-dd-dd", "dddd-dd", "dddddddd", "dddddd", "dddd-d-d", "ddddd-dd"};
+    for (int i = 0; i < 10000; i++) {
+      String shape = shapes[random.nextInt(shapes.length)];
+      StringBuilder builder = new StringBuilder();
+      for (int j = 0; j < shape.length(); j++) {
+        // Favor the small month and day values, so that many of the dates are valid.
+        char c = shape.charAt(j);
+        builder.append(c == '-' ? c : (char) ('0' + random.nextInt(j < 4 ? 10 : 4)));
+      }
+      String candidate = builder.toString();
+      assertEquals(candidate, parseWithFormatters(candidate), DateUtil.parseLocalDate(candidate));
+    }
+  }
+
+  /**
+   * Tests the parsing of a {@code String} in any of the known formats to the yyyy-MM-dd format.
+   */
+  @Test
+  public void testParseToYearMonthDay() {
+    assertEquals("2016-02-29", DateUtil.parseToYearMonthDay("2016-02-29"));
+    assertEquals("2016-02-29", DateUtil.parseToYearMonthDay("2016-02-29"));
+    assertEquals("2016-02-01", DateUtil.parseToYearMonthDay("2016-02"));
+    assertEquals("2016-02-29", DateUtil.parseToYearMonthDay("20160229"));
+    assertEquals("2016-02-01", DateUtil.parseToYearMonthDay("201602"));
+    assertNull(DateUtil.parseToYearMonthDay("2015-02-29"));
+    assertNull(DateUtil.parseToYearMonthDay("--"));
+    assertNull(DateUtil.parseToYearMonthDay(null));
+  }
+
+  /**
+   * Parses the {@code String} with the formatters only, as {@code DateUtil} used to.
+   */
+  private static LocalDate parseWithFormatters(String timestamp) {
+    for (String pattern : new String[] {"yyyy-MM-dd", "yyyy-MM", "yyyyMMdd", "yyyyMM"}) {
+      DateTimeFormatter formatter = DateTimeFormat.forPattern(pattern);
+      try {
+        return formatter.parseLocalDate(timestamp);
+      } catch (IllegalArgumentException e) {
+        // Skips to the next formatter.
+      }
+    }
+    return null;
+  }
 }
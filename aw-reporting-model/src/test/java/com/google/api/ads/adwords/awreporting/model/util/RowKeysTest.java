@@ -0,0 +1,126 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.common.collect.Sets;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link RowKeys} class.
+ */
+@RunWith(JUnit4.class)
+public class RowKeysTest {
+
+  private static final String[] NETWORKS = {"Search Network", "Display Network", "YouTube"};
+  private static final String[] DEVICES = {"Computers", "Mobile devices", "Tablets", "Other"};
+
+  @After
+  public void tearDown() {
+    RowKeys.resetMode();
+  }
+
+  /**
+   * Tests that the entities use the row key mode.
+   */
+  @Test
+  public void testEntityRowId() {
+    AccountPerformanceReport report = new AccountPerformanceReport();
+    report.setCustomerId(1234567890L);
+    report.setDate("2017-06-01");
+    report.setDevice("Tablets");
+    report.setRowId();
+    String concatenation = report.getRowId();
+    assertEquals("1234567890-2017-06-01-Tablets", concatenation);
+
+    RowKeys.setMode(RowKeys.Mode.HASH);
+    report.setRowId();
+    assertEquals(RowKeys.HASH_KEY_LENGTH, report.getRowId().length());
+    assertEquals(RowKeys.hash(concatenation), report.getRowId());
+  }
+
+  /**
+   * Tests that the mode can be set again to the same value, but not changed.
+   */
+  @Test
+  public void testSetModeOnce() {
+    assertEquals(RowKeys.Mode.STRING, RowKeys.getMode());
+    RowKeys.setMode(RowKeys.Mode.HASH);
+    RowKeys.setMode(RowKeys.Mode.HASH);
+    assertEquals(RowKeys.Mode.HASH, RowKeys.getMode());
+    try {
+      RowKeys.setMode(RowKeys.Mode.STRING);
+      fail("The mode was changed");
+    } catch (IllegalStateException e) {
+      assertEquals(RowKeys.Mode.HASH, RowKeys.getMode());
+    }
+  }
+
+  /**
+   * Tests the binary forms of the hashed row keys.
+   */
+  @Test
+  public void testBinaryForms() {
+    String rowId = RowKeys.hash("1234567890-2017-06-01");
+    byte[] bytes = RowKeys.toBytes(rowId);
+    assertEquals(16, bytes.length);
+    assertEquals(rowId, RowKeys.fromBytes(bytes));
+    assertEquals(ByteBuffer.wrap(bytes).getLong(0), RowKeys.getHigh(rowId));
+    assertEquals(ByteBuffer.wrap(bytes).getLong(8), RowKeys.getLow(rowId));
+    assertArrayEquals(bytes, RowKeys.toBytes(rowId.toLowerCase()));
+  }
+
+  /**
+   * Tests that distinct row keys do not collide once hashed, including the keys that only differ
+   * by a single character or by the case, for a large set of realistic keys.
+   */
+  @Test
+  public void testNoCollisions() {
+    Set<String> hashedKeys = Sets.newHashSet();
+    int count = 0;
+    for (long customerId = 1000000000L; customerId < 1000000050L; customerId++) {
+      for (int day = 1; day <= 28; day++) {
+        for (String network : NETWORKS) {
+          for (String device : DEVICES) {
+            for (int criterion = 0; criterion < 10; criterion++) {
+              String key =
+                  customerId + "-2017-02-" + (day < 10 ? "0" : "") + day + "-" + network + "-"
+                      + device + "-" + criterion;
+              // Compare the hashed keys in upper case, as they may be compared case-insensitively.
+              assertTrue("Collision for " + key, hashedKeys.add(RowKeys.hash(key).toUpperCase()));
+              assertTrue(
+                  "Collision for " + key,
+                  hashedKeys.add(RowKeys.hash(key.toLowerCase()).toUpperCase()));
+              count += 2;
+            }
+          }
+        }
+      }
+    }
+    assertEquals(count, hashedKeys.size());
+    assertNotEquals(RowKeys.hash("1-2"), RowKeys.hash("1-3"));
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link StringsUtil} class.
+ */
+@RunWith(JUnit4.class)
+public class StringsUtilTest {
+
+  /**
+   * Tests the detection of the empty values, with and without whitespace.
+   */
+  @Test
+  public void testIsEmptyValue() {
+    assertTrue(StringsUtil.isEmptyValue(null));
+    assertTrue(StringsUtil.isEmptyValue(""));
+    assertTrue(StringsUtil.isEmptyValue("--"));
+    assertTrue(StringsUtil.isEmptyValue(" -- "));
+    assertTrue(StringsUtil.isEmptyValue("\t--\n"));
+
+    assertFalse(StringsUtil.isEmptyValue(" "));
+    assertFalse(StringsUtil.isEmptyValue("-"));
+    assertFalse(StringsUtil.isEmptyValue("---"));
+    assertFalse(StringsUtil.isEmptyValue("- -"));
+    assertFalse(StringsUtil.isEmptyValue("--1"));
+    assertFalse(StringsUtil.isEmptyValue("1--"));
+  }
+
+  /**
+   * Tests that the values are trimmed only when needed.
+   */
+  @Test
+  public void testTrimToNullIfEmptyValue() {
+    assertNull(StringsUtil.trimToNullIfEmptyValue(null));
+    assertNull(StringsUtil.trimToNullIfEmptyValue(""));
+    assertNull(StringsUtil.trimToNullIfEmptyValue(" -- "));
+
+    String value = "My account";
+    assertSame(value, StringsUtil.trimToNullIfEmptyValue(value));
+    assertEquals("My account", StringsUtil.trimToNullIfEmptyValue(" My account\t"));
+    assertEquals("", StringsUtil.trimToNullIfEmptyValue("  "));
+  }
+
+  /**
+   * Tests that the dashes are removed, and the same instance is returned if there are none.
+   */
+  @Test
+  public void testRemoveDashes() {
+    assertEquals("", StringsUtil.removeDashes(null));
+    assertEquals("", StringsUtil.removeDashes(""));
+    assertEquals("1234567890", StringsUtil.removeDashes("123-456-7890"));
+    assertEquals("", StringsUtil.removeDashes("--"));
+    assertEquals("12", StringsUtil.removeDashes("-1-2-"));
+
+    String value = "1234567890";
+    assertSame(value, StringsUtil.removeDashes(value));
+  }
+
+  /**
+   * Tests that the given chars are removed, and the same instance is returned if there are none.
+   */
+  @Test
+  public void testRemoveChars() {
+    assertEquals("12.5", StringsUtil.removeChars(" 12.5 %", " %"));
+    assertEquals("", StringsUtil.removeChars("% %", " %"));
+    assertEquals("", StringsUtil.removeChars("", " %"));
+
+    String value = "12.5";
+    assertSame(value, StringsUtil.removeChars(value, " %"));
+  }
+
+  /**
+   * Tests the parsing of the customer IDs, with and without dashes.
+   */
+  @Test
+  public void testParseCustomerId() {
+    assertEquals(Long.valueOf(1234567890L), StringsUtil.parseCustomerId("123-456-7890"));
+    assertEquals(Long.valueOf(1234567890L), StringsUtil.parseCustomerId("1234567890"));
+  }
+}
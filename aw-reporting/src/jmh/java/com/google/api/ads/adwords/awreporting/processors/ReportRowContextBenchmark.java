@@ -0,0 +1,99 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionDateRangeType;
+import java.util.concurrent.TimeUnit;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the per-row cost of setting the values shared by the rows of a report download.
+ *
+ * <p>{@link #perRow()} repeats, for a single row, the work the runnable processors used to do for
+ * every parsed row: the account ID taken from the file name, the top customer ID parsed from its
+ * dashed form, the date range strings and the ingestion timestamp. {@link #rowContext()} sets the
+ * same values from a {@link ReportRowContext} built once per download.
+ *
+ * <p>Run it with {@code mvn -P jmh test-compile exec:exec} from the aw-reporting module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class ReportRowContextBenchmark {
+
+  private static final String FILE_NAME = "ACCOUNT_PERFORMANCE_REPORT-1234567890-report.csv";
+  private static final String TOP_CUSTOMER_ID = "111-111-1111";
+
+  private final DateRangeAndType dateRangeAndType =
+      DateRangeAndType.fromValues(
+          new LocalDate(2017, 6, 1),
+          new LocalDate(2017, 6, 30),
+          ReportDefinitionDateRangeType.CUSTOM_DATE);
+
+  private AccountPerformanceReport report;
+  private ReportRowContext rowContext;
+
+  @Setup
+  public void setUp() {
+    report = new AccountPerformanceReport();
+    rowContext =
+        new ReportRowContext(
+            Long.parseLong(FILE_NAME.split("-")[1]),
+            Long.parseLong(TOP_CUSTOMER_ID.replaceAll("-", "")),
+            dateRangeAndType);
+  }
+
+  /**
+   * Sets the shared values the way they used to be computed for every row.
+   */
+  @Benchmark
+  public AccountPerformanceReport perRow() {
+    if (FILE_NAME.contains("-") && FILE_NAME.split("-") != null
+        && FILE_NAME.split("-").length >= 2 && FILE_NAME.split("-")[1].matches("\\d*")) {
+      report.setCustomerId(Long.parseLong(FILE_NAME.split("-")[1]));
+    }
+    report.setTopCustomerId(Long.parseLong(TOP_CUSTOMER_ID.replaceAll("-", "")));
+    report.setDateRangeType(dateRangeAndType.getTypeStr());
+    report.setStartDate(dateRangeAndType.getStartDateStr());
+    report.setEndDate(dateRangeAndType.getEndDateStr());
+    report.setTimestamp(new DateTime().toDate());
+    return report;
+  }
+
+  /**
+   * Sets the shared values computed once per download.
+   */
+  @Benchmark
+  public AccountPerformanceReport rowContext() {
+    rowContext.apply(report);
+    return report;
+  }
+}
@@ -15,14 +15,18 @@
 package com.google.api.ads.adwords.awreporting;
 
 import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.persistence.sql.PooledDataSource;
 import com.google.api.ads.adwords.awreporting.model.util.DateUtil;
 import com.google.api.ads.adwords.awreporting.processors.ReportProcessor;
 import com.google.api.ads.adwords.awreporting.processors.file.FileReportProcessor;
 import com.google.api.ads.adwords.awreporting.proxy.JaxWsProxySelector;
 import com.google.api.ads.adwords.awreporting.util.DatabaseType;
+import com.google.api.ads.adwords.awreporting.util.PersisterType;
 import com.google.api.ads.adwords.awreporting.util.ProcessorType;
 import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionDateRangeType;
+import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionReportType;
 import com.google.api.client.util.Lists;
+import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.Sets;
 import com.google.common.io.Files;
@@ -68,6 +72,32 @@ public class AwReporting {
   /** The DB type key specified in the properties file. */
   private static final String AW_REPORT_MODEL_DB_TYPE = "aw.report.model.db.type";
 
+  /** The SQL persister type key specified in the properties file. */
+  private static final String AW_REPORT_MODEL_DB_SQL_PERSISTER = "aw.report.model.db.sql.persister";
+
+  /** The key specified in the properties file to enable the existence index of the rows. */
+  private static final String AW_REPORT_MODEL_DB_SQL_EXISTENCE_INDEX =
+      "aw.report.model.db.sql.existenceIndex";
+
+  /** The report types whose tables are mapped, set from the report definitions. */
+  private static final String AW_REPORT_MODEL_DB_SQL_SCHEMA_REPORT_TYPES =
+      "aw.report.model.db.sql.schema.reportTypes";
+
+  /** The Spring profile of the JDBC persister. */
+  private static final String JDBC_PERSISTER_PROFILE = "JDBC_PERSISTER";
+
+  /** The Spring profile of the MySQL LOAD DATA persister. */
+  private static final String LOAD_DATA_PERSISTER_PROFILE = "LOAD_DATA_PERSISTER";
+
+  /** The Spring profile of the staging table persister. */
+  private static final String STAGING_PERSISTER_PROFILE = "STAGING_PERSISTER";
+
+  /** The Spring profile of the date range replacing persister. */
+  private static final String REPLACE_RANGE_PERSISTER_PROFILE = "REPLACE_RANGE_PERSISTER";
+
+  /** The Spring profile of the Hibernate persister with an existence index of the rows. */
+  private static final String EXISTENCE_INDEX_PROFILE = "EXISTENCE_INDEX";
+
   /** The Processor type key specified in the properties file. */
   private static final String AW_REPORT_PROCESSOR_TYPE = "aw.report.processor.type";
 
@@ -129,7 +159,7 @@ public class AwReporting {
       String csvReportFile = AwReportingOption.CSV_FILE_INPUT.getOptionValue(cmdLine);
       
       boolean forceFileProcessor = !Strings.isNullOrEmpty(reportFileTypeName);
-      Properties properties = init(propertiesPath, forceFileProcessor);
+      Properties properties = init(propertiesPath, reportFileTypeName);
 
       logger.debug("Creating ReportProcessor bean...");
       ReportProcessor processor = createReportProcessor();
@@ -151,6 +181,7 @@ public class AwReporting {
             accountIdsSet,
             properties);
       }
+      logConnectionPoolStatistics();
     } catch (ReportConfigLoadException e) {
       logger.error("Failed to load configuration.", e);
       System.exit(1);
@@ -259,6 +290,15 @@ public class AwReporting {
   private static ReportProcessor createReportProcessor() {
     return appCtx.getBean(ReportProcessor.class);
   }
+
+  /**
+   * Logs how the database connections were used, such as how long the threads waited for them.
+   */
+  private static void logConnectionPoolStatistics() {
+    for (PooledDataSource dataSource : appCtx.getBeansOfType(PooledDataSource.class).values()) {
+      logger.info("Database connections: " + dataSource.getStatistics());
+    }
+  }
   
   /**
    * Prints the help message.
@@ -299,12 +339,14 @@ public class AwReporting {
    * specified path.
    *
    * @param propertiesPath the path to the file.
-   * @param forceFileProcessor true if the processor will be created to run "on file"
+   * @param reportFileTypeName the report type of the input files if the processor will be created
+   *     to run "on file", or {@code null}.
    * @return the properties instance loaded from the properties file.
    * @throws ReportConfigLoadException error opening the properties file.
    */
-  private static Properties init(String propertiesPath, boolean forceFileProcessor)
+  private static Properties init(String propertiesPath, String reportFileTypeName)
       throws ReportConfigLoadException {
+    boolean forceFileProcessor = !Strings.isNullOrEmpty(reportFileTypeName);
     logger.trace("Initializing Spring application context.");
 
     Resource resource = new ClassPathResource(propertiesPath);
@@ -342,6 +384,43 @@ public class AwReporting {
       throw new ReportConfigLoadException("Unknown database type: " + dbType);
     }
 
+    // Choose the SQL persister based properties file, default to HIBERNATE
+    List<String> profiles = Lists.newArrayList();
+    if (sqldbType != null) {
+      profiles.add(sqldbType.name());
+      String persisterType = properties.getProperty(
+          AW_REPORT_MODEL_DB_SQL_PERSISTER, PersisterType.HIBERNATE.name()).trim();
+      if (PersisterType.JDBC.name().equals(persisterType)) {
+        logger.info("Using JDBC persister.");
+        profiles.add(JDBC_PERSISTER_PROFILE);
+      } else if (PersisterType.LOAD_DATA.name().equals(persisterType)) {
+        if (sqldbType != DatabaseType.MYSQL) {
+          throw new ReportConfigLoadException("The LOAD_DATA persister requires a MYSQL database.");
+        }
+        logger.info("Using MYSQL LOAD DATA persister.");
+        profiles.add(LOAD_DATA_PERSISTER_PROFILE);
+      } else if (PersisterType.STAGING.name().equals(persisterType)) {
+        logger.info("Using staging table persister.");
+        profiles.add(STAGING_PERSISTER_PROFILE);
+      } else if (PersisterType.REPLACE_RANGE.name().equals(persisterType)) {
+        logger.info("Using date range replacing persister.");
+        profiles.add(REPLACE_RANGE_PERSISTER_PROFILE);
+      } else if (!PersisterType.HIBERNATE.name().equals(persisterType)) {
+        throw new ReportConfigLoadException("Unknown SQL persister type: " + persisterType);
+      }
+
+      boolean existenceIndex = Boolean.parseBoolean(
+          properties.getProperty(AW_REPORT_MODEL_DB_SQL_EXISTENCE_INDEX, "false").trim());
+      if (existenceIndex) {
+        if (PersisterType.HIBERNATE.name().equals(persisterType)) {
+          logger.info("Using the existence index of the report rows.");
+          profiles.add(EXISTENCE_INDEX_PROFILE);
+        } else {
+          logger.warn("The existence index only applies to the HIBERNATE persister, ignoring it.");
+        }
+      }
+    }
+
     // Choose the Processor type to use based properties file
     String processorType = (String) properties.get(AW_REPORT_PROCESSOR_TYPE);
     if (forceFileProcessor) {
@@ -359,16 +438,47 @@ public class AwReporting {
     }
 
     appCtx = new ClassPathXmlApplicationContext();
-    if (sqldbType != null) {
-      appCtx.getEnvironment().setActiveProfiles(sqldbType.name());
+    if (!profiles.isEmpty()) {
+      appCtx.getEnvironment().setActiveProfiles(profiles.toArray(new String[profiles.size()]));
     }
 
     appCtx.setConfigLocations(listOfClassPathXml.toArray(new String[listOfClassPathXml.size()]));
+    configurer.setProperties(getSchemaProperties(properties, reportFileTypeName));
     appCtx.addBeanFactoryPostProcessor(configurer);
-    logger.warn("Updating database schema, this could take a few minutes ...");
+    logger.warn("Checking database schema, updating it could take a few minutes ...");
     appCtx.refresh();
     logger.warn("Done.");
 
     return properties;
   }
+
+  /**
+   * Returns the properties of the database schema derived from the properties file: the report
+   * types whose tables are mapped, which are the report types defined in the file, or the type of
+   * the input files.
+   *
+   * @param properties the properties loaded from the properties file.
+   * @param reportFileTypeName the report type of the input files, or {@code null}.
+   */
+  private static Properties getSchemaProperties(
+      Properties properties, String reportFileTypeName) {
+    Set<String> reportTypes = Sets.newTreeSet();
+    if (!Strings.isNullOrEmpty(reportFileTypeName)) {
+      reportTypes.add(reportFileTypeName.trim());
+    } else {
+      for (String key : properties.stringPropertyNames()) {
+        String reportType = key.contains("$") ? key.substring(0, key.indexOf('$')) : key;
+        try {
+          reportTypes.add(ReportDefinitionReportType.valueOf(reportType).name());
+        } catch (IllegalArgumentException e) {
+          // Not a report definition.
+        }
+      }
+    }
+
+    Properties schemaProperties = new Properties();
+    schemaProperties.setProperty(
+        AW_REPORT_MODEL_DB_SQL_SCHEMA_REPORT_TYPES, Joiner.on(',').join(reportTypes));
+    return schemaProperties;
+  }
 }
@@ -0,0 +1,109 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors;
+
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatch;
+import com.google.api.ads.adwords.awreporting.model.batch.RowBatchSchema;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.BatchEntityPersister;
+import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.api.ads.adwords.awreporting.model.persistence.LockConflicts;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import java.util.List;
+
+/**
+ * Buffers the parsed and completed report entities of a single download, and persists them in
+ * sets of {@code reportRowsSetSize}.
+ *
+ * <p>For a {@link BatchEntityPersister} the entities are copied into a {@link RowBatch} as soon as
+ * they are added, so the parser can reuse the same bean for every row. For any other persister
+ * they are kept in a list.
+ *
+ * <p>A set failing on a lock conflict with another thread, such as a deadlock, is persisted again
+ * (see {@link LockConflicts}), instead of failing the whole download.
+ *
+ * @param <R> type of sub Report.
+ */
+public class ReportEntityBuffer<R extends Report> {
+  private final EntityPersister entityPersister;
+  private final int reportRowsSetSize;
+  private final List<R> reportBuffer;
+  private RowBatch<R> rowBatch;
+
+  /**
+   * @param entityPersister the bean to persist report to database.
+   * @param reportRowsSetSize the size of the set parsed that will be persisted to the database.
+   */
+  public ReportEntityBuffer(EntityPersister entityPersister, int reportRowsSetSize) {
+    this.entityPersister =
+        Preconditions.checkNotNull(entityPersister, "entityPersister cannot be null");
+    Preconditions.checkArgument(reportRowsSetSize > 0, "reportRowsSetSize must be > 0");
+    this.reportRowsSetSize = reportRowsSetSize;
+    this.reportBuffer =
+        entityPersister instanceof BatchEntityPersister
+            ? null
+            : Lists.<R>newArrayListWithCapacity(reportRowsSetSize);
+  }
+
+  /**
+   * Adds a report entity, and persists the set if it is full.
+   */
+  public void add(R report) {
+    if (reportBuffer == null) {
+      if (rowBatch == null) {
+        @SuppressWarnings("unchecked")
+        Class<R> reportClass = (Class<R>) report.getClass();
+        rowBatch = new RowBatch<R>(RowBatchSchema.forClass(reportClass), reportRowsSetSize);
+      }
+      rowBatch.addRow(report);
+      if (rowBatch.isFull()) {
+        flush();
+      }
+    } else {
+      reportBuffer.add(report);
+      if (reportBuffer.size() >= reportRowsSetSize) {
+        flush();
+      }
+    }
+  }
+
+  /**
+   * Persists the buffered report entities, if any.
+   */
+  public void flush() {
+    if (reportBuffer == null) {
+      if (rowBatch != null && !rowBatch.isEmpty()) {
+        LockConflicts.retry(
+            new Runnable() {
+              @Override
+              public void run() {
+                ((BatchEntityPersister) entityPersister).persistRowBatch(rowBatch);
+              }
+            });
+        rowBatch.clear();
+      }
+    } else if (!reportBuffer.isEmpty()) {
+      LockConflicts.retry(
+          new Runnable() {
+            @Override
+            public void run() {
+              entityPersister.persistReportEntities(reportBuffer);
+            }
+          });
+      reportBuffer.clear();
+    }
+  }
+}
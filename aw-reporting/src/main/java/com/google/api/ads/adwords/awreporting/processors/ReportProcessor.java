@@ -17,8 +17,17 @@ package com.google.api.ads.adwords.awreporting.processors;
 import com.google.api.ads.adwords.awreporting.ReportProcessingException;
 import com.google.api.ads.adwords.awreporting.authentication.Authenticator;
 import com.google.api.ads.adwords.awreporting.model.csv.CsvReportEntitiesMapping;
+import com.google.api.ads.adwords.awreporting.model.csv.ReportEntityMappingStrategy;
+import com.google.api.ads.adwords.awreporting.model.csv.StringDictionary;
+import com.google.api.ads.adwords.awreporting.model.csv.StringDictionary.ColumnStatistics;
 import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.BatchEntityPersister;
 import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.api.ads.adwords.awreporting.model.persistence.NonRetainingEntityPersister;
+import com.google.api.ads.adwords.awreporting.model.persistence.StagedEntityPersister;
+import com.google.api.ads.adwords.awreporting.model.persistence.WriteBehindEntityPersister;
+import com.google.api.ads.adwords.awreporting.model.util.RowKeys;
 import com.google.api.ads.adwords.awreporting.util.AdWordsSessionUtil;
 import com.google.api.ads.adwords.awreporting.util.ManagedCustomerDelegate;
 import com.google.api.ads.adwords.jaxws.v201705.mcm.ApiException;
@@ -36,13 +45,17 @@ import com.google.api.client.util.Preconditions;
 import com.google.common.base.Splitter;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -52,6 +65,7 @@ import org.joda.time.format.DateTimeFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 /**
  * Reporting processor, responsible for downloading and saving the files to the file system. The
@@ -82,11 +96,19 @@ public abstract class ReportProcessor {
   protected final int reportRowsSetSize;
   protected final int numberOfReportProcessors;
 
+  private static final int DEFAULT_WRITER_QUEUE_SIZE = 16;
+
   private static final DateTimeFormatter TIMESTAMPFORMAT =
       DateTimeFormat.forPattern("yyyy-MM-dd-HH_mm");
 
   protected final AdWordsSession.Builder sessionBuilder;
 
+  private Set<String> dictionaryColumns = ImmutableSet.of();
+  private int dictionaryMaxSize = StringDictionary.DEFAULT_MAX_SIZE_PER_COLUMN;
+
+  private int writerThreads;
+  private int writerQueueSize = DEFAULT_WRITER_QUEUE_SIZE;
+
   /**
    * Constructor.
    *
@@ -150,24 +172,31 @@ public abstract class ReportProcessor {
     Set<ReportDefinitionReportType> reports = csvReportEntitiesMapping.getDefinedReports();
 
     // reports
-    Set<Object> propertiesKeys = properties.keySet();
-    for (Object key : propertiesKeys) {
-
-      String reportDefinitionKey = key.toString();
-      ReportDefinitionReportType reportType = extractReportTypeFromKey(reportDefinitionKey);
-      if (reportType != null && reports.contains(reportType)) {
-        try {
-          downloadAndProcess(
-              topCustomerId,
-              reportType,
-              dateRangeAndType,
-              accountIdsSet,
-              reportDefinitionKey,
-              properties);
-        } catch (ReportProcessingException e) {
-          logger.error("Unable to download and process " + reportType + " for " + topCustomerId, e);
+    EntityPersister entityPersister = startWriteBehind();
+    try {
+      Set<Object> propertiesKeys = properties.keySet();
+      for (Object key : propertiesKeys) {
+
+        String reportDefinitionKey = key.toString();
+        ReportDefinitionReportType reportType = extractReportTypeFromKey(reportDefinitionKey);
+        if (reportType != null && reports.contains(reportType)) {
+          try {
+            downloadAndProcess(
+                topCustomerId,
+                reportType,
+                dateRangeAndType,
+                accountIdsSet,
+                reportDefinitionKey,
+                properties,
+                entityPersister);
+          } catch (ReportProcessingException e) {
+            logger.error(
+                "Unable to download and process " + reportType + " for " + topCustomerId, e);
+          }
         }
       }
+    } finally {
+      stopWriteBehind(entityPersister);
     }
 
     stopwatch.stop();
@@ -186,6 +215,7 @@ public abstract class ReportProcessor {
    * @param dateRangeAndType the date range and type.
    * @param accountIdList the account IDs.
    * @param properties the properties resource.
+   * @param entityPersister the persister of the run (see {@link #startWriteBehind}).
    * @throws ReportProcessingException
    */
   protected abstract void downloadAndProcess(
@@ -194,7 +224,8 @@ public abstract class ReportProcessor {
       DateRangeAndType dateRangeAndType,
       Set<Long> accountIdList,
       String reportDefinitionKey,
-      Properties properties)
+      Properties properties,
+      EntityPersister entityPersister)
       throws ReportProcessingException;
 
   /**
@@ -401,6 +432,251 @@ public abstract class ReportProcessor {
     return reportingConfig;
   }
 
+  /**
+   * Creates the mapping strategy for a single report download.
+   *
+   * <p>If the persister does not retain the report entities, the beans are reused: as the beans
+   * are persisted in sets of {@code reportRowsSetSize}, a ring of that many beans is enough. The
+   * rows for a {@link BatchEntityPersister} are copied into a batch right away, so a single bean is
+   * enough.
+   *
+   * @param entityPersister the persister of the run.
+   * @param reportBeanClass the report class.
+   * @param stringDictionary the dictionary of the download, or {@code null} if none.
+   */
+  protected <R extends Report> ReportEntityMappingStrategy<R> createMappingStrategy(
+      EntityPersister entityPersister,
+      Class<R> reportBeanClass,
+      StringDictionary stringDictionary) {
+    ReportEntityMappingStrategy<R> mappingStrategy =
+        new ReportEntityMappingStrategy<R>(reportBeanClass, stringDictionary);
+    if (entityPersister instanceof BatchEntityPersister) {
+      mappingStrategy.setBeanReuse(1);
+    } else if (entityPersister instanceof NonRetainingEntityPersister) {
+      mappingStrategy.setBeanReuse(reportRowsSetSize);
+    }
+    return mappingStrategy;
+  }
+
+  /**
+   * Creates the dictionary for the {@code String} values of a single report download.
+   *
+   * @return the dictionary, or {@code null} if no column is dictionary-encoded.
+   */
+  protected StringDictionary createStringDictionary() {
+    if (dictionaryColumns.isEmpty()) {
+      return null;
+    }
+    return new StringDictionary(dictionaryColumns, dictionaryMaxSize);
+  }
+
+  /**
+   * Logs the statistics of the dictionary-encoded columns, added up for all the downloads of a
+   * report.
+   *
+   * @param reportBeanClass the report class.
+   * @param dictionaries the dictionaries used by the downloads of the report.
+   */
+  protected void logDictionaryStatistics(
+      Class<?> reportBeanClass, List<StringDictionary> dictionaries) {
+    Map<String, ColumnStatistics> totals = Maps.newLinkedHashMap();
+    for (StringDictionary dictionary : dictionaries) {
+      for (Entry<String, ColumnStatistics> entry : dictionary.getStatistics().entrySet()) {
+        ColumnStatistics total = totals.get(entry.getKey());
+        totals.put(entry.getKey(), total == null ? entry.getValue() : total.plus(entry.getValue()));
+      }
+    }
+
+    for (Entry<String, ColumnStatistics> entry : totals.entrySet()) {
+      logger.info(
+          "Dictionary of {} for {}: {}",
+          entry.getKey(),
+          reportBeanClass.getSimpleName(),
+          entry.getValue());
+    }
+  }
+
+  /**
+   * Begins the load of a report type, if the persister loads each report type as a whole (see
+   * {@link StagedEntityPersister}).
+   *
+   * @param entityPersister the persister of the run.
+   * @param reportBeanClass the report class.
+   * @param fullSnapshot whether the report has all the rows of the report type (no date range).
+   * @throws ReportProcessingException if the load cannot be started.
+   */
+  protected void beginLoad(
+      EntityPersister entityPersister,
+      Class<? extends Report> reportBeanClass,
+      boolean fullSnapshot)
+      throws ReportProcessingException {
+    if (entityPersister instanceof StagedEntityPersister) {
+      try {
+        ((StagedEntityPersister) entityPersister).beginLoad(reportBeanClass, fullSnapshot);
+      } catch (RuntimeException e) {
+        throw new ReportProcessingException(
+            "Unable to begin the load of " + reportBeanClass.getSimpleName(), e);
+      }
+    }
+  }
+
+  /**
+   * Records that the report of an account was processed entirely for the date range, if the
+   * persister loads each report type as a whole, so its rows may replace the rows of the account
+   * within the date range.
+   *
+   * @param entityPersister the persister of the run.
+   * @param reportBeanClass the report class.
+   * @param accountId the ID of the account.
+   * @param dateRangeAndType the date range and type.
+   * @throws ReportProcessingException if the date range cannot be recorded.
+   */
+  protected void recordLoadedRange(
+      EntityPersister entityPersister,
+      Class<? extends Report> reportBeanClass,
+      long accountId,
+      DateRangeAndType dateRangeAndType)
+      throws ReportProcessingException {
+    if (entityPersister instanceof StagedEntityPersister) {
+      try {
+        ((StagedEntityPersister) entityPersister)
+            .recordLoadedRange(reportBeanClass, accountId, dateRangeAndType);
+      } catch (RuntimeException e) {
+        throw new ReportProcessingException(
+            "Unable to record the date range of " + reportBeanClass.getSimpleName(), e);
+      }
+    }
+  }
+
+  /**
+   * Publishes the rows of a report type loaded since {@link #beginLoad}, if the persister loads
+   * each report type as a whole.
+   *
+   * @param entityPersister the persister of the run.
+   * @param reportBeanClass the report class.
+   * @param complete whether the reports of all the accounts were processed successfully.
+   * @throws ReportProcessingException if the rows cannot be published.
+   */
+  protected void finishLoad(
+      EntityPersister entityPersister,
+      Class<? extends Report> reportBeanClass,
+      boolean complete)
+      throws ReportProcessingException {
+    if (entityPersister instanceof StagedEntityPersister) {
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      try {
+        ((StagedEntityPersister) entityPersister).finishLoad(reportBeanClass, complete);
+      } catch (RuntimeException e) {
+        throw new ReportProcessingException(
+            "Unable to publish the rows of " + reportBeanClass.getSimpleName(), e);
+      }
+      logger.info(
+          "Published the rows of {} in {} seconds.",
+          reportBeanClass.getSimpleName(),
+          stopwatch.elapsed(TimeUnit.SECONDS));
+    }
+  }
+
+  /**
+   * Discards the rows of a report type loaded since {@link #beginLoad}, if the persister loads
+   * each report type as a whole.
+   *
+   * @param entityPersister the persister of the run.
+   * @param reportBeanClass the report class.
+   */
+  protected void abortLoad(
+      EntityPersister entityPersister, Class<? extends Report> reportBeanClass) {
+    if (entityPersister instanceof StagedEntityPersister) {
+      try {
+        ((StagedEntityPersister) entityPersister).abortLoad(reportBeanClass);
+      } catch (RuntimeException e) {
+        logger.error("Unable to discard the rows of " + reportBeanClass.getSimpleName(), e);
+      }
+    }
+  }
+
+  /**
+   * Starts the writer threads persisting the report entities in the background, if configured
+   * (see {@link WriteBehindEntityPersister}). The load of each report type waits for its entities
+   * to be written.
+   *
+   * @return the persister of the run: the configured persister, or the writer threads persisting
+   *     to it. It must be stopped with {@link #stopWriteBehind} at the end of the run.
+   */
+  protected EntityPersister startWriteBehind() {
+    if (writerThreads == 0) {
+      return persister;
+    }
+    logger.info("Persisting the report entities with " + writerThreads + " writer threads.");
+    return new WriteBehindEntityPersister(persister, writerThreads, writerQueueSize);
+  }
+
+  /**
+   * Waits for the report entities persisted in the background, and stops the writer threads.
+   *
+   * @param entityPersister the persister of the run, returned by {@link #startWriteBehind}.
+   */
+  protected void stopWriteBehind(EntityPersister entityPersister) {
+    if (entityPersister instanceof WriteBehindEntityPersister) {
+      try {
+        ((WriteBehindEntityPersister) entityPersister).close();
+      } catch (RuntimeException e) {
+        logger.error("Unable to persist the report entities.", e);
+      }
+    }
+  }
+
+  /**
+   * Sets the number of threads writing the report entities in the background, or 0 to write them
+   * in the parsing threads.
+   */
+  @Value(value = "${aw.report.processor.writerThreads:0}")
+  public void setWriterThreads(Integer writerThreads) {
+    Preconditions.checkArgument(writerThreads >= 0, "WriterThreads must be >= 0");
+    this.writerThreads = writerThreads.intValue();
+  }
+
+  /**
+   * Sets the maximum number of sets of report entities waiting for a writer thread, before the
+   * parsing threads wait for them.
+   */
+  @Value(value = "${aw.report.processor.writerQueueSize:16}")
+  public void setWriterQueueSize(Integer writerQueueSize) {
+    Preconditions.checkArgument(writerQueueSize > 0, "WriterQueueSize must be > 0");
+    this.writerQueueSize = writerQueueSize.intValue();
+  }
+
+  /**
+   * Sets the report fields whose {@code String} values are dictionary-encoded, separated by ','.
+   */
+  @Value(value = "${aw.report.processor.dictionary.columns:}")
+  public void setDictionaryColumns(String dictionaryColumns) {
+    this.dictionaryColumns =
+        ImmutableSet.copyOf(
+            Splitter.on(',').omitEmptyStrings().trimResults().split(dictionaryColumns));
+  }
+
+  /**
+   * Sets the maximum number of distinct values kept for each dictionary-encoded column.
+   */
+  @Value(value = "${aw.report.processor.dictionary.maxSize:1024}")
+  public void setDictionaryMaxSize(Integer dictionaryMaxSize) {
+    Preconditions.checkArgument(dictionaryMaxSize > 0, "DictionaryMaxSize must be > 0");
+    this.dictionaryMaxSize = dictionaryMaxSize.intValue();
+  }
+
+  /**
+   * Sets the mode of the row keys of the reports: {@code STRING} (the concatenation of the fields
+   * identifying a row) or {@code HASH} (their 128-bit hash). This is a setting of the whole
+   * process, so all the processors must use the same mode.
+   *
+   * @throws IllegalStateException if another processor already set another mode.
+   */
+  @Value(value = "${aw.report.processor.rowIdMode:STRING}")
+  public void setRowIdMode(String rowIdMode) {
+    RowKeys.setMode(RowKeys.Mode.valueOf(rowIdMode.trim().toUpperCase()));
+  }
+
   @Autowired
   public void setCsvReportEntitiesMapping(CsvReportEntitiesMapping csvReportEntitiesMapping) {
     this.csvReportEntitiesMapping = csvReportEntitiesMapping;
@@ -0,0 +1,74 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors;
+
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.common.base.Preconditions;
+import java.util.Date;
+import javax.annotation.Nullable;
+
+/**
+ * The values shared by all the rows of a report download: the customer IDs, the date range and the
+ * ingestion timestamp. They are computed once per download, and set on each parsed row by
+ * {@link #apply(Report)}.
+ */
+public final class ReportRowContext {
+  private final Long customerId;
+  private final Long topCustomerId;
+  private final String dateRangeType;
+  private final String startDate;
+  private final String endDate;
+  private final Date timestamp;
+
+  /**
+   * @param customerId the customer ID set on every row, or {@code null} to keep the customer ID
+   *     of the rows.
+   * @param topCustomerId the top customer account ID.
+   * @param dateRangeAndType the date range and type.
+   */
+  public ReportRowContext(
+      @Nullable Long customerId, Long topCustomerId, DateRangeAndType dateRangeAndType) {
+    Preconditions.checkNotNull(dateRangeAndType, "dateRangeAndType cannot be null");
+    this.customerId = customerId;
+    this.topCustomerId = Preconditions.checkNotNull(topCustomerId, "topCustomerId cannot be null");
+    this.dateRangeType = dateRangeAndType.getTypeStr();
+    this.startDate = dateRangeAndType.getStartDateStr();
+    this.endDate = dateRangeAndType.getEndDateStr();
+    this.timestamp = new Date();
+  }
+
+  /**
+   * Sets the shared values on a parsed row.
+   */
+  public void apply(Report report) {
+    if (customerId != null) {
+      report.setCustomerId(customerId);
+    }
+    report.setTopCustomerId(topCustomerId);
+    report.setDateRangeType(dateRangeType);
+    report.setStartDate(startDate);
+    report.setEndDate(endDate);
+    // The rows are not modified once persisted, so they can share the same timestamp instance.
+    report.setTimestamp(timestamp);
+  }
+
+  /**
+   * Returns the ingestion timestamp of the rows.
+   */
+  public Date getTimestamp() {
+    return new Date(timestamp.getTime());
+  }
+}
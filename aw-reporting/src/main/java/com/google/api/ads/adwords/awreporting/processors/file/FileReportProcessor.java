@@ -21,11 +21,14 @@ import com.google.api.ads.adwords.awreporting.downloader.DownloadSetting;
 import com.google.api.ads.adwords.awreporting.downloader.MultipleClientReportDownloader;
 import com.google.api.ads.adwords.awreporting.model.csv.ModifiedCsvToBean;
 import com.google.api.ads.adwords.awreporting.model.csv.ReportEntityMappingStrategy;
+import com.google.api.ads.adwords.awreporting.model.csv.StringDictionary;
 import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
 import com.google.api.ads.adwords.awreporting.processors.ReportProcessor;
 import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinition;
 import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionReportType;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
 import java.io.File;
@@ -36,6 +39,7 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,8 +58,13 @@ public class FileReportProcessor extends ReportProcessor {
 
   private static final Logger logger = LoggerFactory.getLogger(FileReportProcessor.class);
 
+  private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+  private static final int DEFAULT_SPLIT_SIZE_MB = 128;
+
   private DownloadSetting downloadSetting;
 
+  private long splitSize = DEFAULT_SPLIT_SIZE_MB * BYTES_PER_MEGABYTE;
+
   /**
    * Constructor.
    *
@@ -82,6 +91,7 @@ public class FileReportProcessor extends ReportProcessor {
    * @param dateRangeAndType the date range and type
    * @param accountIdList the account IDs
    * @param properties the properties resource
+   * @param entityPersister the persister of the run
    */
   @Override
   protected void downloadAndProcess(
@@ -90,7 +100,8 @@ public class FileReportProcessor extends ReportProcessor {
       DateRangeAndType dateRangeAndType,
       Set<Long> accountIdList,
       String reportDefinitionKey,
-      Properties properties)
+      Properties properties,
+      EntityPersister entityPersister)
       throws ReportProcessingException {
 
     // Download Reports to local files and Generate Report objects
@@ -99,15 +110,31 @@ public class FileReportProcessor extends ReportProcessor {
     Collection<File> localFiles = Lists.newArrayList();
     ReportDefinition reportDefinition =
         getReportDefinition(reportType, dateRangeAndType, reportDefinitionKey, properties);
-    MultipleClientReportDownloader multipleClientReportDownloader =
-        new MultipleClientReportDownloader(downloadSetting.getNumThreads());
+    MultipleClientReportDownloader multipleClientReportDownloader = createReportDownloader();
     localFiles =
         multipleClientReportDownloader.downloadReports(
             sessionBuilder, reportDefinition, accountIdList);
-    processLocalFiles(topCustomerId, reportType, localFiles, dateRangeAndType);
+    // The downloader leaves out the accounts that failed, whose rows must then be kept.
+    boolean allDownloaded = localFiles.size() == accountIdList.size();
+    if (!allDownloaded) {
+      logger.warn(
+          "Only {} of {} accounts were downloaded, the load of {} is incomplete.",
+          localFiles.size(),
+          accountIdList.size(),
+          reportType.name());
+    }
+    processLocalFiles(
+        topCustomerId, reportType, localFiles, allDownloaded, dateRangeAndType, entityPersister);
     deleteTemporaryFiles(localFiles, reportType);
   }
 
+  /**
+   * Creates the downloader of the report files of the accounts.
+   */
+  protected MultipleClientReportDownloader createReportDownloader() {
+    return new MultipleClientReportDownloader(downloadSetting.getNumThreads());
+  }
+
   /**
    * Each of the files downloaded is processed using {@code FileRunnableProcessor} to read the CSV,
    * map to a {@code Report}, and then persist to configured database.
@@ -117,27 +144,38 @@ public class FileReportProcessor extends ReportProcessor {
    * @param localFiles local report files.
    * @param filesDownloadedByAPI whether the report files are downloaded by AWAPI (no
    *     header/summary) or provided by user (via csvReportFile option).
+   * @param allDownloaded whether the files of all the accounts were downloaded.
    * @param dateRangeAndType the date range and type.
+   * @param fullSnapshot whether the report has all the rows of the report type (no date range).
+   * @param entityPersister the persister of the run.
    */
   private <R extends Report> void processFiles(
       String topCustomerId,
       Class<R> reportBeanClass,
       Collection<File> localFiles,
       boolean filesDownloadedByAPI,
-      DateRangeAndType dateRangeAndType)
+      boolean allDownloaded,
+      DateRangeAndType dateRangeAndType,
+      boolean fullSnapshot,
+      EntityPersister entityPersister)
       throws ReportProcessingException {
     logger.info("Processing report files...");
     Stopwatch stopwatch = Stopwatch.createStarted();
 
     ExecutorService executorService = Executors.newFixedThreadPool(numberOfReportProcessors);
+    // The large files are split into parts, parsed in parallel by this pool.
+    ForkJoinPool forkJoinPool = splitSize > 0 ? new ForkJoinPool(numberOfReportProcessors) : null;
     List<Callable<Object>> taskJobs = Lists.newArrayList();
+    List<StringDictionary> dictionaries = Lists.newArrayList();
+    List<FileRunnableProcessor<R>> runnableProcessors = Lists.newArrayList();
     
     for (File file : localFiles) {
       logger.trace(".");
       // We need to create a csvToBean and mappingStrategy for each thread
       ModifiedCsvToBean<R> csvToBean = new ModifiedCsvToBean<R>();
+      StringDictionary stringDictionary = createStringDictionary();
         ReportEntityMappingStrategy<R> mappingStrategy =
-            new ReportEntityMappingStrategy<R>(reportBeanClass);
+            createMappingStrategy(entityPersister, reportBeanClass, stringDictionary);
 
         logger.debug("Parsing file: " + file.getAbsolutePath());
         FileRunnableProcessor<R> runnableProcessor =
@@ -148,19 +186,50 @@ public class FileReportProcessor extends ReportProcessor {
                 csvToBean,
                 mappingStrategy,
                 dateRangeAndType,
-                persister,
-                reportRowsSetSize);
+                entityPersister,
+                reportRowsSetSize,
+                forkJoinPool,
+                splitSize);
       taskJobs.add(Executors.callable(runnableProcessor));
+      runnableProcessors.add(runnableProcessor);
+      if (stringDictionary != null) {
+        dictionaries.add(stringDictionary);
+      }
     }
     
+    beginLoad(entityPersister, reportBeanClass, fullSnapshot);
+    // The load is aborted on any failure before it is finished, so the next one can begin.
+    boolean finishing = false;
     try {
-      executorService.invokeAll(taskJobs);
-    } catch (InterruptedException e) {
-      throw new ReportProcessingException(
-          "FileReportProcessor encounters InterruptedException.", e);
-    }
+      try {
+        executorService.invokeAll(taskJobs);
+      } catch (InterruptedException e) {
+        throw new ReportProcessingException(
+            "FileReportProcessor encounters InterruptedException.", e);
+      }
 
-    executorService.shutdown();
+      executorService.shutdown();
+      if (forkJoinPool != null) {
+        forkJoinPool.shutdown();
+      }
+      logDictionaryStatistics(reportBeanClass, dictionaries);
+      boolean complete = allDownloaded;
+      for (FileRunnableProcessor<R> runnableProcessor : runnableProcessors) {
+        // The accounts of the input files are unknown, so their rows are only merged.
+        Long accountId = runnableProcessor.getAccountId();
+        if (runnableProcessor.hasFailed() || accountId == null) {
+          complete = false;
+        } else {
+          recordLoadedRange(entityPersister, reportBeanClass, accountId, dateRangeAndType);
+        }
+      }
+      finishing = true;
+      finishLoad(entityPersister, reportBeanClass, complete);
+    } finally {
+      if (!finishing) {
+        abortLoad(entityPersister, reportBeanClass);
+      }
+    }
     stopwatch.stop();
     logger.info(
         "*** Finished processing all reports in "
@@ -174,18 +243,30 @@ public class FileReportProcessor extends ReportProcessor {
    * @param topCustomerId the top customer account id.
    * @param reportType the report type.
    * @param localFiles the local files.
+   * @param allDownloaded whether the files of all the accounts were downloaded.
    * @param dateRangeAndType the date range and type.
+   * @param entityPersister the persister of the run.
    * @throws ReportProcessingException
    */
   private void processLocalFiles(
       String topCustomerId,
       ReportDefinitionReportType reportType,
       Collection<File> localFiles,
-      DateRangeAndType dateRangeAndType)
+      boolean allDownloaded,
+      DateRangeAndType dateRangeAndType,
+      EntityPersister entityPersister)
       throws ReportProcessingException {
     Class<? extends Report> reportBeanClass =
         csvReportEntitiesMapping.getReportBeanClass(reportType);
-    processFiles(topCustomerId, reportBeanClass, localFiles, true, dateRangeAndType);
+    processFiles(
+        topCustomerId,
+        reportBeanClass,
+        localFiles,
+        true,
+        allDownloaded,
+        dateRangeAndType,
+        !csvReportEntitiesMapping.supportsDateRange(reportType),
+        entityPersister);
   }
 
   /**
@@ -215,7 +296,20 @@ public class FileReportProcessor extends ReportProcessor {
       throw new IllegalArgumentException("Report type not found: " + reportTypeName);
     }
 
-    processFiles(topCustomerId, reportBeanClass, localFiles, false, dateRangeAndType);
+    EntityPersister entityPersister = startWriteBehind();
+    try {
+      processFiles(
+          topCustomerId,
+          reportBeanClass,
+          localFiles,
+          false,
+          true,
+          dateRangeAndType,
+          false,
+          entityPersister);
+    } finally {
+      stopWriteBehind(entityPersister);
+    }
   }
 
   /**
@@ -236,6 +330,16 @@ public class FileReportProcessor extends ReportProcessor {
     logger.info("\n ** Finished: " + reportType.name() + " **");
   }
   
+  /**
+   * Sets the minimum size (in MB) of the files split into parts parsed in parallel, or 0 to always
+   * parse each file in a single thread.
+   */
+  @Value(value = "${aw.report.processor.file.splitSizeMb:128}")
+  public void setSplitSizeMb(Integer splitSizeMb) {
+    Preconditions.checkArgument(splitSizeMb >= 0, "SplitSizeMb must be >= 0");
+    this.splitSize = splitSizeMb * BYTES_PER_MEGABYTE;
+  }
+
   @Autowired
   public void setDownloaderSetting(DownloadSetting downloadSetting) {
     this.downloadSetting = downloadSetting;
@@ -14,22 +14,36 @@
 
 package com.google.api.ads.adwords.awreporting.processors.file;
 
+import com.google.api.ads.adwords.awreporting.model.csv.AwReportByteCsvReader;
 import com.google.api.ads.adwords.awreporting.model.csv.AwReportCsvReader;
+import com.google.api.ads.adwords.awreporting.model.csv.CsvFileSplitter;
 import com.google.api.ads.adwords.awreporting.model.csv.CsvParserIterator;
 import com.google.api.ads.adwords.awreporting.model.csv.CsvReportParsingException;
+import com.google.api.ads.adwords.awreporting.model.csv.CsvRowReader;
 import com.google.api.ads.adwords.awreporting.model.csv.ModifiedCsvToBean;
 import com.google.api.ads.adwords.awreporting.model.csv.ReportEntityMappingStrategy;
 import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
 import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.api.ads.adwords.awreporting.model.util.StringsUtil;
+import com.google.api.ads.adwords.awreporting.processors.ReportEntityBuffer;
+import com.google.api.ads.adwords.awreporting.processors.ReportRowContext;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +56,8 @@ import org.slf4j.LoggerFactory;
 public class FileRunnableProcessor<R extends Report> implements Runnable {
   private static final Logger logger = LoggerFactory.getLogger(FileRunnableProcessor.class);
 
+  private static final Pattern DIGITS = Pattern.compile("\\d+");
+
   private final String topCustomerId;
   private final File file;
   private final boolean fileDownloadedByAPI;
@@ -50,6 +66,11 @@ public class FileRunnableProcessor<R extends Report> implements Runnable {
   private final DateRangeAndType dateRangeAndType;
   private final EntityPersister entityPersister;
   private final int reportRowsSetSize;
+  private final ForkJoinPool forkJoinPool;
+  private final long splitSize;
+
+  // Set when the report could not be processed entirely.
+  private volatile boolean failed;
 
   /**
    * @param topCustomerId the top customer account id.
@@ -72,6 +93,45 @@ public class FileRunnableProcessor<R extends Report> implements Runnable {
       DateRangeAndType dateRangeAndType,
       EntityPersister entityPersister,
       int reportRowsSetSize) {
+    this(
+        topCustomerId,
+        file,
+        fileDownloadedByAPI,
+        csvToBean,
+        mappingStrategy,
+        dateRangeAndType,
+        entityPersister,
+        reportRowsSetSize,
+        null,
+        0);
+  }
+
+  /**
+   * @param topCustomerId the top customer account id.
+   * @param file the CSV file.
+   * @param fileDownloadedByAPI whether the report files are downloaded by AWAPI (no header/summary)
+   *     or provided by user (via csvReportFile option).
+   * @param csvToBean the {@code CsvToBean} for handling different formats from reports.
+   * @param mappingStrategy the mapping strategy to convert report CSV file into Java beans using
+   *     annotations.
+   * @param dateRangeAndType the date range and type.
+   * @param entityPersister the bean to persist report to database.
+   * @param reportRowsSetSize the size of the set parsed that will be persisted to the database.
+   * @param forkJoinPool the pool parsing the parts of the large files in parallel, or {@code null}
+   *     to always parse the file in this thread.
+   * @param splitSize the minimum size of the files that are split into parts.
+   */
+  public FileRunnableProcessor(
+      String topCustomerId,
+      File file,
+      boolean fileDownloadedByAPI,
+      ModifiedCsvToBean<R> csvToBean,
+      ReportEntityMappingStrategy<R> mappingStrategy,
+      DateRangeAndType dateRangeAndType,
+      EntityPersister entityPersister,
+      int reportRowsSetSize,
+      @Nullable ForkJoinPool forkJoinPool,
+      long splitSize) {
     
     this.topCustomerId = Preconditions.checkNotNull(topCustomerId, "topCustomerId cannot be null");
     this.file = Preconditions.checkNotNull(file, "file cannot be null");
@@ -85,6 +145,8 @@ public class FileRunnableProcessor<R extends Report> implements Runnable {
         Preconditions.checkNotNull(entityPersister, "entityPersister cannot be null");
     this.reportRowsSetSize = reportRowsSetSize;
     Preconditions.checkArgument(reportRowsSetSize > 0, "reportRowsSetSize must be > 0");
+    this.forkJoinPool = forkJoinPool;
+    this.splitSize = splitSize;
   }
 
   /**
@@ -101,69 +163,162 @@ public class FileRunnableProcessor<R extends Report> implements Runnable {
   @Override
   public void run() {
     try {
-      logger.debug("Starting parse of report rows...");
-      AwReportCsvReader csvReader = createCsvReader();
-      CsvParserIterator<R> reportRowsList = csvToBean.lazyParse(mappingStrategy, csvReader);
-      logger.debug("... success.");
-
-      logger.debug("Starting report persistence...");
-      List<R> reportBuffer = Lists.newArrayListWithCapacity(reportRowsSetSize);
-      while (reportRowsList.hasNext()) {
-        R report = reportRowsList.next();
-
-        // Getting Account Id from File Name for reports that do not have Client Customer Id
-        if (report.getCustomerId() == null) {
-          String filename = file.getName();
-          if (filename.contains("-") && filename.split("-") != null
-              && filename.split("-").length >= 2 && filename.split("-")[1].matches("\\d*")) {
-            report.setCustomerId(Long.parseLong(file.getName().split("-")[1]));
-          } else {
-            throw new IllegalArgumentException(
-                "Unknown customer id for report "
-                    + report.getClass().getSimpleName()
-                    + " file "
-                    + file.getName());
-          }
-        }
-
-        report.setTopCustomerId(Long.parseLong(topCustomerId.replaceAll("-", "")));
-        report.setDateRangeType(dateRangeAndType.getTypeStr());
-        report.setStartDate(dateRangeAndType.getStartDateStr());
-        report.setEndDate(dateRangeAndType.getEndDateStr());
-        report.setRowId();
-
-        reportBuffer.add(report);
-
-        if (reportBuffer.size() >= reportRowsSetSize) {
-          entityPersister.persistReportEntities(reportBuffer);
-          reportBuffer.clear();
+      if (forkJoinPool != null && file.length() >= splitSize) {
+        processParts();
+      } else {
+        try (CsvRowReader csvReader = createCsvReader()) {
+          logger.debug("Starting parse of report rows...");
+          CsvParserIterator<R> reportRowsList = csvToBean.lazyParse(mappingStrategy, csvReader);
+          logger.debug("... success.");
+          processRows(reportRowsList, createRowContext());
         }
       }
-      if (reportBuffer.size() > 0) {
-        entityPersister.persistReportEntities(reportBuffer);
-      }
-      logger.debug("... success.");
     } catch (IOException | CsvReportParsingException e) {
+      failed = true;
       logger.error("Error processing file: " + file.getAbsolutePath(), e);
     } catch (RuntimeException e) {
+      failed = true;
       logger.error("Runtime error processing file: " + file.getAbsolutePath(), e);
     }
   }
 
   /**
-   * Creates the proper {@link AwReportCsvReader} to parse the AW reports.
+   * Returns whether the file could not be processed entirely, once {@link #run()} returned.
+   */
+  public boolean hasFailed() {
+    return failed;
+  }
+
+  /**
+   * Returns the account ID in the name of the file downloaded by API, or {@code null} if unknown.
+   */
+  public Long getAccountId() {
+    return fileDownloadedByAPI ? parseFileCustomerId() : null;
+  }
+
+  /**
+   * Splits the large file into parts, which are parsed and persisted in parallel by the fork/join
+   * pool. The header line is only read once, and all the parts share the column names.
+   *
+   * @throws IOException if the file cannot be split or read.
+   * @throws CsvReportParsingException if any part cannot be parsed.
+   */
+  private void processParts() throws IOException, CsvReportParsingException {
+    List<CsvRowReader> csvReaders =
+        CsvFileSplitter.split(
+            file,
+            !fileDownloadedByAPI,
+            !fileDownloadedByAPI,
+            forkJoinPool.getParallelism(),
+            forkJoinPool);
+    logger.debug("Parsing file {} in {} parts.", file.getAbsolutePath(), csvReaders.size());
+    final ReportRowContext rowContext = createRowContext();
+
+    List<Callable<Void>> tasks = Lists.newArrayListWithCapacity(csvReaders.size());
+    for (final CsvRowReader csvReader : csvReaders) {
+      tasks.add(
+          new Callable<Void>() {
+            @Override
+            public Void call() throws IOException, CsvReportParsingException {
+              try (CsvRowReader partReader = csvReader) {
+                processRows(
+                    new ModifiedCsvToBean<R>()
+                        .lazyParse(mappingStrategy.newPartStrategy(), partReader),
+                    rowContext);
+              }
+              return null;
+            }
+          });
+    }
+
+    try {
+      for (Future<Void> future : forkJoinPool.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while processing file: " + file.getName());
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(
+          e.getCause(), IOException.class, CsvReportParsingException.class);
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Creates the context of the rows of the file, computed once for all its parts.
+   */
+  private ReportRowContext createRowContext() {
+    return new ReportRowContext(
+        null, StringsUtil.parseCustomerId(topCustomerId), dateRangeAndType);
+  }
+
+  /**
+   * Returns the account ID in the name of the file ("prefix-accountId-..."), for the reports that
+   * do not have the Client Customer Id, or {@code null} if the name has no account ID.
+   */
+  private Long parseFileCustomerId() {
+    String[] fileNameParts = file.getName().split("-");
+    if (fileNameParts.length >= 2 && DIGITS.matcher(fileNameParts[1]).matches()) {
+      return Long.valueOf(fileNameParts[1]);
+    }
+    return null;
+  }
+
+  /**
+   * Completes the parsed beans, and persists them in sets of {@code reportRowsSetSize}.
+   *
+   * @param reportRowsList the iterator over the parsed beans.
+   * @param rowContext the values shared by all the rows of the file.
+   */
+  private void processRows(CsvParserIterator<R> reportRowsList, ReportRowContext rowContext) {
+    logger.debug("Starting report persistence...");
+    ReportEntityBuffer<R> reportBuffer =
+        new ReportEntityBuffer<R>(entityPersister, reportRowsSetSize);
+    Long fileCustomerId = parseFileCustomerId();
+    while (reportRowsList.hasNext()) {
+      R report = reportRowsList.next();
+
+      // Getting Account Id from File Name for reports that do not have Client Customer Id
+      if (report.getCustomerId() == null) {
+        if (fileCustomerId == null) {
+          throw new IllegalArgumentException(
+              "Unknown customer id for report "
+                  + report.getClass().getSimpleName()
+                  + " file "
+                  + file.getName());
+        }
+        report.setCustomerId(fileCustomerId);
+      }
+
+      rowContext.apply(report);
+      report.setRowId();
+
+      reportBuffer.add(report);
+    }
+    reportBuffer.flush();
+    logger.debug("... success.");
+  }
+
+  /**
+   * Creates the proper {@link CsvRowReader} to parse the AW reports.
    *
-   * @return the {@code AwReportCsvReader}
+   * <p>The files downloaded by API are read directly from the bytes by
+   * {@link AwReportByteCsvReader}.
+   *
+   * @return the {@code CsvRowReader}
    * @throws IOException in case the file is failed to open or parse as CSV.
    */
-  private AwReportCsvReader createCsvReader() throws IOException {
+  private CsvRowReader createCsvReader() throws IOException {
     logger.debug("Creating CSVReader for file: " + file.getAbsolutePath());
 
+    // File downloaded by API means no header / summary lines.
+    if (fileDownloadedByAPI) {
+      return new AwReportByteCsvReader(new FileInputStream(file));
+    }
+
     InputStreamReader reader =
         new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
-
-    // File downloaded by API means no header / summary lines.
-    boolean hasHeaderSummary = !fileDownloadedByAPI;
-    return new AwReportCsvReader(reader, hasHeaderSummary, hasHeaderSummary);
+    return new AwReportCsvReader(reader, true, true);
   }
 }
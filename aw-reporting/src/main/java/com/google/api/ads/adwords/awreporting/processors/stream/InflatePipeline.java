@@ -0,0 +1,80 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors.stream;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decouples the network reads and the decompression of the report streams from their parsing.
+ *
+ * <p>Each piped stream is read (and inflated) by a dedicated stage, which fills large buffers
+ * ahead of the parser, up to a bounded number of buffers. So the network stalls do not idle the
+ * parser, and the database writes of the parser do not stall the download. The buffers are
+ * pooled and shared by all the streams of the pipeline.
+ */
+public final class InflatePipeline {
+  static final int BUFFER_SIZE = 256 * 1024;
+
+  private final int depth;
+  private final ExecutorService executorService;
+  private final BlockingQueue<byte[]> bufferPool;
+
+  /**
+   * @param maxStreams the maximum number of streams piped at the same time.
+   * @param depth the maximum number of buffers filled ahead of the parser, per stream.
+   */
+  public InflatePipeline(int maxStreams, int depth) {
+    Preconditions.checkArgument(maxStreams > 0, "maxStreams must be > 0");
+    Preconditions.checkArgument(depth > 0, "depth must be > 0");
+    this.depth = depth;
+    // One buffer per stream is also being filled, and one is being parsed.
+    this.bufferPool = new ArrayBlockingQueue<byte[]>(maxStreams * (depth + 2));
+    this.executorService =
+        Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("report-inflate-%d").setDaemon(true).build());
+  }
+
+  /**
+   * Starts reading the source stream in the pipeline.
+   *
+   * @param source the (compressed) stream of the report, which is closed by the pipeline.
+   * @return the stream of the buffered contents, to be parsed.
+   */
+  public InputStream pipe(InputStream source) {
+    return new PipelinedInputStream(source, this, depth, executorService);
+  }
+
+  /**
+   * Stops the pipeline once all the piped streams are finished.
+   */
+  public void shutdown() {
+    executorService.shutdown();
+  }
+
+  byte[] takeBuffer() {
+    byte[] buffer = bufferPool.poll();
+    return buffer != null ? buffer : new byte[BUFFER_SIZE];
+  }
+
+  void releaseBuffer(byte[] buffer) {
+    bufferPool.offer(buffer);
+  }
+}
@@ -0,0 +1,227 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link InputStream} whose source is read ahead by another thread, through a bounded queue of
+ * filled buffers.
+ *
+ * <p>The errors of the source are thrown by this stream once the previous contents are read.
+ * Closing this stream makes the reading thread stop and close the source.
+ */
+final class PipelinedInputStream extends InputStream {
+  private static final Logger logger = LoggerFactory.getLogger(PipelinedInputStream.class);
+
+  private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+  /**
+   * A buffer filled from the source, or the end of the source, or its error.
+   */
+  private static final class Chunk {
+    final byte[] buffer;
+    final int length;
+    final Exception error;
+
+    Chunk(byte[] buffer, int length, Exception error) {
+      this.buffer = buffer;
+      this.length = length;
+      this.error = error;
+    }
+  }
+
+  private static final Chunk END = new Chunk(null, 0, null);
+
+  private final InflatePipeline pipeline;
+  private final BlockingQueue<Chunk> chunks;
+  private volatile boolean closed;
+
+  // The state of the reader.
+  private Chunk current;
+  private int position;
+  private boolean endReached;
+
+  PipelinedInputStream(
+      final InputStream source, InflatePipeline pipeline, int depth, Executor executor) {
+    this.pipeline = pipeline;
+    this.chunks = new ArrayBlockingQueue<Chunk>(depth);
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            fillChunks(source);
+          }
+        });
+  }
+
+  /**
+   * Reads the whole source into the queue of chunks, until the end or an error, or until this
+   * stream is closed. The bytes read before an error are queued before the error.
+   */
+  private void fillChunks(InputStream source) {
+    try {
+      while (!closed) {
+        byte[] buffer = pipeline.takeBuffer();
+        int length = 0;
+        boolean sourceEnded = false;
+        Exception error = null;
+        try {
+          while (length < buffer.length) {
+            int read = source.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+              sourceEnded = true;
+              break;
+            }
+            length += read;
+          }
+        } catch (IOException | RuntimeException e) {
+          error = e;
+        }
+
+        if (length == 0) {
+          pipeline.releaseBuffer(buffer);
+        } else if (!put(new Chunk(buffer, length, null))) {
+          pipeline.releaseBuffer(buffer);
+          return;
+        }
+        if (error != null) {
+          put(new Chunk(null, 0, error));
+          return;
+        }
+        if (sourceEnded) {
+          put(END);
+          return;
+        }
+      }
+    } finally {
+      try {
+        source.close();
+      } catch (IOException e) {
+        logger.warn("Error closing the report stream", e);
+      }
+    }
+  }
+
+  /**
+   * Waits for room in the queue, unless this stream is closed.
+   *
+   * @return whether the chunk was queued.
+   */
+  private boolean put(Chunk chunk) {
+    try {
+      while (!closed) {
+        if (chunks.offer(chunk, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  /**
+   * Makes sure that the current chunk has unread bytes, waiting for the next chunk if needed.
+   *
+   * @return {@code false} at the end of the source.
+   */
+  private boolean nextChunk() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (current != null) {
+      if (position < current.length) {
+        return true;
+      }
+      pipeline.releaseBuffer(current.buffer);
+      current = null;
+    }
+    if (endReached) {
+      return false;
+    }
+
+    Chunk chunk;
+    try {
+      chunk = chunks.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading the report stream");
+    }
+    if (chunk.buffer == null) {
+      endReached = true;
+      if (chunk.error != null) {
+        throw new IOException("Error reading the report stream", chunk.error);
+      }
+      return false;
+    }
+    current = chunk;
+    position = 0;
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!nextChunk()) {
+      return -1;
+    }
+    return current.buffer[position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (!nextChunk()) {
+      return -1;
+    }
+    int count = Math.min(length, current.length - position);
+    System.arraycopy(current.buffer, position, bytes, offset, count);
+    position += count;
+    return count;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return closed || current == null ? 0 : current.length - position;
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (current != null) {
+      pipeline.releaseBuffer(current.buffer);
+      current = null;
+    }
+    Chunk chunk;
+    while ((chunk = chunks.poll()) != null) {
+      if (chunk.buffer != null) {
+        pipeline.releaseBuffer(chunk.buffer);
+      }
+    }
+  }
+}
@@ -19,17 +19,22 @@ import com.google.api.ads.adwords.awreporting.authentication.Authenticator;
 import com.google.api.ads.adwords.awreporting.downloader.DownloadSetting;
 import com.google.api.ads.adwords.awreporting.model.csv.ModifiedCsvToBean;
 import com.google.api.ads.adwords.awreporting.model.csv.ReportEntityMappingStrategy;
+import com.google.api.ads.adwords.awreporting.model.csv.StringDictionary;
 import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
 import com.google.api.ads.adwords.awreporting.processors.ReportProcessor;
 import com.google.api.ads.adwords.awreporting.util.AdWordsSessionUtil;
 import com.google.api.ads.adwords.lib.client.AdWordsSession.ImmutableAdWordsSession;
 import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinition;
 import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionReportType;
 import com.google.api.ads.common.lib.exception.ValidationException;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -53,8 +58,12 @@ public class StreamingReportProcessor extends ReportProcessor {
 
   private static final Logger logger = LoggerFactory.getLogger(StreamingReportProcessor.class);
   
+  private static final int DEFAULT_PIPELINE_DEPTH = 4;
+
   private DownloadSetting downloadSetting;
 
+  private int pipelineDepth = DEFAULT_PIPELINE_DEPTH;
+
   /**
    * Constructor.
    *
@@ -80,6 +89,7 @@ public class StreamingReportProcessor extends ReportProcessor {
    * @param dateRangeAndType the date range and type.
    * @param accountIdList the account IDs.
    * @param properties the properties resource.
+   * @param entityPersister the persister of the run.
    * @throws ReportProcessingException
    */
   @Override
@@ -89,7 +99,8 @@ public class StreamingReportProcessor extends ReportProcessor {
       DateRangeAndType dateRangeAndType,
       Set<Long> accountIdList,
       String reportDefinitionKey,
-      Properties properties)
+      Properties properties,
+      EntityPersister entityPersister)
       throws ReportProcessingException {
     // Download Reports to local files and Generate Report objects
     logger.info("\n\n ** Generating: " + reportType.name() + " **");
@@ -102,7 +113,13 @@ public class StreamingReportProcessor extends ReportProcessor {
         this.csvReportEntitiesMapping.getReportBeanClass(reportType);
 
     downloadAndProcessReports(
-        topCustomerId, reportBeanClass, accountIdList, reportDefinition, dateRangeAndType);
+        topCustomerId,
+        reportBeanClass,
+        accountIdList,
+        reportDefinition,
+        dateRangeAndType,
+        !csvReportEntitiesMapping.supportsDateRange(reportType),
+        entityPersister);
   }
 
   /**
@@ -114,6 +131,8 @@ public class StreamingReportProcessor extends ReportProcessor {
    * @param accountIdList the account IDs.
    * @param reportDefinition the report definition.
    * @param dateRangeAndType the date range and type.
+   * @param fullSnapshot whether the report has all the rows of the report type (no date range).
+   * @param entityPersister the persister of the run.
    * @throws ReportProcessingException
    */
   private <R extends Report> void downloadAndProcessReports(
@@ -121,13 +140,20 @@ public class StreamingReportProcessor extends ReportProcessor {
       Class<R> reportBeanClass,
       Set<Long> accountIdList,
       ReportDefinition reportDefinition,
-      DateRangeAndType dateRangeAndType)
+      DateRangeAndType dateRangeAndType,
+      boolean fullSnapshot,
+      EntityPersister entityPersister)
       throws ReportProcessingException {
     logger.info("Processing report streams...");
     Stopwatch stopwatch = Stopwatch.createStarted();
     
     ExecutorService executorService = Executors.newFixedThreadPool(numberOfReportProcessors);
+    InflatePipeline inflatePipeline =
+        pipelineDepth > 0 ? new InflatePipeline(numberOfReportProcessors, pipelineDepth) : null;
     List<Callable<Object>> taskJobs = Lists.newArrayList();
+    List<StringDictionary> dictionaries = Lists.newArrayList();
+    Map<Long, StreamingRunnableProcessor<R>> runnableProcessors = Maps.newLinkedHashMap();
+    boolean complete = true;
 
     for (Long accountId : accountIdList) {
       try {
@@ -135,8 +161,9 @@ public class StreamingReportProcessor extends ReportProcessor {
 
         // We need to create a csvToBean and mappingStrategy for each thread
         ModifiedCsvToBean<R> csvToBean = new ModifiedCsvToBean<R>();
+        StringDictionary stringDictionary = createStringDictionary();
         ReportEntityMappingStrategy<R> mappingStrategy =
-            new ReportEntityMappingStrategy<R>(reportBeanClass);
+            createMappingStrategy(entityPersister, reportBeanClass, stringDictionary);
 
         ImmutableAdWordsSession accountSession =
             AdWordsSessionUtil.buildImmutableSessionForCid(sessionBuilder, accountId);
@@ -149,22 +176,52 @@ public class StreamingReportProcessor extends ReportProcessor {
                 dateRangeAndType,
                 csvToBean,
                 mappingStrategy,
-                persister,
-                reportRowsSetSize);
+                entityPersister,
+                reportRowsSetSize,
+                inflatePipeline);
         taskJobs.add(Executors.callable(runnableProcessor));
+        runnableProcessors.put(accountId, runnableProcessor);
+        if (stringDictionary != null) {
+          dictionaries.add(stringDictionary);
+        }
       } catch (ValidationException e) {
+        complete = false;
         logger.warn("Ignoring account (Error when processing): " + accountId, e);
       }
     }
 
+    beginLoad(entityPersister, reportBeanClass, fullSnapshot);
+    // The load is aborted on any failure before it is finished, so the next one can begin.
+    boolean finishing = false;
     try {
-      executorService.invokeAll(taskJobs);
-    } catch (InterruptedException e) {
-      throw new ReportProcessingException(
-          "StreamingReportProcessor encounters InterruptedException.", e);
+      try {
+        executorService.invokeAll(taskJobs);
+      } catch (InterruptedException e) {
+        throw new ReportProcessingException(
+            "StreamingReportProcessor encounters InterruptedException.", e);
+      }
+
+      executorService.shutdown();
+      if (inflatePipeline != null) {
+        inflatePipeline.shutdown();
+      }
+      logDictionaryStatistics(reportBeanClass, dictionaries);
+      for (Map.Entry<Long, StreamingRunnableProcessor<R>> runnableProcessor :
+          runnableProcessors.entrySet()) {
+        if (runnableProcessor.getValue().hasFailed()) {
+          complete = false;
+        } else {
+          recordLoadedRange(
+              entityPersister, reportBeanClass, runnableProcessor.getKey(), dateRangeAndType);
+        }
+      }
+      finishing = true;
+      finishLoad(entityPersister, reportBeanClass, complete);
+    } finally {
+      if (!finishing) {
+        abortLoad(entityPersister, reportBeanClass);
+      }
     }
-    
-    executorService.shutdown();
     stopwatch.stop();
     logger.info(
         "*** Finished processing all reports in "
@@ -177,4 +234,14 @@ public class StreamingReportProcessor extends ReportProcessor {
     this.downloadSetting = downloadSetting;
     this.downloadSetting.applyToRateLimiter();
   }
+
+  /**
+   * Sets the number of buffers read and inflated ahead of the parsing of each report stream, or 0
+   * to read the streams in the parsing threads.
+   */
+  @Value(value = "${aw.report.processor.stream.pipelineDepth:4}")
+  public void setPipelineDepth(Integer pipelineDepth) {
+    Preconditions.checkArgument(pipelineDepth >= 0, "PipelineDepth must be >= 0");
+    this.pipelineDepth = pipelineDepth;
+  }
 }
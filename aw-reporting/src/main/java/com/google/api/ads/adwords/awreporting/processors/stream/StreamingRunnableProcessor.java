@@ -14,15 +14,18 @@
 
 package com.google.api.ads.adwords.awreporting.processors.stream;
 
-import com.google.api.ads.adwords.awreporting.model.csv.AwReportCsvReader;
+import com.google.api.ads.adwords.awreporting.model.csv.AwReportByteCsvReader;
 import com.google.api.ads.adwords.awreporting.model.csv.CsvParserIterator;
 import com.google.api.ads.adwords.awreporting.model.csv.CsvReportParsingException;
+import com.google.api.ads.adwords.awreporting.model.csv.CsvRowReader;
 import com.google.api.ads.adwords.awreporting.model.csv.ModifiedCsvToBean;
 import com.google.api.ads.adwords.awreporting.model.csv.ReportEntityMappingStrategy;
 import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
 import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
 import com.google.api.ads.adwords.awreporting.model.util.StringsUtil;
+import com.google.api.ads.adwords.awreporting.processors.ReportEntityBuffer;
+import com.google.api.ads.adwords.awreporting.processors.ReportRowContext;
 import com.google.api.ads.adwords.awreporting.util.AdWordsServicesUtil;
 import com.google.api.ads.adwords.lib.client.AdWordsSession.ImmutableAdWordsSession;
 import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinition;
@@ -31,13 +34,10 @@ import com.google.api.ads.adwords.lib.utils.ReportDownloadResponseException;
 import com.google.api.ads.adwords.lib.utils.ReportException;
 import com.google.api.ads.adwords.lib.utils.v201705.ReportDownloaderInterface;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
 import java.util.zip.GZIPInputStream;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,6 +51,8 @@ public class StreamingRunnableProcessor<R extends Report> implements Runnable {
 
   private static final Logger logger = LoggerFactory.getLogger(StreamingRunnableProcessor.class);
 
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
   private final String topCustomerId;
   private final ImmutableAdWordsSession session;
   private final ReportDefinition reportDefinition;
@@ -59,6 +61,10 @@ public class StreamingRunnableProcessor<R extends Report> implements Runnable {
   private final ReportEntityMappingStrategy<R> mappingStrategy;
   private final EntityPersister entityPersister;
   private final int reportRowsSetSize;
+  private final InflatePipeline inflatePipeline;
+
+  // Set when the report could not be processed entirely.
+  private volatile boolean failed;
 
   /**
    * Constructor for {@code Runnable} to download reports from AdWords API.
@@ -81,6 +87,43 @@ public class StreamingRunnableProcessor<R extends Report> implements Runnable {
       ReportEntityMappingStrategy<R> mappingStrategy,
       EntityPersister entityPersister,
       int reportRowsSetSize) {
+    this(
+        topCustomerId,
+        session,
+        reportDefinition,
+        dateRangeAndType,
+        csvToBean,
+        mappingStrategy,
+        entityPersister,
+        reportRowsSetSize,
+        null);
+  }
+
+  /**
+   * Constructor for {@code Runnable} to download reports from AdWords API, whose stream is read
+   * and inflated ahead of the parsing by the pipeline.
+   *
+   * @param topCustomerId the top customer account id.
+   * @param session AdWords session used for downloading report stream.
+   * @param reportDefinition {@code ReportDefinition} to define report parameters.
+   * @param csvToBean the {@code CsvToBean}.
+   * @param mappingStrategy the mapping strategy to convert CSV files into Java beans.
+   * @param dateRangeAndType the date range and type.
+   * @param entityPersister the bean to persist report to database.
+   * @param reportRowsSetSize the size of the set parsed that will be persisted to the database.
+   * @param inflatePipeline the pipeline reading the report stream, or {@code null} to read it in
+   *     this thread.
+   */
+  public StreamingRunnableProcessor(
+      String topCustomerId,
+      ImmutableAdWordsSession session,
+      ReportDefinition reportDefinition,
+      DateRangeAndType dateRangeAndType,
+      ModifiedCsvToBean<R> csvToBean,
+      ReportEntityMappingStrategy<R> mappingStrategy,
+      EntityPersister entityPersister,
+      int reportRowsSetSize,
+      @Nullable InflatePipeline inflatePipeline) {
     this.topCustomerId = Preconditions.checkNotNull(topCustomerId, "topCustomerId cannot be null");
     
     this.session = Preconditions.checkNotNull(session, "session cannot be null.");
@@ -96,6 +139,7 @@ public class StreamingRunnableProcessor<R extends Report> implements Runnable {
         Preconditions.checkNotNull(entityPersister, "entityPersister cannot be null");
     this.reportRowsSetSize = reportRowsSetSize;
     Preconditions.checkArgument(reportRowsSetSize > 0, "reportRowsSetSize must be > 0");
+    this.inflatePipeline = inflatePipeline;
   }
 
   /**
@@ -112,28 +156,34 @@ public class StreamingRunnableProcessor<R extends Report> implements Runnable {
    */
   @Override
   public void run() {
-    // Report Input Streams comes GZipped
-    try (GZIPInputStream gZIPInputStream = new GZIPInputStream(getReportInputStream())) {
-      AwReportCsvReader csvReader = createCsvReader(gZIPInputStream);
+    try (InputStream reportStream = openReportStream();
+        AwReportByteCsvReader csvReader = new AwReportByteCsvReader(reportStream)) {
       parseCsv(csvReader);
     } catch (IOException | CsvReportParsingException e) {
+      failed = true;
       logger.error("Error processing report for account: " + session.getClientCustomerId(), e);
     } catch (RuntimeException e) {
+      failed = true;
       logger.error(
           "Runtime error processing report for account: " + session.getClientCustomerId(), e);
     }
   }
 
   /**
-   * Creates the proper {@link AwReportCsvReader} to parse the AW reports.
-   *
-   * @param inputStream the CSV file.
-   * @return the {@code CSVReader}
-   * @throws IOException in case the file is failed to parse as CSV.
+   * Returns whether the report could not be downloaded or processed entirely, once
+   * {@link #run()} returned.
+   */
+  public boolean hasFailed() {
+    return failed;
+  }
+
+  /**
+   * Opens the inflated stream of the report, through the pipeline if any.
    */
-  private AwReportCsvReader createCsvReader(InputStream inputStream) throws IOException {
-    InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
-    return new AwReportCsvReader(reader, false, false);
+  private InputStream openReportStream() throws IOException {
+    // Report Input Streams comes GZipped
+    InputStream reportStream = new GZIPInputStream(getReportInputStream(), GZIP_BUFFER_SIZE);
+    return inflatePipeline == null ? reportStream : inflatePipeline.pipe(reportStream);
   }
 
   /**
@@ -164,34 +214,29 @@ public class StreamingRunnableProcessor<R extends Report> implements Runnable {
   /**
    * Parse the CSV content and persist data.
    *
-   * @param csvReader the the {@code AwReportCsvReader} object to parse
+   * @param csvReader the the {@code CsvRowReader} object to parse
    * @throws CsvReportParsingException error on parsing the from the csvReader
    */
-  private void parseCsv(AwReportCsvReader csvReader) throws CsvReportParsingException {
+  private void parseCsv(CsvRowReader csvReader) throws CsvReportParsingException {
     logger.debug("Starting parse of report rows...");
     CsvParserIterator<R> reportRowsList = csvToBean.lazyParse(mappingStrategy, csvReader);
     logger.debug("Successfully finished parse of report rows.");
 
     logger.debug("Starting report persistence...");
-    List<R> reportBuffer = Lists.newArrayList();
+    ReportEntityBuffer<R> reportBuffer =
+        new ReportEntityBuffer<R>(entityPersister, reportRowsSetSize);
+    ReportRowContext rowContext =
+        new ReportRowContext(
+            StringsUtil.parseCustomerId(session.getClientCustomerId()),
+            StringsUtil.parseCustomerId(topCustomerId),
+            dateRangeAndType);
     while (reportRowsList.hasNext()) {
       R report = reportRowsList.next();
-      report.setCustomerId(StringsUtil.parseCustomerId(session.getClientCustomerId()));
-      report.setTopCustomerId(StringsUtil.parseCustomerId(topCustomerId));
-      report.setDateRangeType(dateRangeAndType.getTypeStr());
-      report.setStartDate(dateRangeAndType.getStartDateStr());
-      report.setEndDate(dateRangeAndType.getEndDateStr());
+      rowContext.apply(report);
       report.setRowId();
       reportBuffer.add(report);
-
-      if (reportBuffer.size() >= reportRowsSetSize) {
-        entityPersister.persistReportEntities(reportBuffer);
-        reportBuffer.clear();
-      }
-    }
-    if (reportBuffer.size() > 0) {
-      entityPersister.persistReportEntities(reportBuffer);
     }
+    reportBuffer.flush();
     logger.debug("Successfully finished report persistence.");
   }
 }
@@ -0,0 +1,31 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.util;
+
+/**
+ * Enum to describe how the report rows are written to a SQL database.
+ */
+public enum PersisterType {
+  /** Saves the report entities with the Hibernate session. */
+  HIBERNATE,
+  /** Writes the report rows with multi-row JDBC statements. */
+  JDBC,
+  /** Loads the report rows with the MySQL bulk loader (LOAD DATA LOCAL INFILE). */
+  LOAD_DATA,
+  /** Loads each report type into a staging table, merged into the report table at the end. */
+  STAGING,
+  /** Replaces the rows of the reloaded date ranges with the staged rows of the date reports. */
+  REPLACE_RANGE
+}
@@ -0,0 +1,75 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionDateRangeType;
+import org.joda.time.LocalDate;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link ReportRowContext} class.
+ */
+@RunWith(JUnit4.class)
+public class ReportRowContextTest {
+
+  private static final DateRangeAndType DATE_RANGE =
+      DateRangeAndType.fromValues(
+          new LocalDate(2017, 6, 1),
+          new LocalDate(2017, 6, 30),
+          ReportDefinitionDateRangeType.CUSTOM_DATE);
+
+  /**
+   * Tests that the shared values are set on every row, with the same timestamp.
+   */
+  @Test
+  public void testApply() {
+    ReportRowContext rowContext = new ReportRowContext(1234567890L, 1111111111L, DATE_RANGE);
+
+    AccountPerformanceReport first = new AccountPerformanceReport();
+    AccountPerformanceReport second = new AccountPerformanceReport();
+    second.setCustomerId(42L);
+    rowContext.apply(first);
+    rowContext.apply(second);
+
+    assertEquals(Long.valueOf(1234567890L), first.getCustomerId());
+    assertEquals(Long.valueOf(1234567890L), second.getCustomerId());
+    assertEquals(Long.valueOf(1111111111L), second.getTopCustomerId());
+    assertEquals(DATE_RANGE.getTypeStr(), second.getDateRangeType());
+    assertEquals(DATE_RANGE.getStartDateStr(), second.getStartDate());
+    assertEquals(DATE_RANGE.getEndDateStr(), second.getEndDate());
+    assertSame(first.getTimestamp(), second.getTimestamp());
+    assertEquals(rowContext.getTimestamp(), second.getTimestamp());
+  }
+
+  /**
+   * Tests that the customer ID of the rows is kept if the context has none.
+   */
+  @Test
+  public void testApplyWithoutCustomerId() {
+    ReportRowContext rowContext = new ReportRowContext(null, 1111111111L, DATE_RANGE);
+
+    AccountPerformanceReport report = new AccountPerformanceReport();
+    report.setCustomerId(42L);
+    rowContext.apply(report);
+    assertEquals(Long.valueOf(42L), report.getCustomerId());
+  }
+}
@@ -0,0 +1,208 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors.file;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.api.ads.adwords.awreporting.ReportProcessingException;
+import com.google.api.ads.adwords.awreporting.authentication.Authenticator;
+import com.google.api.ads.adwords.awreporting.downloader.MultipleClientReportDownloader;
+import com.google.api.ads.adwords.awreporting.model.csv.CsvReportEntitiesMapping;
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.entities.LabelReport;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.StagedEntityPersister;
+import com.google.api.ads.adwords.lib.client.AdWordsSession;
+import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinition;
+import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionDateRangeType;
+import com.google.api.ads.adwords.lib.jaxb.v201705.ReportDefinitionReportType;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link FileReportProcessor} class.
+ */
+@RunWith(JUnit4.class)
+public class FileReportProcessorTest {
+
+  private static final ReportDefinitionReportType REPORT_TYPE =
+      ReportDefinitionReportType.LABEL_REPORT;
+  private static final Set<Long> ACCOUNT_IDS = ImmutableSet.of(1L, 2L);
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private CsvReportEntitiesMapping csvReportEntitiesMapping;
+  private Properties properties;
+
+  @Before
+  public void setUp() {
+    csvReportEntitiesMapping =
+        new CsvReportEntitiesMapping("com.google.api.ads.adwords.awreporting.model.entities");
+    csvReportEntitiesMapping.initializeReportMap();
+    properties = new Properties();
+    properties.setProperty(REPORT_TYPE.name(), "ExternalCustomerId,LabelId,LabelName");
+  }
+
+  /**
+   * Tests that the load of a snapshot is complete when the reports of all the accounts were
+   * downloaded and processed, and that their date ranges are recorded.
+   */
+  @Test
+  public void testAllDownloaded() throws IOException, ReportProcessingException {
+    RecordingPersister persister = new RecordingPersister();
+    downloadAndProcess(createProcessor(createReportFile(1L), createReportFile(2L)), persister);
+
+    assertEquals(Boolean.TRUE, persister.fullSnapshot);
+    assertEquals(2, persister.persistedCount);
+    assertEquals(ACCOUNT_IDS, persister.loadedAccountIds);
+    assertEquals(Boolean.TRUE, persister.completeLoad);
+  }
+
+  /**
+   * Tests that the load of a snapshot is incomplete when the report of an account could not be
+   * downloaded, so a persister swapping the snapshots keeps the rows of that account.
+   */
+  @Test
+  public void testFailedDownload() throws IOException, ReportProcessingException {
+    RecordingPersister persister = new RecordingPersister();
+    downloadAndProcess(createProcessor(createReportFile(1L)), persister);
+
+    assertEquals(Boolean.TRUE, persister.fullSnapshot);
+    assertEquals(1, persister.persistedCount);
+    assertEquals(ImmutableSet.of(1L), persister.loadedAccountIds);
+    assertEquals(Boolean.FALSE, persister.completeLoad);
+  }
+
+  /**
+   * Creates a report file named as the downloader names them, with a single row.
+   */
+  private File createReportFile(long accountId) throws IOException {
+    File file = temporaryFolder.newFile(REPORT_TYPE + "-" + accountId + "-report.csv");
+    Files.write(
+        "Customer ID,Label ID,Label name\n" + accountId + ",10,Sale\n",
+        file,
+        StandardCharsets.UTF_8);
+    return file;
+  }
+
+  private void downloadAndProcess(FileReportProcessor processor, RecordingPersister persister)
+      throws ReportProcessingException {
+    processor.downloadAndProcess(
+        "123",
+        REPORT_TYPE,
+        DateRangeAndType.fromValues(null, null, ReportDefinitionDateRangeType.YESTERDAY),
+        ACCOUNT_IDS,
+        REPORT_TYPE.name(),
+        properties,
+        persister);
+  }
+
+  /**
+   * Creates a processor whose downloader returns the given files.
+   */
+  private FileReportProcessor createProcessor(final File... files)
+      throws ReportProcessingException {
+    FileReportProcessor processor =
+        new FileReportProcessor(
+            10,
+            2,
+            new Authenticator() {
+              @Override
+              public AdWordsSession.Builder authenticate() {
+                return new AdWordsSession.Builder();
+              }
+            }) {
+          @Override
+          protected MultipleClientReportDownloader createReportDownloader() {
+            return new MultipleClientReportDownloader(1) {
+              @Override
+              public Collection<File> downloadReports(
+                  AdWordsSession.Builder sessionBuilder,
+                  ReportDefinition reportDefinition,
+                  Set<Long> clientCustomerIds) {
+                return Lists.newArrayList(files);
+              }
+            };
+          }
+        };
+    processor.setCsvReportEntitiesMapping(csvReportEntitiesMapping);
+    processor.setSplitSizeMb(0);
+    return processor;
+  }
+
+  /**
+   * A persister recording the persisted entities and the load.
+   */
+  private static class RecordingPersister implements StagedEntityPersister {
+    private final Set<Long> loadedAccountIds = Collections.synchronizedSet(Sets.<Long>newHashSet());
+    private volatile int persistedCount;
+    private volatile Boolean fullSnapshot;
+    private volatile Boolean completeLoad;
+
+    @Override
+    public synchronized void persistReportEntities(List<? extends Report> reportEntities) {
+      for (Report report : reportEntities) {
+        assertEquals(LabelReport.class, report.getClass());
+      }
+      persistedCount += reportEntities.size();
+    }
+
+    @Override
+    public <T> T save(T entity) {
+      return entity;
+    }
+
+    @Override
+    public <T, V> List<T> get(Class<T> classT, String key, V value) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public void beginLoad(Class<? extends Report> reportClass, boolean fullSnapshot) {
+      this.fullSnapshot = fullSnapshot;
+    }
+
+    @Override
+    public void recordLoadedRange(
+        Class<? extends Report> reportClass, long accountId, DateRangeAndType dateRangeAndType) {
+      loadedAccountIds.add(accountId);
+    }
+
+    @Override
+    public void finishLoad(Class<? extends Report> reportClass, boolean complete) {
+      completeLoad = complete;
+    }
+
+    @Override
+    public void abortLoad(Class<? extends Report> reportClass) {}
+  }
+}
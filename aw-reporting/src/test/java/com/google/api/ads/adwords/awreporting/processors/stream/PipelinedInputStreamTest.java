@@ -0,0 +1,137 @@
+// Copyright 2017 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link PipelinedInputStream} class.
+ */
+@RunWith(JUnit4.class)
+public class PipelinedInputStreamTest {
+
+  private InflatePipeline inflatePipeline;
+
+  @Before
+  public void setUp() {
+    inflatePipeline = new InflatePipeline(2, 2);
+  }
+
+  @After
+  public void tearDown() {
+    inflatePipeline.shutdown();
+  }
+
+  /**
+   * Tests that the contents are read unchanged, for sizes around the buffer size.
+   */
+  @Test
+  public void testRead() throws IOException {
+    Random random = new Random(42);
+    int[] sizes = {
+      0, 1, InflatePipeline.BUFFER_SIZE - 1, InflatePipeline.BUFFER_SIZE,
+      InflatePipeline.BUFFER_SIZE * 3 + 1
+    };
+    for (int size : sizes) {
+      byte[] contents = new byte[size];
+      random.nextBytes(contents);
+      try (InputStream stream = inflatePipeline.pipe(new ByteArrayInputStream(contents))) {
+        assertArrayEquals(contents, ByteStreams.toByteArray(stream));
+        assertEquals(-1, stream.read());
+      }
+    }
+  }
+
+  /**
+   * Tests that an error of the source is thrown after the contents read before the error.
+   */
+  @Test
+  public void testReadError() throws IOException {
+    InputStream failingSource =
+        new InputStream() {
+          @Override
+          public int read() throws IOException {
+            throw new IOException("Connection reset");
+          }
+        };
+    byte[] contents = new byte[10];
+    InputStream source =
+        new SequenceInputStream(new ByteArrayInputStream(contents), failingSource);
+
+    try (InputStream stream = inflatePipeline.pipe(source)) {
+      byte[] buffer = new byte[100];
+      int length = 0;
+      try {
+        while (true) {
+          int read = stream.read(buffer, length, buffer.length - length);
+          assertTrue(read > 0);
+          length += read;
+        }
+      } catch (IOException e) {
+        assertEquals("Connection reset", e.getCause().getMessage());
+      }
+      assertEquals(contents.length, length);
+    }
+  }
+
+  /**
+   * Tests that closing the stream early makes the pipeline stop reading and close the source.
+   */
+  @Test
+  public void testCloseEarly() throws IOException, InterruptedException {
+    final CountDownLatch sourceClosed = new CountDownLatch(1);
+    InputStream endlessSource =
+        new FilterInputStream(new ByteArrayInputStream(new byte[0])) {
+          @Override
+          public int read(byte[] bytes, int offset, int length) {
+            return length;
+          }
+
+          @Override
+          public void close() {
+            sourceClosed.countDown();
+          }
+        };
+
+    InputStream stream = inflatePipeline.pipe(endlessSource);
+    assertEquals(0, stream.read());
+    stream.close();
+    assertTrue(sourceClosed.await(10, TimeUnit.SECONDS));
+    try {
+      stream.read();
+      fail("Reading a closed stream should fail");
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+}